@@ -0,0 +1,35 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.annotation;
+
+import org.blocks4j.feature.toggle.annotation.parameters.ParameterToggle;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a common interface whose toggle metadata and delegate are generated at compile time. Interfaces with
+ * {@link ParameterToggle} parameters are generated without it; it is needed when the togglable parameters are only
+ * fields or methods of the argument types, or when no parameter is togglable.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Togglable {
+}
@@ -0,0 +1,44 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.annotation.processing;
+
+/**
+ * Names of the classes generated for a common interface, next to it in its package.
+ */
+public final class GeneratedClasses {
+
+    private static final String METADATA_SUFFIX = "_ToggleMetadata";
+    private static final String DELEGATE_SUFFIX = "_Toggled";
+
+    private GeneratedClasses() {
+    }
+
+    /**
+     * @param interfaceName binary name of the common interface, as returned by {@link Class#getName()}
+     */
+    public static String getMetadataClassName(String interfaceName) {
+        return interfaceName + METADATA_SUFFIX;
+    }
+
+    /**
+     * @param interfaceName binary name of the common interface, as returned by {@link Class#getName()}
+     */
+    public static String getDelegateClassName(String interfaceName) {
+        return interfaceName + DELEGATE_SUFFIX;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.file.BinarySnapshotFile;
+import org.blocks4j.feature.toggle.file.MappedFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.parameters.LongAllowList;
+import org.blocks4j.feature.toggle.parameters.NumericAllowList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership checks against an allow-list of customer ids, as a staged rollout configures them: the {@code Set} of
+ * Strings of the configuration, matched by the String of the id, against the layouts of {@link LongAllowList}.
+ * {@code COMPILED} is the layout a snapshot picks, {@code MAPPED} the sorted longs of a memory-mapped
+ * {@link BinarySnapshotFile}. A tenth of the ids looked up are enabled; scores are per lookup.
+ * <p>
+ * The heap retained by the allow-list, measured after a full GC, is printed when the trial starts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+@OperationsPerInvocation(AllowListBenchmark.LOOKUPS)
+public class AllowListBenchmark {
+
+    static final int LOOKUPS = 1024;
+
+    private static final String PARAMETER = "customerId";
+
+    public enum Layout {
+        STRINGS, HASHED, SORTED_ARRAY, SORTED_ARRAY_BLOOM, BITMAP, COMPILED, MAPPED
+    }
+
+    /**
+     * {@code SPARSE} ids are spread over a range a thousand times the size of the list, {@code DENSE} ids fill nine
+     * tenths of a contiguous range.
+     */
+    public enum Density {
+        SPARSE, DENSE
+    }
+
+    @Param({"100000", "5000000"})
+    private int size;
+
+    @Param({"SPARSE", "DENSE"})
+    private Density density;
+
+    @Param({"STRINGS", "HASHED", "SORTED_ARRAY", "SORTED_ARRAY_BLOOM", "BITMAP", "COMPILED", "MAPPED"})
+    private Layout layout;
+
+    private Set<String> strings;
+    private LongAllowList longs;
+    private long[] lookups;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42L);
+        long range = (this.density == Density.SPARSE) ? this.size * 1000L : (this.size * 10L) / 9L;
+        long[] ids = new long[this.size];
+        for (int index = 0; index < this.size; index++) {
+            ids[index] = (this.density == Density.SPARSE) ? (long) (random.nextDouble() * range) : (index * 10L) / 9L;
+        }
+
+        long before = usedHeap();
+        if (this.layout == Layout.STRINGS) {
+            this.strings = new HashSet<String>();
+            for (long id : ids) {
+                this.strings.add(String.valueOf(id));
+            }
+        } else {
+            this.longs = this.compile(ids);
+        }
+        long retained = Math.max(0L, usedHeap() - before);
+        System.out.printf("%n%s %s allow-list of %d ids: %.1f MB retained%s%n",
+                          this.density, this.layout, this.size, retained / 1048576.0,
+                          (this.longs != null) ? String.format(" (%.1f MB estimated)", this.longs.sizeInBytes() / 1048576.0) : "");
+
+        this.lookups = new long[LOOKUPS];
+        for (int index = 0; index < LOOKUPS; index++) {
+            this.lookups[index] = (index % 10 == 0) ? ids[random.nextInt(this.size)] : (long) (random.nextDouble() * range);
+        }
+    }
+
+    private LongAllowList compile(long[] ids) throws IOException {
+        switch (this.layout) {
+            case HASHED:
+                return LongAllowList.hashed(ids);
+            case SORTED_ARRAY:
+                return LongAllowList.sortedArray(ids, false);
+            case SORTED_ARRAY_BLOOM:
+                return LongAllowList.sortedArray(ids, true);
+            case BITMAP:
+                return LongAllowList.bitmap(ids);
+            case MAPPED:
+                return this.map(ids);
+            default:
+                return NumericAllowList.of(toStrings(ids)).getLongs();
+        }
+    }
+
+    private LongAllowList map(long[] ids) throws IOException {
+        Path file = Files.createTempFile("allow-list", ".snapshot");
+        file.toFile().deleteOnExit();
+        BinarySnapshotFile.write(file, Collections.<String>emptySet(), Collections.singletonMap(PARAMETER, toStrings(ids)));
+        try (MappedFeatureToggleConfiguration config = MappedFeatureToggleConfiguration.forPath(file).build()) {
+            return ((NumericAllowList) config.getEnabledParameters().get(PARAMETER)).getLongs();
+        }
+    }
+
+    private static Set<String> toStrings(long[] ids) {
+        Set<String> values = new HashSet<String>();
+        for (long id : ids) {
+            values.add(String.valueOf(id));
+        }
+        return values;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int collection = 0; collection < 3; collection++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public int contains() {
+        int enabled = 0;
+        if (this.strings != null) {
+            for (long id : this.lookups) {
+                if (this.strings.contains(String.valueOf(id))) {
+                    enabled++;
+                }
+            }
+        } else {
+            for (long id : this.lookups) {
+                if (this.longs.contains(id)) {
+                    enabled++;
+                }
+            }
+        }
+        return enabled;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.batch.FeatureToggleEvaluator;
+import org.blocks4j.feature.toggle.benchmarks.domain.Gateway;
+import org.blocks4j.feature.toggle.benchmarks.domain.GatewayImpl;
+import org.blocks4j.feature.toggle.factory.FeatureToggleFactory;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of records split between the ON and OFF implementations: through the proxy, one decision per call, against
+ * {@link FeatureToggleEvaluator} deciding the whole batch first. Scores are per record; a tenth of the customers are
+ * enabled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(BatchEvaluationBenchmark.BATCH_SIZE)
+public class BatchEvaluationBenchmark {
+
+    static final int BATCH_SIZE = 10000;
+
+    @Param({"MUTABLE", "SNAPSHOT"})
+    private FeatureProxyBenchmark.ConfigurationType configurationType;
+
+    private Gateway on;
+    private Gateway off;
+    private Gateway proxy;
+    private FeatureToggleEvaluator evaluator;
+    private Method method;
+
+    private long[] customerIds;
+    private List<Object[]> calls;
+
+    @Setup
+    public void setUp() throws Exception {
+        Set<String> enabledCustomers = new HashSet<String>();
+        for (int customerId = 0; customerId < BATCH_SIZE; customerId += 10) {
+            enabledCustomers.add(String.valueOf(customerId));
+        }
+        BenchmarkFeatureToggleConfiguration config = new BenchmarkFeatureToggleConfiguration();
+        config.getEnabledFeatures().add(FeatureProxyBenchmark.FEATURE_NAME);
+        config.getEnabledParameters().put("customerId", enabledCustomers);
+
+        FeatureToggleConfiguration featureConfig = config;
+        if (this.configurationType == FeatureProxyBenchmark.ConfigurationType.SNAPSHOT) {
+            featureConfig = new SnapshotFeatureToggleConfiguration(config.getEnabledFeatures(), config.getEnabledParameters());
+        }
+
+        this.on = new GatewayImpl(1L);
+        this.off = new GatewayImpl(2L);
+        this.proxy = FeatureToggleFactory.<Gateway>forFeature(featureConfig, FeatureProxyBenchmark.FEATURE_NAME, Gateway.class)
+                .whenEnabled(this.on)
+                .whenDisabled(this.off)
+                .build();
+        this.evaluator = new FeatureToggleEvaluator(featureConfig, Gateway.class);
+        this.method = Gateway.class.getMethod("callDirect", long.class);
+
+        this.customerIds = new long[BATCH_SIZE];
+        this.calls = new ArrayList<Object[]>(BATCH_SIZE);
+        for (int index = 0; index < BATCH_SIZE; index++) {
+            this.customerIds[index] = index;
+            this.calls.add(new Object[]{(long) index});
+        }
+    }
+
+    @Benchmark
+    public long baselineDirect() {
+        long sum = 0;
+        for (long customerId : this.customerIds) {
+            sum += this.off.callDirect(customerId);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long proxyPerRecord() {
+        long sum = 0;
+        for (long customerId : this.customerIds) {
+            sum += this.proxy.callDirect(customerId);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long evaluatedBatch() {
+        BitSet enabled = this.evaluator.evaluate(FeatureProxyBenchmark.FEATURE_NAME, this.method, this.calls);
+        long sum = 0;
+        for (int index = 0; index < this.customerIds.length; index++) {
+            Gateway target = enabled.get(index) ? this.on : this.off;
+            sum += target.callDirect(this.customerIds[index]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.benchmarks.domain.CustomerType;
+import org.blocks4j.feature.toggle.benchmarks.domain.FieldRequest;
+import org.blocks4j.feature.toggle.benchmarks.domain.Gateway;
+import org.blocks4j.feature.toggle.benchmarks.domain.GatewayImpl;
+import org.blocks4j.feature.toggle.benchmarks.domain.MethodRequest;
+import org.blocks4j.feature.toggle.factory.FeatureToggleFactory;
+import org.blocks4j.feature.toggle.proxy.ProxyEngine;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded cost of a call through the toggle proxy, compared with a direct call to the implementation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeatureProxyBenchmark {
+
+    static final String FEATURE_NAME = "gatewayFeature";
+
+    public enum Toggle {ON, OFF}
+
+    public enum ConfigurationType {MUTABLE, SNAPSHOT}
+
+    @Param({"ON", "OFF"})
+    public Toggle toggle;
+
+    @Param({"JDK", "BYTECODE", "GENERATED"})
+    public ProxyEngine proxyEngine;
+
+    @Param({"MUTABLE", "SNAPSHOT"})
+    public ConfigurationType configurationType;
+
+    private Gateway direct;
+    private Gateway proxy;
+
+    private long customerId;
+    private FieldRequest fieldRequest;
+    private MethodRequest methodRequest;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFeatureToggleConfiguration config = new BenchmarkFeatureToggleConfiguration();
+        if (this.toggle == Toggle.ON) {
+            config.getEnabledFeatures().add(FEATURE_NAME);
+        }
+        config.getEnabledParameters().put("customerId", Collections.singleton("42"));
+        config.getEnabledParameters().put("region", Collections.singleton("EU"));
+        config.getEnabledParameters().put("customerType", Collections.singleton(CustomerType.CORPORATE.name()));
+
+        FeatureToggleConfiguration featureConfig = config;
+        if (this.configurationType == ConfigurationType.SNAPSHOT) {
+            featureConfig = new SnapshotFeatureToggleConfiguration(config.getEnabledFeatures(), config.getEnabledParameters());
+        }
+
+        this.direct = new GatewayImpl(1L);
+        this.proxy = FeatureToggleFactory.<Gateway>forFeature(featureConfig, FEATURE_NAME, Gateway.class)
+                .whenEnabled(new GatewayImpl(1L))
+                .whenDisabled(new GatewayImpl(2L))
+                .proxyEngine(this.proxyEngine)
+                .build();
+
+        this.customerId = 42L;
+        this.fieldRequest = new FieldRequest("EU", 10L);
+        this.methodRequest = new MethodRequest(CustomerType.CORPORATE, 10L);
+    }
+
+    @Benchmark
+    public long baselineDirect() {
+        return this.direct.call(this.customerId);
+    }
+
+    @Benchmark
+    public long noArgument() {
+        return this.proxy.ping();
+    }
+
+    @Benchmark
+    public long untoggledArgument() {
+        return this.proxy.call(this.customerId);
+    }
+
+    @Benchmark
+    public long directParameterToggle() {
+        return this.proxy.callDirect(this.customerId);
+    }
+
+    @Benchmark
+    public long fieldParameterToggle() {
+        return this.proxy.callField(this.fieldRequest);
+    }
+
+    @Benchmark
+    public long methodParameterToggle() {
+        return this.proxy.callMethod(this.methodRequest);
+    }
+}
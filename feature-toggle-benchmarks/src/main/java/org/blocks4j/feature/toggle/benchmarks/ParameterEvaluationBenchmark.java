@@ -0,0 +1,127 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.benchmarks.domain.CustomerType;
+import org.blocks4j.feature.toggle.benchmarks.domain.FieldRequest;
+import org.blocks4j.feature.toggle.benchmarks.domain.Gateway;
+import org.blocks4j.feature.toggle.benchmarks.domain.MethodRequest;
+import org.blocks4j.feature.toggle.parameters.CompiledParameters;
+import org.blocks4j.feature.toggle.parameters.ParametersToggleHandler;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parameter toggle evaluation alone, without the proxy and its argument array, to track the allocation of the
+ * decision itself. Parameters are configured per feature ({@code feature&parameter} keys). {@code SNAPSHOT} evaluates
+ * the parameters compiled against a snapshot, as the proxies do, matching values with typed matchers instead of
+ * converting them to String.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParameterEvaluationBenchmark {
+
+    @Param({"MUTABLE", "SNAPSHOT"})
+    private FeatureProxyBenchmark.ConfigurationType configurationType;
+
+    private ParametersToggleHandler handler;
+    private CompiledParameters compiledParameters;
+
+    private Method directMethod;
+    private Method directLongMethod;
+    private Method fieldMethod;
+    private Method methodMethod;
+
+    private Object[] directArgs;
+    private Object[] directLongArgs;
+    private Object[] fieldArgs;
+    private Object[] methodArgs;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFeatureToggleConfiguration config = new BenchmarkFeatureToggleConfiguration();
+        config.getEnabledFeatures().add(FeatureProxyBenchmark.FEATURE_NAME);
+        config.getEnabledParameters().put(FeatureProxyBenchmark.FEATURE_NAME + "&region", Collections.singleton("EU"));
+        config.getEnabledParameters().put(FeatureProxyBenchmark.FEATURE_NAME + "&customerType", Collections.singleton(CustomerType.CORPORATE.name()));
+        config.getEnabledParameters().put(FeatureProxyBenchmark.FEATURE_NAME + "&customerId", new HashSet<String>(Arrays.asList("7", "42", "1000000")));
+
+        if (this.configurationType == FeatureProxyBenchmark.ConfigurationType.SNAPSHOT) {
+            SnapshotFeatureToggleConfiguration snapshotConfig = new SnapshotFeatureToggleConfiguration(config.getEnabledFeatures(), config.getEnabledParameters());
+            this.handler = new ParametersToggleHandler(snapshotConfig, Gateway.class, FeatureProxyBenchmark.FEATURE_NAME);
+            this.compiledParameters = this.handler.compile(snapshotConfig.getSnapshot());
+        } else {
+            this.handler = new ParametersToggleHandler(config, Gateway.class, FeatureProxyBenchmark.FEATURE_NAME);
+        }
+
+        this.directMethod = Gateway.class.getMethod("callRegion", String.class);
+        this.directLongMethod = Gateway.class.getMethod("callDirect", long.class);
+        this.fieldMethod = Gateway.class.getMethod("callField", FieldRequest.class);
+        this.methodMethod = Gateway.class.getMethod("callMethod", MethodRequest.class);
+
+        this.directArgs = new Object[]{"EU"};
+        this.directLongArgs = new Object[]{42L};
+        this.fieldArgs = new Object[]{new FieldRequest("EU", 10L)};
+        this.methodArgs = new Object[]{new MethodRequest(CustomerType.CORPORATE, 10L)};
+    }
+
+    @Benchmark
+    public boolean directParameter() {
+        return this.isOn(this.directMethod, this.directArgs);
+    }
+
+    @Benchmark
+    public boolean directLongParameter() {
+        return this.isOn(this.directLongMethod, this.directLongArgs);
+    }
+
+    @Benchmark
+    public boolean fieldParameter() {
+        return this.isOn(this.fieldMethod, this.fieldArgs);
+    }
+
+    @Benchmark
+    public boolean methodParameter() {
+        return this.isOn(this.methodMethod, this.methodArgs);
+    }
+
+    private boolean isOn(Method method, Object[] args) {
+        if (this.compiledParameters != null) {
+            return this.compiledParameters.isOn(method, args);
+        }
+        return this.handler.isOn(method, args);
+    }
+}
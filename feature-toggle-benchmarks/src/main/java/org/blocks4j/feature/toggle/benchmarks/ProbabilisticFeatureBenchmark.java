@@ -0,0 +1,89 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.benchmarks.domain.Gateway;
+import org.blocks4j.feature.toggle.benchmarks.domain.GatewayImpl;
+import org.blocks4j.feature.toggle.factory.FeatureToggleFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProbabilisticFeatureBenchmark {
+
+    @Param({"1/2", "1/100"})
+    public String probability;
+
+    private Gateway direct;
+    private Gateway proxy;
+    private Gateway stickyProxy;
+
+    private long customerId;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFeatureToggleConfiguration config = new BenchmarkFeatureToggleConfiguration();
+        config.getEnabledFeatures().add(FeatureProxyBenchmark.FEATURE_NAME);
+        config.getEnabledParameters().put(FeatureProxyBenchmark.FEATURE_NAME + "#probability", Collections.singleton(this.probability));
+
+        this.direct = new GatewayImpl(1L);
+        this.proxy = FeatureToggleFactory.<Gateway>forFeature(config, FeatureProxyBenchmark.FEATURE_NAME, Gateway.class)
+                .whenEnabled(new GatewayImpl(1L))
+                .whenDisabled(new GatewayImpl(2L))
+                .allowProbabilisticFeatures()
+                .build();
+        this.stickyProxy = FeatureToggleFactory.<Gateway>forFeature(config, FeatureProxyBenchmark.FEATURE_NAME, Gateway.class)
+                .whenEnabled(new GatewayImpl(1L))
+                .whenDisabled(new GatewayImpl(2L))
+                .allowProbabilisticFeatures("customerId")
+                .build();
+
+        this.customerId = 42L;
+    }
+
+    @Benchmark
+    public long baselineDirect() {
+        return this.direct.call(this.customerId);
+    }
+
+    @Benchmark
+    public long probabilisticToggle() {
+        return this.proxy.call(this.customerId);
+    }
+
+    @Benchmark
+    public long stickyProbabilisticToggle() {
+        return this.stickyProxy.callDirect(this.customerId);
+    }
+}
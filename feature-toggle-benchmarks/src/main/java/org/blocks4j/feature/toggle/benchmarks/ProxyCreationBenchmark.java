@@ -0,0 +1,81 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.benchmarks.domain.Gateway;
+import org.blocks4j.feature.toggle.benchmarks.domain.GatewayImpl;
+import org.blocks4j.feature.toggle.factory.FeatureRegistry;
+import org.blocks4j.feature.toggle.factory.FeatureToggleFactory;
+import org.blocks4j.feature.toggle.proxy.ProxyEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proxies built per call from all available cores, as for per-request prototypes, to expose contention and leaks
+ * in proxy registration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ProxyCreationBenchmark {
+
+    @Param({"JDK", "BYTECODE"})
+    public ProxyEngine proxyEngine;
+
+    private BenchmarkFeatureToggleConfiguration config;
+    private FeatureRegistry registry;
+
+    private Gateway featureOn;
+    private Gateway featureOff;
+
+    @Setup
+    public void setUp() {
+        this.config = new BenchmarkFeatureToggleConfiguration();
+        this.config.getEnabledFeatures().add(FeatureProxyBenchmark.FEATURE_NAME);
+        this.registry = new FeatureRegistry();
+
+        this.featureOn = new GatewayImpl(1L);
+        this.featureOff = new GatewayImpl(2L);
+    }
+
+    @Benchmark
+    public Gateway createProxy() {
+        return FeatureToggleFactory.<Gateway>forFeature(this.config, FeatureProxyBenchmark.FEATURE_NAME, Gateway.class)
+                .whenEnabled(this.featureOn)
+                .whenDisabled(this.featureOff)
+                .proxyEngine(this.proxyEngine)
+                .registry(this.registry)
+                .build();
+    }
+}
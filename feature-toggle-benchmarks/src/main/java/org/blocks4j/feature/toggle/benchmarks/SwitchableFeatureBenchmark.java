@@ -0,0 +1,99 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.benchmarks;
+
+import org.blocks4j.feature.toggle.benchmarks.domain.Gateway;
+import org.blocks4j.feature.toggle.benchmarks.domain.GatewayImpl;
+import org.blocks4j.feature.toggle.factory.FeatureToggleFactory;
+import org.blocks4j.feature.toggle.proxy.ProxyEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a {@link FeatureToggleFactory.SwitchableFeatureBuilder} chain as the number of cases grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SwitchableFeatureBenchmark {
+
+    public enum EnabledCase {FIRST, LAST, NONE}
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int cases;
+
+    @Param({"FIRST", "LAST", "NONE"})
+    public EnabledCase enabledCase;
+
+    @Param({"JDK", "BYTECODE", "GENERATED"})
+    public ProxyEngine proxyEngine;
+
+    private Gateway direct;
+    private Gateway proxy;
+
+    private long customerId;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFeatureToggleConfiguration config = new BenchmarkFeatureToggleConfiguration();
+        if (this.enabledCase == EnabledCase.FIRST) {
+            config.getEnabledFeatures().add(this.caseName(0));
+        } else if (this.enabledCase == EnabledCase.LAST) {
+            config.getEnabledFeatures().add(this.caseName(this.cases - 1));
+        }
+
+        FeatureToggleFactory.SwitchableFeatureBuilder<Gateway> builder =
+                FeatureToggleFactory.<Gateway>forSwitchableFeaturesConfiguration(config, Gateway.class)
+                        .defaultFeature(new GatewayImpl(0L))
+                        .proxyEngine(this.proxyEngine);
+        for (int i = 0; i < this.cases; i++) {
+            builder.when(this.caseName(i), new GatewayImpl(i + 1L));
+        }
+
+        this.direct = new GatewayImpl(1L);
+        this.proxy = builder.build();
+        this.customerId = 42L;
+    }
+
+    private String caseName(int index) {
+        return "switchCase" + index;
+    }
+
+    @Benchmark
+    public long baselineDirect() {
+        return this.direct.call(this.customerId);
+    }
+
+    @Benchmark
+    public long switchChain() {
+        return this.proxy.call(this.customerId);
+    }
+}
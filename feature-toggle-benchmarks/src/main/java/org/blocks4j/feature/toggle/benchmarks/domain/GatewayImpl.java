@@ -0,0 +1,56 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.benchmarks.domain;
+
+public class GatewayImpl implements Gateway {
+
+    private final long seed;
+
+    public GatewayImpl(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public long ping() {
+        return this.seed;
+    }
+
+    @Override
+    public long call(long customerId) {
+        return this.seed ^ customerId;
+    }
+
+    @Override
+    public long callDirect(long customerId) {
+        return this.seed ^ customerId;
+    }
+
+    @Override
+    public long callRegion(String region) {
+        return this.seed ^ region.length();
+    }
+
+    @Override
+    public long callField(FieldRequest request) {
+        return this.seed ^ request.getAmount();
+    }
+
+    @Override
+    public long callMethod(MethodRequest request) {
+        return this.seed ^ request.getAmount();
+    }
+}
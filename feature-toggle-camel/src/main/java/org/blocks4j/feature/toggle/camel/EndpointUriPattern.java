@@ -0,0 +1,91 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.camel;
+
+import org.apache.camel.util.URISupport;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Endpoint URI pattern, compiled once: an exact URI, compared once normalized, a wildcard ({@code jms:queue:orders*})
+ * or a regular expression, as in Camel's {@code interceptSendToEndpoint}.
+ */
+final class EndpointUriPattern {
+
+    private final String pattern;
+    private final String normalizedUri;
+    private final Pattern regex;
+
+    private EndpointUriPattern(String pattern, String normalizedUri, Pattern regex) {
+        this.pattern = pattern;
+        this.normalizedUri = normalizedUri;
+        this.regex = regex;
+    }
+
+    static EndpointUriPattern compile(String pattern) {
+        if (pattern == null) {
+            throw new IllegalArgumentException("The endpoint pattern mustn't be null.");
+        }
+        return new EndpointUriPattern(pattern, normalize(pattern), toRegex(pattern));
+    }
+
+    private static String normalize(String uri) {
+        try {
+            return URISupport.normalizeUri(uri);
+        } catch (Exception e) {
+            return uri;
+        }
+    }
+
+    private static Pattern toRegex(String pattern) {
+        if (pattern.contains("*")) {
+            StringBuilder regex = new StringBuilder();
+            for (String literal : pattern.split("\\*", -1)) {
+                if (regex.length() > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(literal));
+            }
+            return Pattern.compile(regex.toString());
+        }
+        try {
+            return Pattern.compile(pattern);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param endpointUri the URI an endpoint is registered under, already normalized by Camel ({@code scheme://path})
+     */
+    boolean matches(String endpointUri) {
+        if (this.normalizedUri.equals(endpointUri) || this.pattern.equals(endpointUri)) {
+            return true;
+        }
+        if (this.regex == null) {
+            return false;
+        }
+        // patterns are usually written without the slashes Camel adds to the URI
+        return this.regex.matcher(endpointUri).matches() || this.regex.matcher(endpointUri.replaceFirst("://", ":")).matches();
+    }
+
+    @Override
+    public String toString() {
+        return this.pattern;
+    }
+}
@@ -16,46 +16,65 @@
 
 package org.blocks4j.feature.toggle.camel;
 
-import org.apache.camel.CamelContext;
 import org.apache.camel.Endpoint;
-import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
-import org.apache.camel.model.ProcessorDefinition;
-import org.apache.camel.processor.SendProcessor;
-import org.apache.camel.spi.InterceptStrategy;
+import org.apache.camel.spi.EndpointStrategy;
 import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
-
+import org.blocks4j.feature.toggle.metrics.FeatureToggleMetrics;
+
+/**
+ * Toggles the endpoints matching the {@code featureOn} pattern: while the feature is off, the exchanges sent to them go
+ * to the {@code featureOff} endpoint instead.
+ * <p>
+ * The matching endpoints are replaced in the endpoint registry, so the exchanges are toggled whichever EIP sends them:
+ * to, recipient list, multicast (each branch on its own, parallel processing included), wire tap, enrich... The pattern
+ * is compiled once and only matched when an endpoint is registered, never per exchange. Add this route before the
+ * routes sending to the toggled endpoints are started.
+ * <p>
+ * The registry then holds an {@link org.apache.camel.impl.InterceptSendToEndpoint}, as with Camel's
+ * {@code interceptSendToEndpoint}: typed lookups such as {@code getEndpoint("mock:on", MockEndpoint.class)} and
+ * {@code MockEndpoint.assertIsSatisfied(context)} unwrap it, but casting {@code getEndpoint("mock:on")},
+ * {@code MockEndpoint.resolve} and {@code @EndpointInject} of the endpoint type don't: get the toggled endpoint through
+ * {@code getDelegate()} there.
+ */
 public class ToggleFeatureRoute extends RouteBuilder {
 
     private final FeatureToggleConfiguration config;
     private final String featureName;
-    private final String featureEndPoint;
+    private final EndpointUriPattern featureEndPoint;
     private final String alternateEndPoint;
+    private final FeatureToggleMetrics metrics;
 
-    private ToggleFeatureRoute(FeatureToggleConfiguration config, String featureName, String featureEndPoint, String alternateEndPoint) {
-        this.featureEndPoint = featureEndPoint;
+    private ToggleFeatureRoute(FeatureToggleConfiguration config, String featureName, String featureEndPoint, String alternateEndPoint, FeatureToggleMetrics metrics) {
+        this.featureEndPoint = EndpointUriPattern.compile(featureEndPoint);
         this.alternateEndPoint = alternateEndPoint;
         this.config = config;
         this.featureName = featureName;
+        this.metrics = metrics;
     }
 
     @Override
     public void configure() throws Exception {
-        this.getContext().addInterceptStrategy(new InterceptStrategy() {
+        final EndpointUriPattern alternateEndPointPattern = EndpointUriPattern.compile(this.alternateEndPoint);
+        // also called back with the endpoints already registered
+        this.getContext().addRegisterEndpointCallback(new EndpointStrategy() {
             @Override
-            public Processor wrapProcessorInInterceptors(CamelContext camelContext, ProcessorDefinition<?> processorDefinition, Processor target, Processor nextTarget) throws Exception {
-                if (nextTarget instanceof SendProcessor) {
-                    SendProcessor sendProcessor = (SendProcessor) nextTarget;
-                    if (sendProcessor.getDestination().getEndpointUri().equals(ToggleFeatureRoute.this.featureEndPoint)) {
-                        Endpoint alternateEndpoint = camelContext.getEndpoint(ToggleFeatureRoute.this.alternateEndPoint);
-                        return new ToggledSendProcessor(ToggleFeatureRoute.this.config, ToggleFeatureRoute.this.featureName, sendProcessor.getDestination(), alternateEndpoint);
-                    }
+            public Endpoint registerEndpoint(String uri, Endpoint endpoint) {
+                if (ToggleFeatureRoute.this.isToggled(uri, endpoint) && !alternateEndPointPattern.matches(uri)) {
+                    return new ToggledEndpoint(endpoint, ToggleFeatureRoute.this.alternateEndPoint, ToggleFeatureRoute.this.config, ToggleFeatureRoute.this.featureName, ToggleFeatureRoute.this.metrics);
                 }
-                return nextTarget;
+                return endpoint;
             }
         });
     }
 
+    private boolean isToggled(String uri, Endpoint endpoint) {
+        if ((endpoint instanceof ToggledEndpoint) && this.featureName.equals(((ToggledEndpoint) endpoint).getFeatureName())) {
+            return false;
+        }
+        return this.featureEndPoint.matches(uri);
+    }
+
     public static ToggleFeatureRouteBuilder createBuilder() {
         return new ToggleFeatureRouteBuilder();
     }
@@ -66,9 +85,10 @@ public class ToggleFeatureRoute extends RouteBuilder {
         private String featureName;
         private String featureOnEndpoint;
         private String featureOffEndpoint;
+        private FeatureToggleMetrics metrics;
 
         private ToggleFeatureRouteBuilder() {
-
+            this.metrics = FeatureToggleMetrics.NONE;
         }
 
         public ToggleFeatureRouteBuilder config(FeatureToggleConfiguration config) {
@@ -81,6 +101,10 @@ public class ToggleFeatureRoute extends RouteBuilder {
             return this;
         }
 
+        /**
+         * @param featureOnEndpoint URI of the endpoints to toggle: exact, with wildcards ({@code seda:orders-*}) or a
+         *                          regular expression
+         */
         public ToggleFeatureRouteBuilder featureOn(String featureOnEndpoint) {
             this.featureOnEndpoint = featureOnEndpoint;
             return this;
@@ -91,8 +115,13 @@ public class ToggleFeatureRoute extends RouteBuilder {
             return this;
         }
 
+        public ToggleFeatureRouteBuilder metrics(FeatureToggleMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
         public ToggleFeatureRoute build() {
-            return new ToggleFeatureRoute(this.config, this.featureName, this.featureOnEndpoint, this.featureOffEndpoint);
+            return new ToggleFeatureRoute(this.config, this.featureName, this.featureOnEndpoint, this.featureOffEndpoint, this.metrics);
         }
     }
 }
@@ -0,0 +1,87 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.camel;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.Producer;
+import org.apache.camel.impl.DefaultAsyncProducer;
+import org.apache.camel.impl.InterceptSendToEndpoint;
+import org.apache.camel.util.ServiceHelper;
+import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.metrics.FeatureToggleMetrics;
+
+/**
+ * Registered in place of the endpoint of the enabled feature, under its URI: every producer of the endpoint, whichever
+ * EIP creates it (to, recipient list, multicast, wire tap, enrich...), sends the exchanges through a
+ * {@link ToggledSendProcessor}. Everything else, consumers included, is left to the endpoint of the enabled feature.
+ * <p>
+ * Like the endpoints of Camel's {@code interceptSendToEndpoint}, it decorates the endpoint it replaces, which
+ * {@link #getDelegate()} returns.
+ */
+class ToggledEndpoint extends InterceptSendToEndpoint {
+
+    private final String featureOffUri;
+    private final FeatureToggleConfiguration config;
+    private final String featureName;
+    private final FeatureToggleMetrics metrics;
+
+    ToggledEndpoint(Endpoint featureOnEndpoint, String featureOffUri, FeatureToggleConfiguration config, String featureName, FeatureToggleMetrics metrics) {
+        super(featureOnEndpoint, false);
+        this.featureOffUri = featureOffUri;
+        this.config = config;
+        this.featureName = featureName;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Producer createProducer() throws Exception {
+        // resolved here, not while the endpoint is being registered
+        Endpoint featureOffEndpoint = this.getCamelContext().getEndpoint(this.featureOffUri);
+        return new ToggledProducer(this, new ToggledSendProcessor(this.config, this.featureName, this.getDelegate(), featureOffEndpoint, this.metrics));
+    }
+
+    public String getFeatureName() {
+        return this.featureName;
+    }
+
+    private static final class ToggledProducer extends DefaultAsyncProducer {
+
+        private final ToggledSendProcessor processor;
+
+        private ToggledProducer(Endpoint endpoint, ToggledSendProcessor processor) {
+            super(endpoint);
+            this.processor = processor;
+        }
+
+        @Override
+        public boolean process(Exchange exchange, AsyncCallback callback) {
+            return this.processor.process(exchange, callback);
+        }
+
+        @Override
+        protected void doStart() throws Exception {
+            ServiceHelper.startService(this.processor);
+        }
+
+        @Override
+        protected void doStop() throws Exception {
+            ServiceHelper.stopService(this.processor);
+        }
+    }
+}
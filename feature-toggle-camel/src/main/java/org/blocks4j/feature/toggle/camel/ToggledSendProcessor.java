@@ -35,15 +35,31 @@ import org.apache.camel.util.ObjectHelper;
 import org.apache.camel.util.ServiceHelper;
 import org.apache.camel.util.StopWatch;
 import org.apache.camel.util.URISupport;
+import org.blocks4j.feature.toggle.ConfigurationChangeEvent;
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
 import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.WeakConfigurationChangeListener;
+import org.blocks4j.feature.toggle.metrics.FeatureMetrics;
+import org.blocks4j.feature.toggle.metrics.FeatureToggleMetrics;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Processor for forwarding exchanges to an endpoint featureOnDestination.
+ * <p>
+ * Deciding the destination takes no lock, so it doesn't pin virtual threads as long as the configuration doesn't
+ * synchronize either: wrap such a configuration in a {@link org.blocks4j.feature.toggle.snapshot.PollingFeatureToggleConfiguration}.
+ * The producers of singleton endpoints are reused without locking; the others go through Camel's
+ * {@link ProducerCache}, which synchronizes while acquiring them.
+ * <p>
+ * Both destinations are resolved when the processor starts and published together in an immutable holder, so an
+ * exchange sees either all of them or none, even while the route is restarted.
  */
 class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Traceable {
     static final Logger LOG = LoggerFactory.getLogger(ToggledSendProcessor.class);
@@ -51,24 +67,35 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
 
     private final FeatureToggleConfiguration config;
     private final String featureName;
-    private Endpoint featureOnDestination;
-    protected Endpoint featureOffDestination;
+    private final Endpoint featureOnDestination;
+    protected final Endpoint featureOffDestination;
 
-    protected ProducerCache producerCache;
-    private Map<Endpoint, AsyncProcessor> producers;
+    // null while stopped
+    private volatile Destinations destinations;
+
+    private ConfigurationChangeListener changeListener;
+    private ConfigurationChangeListener registeredChangeListener;
+    private final AtomicReference<FeatureState> featureState = new AtomicReference<FeatureState>();
+
+    private final FeatureMetrics metrics;
 
     public ToggledSendProcessor(FeatureToggleConfiguration config, String featureName, Endpoint featureOnDestination, Endpoint featureOffDestination) {
+        this(config, featureName, featureOnDestination, featureOffDestination, FeatureToggleMetrics.NONE);
+    }
+
+    public ToggledSendProcessor(FeatureToggleConfiguration config, String featureName, Endpoint featureOnDestination, Endpoint featureOffDestination, FeatureToggleMetrics metrics) {
         ObjectHelper.notNull(featureOnDestination, "featureOnDestination");
         ObjectHelper.notNull(featureOffDestination, "featureOffDestination");
         ObjectHelper.notNull(config, "config");
         ObjectHelper.notNull(featureName, "featureName");
+        ObjectHelper.notNull(metrics, "metrics");
 
         this.config = config;
         this.featureName = featureName;
 
         this.featureOnDestination = featureOnDestination;
         this.featureOffDestination = featureOffDestination;
-        this.producers = new HashMap<Endpoint, AsyncProcessor>();
+        this.metrics = metrics.forFeature(featureName);
         this.camelContext = featureOnDestination.getCamelContext();
 
         ObjectHelper.notNull(this.camelContext, "camelContext");
@@ -79,20 +106,50 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
         return "sendTo(" + this.featureOnDestination + ")";
     }
 
-    private Endpoint getEnabledFeatureEndpoint() {
-        Endpoint enabledFeature = this.featureOffDestination;
-        if (this.isFeatureOn()) {
-            enabledFeature = this.featureOnDestination;
+    private boolean isFeatureOn() {
+        FeatureState state = this.featureState.get();
+        if (state != null) {
+            return state.on;
         }
-        return enabledFeature;
+        Set<String> enabledFeatures = this.config.getEnabledFeatures();
+        return (enabledFeatures != null) && enabledFeatures.contains(this.featureName);
     }
 
-    private boolean isFeatureOn() {
-        boolean isOn = false;
-        if ((this.config.getEnabledFeatures() != null) && !this.config.getEnabledFeatures().isEmpty() && this.config.getEnabledFeatures().contains(this.featureName)) {
-            isOn = true;
+    /**
+     * With an observable configuration the decision is recomputed on each change instead of on each exchange.
+     */
+    private void listenToConfigurationChanges() {
+        if (this.config instanceof ObservableFeatureToggleConfiguration) {
+            ObservableFeatureToggleConfiguration observableConfig = (ObservableFeatureToggleConfiguration) this.config;
+            this.changeListener = new ConfigurationChangeListener() {
+                @Override
+                public void onChange(ConfigurationChangeEvent event) {
+                    ToggledSendProcessor.this.apply(event.getCurrent());
+                }
+            };
+            this.registeredChangeListener = WeakConfigurationChangeListener.register(observableConfig, this.changeListener);
+            this.apply(observableConfig.getSnapshot());
+        }
+    }
+
+    private void apply(FeatureToggleSnapshot snapshot) {
+        FeatureState next = new FeatureState(snapshot.getVersion(), snapshot.isEnabled(this.featureName));
+        FeatureState current;
+        do {
+            current = this.featureState.get();
+            if ((current != null) && (current.version >= next.version)) {
+                return;
+            }
+        } while (!this.featureState.compareAndSet(current, next));
+    }
+
+    private void stopListeningToConfigurationChanges() {
+        if (this.registeredChangeListener != null) {
+            ((ObservableFeatureToggleConfiguration) this.config).removeChangeListener(this.registeredChangeListener);
+            this.registeredChangeListener = null;
+            this.changeListener = null;
+            this.featureState.set(null);
         }
-        return isOn;
     }
 
     public String getTraceLabel() {
@@ -104,7 +161,8 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
     }
 
     public boolean process(Exchange exchange, final AsyncCallback callback) {
-        if (!this.isStarted()) {
+        Destinations destinations = this.destinations;
+        if (!this.isStarted() || (destinations == null)) {
             exchange.setException(new IllegalStateException("ToggledSendProcessor has not been started: " + this));
             callback.done(true);
             return true;
@@ -114,9 +172,13 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
         // we should preserve existing MEP so remember old MEP
         // if you want to permanently to change the MEP then use .setExchangePattern in the DSL
         final ExchangePattern existingPattern = exchange.getPattern();
-        final Endpoint featureDestination = this.getEnabledFeatureEndpoint();
+        final boolean featureOn = this.isFeatureOn();
+        final Destination destination = featureOn ? destinations.featureOn : destinations.featureOff;
+        final Endpoint featureDestination = destination.endpoint;
+        final long start = System.nanoTime();
+        this.metrics.recordDecision(featureOn);
 
-        AsyncProcessor producer = this.producers.get(featureDestination);
+        AsyncProcessor producer = destination.producer;
 
         // if we have a producer then use that as its optimized
         if (producer != null) {
@@ -140,6 +202,7 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
                             // emit event that the exchange was sent to the endpoint
                             long timeTaken = watch.stop();
                             EventHelper.notifyExchangeSent(target.getContext(), target, featureDestination, timeTaken);
+                            ToggledSendProcessor.this.metrics.recordLatency(featureOn, System.nanoTime() - start);
                         } finally {
                             callback.done(doneSync);
                         }
@@ -153,7 +216,7 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
         }
 
         // send the exchange to the featureOnDestination using the producer cache for the non optimized producers
-        return this.producerCache.doInAsyncProducer(featureDestination, exchange, null, callback, new AsyncProducerCallback() {
+        return destinations.producerCache.doInAsyncProducer(featureDestination, exchange, null, callback, new AsyncProducerCallback() {
             @Override
             public boolean doInAsyncProducer(Producer producer, AsyncProcessor asyncProcessor, Exchange exchange, ExchangePattern exchangePattern, final AsyncCallback asyncCallback) {
                 final Exchange target = ToggledSendProcessor.this.configureExchange(exchange, featureDestination);
@@ -163,6 +226,7 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
                     public void done(boolean doneSync) {
                         // restore previous MEP
                         target.setPattern(existingPattern);
+                        ToggledSendProcessor.this.metrics.recordLatency(featureOn, System.nanoTime() - start);
                         // signal we are done
                         asyncCallback.done(doneSync);
                     }
@@ -183,48 +247,87 @@ class ToggledSendProcessor extends ServiceSupport implements AsyncProcessor, Tra
     }
 
     protected void doStart() throws Exception {
-        ServiceHelper.startService(this.producerCache);
+        // use a single producer cache as we need to only hold reference for the two destinations
+        // and use a regular HashMap as we do not want a soft reference store that may get re-claimed when low on memory
+        // as we want to ensure the producer is kept around, to ensure its lifecycle is fully managed,
+        // eg stopping the producer when we stop etc.
+        // do not add as service as we do not want to manage the producer cache
+        ProducerCache producerCache = new ProducerCache(this, this.camelContext, new HashMap<String, Producer>(2));
+        ServiceHelper.startService(producerCache);
 
         // warm up the producer by starting it so we can fail fast if there was a problem
         // however must start endpoint first
-        ServiceHelper.startService(this.featureOnDestination);
-        this.cacheEndpointProducer(this.featureOnDestination);
+        Destination featureOn = this.resolve(producerCache, this.featureOnDestination);
+        Destination featureOff = this.resolve(producerCache, this.featureOffDestination);
 
-        ServiceHelper.startService(this.featureOffDestination);
-        this.cacheEndpointProducer(this.featureOffDestination);
+        this.listenToConfigurationChanges();
+        this.destinations = new Destinations(producerCache, featureOn, featureOff);
     }
 
-    private void cacheEndpointProducer(Endpoint featureDestination) throws Exception {
-        if (this.producerCache == null) {
-            // use a single producer cache as we need to only hold reference for one featureOnDestination
-            // and use a regular HashMap as we do not want a soft reference store that may get re-claimed when low on memory
-            // as we want to ensure the producer is kept around, to ensure its lifecycle is fully managed,
-            // eg stopping the producer when we stop etc.
-            this.producerCache = new ProducerCache(this, this.camelContext, new HashMap<String, Producer>(2));
-            // do not add as service as we do not want to manage the producer cache
-        }
+    private Destination resolve(ProducerCache producerCache, Endpoint featureDestination) throws Exception {
+        ServiceHelper.startService(featureDestination);
 
-        Producer producer = this.producerCache.acquireProducer(featureDestination);
+        Producer producer = producerCache.acquireProducer(featureDestination);
         if ((producer instanceof ServicePoolAware) || !producer.isSingleton()) {
             // no we cannot optimize it - so release the producer back to the producer cache
             // and use the producer cache for sending
-            this.producerCache.releaseProducer(featureDestination, producer);
-        } else {
-            // yes we can optimize and use the producer directly for sending
-            this.producers.put(featureDestination, AsyncProcessorConverterHelper.convert(producer));
+            producerCache.releaseProducer(featureDestination, producer);
+            return new Destination(featureDestination, null);
         }
-
+        // yes we can optimize and use the producer directly for sending
+        return new Destination(featureDestination, AsyncProcessorConverterHelper.convert(producer));
     }
 
     protected void doStop() throws Exception {
-        for (AsyncProcessor producer : this.producers.values()) {
-            ServiceHelper.stopServices(this.producerCache, producer);
+        this.stopListeningToConfigurationChanges();
+        Destinations stopped = this.destinations;
+        this.destinations = null;
+        if (stopped != null) {
+            ServiceHelper.stopServices(stopped.producerCache, stopped.featureOn.producer, stopped.featureOff.producer);
         }
     }
 
     protected void doShutdown() throws Exception {
-        for (AsyncProcessor producer : this.producers.values()) {
-            ServiceHelper.stopAndShutdownServices(this.producerCache, producer);
+        Destinations stopped = this.destinations;
+        this.destinations = null;
+        if (stopped != null) {
+            ServiceHelper.stopAndShutdownServices(stopped.producerCache, stopped.featureOn.producer, stopped.featureOff.producer);
+        }
+    }
+
+    private static final class Destinations {
+
+        private final ProducerCache producerCache;
+        private final Destination featureOn;
+        private final Destination featureOff;
+
+        private Destinations(ProducerCache producerCache, Destination featureOn, Destination featureOff) {
+            this.producerCache = producerCache;
+            this.featureOn = featureOn;
+            this.featureOff = featureOff;
+        }
+    }
+
+    private static final class Destination {
+
+        private final Endpoint endpoint;
+        // null when the producer can't be reused and is acquired from the producer cache on each exchange
+        private final AsyncProcessor producer;
+
+        private Destination(Endpoint endpoint, AsyncProcessor producer) {
+            this.endpoint = endpoint;
+            this.producer = producer;
+        }
+    }
+
+    private static final class FeatureState {
+
+        private final long version;
+        private final boolean on;
+
+        private FeatureState(long version, boolean on) {
+            this.version = version;
+            this.on = on;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.camel.test.steps;
+
+import cucumber.api.java.After;
+import cucumber.api.java.Before;
+import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
+import cucumber.api.java.en.When;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.InterceptSendToEndpoint;
+import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.camel.ToggleFeatureRoute;
+import org.blocks4j.feature.toggle.camel.test.config.CountingFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.junit.Assert;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class FeatureToggleCamelSteps {
+
+    private CamelContext context;
+    private FeatureToggleConfiguration featureConfig;
+    private ProducerTemplate producerTemplate;
+
+    @Before
+    public void beforeTest() {
+        this.context = new DefaultCamelContext();
+        this.featureConfig = new CountingFeatureToggleConfiguration();
+        this.producerTemplate = null;
+    }
+
+    @After
+    public void afterTest() throws Throwable {
+        if (this.producerTemplate != null) {
+            this.producerTemplate.stop();
+        }
+        this.context.stop();
+    }
+
+    @Given("^an? (plain|observable) configuration where the feature \"([^\"]*)\" is (enabled|disabled)$")
+    public void aConfigurationWhereTheFeatureIs(String configuration, String featureName, String state) throws Throwable {
+        if ("observable".equals(configuration)) {
+            this.featureConfig = new SnapshotFeatureToggleConfiguration();
+        } else {
+            this.featureConfig = new CountingFeatureToggleConfiguration();
+        }
+        this.theFeatureIs(featureName, state);
+    }
+
+    @When("^the feature \"([^\"]*)\" is (enabled|disabled)$")
+    public void theFeatureIs(String featureName, String state) throws Throwable {
+        boolean enabled = "enabled".equals(state);
+        if (this.featureConfig instanceof SnapshotFeatureToggleConfiguration) {
+            Set<String> enabledFeatures = enabled ? Collections.singleton(featureName) : Collections.<String>emptySet();
+            ((SnapshotFeatureToggleConfiguration) this.featureConfig).update(enabledFeatures, Collections.<String, Set<String>>emptyMap());
+        } else if (enabled) {
+            ((CountingFeatureToggleConfiguration) this.featureConfig).enable(featureName);
+        } else {
+            ((CountingFeatureToggleConfiguration) this.featureConfig).disable(featureName);
+        }
+    }
+
+    @Given("^the endpoint \"([^\"]*)\" is registered$")
+    public void theEndpointIsRegistered(String uri) throws Throwable {
+        this.context.getEndpoint(uri);
+    }
+
+    @Given("^the feature \"([^\"]*)\" toggling \"([^\"]*)\" to \"([^\"]*)\"$")
+    public void theFeatureToggling(String featureName, String featureOn, String featureOff) throws Throwable {
+        this.context.addRoutes(ToggleFeatureRoute.createBuilder()
+                                       .config(this.featureConfig)
+                                       .featureName(featureName)
+                                       .featureOn(featureOn)
+                                       .featureOff(featureOff)
+                                       .build());
+    }
+
+    @Given("^a route \"([^\"]*)\" from \"([^\"]*)\" sending to \"([^\"]*)\" with (to|recipientList|wireTap|multicast|parallel multicast|enrich)$")
+    public void aRouteSendingTo(final String routeId, final String from, final String uri, final String eip) throws Throwable {
+        if ("wireTap".equals(eip)) {
+            // the wire tap resolves its endpoint on its own threads, where concurrent exchanges may each register one
+            this.context.getEndpoint(uri);
+        }
+        this.context.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                if ("to".equals(eip)) {
+                    this.from(from).routeId(routeId).to(uri);
+                } else if ("recipientList".equals(eip)) {
+                    this.from(from).routeId(routeId).recipientList(this.constant(uri));
+                } else if ("wireTap".equals(eip)) {
+                    this.from(from).routeId(routeId).wireTap(uri);
+                } else if ("multicast".equals(eip)) {
+                    this.from(from).routeId(routeId).multicast().to(uri);
+                } else if ("parallel multicast".equals(eip)) {
+                    this.from(from).routeId(routeId).multicast().parallelProcessing().to(uri, uri);
+                } else {
+                    this.from(from).routeId(routeId).enrich(uri);
+                }
+            }
+        });
+    }
+
+    @When("^the context is started$")
+    public void theContextIsStarted() throws Throwable {
+        this.context.start();
+        this.producerTemplate = this.context.createProducerTemplate();
+    }
+
+    @When("^the route \"([^\"]*)\" is (stopped|started)$")
+    public void theRouteIs(String routeId, String state) throws Throwable {
+        if ("stopped".equals(state)) {
+            this.context.stopRoute(routeId);
+        } else {
+            this.context.startRoute(routeId);
+        }
+    }
+
+    @When("^(\\d+) exchanges are sent to \"([^\"]*)\"$")
+    public void exchangesAreSentTo(int exchanges, String uri) throws Throwable {
+        for (int i = 0; i < exchanges; i++) {
+            this.producerTemplate.sendBody(uri, String.valueOf(i));
+        }
+    }
+
+    @Then("^\"([^\"]*)\" received (\\d+) exchanges$")
+    public void receivedExchanges(String uri, int exchanges) throws Throwable {
+        MockEndpoint mock = this.context.getEndpoint(uri, MockEndpoint.class);
+        // wire taps are sent asynchronously
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((mock.getReceivedCounter() < exchanges) && (System.nanoTime() < deadline)) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(exchanges, mock.getReceivedCounter());
+    }
+
+    @Then("^the endpoint \"([^\"]*)\" is toggled and still found by its type$")
+    public void theEndpointIsToggledAndStillFoundByItsType(String uri) throws Throwable {
+        Endpoint endpoint = this.context.getEndpoint(uri);
+        Assert.assertTrue(String.valueOf(endpoint), endpoint instanceof InterceptSendToEndpoint);
+        MockEndpoint mock = this.context.getEndpoint(uri, MockEndpoint.class);
+        Assert.assertSame(mock, ((InterceptSendToEndpoint) endpoint).getDelegate());
+    }
+
+    @Then("^the endpoint \"([^\"]*)\" isn't toggled$")
+    public void theEndpointIsNotToggled(String uri) throws Throwable {
+        Endpoint endpoint = this.context.getEndpoint(uri);
+        Assert.assertTrue(String.valueOf(endpoint), endpoint instanceof MockEndpoint);
+    }
+
+    @Then("^the enabled features were read (\\d+) times$")
+    public void theEnabledFeaturesWereRead(int reads) throws Throwable {
+        Assert.assertEquals(reads, ((CountingFeatureToggleConfiguration) this.featureConfig).getReads());
+    }
+}
@@ -0,0 +1,121 @@
+#   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+#
+#   Licensed under the Apache License, Version 2.0 (the "License");
+#   you may not use this file except in compliance with the License.
+#   You may obtain a copy of the License at
+#
+#       http://www.apache.org/licenses/LICENSE-2.0
+#
+#   Unless required by applicable law or agreed to in writing, software
+#   distributed under the License is distributed on an "AS IS" BASIS,
+#   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+#   See the License for the specific language governing permissions and
+#   limitations under the License.
+
+#language:en
+
+Feature: Feature Toggle of Camel Routes
+
+  Scenario Template: Exchanges toggled whichever EIP sends them
+    Given a <configuration> configuration where the feature "featureName" is <state>
+    And the feature "featureName" toggling "mock:on" to "mock:off"
+    And a route "route" from "direct:start" sending to "mock:on" with <eip>
+    When the context is started
+    And 2 exchanges are sent to "direct:start"
+    Then "<destination>" received <exchanges> exchanges
+    And "<other>" received 0 exchanges
+    And the endpoint "mock:on" is toggled and still found by its type
+    And the endpoint "mock:off" isn't toggled
+
+    Examples:
+      | configuration | state    | eip                | destination | exchanges | other    |
+      | plain         | disabled | to                 | mock:off    | 2         | mock:on  |
+      | plain         | enabled  | to                 | mock:on     | 2         | mock:off |
+      | observable    | disabled | to                 | mock:off    | 2         | mock:on  |
+      | observable    | enabled  | to                 | mock:on     | 2         | mock:off |
+      | plain         | disabled | recipientList      | mock:off    | 2         | mock:on  |
+      | observable    | enabled  | recipientList      | mock:on     | 2         | mock:off |
+      | plain         | disabled | wireTap            | mock:off    | 2         | mock:on  |
+      | observable    | enabled  | wireTap            | mock:on     | 2         | mock:off |
+      | plain         | disabled | multicast          | mock:off    | 2         | mock:on  |
+      | observable    | enabled  | multicast          | mock:on     | 2         | mock:off |
+      | plain         | disabled | parallel multicast | mock:off    | 4         | mock:on  |
+      | observable    | enabled  | parallel multicast | mock:on     | 4         | mock:off |
+      | plain         | disabled | enrich             | mock:off    | 2         | mock:on  |
+      | observable    | enabled  | enrich             | mock:on     | 2         | mock:off |
+
+  Scenario Template: Endpoints toggled by a pattern
+    Given a plain configuration where the feature "featureName" is disabled
+    And the feature "featureName" toggling "<pattern>" to "mock:off"
+    And a route "route" from "direct:start" sending to "<endpoint>" with to
+    When the context is started
+    And 1 exchanges are sent to "direct:start"
+    Then "<destination>" received 1 exchanges
+
+    Examples:
+      | pattern              | endpoint         | destination      |
+      | mock:orders-*        | mock:orders-eu   | mock:off         |
+      | mock:orders-*        | mock:invoices-eu | mock:invoices-eu |
+      | mock:orders-(eu\|us) | mock:orders-us   | mock:off         |
+      | mock:orders-(eu\|us) | mock:orders-asia | mock:orders-asia |
+      | mock://orders-eu     | mock:orders-eu   | mock:off         |
+
+  Scenario: The featureOff endpoint isn't toggled even when it matches the pattern
+    Given a plain configuration where the feature "featureName" is disabled
+    And the feature "featureName" toggling "mock:*" to "mock:off"
+    And a route "route" from "direct:start" sending to "mock:on" with to
+    When the context is started
+    And 1 exchanges are sent to "direct:start"
+    Then "mock:off" received 1 exchanges
+    And "mock:on" received 0 exchanges
+    And the endpoint "mock:off" isn't toggled
+
+  Scenario: Endpoints registered before the toggle route are toggled too
+    Given a plain configuration where the feature "featureName" is disabled
+    And the endpoint "mock:on" is registered
+    And the feature "featureName" toggling "mock:on" to "mock:off"
+    And a route "route" from "direct:start" sending to "mock:on" with to
+    When the context is started
+    And 1 exchanges are sent to "direct:start"
+    Then "mock:off" received 1 exchanges
+    And "mock:on" received 0 exchanges
+    And the endpoint "mock:on" is toggled and still found by its type
+
+  Scenario Template: Destinations resolved again when the route is restarted
+    Given a <configuration> configuration where the feature "featureName" is disabled
+    And the feature "featureName" toggling "mock:on" to "mock:off"
+    And a route "route" from "direct:start" sending to "mock:on" with <eip>
+    When the context is started
+    And 1 exchanges are sent to "direct:start"
+    Then "mock:off" received 1 exchanges
+    When the route "route" is stopped
+    And the feature "featureName" is enabled
+    And the route "route" is started
+    And 1 exchanges are sent to "direct:start"
+    Then "mock:on" received 1 exchanges
+    And "mock:off" received 1 exchanges
+    When the route "route" is stopped
+    And the route "route" is started
+    And the feature "featureName" is disabled
+    And 1 exchanges are sent to "direct:start"
+    Then "mock:off" received 2 exchanges
+    And "mock:on" received 1 exchanges
+
+    Examples:
+      | configuration | eip           |
+      | plain         | to            |
+      | observable    | to            |
+      | plain         | recipientList |
+      | observable    | recipientList |
+
+  Scenario: A plain configuration is read once per exchange
+    Given a plain configuration where the feature "featureName" is disabled
+    And the feature "featureName" toggling "mock:on" to "mock:off"
+    And a route "route" from "direct:start" sending to "mock:on" with to
+    When the context is started
+    And 2 exchanges are sent to "direct:start"
+    And the feature "featureName" is enabled
+    And 1 exchanges are sent to "direct:start"
+    Then "mock:off" received 2 exchanges
+    And "mock:on" received 1 exchanges
+    And the enabled features were read 3 times
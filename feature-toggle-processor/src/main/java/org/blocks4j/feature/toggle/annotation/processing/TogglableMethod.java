@@ -0,0 +1,143 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.annotation.processing;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A method of a common interface with the parameters it is toggled by.
+ */
+final class TogglableMethod {
+
+    private final ExecutableElement element;
+    private final ExecutableType memberType;
+    private final List<Parameter> parameters = new ArrayList<Parameter>();
+    private boolean partitioned;
+
+    TogglableMethod(ExecutableElement element, ExecutableType memberType) {
+        this.element = element;
+        this.memberType = memberType;
+    }
+
+    ExecutableElement getElement() {
+        return this.element;
+    }
+
+    /**
+     * The method as a member of the common interface, type arguments of generic super interfaces resolved.
+     */
+    ExecutableType getMemberType() {
+        return this.memberType;
+    }
+
+    List<Parameter> getParameters() {
+        return Collections.unmodifiableList(this.parameters);
+    }
+
+    void addParameter(Parameter parameter) {
+        this.parameters.add(parameter);
+    }
+
+    /**
+     * Whether an argument is a collection or an array whose items may carry togglable parameters, for partitioned
+     * features.
+     */
+    boolean isPartitioned() {
+        return this.partitioned;
+    }
+
+    void setPartitioned() {
+        this.partitioned = true;
+    }
+
+    boolean isTogglable() {
+        return !this.parameters.isEmpty();
+    }
+
+    static final class Parameter {
+
+        private final int index;
+        private final String id;
+        private final TypeMirror type;
+        private final TypeElement declaringType;
+        private final Element member;
+        private final boolean accessible;
+
+        private Parameter(int index, String id, TypeMirror type, TypeElement declaringType, Element member, boolean accessible) {
+            this.index = index;
+            this.id = id;
+            this.type = type;
+            this.declaringType = declaringType;
+            this.member = member;
+            this.accessible = accessible;
+        }
+
+        /**
+         * A parameter toggled by its own value.
+         */
+        static Parameter direct(int index, String id, TypeMirror type) {
+            return new Parameter(index, id, type, null, null, true);
+        }
+
+        /**
+         * A field or a method of the argument.
+         *
+         * @param accessible whether the generated code can read it without reflection
+         */
+        static Parameter member(int index, String id, TypeElement declaringType, Element member, boolean accessible) {
+            return new Parameter(index, id, null, declaringType, member, accessible);
+        }
+
+        int getIndex() {
+            return this.index;
+        }
+
+        String getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the erased type of a direct parameter, {@code null} for a member
+         */
+        TypeMirror getType() {
+            return this.type;
+        }
+
+        TypeElement getDeclaringType() {
+            return this.declaringType;
+        }
+
+        /**
+         * @return the field or method, {@code null} for a direct parameter
+         */
+        Element getMember() {
+            return this.member;
+        }
+
+        boolean isAccessible() {
+            return this.accessible;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.annotation.processing;
+
+import org.blocks4j.feature.toggle.annotation.Togglable;
+import org.blocks4j.feature.toggle.annotation.parameters.ParameterToggle;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates, for every interface with {@link ParameterToggle} parameters or marked {@link Togglable}, its toggle
+ * metadata and its toggle delegate (see {@link GeneratedClasses}), so the feature toggle neither scans the interface
+ * and its argument types by reflection nor generates a proxy class at runtime.
+ * <p>
+ * Misplaced parameter toggles are reported as compilation errors. The arguments split by partitioned features are
+ * only flagged: their items are still resolved, and checked, at runtime by the partitioned features alone.
+ * <p>
+ * The generated sources refer to feature-toggle, so nothing is generated when it isn't on the classpath.
+ */
+@SupportedAnnotationTypes({"org.blocks4j.feature.toggle.annotation.Togglable", "org.blocks4j.feature.toggle.annotation.parameters.ParameterToggle"})
+public class ToggleMetadataProcessor extends AbstractProcessor {
+
+    private static final Set<String> ALLOWED_PARAMETER_TOGGLE = new HashSet<String>(Arrays.asList("java.lang.Character",
+                                                                                                  "java.lang.Byte",
+                                                                                                  "java.lang.Short",
+                                                                                                  "java.lang.Integer",
+                                                                                                  "java.lang.Long",
+                                                                                                  "java.lang.Boolean",
+                                                                                                  "java.lang.String"));
+    private static final Set<String> PARTITIONABLE_TYPES = new HashSet<String>(Arrays.asList("java.util.Collection", "java.util.List", "java.util.Set"));
+    private static final Set<String> OBJECT_METHODS = new HashSet<String>(Arrays.asList("equals(java.lang.Object)", "hashCode()", "toString()"));
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+        if (this.processingEnv.getElementUtils().getTypeElement(ToggleSourceWriter.METADATA_TYPE) == null) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "No toggle metadata generated: feature-toggle isn't on the classpath");
+            return false;
+        }
+
+        Set<TypeElement> commonInterfaces = new LinkedHashSet<TypeElement>();
+        for (Element togglable : roundEnv.getElementsAnnotatedWith(Togglable.class)) {
+            if (togglable.getKind() == ElementKind.INTERFACE) {
+                commonInterfaces.add((TypeElement) togglable);
+            } else {
+                this.error("@Togglable only applies to interfaces", togglable);
+            }
+        }
+        for (Element parameterToggle : roundEnv.getElementsAnnotatedWith(ParameterToggle.class)) {
+            if (parameterToggle.getKind() == ElementKind.PARAMETER) {
+                Element type = parameterToggle.getEnclosingElement().getEnclosingElement();
+                if (type.getKind() == ElementKind.INTERFACE) {
+                    commonInterfaces.add((TypeElement) type);
+                }
+            }
+        }
+
+        for (TypeElement commonInterface : commonInterfaces) {
+            this.generate(commonInterface);
+        }
+        // the annotations are left to the other processors
+        return false;
+    }
+
+    private void generate(TypeElement commonInterface) {
+        PackageElement targetPackage = this.processingEnv.getElementUtils().getPackageOf(commonInterface);
+        if (!ToggleSourceWriter.isAccessible(this.processingEnv.getElementUtils(), commonInterface, targetPackage)) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "No toggle metadata generated for a private interface", commonInterface);
+            return;
+        }
+
+        List<TogglableMethod> methods = new ArrayList<TogglableMethod>();
+        boolean valid = true;
+        for (ExecutableElement method : this.getMethods(commonInterface)) {
+            TogglableMethod togglableMethod = this.describe(commonInterface, method, targetPackage);
+            valid &= (togglableMethod != null);
+            methods.add(togglableMethod);
+        }
+        if (!valid) {
+            return;
+        }
+
+        String interfaceName = this.processingEnv.getElementUtils().getBinaryName(commonInterface).toString();
+        ToggleSourceWriter sourceWriter = new ToggleSourceWriter(this.processingEnv, commonInterface, methods);
+        this.write(GeneratedClasses.getMetadataClassName(interfaceName), commonInterface, sourceWriter.writeMetadata(this.getSimpleName(GeneratedClasses.getMetadataClassName(interfaceName))));
+        this.write(GeneratedClasses.getDelegateClassName(interfaceName), commonInterface, sourceWriter.writeDelegate(this.getSimpleName(GeneratedClasses.getDelegateClassName(interfaceName))));
+    }
+
+    /**
+     * The methods a proxy of the interface implements, inherited ones included, one per signature.
+     */
+    private List<ExecutableElement> getMethods(TypeElement commonInterface) {
+        Map<String, ExecutableElement> methods = new LinkedHashMap<String, ExecutableElement>();
+        for (ExecutableElement method : ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(commonInterface))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if ((method.getEnclosingElement().getKind() != ElementKind.INTERFACE) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) {
+                continue;
+            }
+
+            String signature = this.getSignature(method);
+            if (OBJECT_METHODS.contains(signature)) {
+                continue;
+            }
+            ExecutableElement inherited = methods.get(signature);
+            if ((inherited == null) || this.processingEnv.getTypeUtils().isSubtype(this.erasure(method.getEnclosingElement().asType()), this.erasure(inherited.getEnclosingElement().asType()))) {
+                methods.put(signature, method);
+            }
+        }
+        return new ArrayList<ExecutableElement>(methods.values());
+    }
+
+    private String getSignature(ExecutableElement method) {
+        StringBuilder signature = new StringBuilder(method.getSimpleName()).append('(');
+        for (VariableElement parameter : method.getParameters()) {
+            if (signature.charAt(signature.length() - 1) != '(') {
+                signature.append(',');
+            }
+            signature.append(this.erasure(parameter.asType()));
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * Parameters toggled by their value come first, by position, then the annotated fields and methods of the other
+     * arguments, as the handler finds them by reflection.
+     *
+     * @return {@code null} when a parameter toggle is misplaced, after reporting it
+     */
+    private TogglableMethod describe(TypeElement commonInterface, ExecutableElement method, PackageElement targetPackage) {
+        ExecutableType memberType = (ExecutableType) this.processingEnv.getTypeUtils().asMemberOf((DeclaredType) commonInterface.asType(), method);
+        TogglableMethod togglableMethod = new TogglableMethod(method, memberType);
+        List<TogglableMethod.Parameter> memberParameters = new ArrayList<TogglableMethod.Parameter>();
+        boolean valid = true;
+
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int index = 0; index < parameters.size(); index++) {
+            VariableElement parameter = parameters.get(index);
+            TypeMirror parameterType = this.erasure(parameter.asType());
+            ParameterToggle parameterToggle = parameter.getAnnotation(ParameterToggle.class);
+
+            if (this.isPartitionable(parameterType)) {
+                TypeMirror itemType = this.getItemType(parameter.asType());
+                if ((parameterToggle != null) && !this.isAllowed(itemType)) {
+                    this.error("Parameter Toggle is not allowed here: " + method, parameter);
+                    valid = false;
+                } else if ((parameterToggle != null) || !this.getToggledMembers(itemType).isEmpty()) {
+                    togglableMethod.setPartitioned();
+                }
+                continue;
+            }
+
+            if (parameterToggle != null) {
+                if (this.isAllowed(parameterType)) {
+                    togglableMethod.addParameter(TogglableMethod.Parameter.direct(index, parameterToggle.value(), parameterType));
+                } else {
+                    this.error("Parameter Toggle is not allowed here: " + method, parameter);
+                    valid = false;
+                }
+            }
+            for (Element member : this.getToggledMembers(parameterType)) {
+                TypeMirror valueType = (member.getKind() == ElementKind.METHOD) ? ((ExecutableElement) member).getReturnType() : member.asType();
+                if (!this.isAllowed(valueType)) {
+                    this.error("Parameter Toggle is not allowed here: " + member, member);
+                    valid = false;
+                    continue;
+                }
+                boolean accessible = ToggleSourceWriter.isAccessible(this.processingEnv.getElementUtils(), member, targetPackage) && ((member.getKind() != ElementKind.METHOD) || ((ExecutableElement) member).getParameters().isEmpty());
+                memberParameters.add(TogglableMethod.Parameter.member(index, member.getAnnotation(ParameterToggle.class).value(), (TypeElement) member.getEnclosingElement(), member, accessible));
+            }
+        }
+
+        for (TogglableMethod.Parameter memberParameter : memberParameters) {
+            togglableMethod.addParameter(memberParameter);
+        }
+        return valid ? togglableMethod : null;
+    }
+
+    /**
+     * The fields, then the methods, declared by the type with a {@link ParameterToggle}.
+     */
+    private List<Element> getToggledMembers(TypeMirror type) {
+        List<Element> members = new ArrayList<Element>();
+        if (type.getKind() != TypeKind.DECLARED) {
+            return members;
+        }
+
+        List<? extends Element> enclosedElements = ((DeclaredType) type).asElement().getEnclosedElements();
+        for (VariableElement field : ElementFilter.fieldsIn(enclosedElements)) {
+            if (field.getAnnotation(ParameterToggle.class) != null) {
+                members.add(field);
+            }
+        }
+        for (ExecutableElement method : ElementFilter.methodsIn(enclosedElements)) {
+            if (method.getAnnotation(ParameterToggle.class) != null) {
+                members.add(method);
+            }
+        }
+        return members;
+    }
+
+    private boolean isPartitionable(TypeMirror type) {
+        return (type.getKind() == TypeKind.ARRAY)
+                || ((type.getKind() == TypeKind.DECLARED) && PARTITIONABLE_TYPES.contains(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString()));
+    }
+
+    private TypeMirror getItemType(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return this.erasure(((ArrayType) type).getComponentType());
+        }
+
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+        TypeMirror itemType = typeArguments.isEmpty() ? null : typeArguments.get(0);
+        if ((itemType != null) && (itemType.getKind() == TypeKind.WILDCARD)) {
+            itemType = ((WildcardType) itemType).getExtendsBound();
+        }
+        if ((itemType == null) || (itemType.getKind() != TypeKind.DECLARED)) {
+            return this.processingEnv.getElementUtils().getTypeElement(Object.class.getName()).asType();
+        }
+        return this.erasure(itemType);
+    }
+
+    private boolean isAllowed(TypeMirror type) {
+        switch (type.getKind()) {
+            case CHAR:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case BOOLEAN:
+                return true;
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                return (element.getKind() == ElementKind.ENUM) || ALLOWED_PARAMETER_TOGGLE.contains(element.getQualifiedName().toString());
+            default:
+                return false;
+        }
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return this.processingEnv.getTypeUtils().erasure(type);
+    }
+
+    private String getSimpleName(String binaryName) {
+        return binaryName.substring(binaryName.lastIndexOf('.') + 1);
+    }
+
+    private void write(String className, TypeElement commonInterface, String source) {
+        try {
+            Writer writer = this.processingEnv.getFiler().createSourceFile(className, commonInterface).openWriter();
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            this.error("Could not write " + className + ": " + e.getMessage(), commonInterface);
+        }
+    }
+
+    private void error(String message, Element element) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.annotation.processing;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the sources generated for a common interface.
+ */
+final class ToggleSourceWriter {
+
+    static final String METADATA_TYPE = "org.blocks4j.feature.toggle.parameters.GeneratedToggleMetadata";
+    private static final String ACCESSOR_TYPE = "org.blocks4j.feature.toggle.domain.ParameterAccessor";
+    private static final String DISPATCHER_TYPE = "org.blocks4j.feature.toggle.proxy.FeatureDispatcher";
+
+    private final ProcessingEnvironment processingEnv;
+    private final TypeElement commonInterface;
+    private final PackageElement targetPackage;
+    private final List<TogglableMethod> methods;
+
+    ToggleSourceWriter(ProcessingEnvironment processingEnv, TypeElement commonInterface, List<TogglableMethod> methods) {
+        this.processingEnv = processingEnv;
+        this.commonInterface = commonInterface;
+        this.targetPackage = processingEnv.getElementUtils().getPackageOf(commonInterface);
+        this.methods = methods;
+    }
+
+    /**
+     * Whether code generated in the package can refer to the element, and to the types enclosing it.
+     */
+    static boolean isAccessible(Elements elements, Element element, PackageElement targetPackage) {
+        for (Element current = element; current.getKind() != ElementKind.PACKAGE; current = current.getEnclosingElement()) {
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (!modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(current).equals(targetPackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String writeMetadata(String className) {
+        StringBuilder source = this.startClass();
+        source.append("public final class ").append(className).append(" implements ").append(METADATA_TYPE).append(" {\n\n");
+        source.append("    @Override\n");
+        source.append("    public void describe(").append(METADATA_TYPE).append(".Table table) throws java.lang.ReflectiveOperationException {\n");
+        for (TogglableMethod method : this.methods) {
+            if (!method.isTogglable() && !method.isPartitioned()) {
+                continue;
+            }
+
+            source.append("        table.method(").append(this.getMethodExpression(method)).append(")");
+            for (TogglableMethod.Parameter parameter : method.getParameters()) {
+                source.append("\n                ");
+                this.appendParameter(source, parameter);
+            }
+            if (method.isPartitioned()) {
+                source.append("\n                .partitioned()");
+            }
+            source.append(";\n");
+        }
+        source.append("    }\n");
+        return source.append("}\n").toString();
+    }
+
+    private void appendParameter(StringBuilder source, TogglableMethod.Parameter parameter) {
+        String id = this.processingEnv.getElementUtils().getConstantExpression(parameter.getId());
+        Element member = parameter.getMember();
+        if (member == null) {
+            source.append(".parameter(").append(parameter.getIndex()).append(", ").append(id).append(", ").append(parameter.getType()).append(".class)");
+            return;
+        }
+
+        String declaringType = this.getTypeExpression(parameter.getDeclaringType());
+        String memberName = this.processingEnv.getElementUtils().getConstantExpression(member.getSimpleName().toString());
+        if (member.getKind() == ElementKind.FIELD) {
+            source.append(".field(").append(parameter.getIndex()).append(", ").append(id).append(", ").append(declaringType).append(".getDeclaredField(").append(memberName).append("), ");
+        } else {
+            source.append(".getter(").append(parameter.getIndex()).append(", ").append(id).append(", ").append(declaringType).append(".getDeclaredMethod(").append(memberName).append("), ");
+        }
+        if (!parameter.isAccessible()) {
+            source.append("null)");
+            return;
+        }
+
+        String receiver = member.getModifiers().contains(Modifier.STATIC)
+                ? parameter.getDeclaringType().getQualifiedName().toString()
+                : "((" + this.erasure(parameter.getDeclaringType().asType()) + ") argument)";
+        String read = receiver + "." + member.getSimpleName() + ((member.getKind() == ElementKind.METHOD) ? "()" : "");
+        source.append("new ").append(ACCESSOR_TYPE).append("() {\n");
+        source.append("                    @Override\n");
+        source.append("                    public java.lang.Object get(java.lang.Object argument) {\n");
+        source.append("                        return ").append(read).append(";\n");
+        source.append("                    }\n");
+        source.append("                })");
+    }
+
+    String writeDelegate(String className) {
+        String interfaceType = this.getInterfaceType();
+        String dispatcherType = DISPATCHER_TYPE + "<" + interfaceType + ">";
+
+        StringBuilder source = this.startClass();
+        source.append("public final class ").append(className).append(this.getTypeParameters(this.commonInterface.getTypeParameters()))
+                .append(" implements ").append(interfaceType).append(" {\n\n");
+
+        int methodIndex = 0;
+        for (TogglableMethod method : this.methods) {
+            if (method.isTogglable()) {
+                source.append("    private static final java.lang.reflect.Method M").append(methodIndex++).append(" = method(").append(this.getMethodLookupArguments(method)).append(");\n");
+            }
+        }
+        source.append("\n    private final ").append(dispatcherType).append(" dispatcher;\n\n");
+        source.append("    public ").append(className).append("(").append(dispatcherType).append(" dispatcher) {\n");
+        source.append("        this.dispatcher = dispatcher;\n");
+        source.append("    }\n");
+
+        methodIndex = 0;
+        for (TogglableMethod method : this.methods) {
+            this.appendDelegateMethod(source, method, method.isTogglable() ? ("M" + methodIndex++) : null);
+        }
+
+        source.append("\n    @Override\n");
+        source.append("    public boolean equals(java.lang.Object other) {\n");
+        source.append("        return this.dispatcher.select(null, null).equals(other);\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public int hashCode() {\n");
+        source.append("        return this.dispatcher.select(null, null).hashCode();\n");
+        source.append("    }\n\n");
+        source.append("    @Override\n");
+        source.append("    public java.lang.String toString() {\n");
+        source.append("        return this.dispatcher.select(null, null).toString();\n");
+        source.append("    }\n\n");
+        source.append("    private static java.lang.reflect.Method method(java.lang.String name, java.lang.Class<?>... parameterTypes) {\n");
+        source.append("        try {\n");
+        source.append("            return ").append(this.commonInterface.getQualifiedName()).append(".class.getMethod(name, parameterTypes);\n");
+        source.append("        } catch (java.lang.NoSuchMethodException e) {\n");
+        source.append("            throw new java.lang.NoSuchMethodError(e.getMessage());\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        return source.append("}\n").toString();
+    }
+
+    /**
+     * Methods with togglable parameters hand their arguments to the dispatcher; the others are selected without them.
+     */
+    private void appendDelegateMethod(StringBuilder source, TogglableMethod method, String methodField) {
+        ExecutableElement element = method.getElement();
+        List<? extends TypeMirror> parameterTypes = method.getMemberType().getParameterTypes();
+
+        source.append("\n    @Override\n    public ");
+        String typeParameters = this.getTypeParameters(element.getTypeParameters());
+        if (!typeParameters.isEmpty()) {
+            source.append(typeParameters).append(' ');
+        }
+        source.append(method.getMemberType().getReturnType()).append(' ').append(element.getSimpleName()).append('(');
+        StringBuilder arguments = new StringBuilder();
+        for (int index = 0; index < parameterTypes.size(); index++) {
+            if (index > 0) {
+                source.append(", ");
+                arguments.append(", ");
+            }
+            String parameterType = parameterTypes.get(index).toString();
+            if (element.isVarArgs() && (index == parameterTypes.size() - 1)) {
+                parameterType = parameterType.substring(0, parameterType.length() - 2) + "...";
+            }
+            source.append(parameterType).append(" p").append(index);
+            arguments.append('p').append(index);
+        }
+        source.append(')');
+        List<? extends TypeMirror> thrownTypes = method.getMemberType().getThrownTypes();
+        for (int index = 0; index < thrownTypes.size(); index++) {
+            source.append((index == 0) ? " throws " : ", ").append(thrownTypes.get(index));
+        }
+        source.append(" {\n        ");
+
+        if (!"void".equals(method.getMemberType().getReturnType().toString())) {
+            source.append("return ");
+        }
+        if ((methodField == null) || parameterTypes.isEmpty()) {
+            source.append("this.dispatcher.select(").append((methodField == null) ? "null" : methodField).append(", null)");
+        } else {
+            source.append("this.dispatcher.select(").append(methodField).append(", new java.lang.Object[]{").append(arguments).append("})");
+        }
+        source.append('.').append(element.getSimpleName()).append('(').append(arguments).append(");\n");
+        source.append("    }\n");
+    }
+
+    private StringBuilder startClass() {
+        StringBuilder source = new StringBuilder();
+        if (!this.targetPackage.isUnnamed()) {
+            source.append("package ").append(this.targetPackage.getQualifiedName()).append(";\n\n");
+        }
+        source.append("/**\n");
+        source.append(" * Generated by ").append(ToggleMetadataProcessor.class.getName()).append(" for {@link ").append(this.commonInterface.getQualifiedName()).append("}.\n");
+        source.append(" */\n");
+        return source;
+    }
+
+    private String getInterfaceType() {
+        StringBuilder interfaceType = new StringBuilder(this.commonInterface.getQualifiedName());
+        List<? extends TypeParameterElement> typeParameters = this.commonInterface.getTypeParameters();
+        for (int index = 0; index < typeParameters.size(); index++) {
+            interfaceType.append((index == 0) ? "<" : ", ").append(typeParameters.get(index).getSimpleName());
+        }
+        return typeParameters.isEmpty() ? interfaceType.toString() : interfaceType.append('>').toString();
+    }
+
+    private String getTypeParameters(List<? extends TypeParameterElement> typeParameters) {
+        StringBuilder declaration = new StringBuilder();
+        for (TypeParameterElement typeParameter : typeParameters) {
+            declaration.append((declaration.length() == 0) ? "<" : ", ").append(typeParameter.getSimpleName());
+            List<? extends TypeMirror> bounds = typeParameter.getBounds();
+            if ((bounds.size() == 1) && Object.class.getName().equals(bounds.get(0).toString())) {
+                continue;
+            }
+            for (int index = 0; index < bounds.size(); index++) {
+                declaration.append((index == 0) ? " extends " : " & ").append(bounds.get(index));
+            }
+        }
+        return (declaration.length() == 0) ? "" : declaration.append('>').toString();
+    }
+
+    private String getMethodExpression(TogglableMethod method) {
+        return this.commonInterface.getQualifiedName() + ".class.getMethod(" + this.getMethodLookupArguments(method) + ")";
+    }
+
+    /**
+     * The name and the erased parameter types the method is declared with, as {@link Class#getMethod} looks it up.
+     */
+    private String getMethodLookupArguments(TogglableMethod method) {
+        ExecutableElement element = method.getElement();
+        StringBuilder arguments = new StringBuilder(this.processingEnv.getElementUtils().getConstantExpression(element.getSimpleName().toString()));
+        for (Element parameter : element.getParameters()) {
+            arguments.append(", ").append(this.erasure(parameter.asType())).append(".class");
+        }
+        return arguments.toString();
+    }
+
+    /**
+     * A class literal, or a lookup by name for the types the generated code can't refer to.
+     */
+    private String getTypeExpression(TypeElement type) {
+        Elements elements = this.processingEnv.getElementUtils();
+        if (isAccessible(elements, type, this.targetPackage)) {
+            return this.erasure(type.asType()) + ".class";
+        }
+        return "java.lang.Class.forName(" + elements.getConstantExpression(elements.getBinaryName(type).toString()) + ", false, "
+                + this.commonInterface.getQualifiedName() + ".class.getClassLoader())";
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return this.processingEnv.getTypeUtils().erasure(type);
+    }
+}
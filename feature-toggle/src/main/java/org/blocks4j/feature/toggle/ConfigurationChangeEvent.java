@@ -0,0 +1,54 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle;
+
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+
+public class ConfigurationChangeEvent {
+
+    private final ObservableFeatureToggleConfiguration source;
+    private final FeatureToggleSnapshot previous;
+    private final FeatureToggleSnapshot current;
+
+    public ConfigurationChangeEvent(ObservableFeatureToggleConfiguration source, FeatureToggleSnapshot previous, FeatureToggleSnapshot current) {
+        this.source = source;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public ObservableFeatureToggleConfiguration getSource() {
+        return this.source;
+    }
+
+    public FeatureToggleSnapshot getPrevious() {
+        return this.previous;
+    }
+
+    public FeatureToggleSnapshot getCurrent() {
+        return this.current;
+    }
+
+    public long getVersion() {
+        return this.current.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConfigurationChangeEvent[version=%d, previousVersion=%d]", this.current.getVersion(), this.previous.getVersion());
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle;
+
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+
+/**
+ * Configuration that publishes its state as immutable, versioned snapshots and notifies listeners when it changes.
+ * <p>
+ * Consumers can then precompute their decisions once per change and read a single reference per call, instead of
+ * reading the live sets on every call as a plain {@link FeatureToggleConfiguration} requires.
+ */
+public interface ObservableFeatureToggleConfiguration extends FeatureToggleConfiguration {
+
+    FeatureToggleSnapshot getSnapshot();
+
+    /**
+     * The listener is held strongly; wrap it in a {@link WeakConfigurationChangeListener} if it shouldn't keep its
+     * owner alive.
+     */
+    void addChangeListener(ConfigurationChangeListener listener);
+
+    void removeChangeListener(ConfigurationChangeListener listener);
+}
@@ -0,0 +1,80 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Forwards events to a listener without keeping it alive. Once the listener is collected, the wrapper unregisters
+ * itself on the next event or on a later registration. The owner of the listener must hold it strongly for as long
+ * as it wants to be notified.
+ */
+public final class WeakConfigurationChangeListener implements ConfigurationChangeListener {
+
+    private static final ReferenceQueue<ConfigurationChangeListener> COLLECTED_LISTENERS = new ReferenceQueue<ConfigurationChangeListener>();
+
+    private final ObservableFeatureToggleConfiguration config;
+    private final ListenerReference listener;
+
+    private WeakConfigurationChangeListener(ObservableFeatureToggleConfiguration config, ConfigurationChangeListener listener) {
+        this.config = config;
+        this.listener = new ListenerReference(listener, this);
+    }
+
+    /**
+     * Registers {@code listener} in {@code config} through a weak reference.
+     *
+     * @return the registered wrapper, to be passed to {@link ObservableFeatureToggleConfiguration#removeChangeListener}
+     */
+    public static ConfigurationChangeListener register(ObservableFeatureToggleConfiguration config, ConfigurationChangeListener listener) {
+        expungeCollectedListeners();
+        WeakConfigurationChangeListener weakListener = new WeakConfigurationChangeListener(config, listener);
+        config.addChangeListener(weakListener);
+        return weakListener;
+    }
+
+    private static void expungeCollectedListeners() {
+        Reference<? extends ConfigurationChangeListener> collected;
+        while ((collected = COLLECTED_LISTENERS.poll()) != null) {
+            WeakConfigurationChangeListener weakListener = ((ListenerReference) collected).owner;
+            weakListener.config.removeChangeListener(weakListener);
+        }
+    }
+
+    @Override
+    public void onChange(ConfigurationChangeEvent event) {
+        ConfigurationChangeListener delegate = this.listener.get();
+        if (delegate == null) {
+            this.config.removeChangeListener(this);
+        } else {
+            delegate.onChange(event);
+        }
+    }
+
+    private static final class ListenerReference extends WeakReference<ConfigurationChangeListener> {
+
+        private final WeakConfigurationChangeListener owner;
+
+        private ListenerReference(ConfigurationChangeListener listener, WeakConfigurationChangeListener owner) {
+            super(listener, COLLECTED_LISTENERS);
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.batch;
+
+import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.parameters.CompiledParameters;
+import org.blocks4j.feature.toggle.parameters.ParametersToggleHandler;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+
+import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides, for a whole batch of calls, which ones a feature is on for, without a proxy: a job can then split its
+ * records into the ON and OFF sets before processing them.
+ * <p>
+ * The configuration is read once per batch: the current snapshot of an observable configuration, or a snapshot compiled
+ * from the enabled parameters of any other that the feature reads, the other allow-lists being left out. Every call of
+ * the batch is then matched against it, the parameters of the method being looked up once. Wrap a configuration that
+ * isn't observable in a {@link org.blocks4j.feature.toggle.snapshot.PollingFeatureToggleConfiguration} to compile its
+ * snapshot once per change rather than once per batch. Probabilistic rollouts ({@code featureName#probability}) aren't
+ * applied: the result only depends on the features and parameters enabled.
+ */
+public final class FeatureToggleEvaluator {
+
+    private final FeatureToggleConfiguration config;
+    private final Class<?> commonInterface;
+    private final ConcurrentMap<String, EvaluatedFeature> features = new ConcurrentHashMap<String, EvaluatedFeature>();
+
+    public FeatureToggleEvaluator(FeatureToggleConfiguration config, Class<?> commonInterface) {
+        if (config == null) {
+            throw new IllegalArgumentException("The configuration mustn't be null.");
+        }
+        if (commonInterface == null) {
+            throw new IllegalArgumentException("The common interface mustn't be null.");
+        }
+        this.config = config;
+        this.commonInterface = commonInterface;
+    }
+
+    /**
+     * @param calls the arguments of each call of {@code method}; {@code null} for a method without arguments
+     * @return the indexes of the calls the feature is on for
+     */
+    public BitSet evaluate(String featureName, Method method, List<Object[]> calls) {
+        if (featureName == null) {
+            throw new IllegalArgumentException("The feature name mustn't be null.");
+        }
+        if ((method == null) || !method.getDeclaringClass().isAssignableFrom(this.commonInterface)) {
+            throw new IllegalArgumentException(String.format("The method [%s] isn't declared by [%s].", method, this.commonInterface.getName()));
+        }
+
+        BitSet on = new BitSet(calls.size());
+        EvaluatedFeature feature = this.getFeature(featureName);
+        FeatureToggleSnapshot snapshot = this.readSnapshot(featureName, feature);
+        if (snapshot.isEnabled(featureName)) {
+            feature.compile(snapshot).evaluate(method, calls, on);
+        }
+        return on;
+    }
+
+    private FeatureToggleSnapshot readSnapshot(String featureName, EvaluatedFeature feature) {
+        if (this.config instanceof ObservableFeatureToggleConfiguration) {
+            return ((ObservableFeatureToggleConfiguration) this.config).getSnapshot();
+        }
+
+        Set<String> enabledFeatures = this.config.getEnabledFeatures();
+        if ((enabledFeatures == null) || !enabledFeatures.contains(featureName)) {
+            return FeatureToggleSnapshot.EMPTY;
+        }
+        Map<String, Set<String>> featureParameters = new HashMap<String, Set<String>>();
+        Map<String, Set<String>> enabledParameters = this.config.getEnabledParameters();
+        if (enabledParameters != null) {
+            for (String parameterKey : feature.parameterKeys) {
+                Set<String> values = enabledParameters.get(parameterKey);
+                if (values != null) {
+                    featureParameters.put(parameterKey, values);
+                }
+            }
+        }
+        return FeatureToggleSnapshot.compile(0L, Collections.singleton(featureName), featureParameters);
+    }
+
+    private EvaluatedFeature getFeature(String featureName) {
+        EvaluatedFeature feature = this.features.get(featureName);
+        if (feature == null) {
+            EvaluatedFeature created = new EvaluatedFeature(new ParametersToggleHandler(this.config, this.commonInterface, featureName));
+            feature = this.features.putIfAbsent(featureName, created);
+            if (feature == null) {
+                feature = created;
+            }
+        }
+        return feature;
+    }
+
+    private static final class EvaluatedFeature {
+
+        private final ParametersToggleHandler parameters;
+        private final Set<String> parameterKeys;
+        private volatile Compiled compiled;
+
+        private EvaluatedFeature(ParametersToggleHandler parameters) {
+            this.parameters = parameters;
+            this.parameterKeys = parameters.getParameterKeys();
+        }
+
+        /**
+         * Compiles the parameters once per snapshot: batches following each other reuse them until it changes.
+         */
+        private CompiledParameters compile(FeatureToggleSnapshot snapshot) {
+            Compiled current = this.compiled;
+            if ((current != null) && (current.snapshot == snapshot)) {
+                return current.parameters;
+            }
+            CompiledParameters parameters = this.parameters.compile(snapshot);
+            this.compiled = new Compiled(snapshot, parameters);
+            return parameters;
+        }
+    }
+
+    private static final class Compiled {
+
+        private final FeatureToggleSnapshot snapshot;
+        private final CompiledParameters parameters;
+
+        private Compiled(FeatureToggleSnapshot snapshot, CompiledParameters parameters) {
+            this.snapshot = snapshot;
+            this.parameters = parameters;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.domain;
+
+import com.google.common.primitives.Primitives;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Builds the {@link ParameterAccessor}s of togglable parameters, once, when the parameter is registered.
+ * <p>
+ * Public getters of classes visible from this library get a {@link LambdaMetafactory} generated accessor, which
+ * the JIT inlines like a direct call. Fields, and getters that cannot be linked that way, are read through a
+ * {@link MethodHandle}.
+ */
+final class ParameterAccessors {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    static final ParameterAccessor DIRECT = new ParameterAccessor() {
+        @Override
+        public Object get(Object argument) {
+            return argument;
+        }
+    };
+
+    private ParameterAccessors() {
+    }
+
+    static ParameterAccessor forField(Field field) {
+        try {
+            return new MethodHandleAccessor(adapt(LOOKUP.unreflectGetter(field), Modifier.isStatic(field.getModifiers())));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Field is not accessible: " + field, e);
+        }
+    }
+
+    static ParameterAccessor forMethod(Method method) {
+        MethodHandle handle;
+        try {
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Method is not accessible: " + method, e);
+        }
+
+        if (isLinkable(method)) {
+            try {
+                CallSite callSite = LambdaMetafactory.metafactory(LOOKUP,
+                                                                  "get",
+                                                                  MethodType.methodType(ParameterAccessor.class),
+                                                                  ACCESSOR_TYPE,
+                                                                  handle,
+                                                                  MethodType.methodType(Primitives.wrap(method.getReturnType()), method.getDeclaringClass()));
+                return (ParameterAccessor) callSite.getTarget().invoke();
+            } catch (Throwable e) {
+                // not linkable from this lookup, the method handle below still is
+            }
+        }
+
+        return new MethodHandleAccessor(adapt(handle, Modifier.isStatic(method.getModifiers())));
+    }
+
+    private static MethodHandle adapt(MethodHandle handle, boolean isStatic) {
+        MethodHandle instanceHandle = isStatic ? MethodHandles.dropArguments(handle, 0, Object.class) : handle;
+        return instanceHandle.asType(ACCESSOR_TYPE);
+    }
+
+    private static boolean isLinkable(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        return !Modifier.isStatic(method.getModifiers())
+                && Modifier.isPublic(method.getModifiers())
+                && Modifier.isPublic(declaringClass.getModifiers())
+                && (method.getParameterTypes().length == 0)
+                && isVisible(declaringClass);
+    }
+
+    /**
+     * The generated accessor is defined in this library's class loader, which must resolve the argument's class.
+     */
+    private static boolean isVisible(Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, ParameterAccessors.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static final class MethodHandleAccessor implements ParameterAccessor {
+
+        private final MethodHandle handle;
+
+        private MethodHandleAccessor(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object get(Object argument) throws Throwable {
+            return this.handle.invokeExact(argument);
+        }
+    }
+}
@@ -26,24 +26,46 @@ public class TogglableParameter<T> {
     private String id;
     private T accessibleObject;
     private AccessMethod accessMethod;
+    private ParameterAccessor accessor;
+    private Class<?> valueType;
 
-    private TogglableParameter(int index, String id, T accessibleObject, AccessMethod accessMethod) {
+    private TogglableParameter(int index, String id, T accessibleObject, AccessMethod accessMethod, ParameterAccessor accessor, Class<?> valueType) {
         this.index = index;
         this.id = id;
         this.accessibleObject = accessibleObject;
         this.accessMethod = accessMethod;
+        this.accessor = accessor;
+        this.valueType = valueType;
     }
 
     public static TogglableParameter<?> createTogglableParameter(int index, String id) {
-        return new TogglableParameter<Object>(index, id, null, AccessMethod.DIRECT);
+        return createTogglableParameter(index, id, Object.class);
+    }
+
+    public static TogglableParameter<?> createTogglableParameter(int index, String id, Class<?> valueType) {
+        return new TogglableParameter<Object>(index, id, null, AccessMethod.DIRECT, ParameterAccessors.DIRECT, valueType);
     }
 
     public static TogglableParameter<Field> createTogglableParameter(int index, String id, Field field) {
-        return new TogglableParameter<Field>(index, id, field, AccessMethod.FIELD);
+        return new TogglableParameter<Field>(index, id, field, AccessMethod.FIELD, ParameterAccessors.forField(field), field.getType());
     }
 
     public static TogglableParameter<Method> createTogglableParameter(int index, String id, Method method) {
-        return new TogglableParameter<Method>(index, id, method, AccessMethod.METHOD);
+        return new TogglableParameter<Method>(index, id, method, AccessMethod.METHOD, ParameterAccessors.forMethod(method), method.getReturnType());
+    }
+
+    /**
+     * @param accessor reads the field, generated at compile time
+     */
+    public static TogglableParameter<Field> createTogglableParameter(int index, String id, Field field, ParameterAccessor accessor) {
+        return new TogglableParameter<Field>(index, id, field, AccessMethod.FIELD, accessor, field.getType());
+    }
+
+    /**
+     * @param accessor calls the method, generated at compile time
+     */
+    public static TogglableParameter<Method> createTogglableParameter(int index, String id, Method method, ParameterAccessor accessor) {
+        return new TogglableParameter<Method>(index, id, method, AccessMethod.METHOD, accessor, method.getReturnType());
     }
 
     public int getIndex() {
@@ -61,4 +83,15 @@ public class TogglableParameter<T> {
     public AccessMethod getAccessMethod() {
         return this.accessMethod;
     }
+
+    public ParameterAccessor getAccessor() {
+        return this.accessor;
+    }
+
+    /**
+     * Declared type of the value: the method parameter, field or getter return type.
+     */
+    public Class<?> getValueType() {
+        return this.valueType;
+    }
 }
\ No newline at end of file
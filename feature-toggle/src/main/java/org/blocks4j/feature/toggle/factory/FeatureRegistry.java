@@ -0,0 +1,153 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.factory;
+
+import org.blocks4j.feature.toggle.proxy.Feature;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Proxies created by {@link FeatureToggleFactory}, indexed by feature name.
+ * <p>
+ * Proxies and their features are only weakly referenced: a proxy nobody uses anymore is dropped from the registry on
+ * a later registration, so proxies can be created for short-lived objects without leaking. Registration doesn't lock,
+ * and proxies of different features never contend.
+ */
+public class FeatureRegistry {
+
+    private final ConcurrentMap<String, Set<Registration>> registrations = new ConcurrentHashMap<String, Set<Registration>>();
+    private final ReferenceQueue<Object> collectedProxies = new ReferenceQueue<Object>();
+
+    void register(Object proxy, Feature<?> feature) {
+        this.purge();
+
+        String featureName = feature.getFeatureName();
+        Registration registration = new Registration(proxy, feature, this.collectedProxies);
+
+        Set<Registration> featureRegistrations;
+        do {
+            featureRegistrations = this.registrations.get(featureName);
+            if (featureRegistrations == null) {
+                Set<Registration> created = ConcurrentHashMap.newKeySet();
+                featureRegistrations = this.registrations.putIfAbsent(featureName, created);
+                if (featureRegistrations == null) {
+                    featureRegistrations = created;
+                }
+            }
+            featureRegistrations.add(registration);
+            // the set may have been dropped as empty by a concurrent purge; register again in the current one
+        } while (this.registrations.get(featureName) != featureRegistrations);
+    }
+
+    /**
+     * @return the proxies still in use for the feature
+     */
+    public List<Object> getProxies(String featureName) {
+        Set<Registration> featureRegistrations = this.registrations.get(featureName);
+        if (featureRegistrations == null) {
+            return Collections.emptyList();
+        }
+
+        List<Object> proxies = new ArrayList<Object>(featureRegistrations.size());
+        for (Registration registration : featureRegistrations) {
+            Object proxy = registration.get();
+            if (proxy != null) {
+                proxies.add(proxy);
+            }
+        }
+        return proxies;
+    }
+
+    /**
+     * @return the features still in use for the feature name
+     */
+    public List<Feature<?>> getFeatures(String featureName) {
+        Set<Registration> featureRegistrations = this.registrations.get(featureName);
+        if (featureRegistrations == null) {
+            return Collections.emptyList();
+        }
+
+        List<Feature<?>> features = new ArrayList<Feature<?>>(featureRegistrations.size());
+        this.collectFeatures(featureRegistrations, features);
+        return features;
+    }
+
+    /**
+     * @return every feature still in use
+     */
+    public List<Feature<?>> getFeatures() {
+        List<Feature<?>> features = new ArrayList<Feature<?>>();
+        for (Set<Registration> featureRegistrations : this.registrations.values()) {
+            this.collectFeatures(featureRegistrations, features);
+        }
+        return features;
+    }
+
+    public Set<String> getFeatureNames() {
+        this.purge();
+        return Collections.unmodifiableSet(this.registrations.keySet());
+    }
+
+    private void collectFeatures(Collection<Registration> featureRegistrations, List<Feature<?>> features) {
+        for (Registration registration : featureRegistrations) {
+            Feature<?> feature = registration.getFeature();
+            if ((feature != null) && (registration.get() != null)) {
+                features.add(feature);
+            }
+        }
+    }
+
+    private void purge() {
+        Reference<?> collected;
+        while ((collected = this.collectedProxies.poll()) != null) {
+            Registration registration = (Registration) collected;
+            Set<Registration> featureRegistrations = this.registrations.get(registration.featureName);
+            if (featureRegistrations != null) {
+                featureRegistrations.remove(registration);
+                if (featureRegistrations.isEmpty()) {
+                    this.registrations.remove(registration.featureName, featureRegistrations);
+                }
+            }
+        }
+    }
+
+    private static final class Registration extends WeakReference<Object> {
+
+        private final String featureName;
+        private final WeakReference<Feature<?>> feature;
+
+        private Registration(Object proxy, Feature<?> feature, ReferenceQueue<Object> queue) {
+            super(proxy, queue);
+            this.featureName = feature.getFeatureName();
+            this.feature = new WeakReference<Feature<?>>(feature);
+        }
+
+        private Feature<?> getFeature() {
+            return this.feature.get();
+        }
+    }
+}
@@ -20,16 +20,21 @@ package org.blocks4j.feature.toggle.factory;
 import org.apache.commons.lang3.StringUtils;
 import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
 import org.blocks4j.feature.toggle.exception.FeatureToggleFactoryException;
+import org.blocks4j.feature.toggle.metrics.FeatureToggleMetrics;
 import org.blocks4j.feature.toggle.proxy.Feature;
 import org.blocks4j.feature.toggle.proxy.ProbabilisticFeature;
+import org.blocks4j.feature.toggle.proxy.ProxyEngine;
+import org.blocks4j.feature.toggle.proxy.ShadowFeature;
+import org.blocks4j.feature.toggle.proxy.SwitchFeature;
+import org.blocks4j.feature.toggle.shadow.ShadowComparator;
+import org.blocks4j.feature.toggle.shadow.ShadowExecutor;
+import org.blocks4j.feature.toggle.trace.DecisionTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,27 +42,93 @@ import java.util.Map;
 
 public class FeatureToggleFactory {
 
-    private static Collection<Feature> toggleList = Collections.synchronizedCollection(new HashSet<Feature>());
+    private static final FeatureRegistry DEFAULT_REGISTRY = new FeatureRegistry();
     private static final Logger LOGGER = LoggerFactory.getLogger(FeatureToggleFactory.class);
 
     private FeatureToggleConfiguration config;
     private final boolean allowProbabilisticFeatures;
-
-    private FeatureToggleFactory(FeatureToggleConfiguration config, boolean allowProbabilisticFeatures) {
+    private final String stickyParameter;
+    private final ProxyEngine proxyEngine;
+    private final FeatureRegistry registry;
+    private final FeatureToggleMetrics metrics;
+    private final DecisionTracer tracer;
+    private final ShadowExecutor shadowExecutor;
+    private final ShadowComparator shadowComparator;
+    private final boolean partitioned;
+
+    private FeatureToggleFactory(FeatureToggleConfiguration config, boolean allowProbabilisticFeatures, String stickyParameter, ProxyEngine proxyEngine, FeatureRegistry registry, FeatureToggleMetrics metrics, DecisionTracer tracer, ShadowExecutor shadowExecutor, ShadowComparator shadowComparator, boolean partitioned) {
         this.config = config;
         this.allowProbabilisticFeatures = allowProbabilisticFeatures;
+        this.stickyParameter = stickyParameter;
+        this.proxyEngine = proxyEngine;
+        this.registry = registry;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.shadowExecutor = shadowExecutor;
+        this.shadowComparator = shadowComparator;
+        this.partitioned = partitioned;
     }
 
+    /**
+     * @return the features still in use among those built without a {@link FeatureRegistry} of their own
+     * @deprecated scope the features with {@link Builder#registry(FeatureRegistry)} and query that registry instead
+     */
+    @Deprecated
     public static Collection<Feature> getToggleList() {
-        return Collections.unmodifiableCollection(toggleList);
+        return Collections.<Feature>unmodifiableCollection(DEFAULT_REGISTRY.getFeatures());
+    }
+
+    /**
+     * @return the registry of the features built without a {@link FeatureRegistry} of their own
+     */
+    public static FeatureRegistry getDefaultRegistry() {
+        return DEFAULT_REGISTRY;
     }
 
     private <T> T createFeatureProxy(String featureName, Class<? super T> commonInterface, T featureOn, T featureOff) {
+        Feature<T> feature = this.createFeature(featureName, commonInterface, featureOn, featureOff);
+
+        T proxy = this.proxyEngine.createProxy(commonInterface, feature);
+
+        LOGGER.info(String.format("Feature [%s] initialized , Object for ON is [%s] and Object for OFF is [%s]", featureName, featureOn.getClass().getSimpleName(), featureOff.getClass().getSimpleName()));
+        this.registry.register(proxy, feature);
+        return proxy;
+    }
+
+    /**
+     * A single proxy for all the cases, instead of one proxy per case chained to the next one. The OFF object of every
+     * case is the default implementation: it's what {@link Feature#getFeatureOff()} returns and what a shadowed case
+     * mirrors, the switch itself checking the following cases.
+     */
+    private <T> T createSwitchProxy(List<Map.Entry<String, T>> cases, Class<? super T> commonInterface, T defaultFeature) {
+        List<Feature<T>> features = new ArrayList<Feature<T>>(cases.size());
+        for (Map.Entry<String, T> featureCase : cases) {
+            // the switch checks the following cases itself: a case off is served by the default implementation
+            features.add(this.createFeature(featureCase.getKey(), commonInterface, featureCase.getValue(), defaultFeature));
+        }
+
+        T proxy = this.proxyEngine.createProxy(commonInterface, new SwitchFeature<T>(features, defaultFeature));
+
+        for (Feature<T> feature : features) {
+            LOGGER.info(String.format("Feature [%s] initialized , Object for ON is [%s] and Object for OFF is [%s]", feature.getFeatureName(), feature.getFeatureOn().getClass().getSimpleName(), feature.getFeatureOff().getClass().getSimpleName()));
+            this.registry.register(proxy, feature);
+        }
+        return proxy;
+    }
+
+    private <T> Feature<T> createFeature(String featureName, Class<? super T> commonInterface, T featureOn, T featureOff) {
         this.validateParams(featureName, commonInterface, featureOn, featureOff);
         Feature<T> feature;
 
-        if (this.allowProbabilisticFeatures) {
-            feature = new ProbabilisticFeature<T>();
+        if (this.shadowComparator != null) {
+            ShadowFeature<T> shadowFeature = new ShadowFeature<T>();
+            shadowFeature.setStickyParameter(this.stickyParameter);
+            shadowFeature.setComparator(this.shadowComparator);
+            feature = shadowFeature;
+        } else if (this.allowProbabilisticFeatures) {
+            ProbabilisticFeature<T> probabilisticFeature = new ProbabilisticFeature<T>();
+            probabilisticFeature.setStickyParameter(this.stickyParameter);
+            feature = probabilisticFeature;
         } else {
             feature = new Feature<T>();
         }
@@ -67,14 +138,12 @@ public class FeatureToggleFactory {
         feature.setOn(featureOn);
         feature.setOff(featureOff);
         feature.setName(featureName);
+        feature.setMetrics(this.metrics.forFeature(featureName));
+        feature.setTracer(this.tracer);
+        feature.setShadowExecutor(this.shadowExecutor);
+        feature.setPartitioned(this.partitioned);
         feature.init();
-
-        @SuppressWarnings("unchecked")
-        T proxy = (T) Proxy.newProxyInstance(commonInterface.getClassLoader(), new Class[]{commonInterface}, feature);
-
-        LOGGER.info(String.format("Feature [%s] initialized , Object for ON is [%s] and Object for OFF is [%s]", featureName, featureOn.getClass().getSimpleName(), featureOff.getClass().getSimpleName()));
-        toggleList.add(feature);
-        return proxy;
+        return feature;
     }
 
     private void validateParams(String featureName, Class<?> commonInterface, Object featureOn, Object featureOff) {
@@ -140,6 +209,65 @@ public class FeatureToggleFactory {
             return this;
         }
 
+        /**
+         * Same as {@link #allowProbabilisticFeatures()}, but calls are bucketed by the value of the
+         * {@code @ParameterToggle(stickyParameter)} instead of drawn at random, so a given value always gets the same
+         * implementation. Calls without that parameter are still drawn at random.
+         */
+        public Builder<T> allowProbabilisticFeatures(String stickyParameter) {
+            this.switchableFeatureBuilder.allowProbabilisticFeatures(stickyParameter);
+            return this;
+        }
+
+        public Builder<T> proxyEngine(ProxyEngine proxyEngine) {
+            this.switchableFeatureBuilder.proxyEngine(proxyEngine);
+            return this;
+        }
+
+        public Builder<T> registry(FeatureRegistry registry) {
+            this.switchableFeatureBuilder.registry(registry);
+            return this;
+        }
+
+        public Builder<T> metrics(FeatureToggleMetrics metrics) {
+            this.switchableFeatureBuilder.metrics(metrics);
+            return this;
+        }
+
+        public Builder<T> tracer(DecisionTracer tracer) {
+            this.switchableFeatureBuilder.tracer(tracer);
+            return this;
+        }
+
+        public Builder<T> shadowDisabled(ShadowExecutor shadowExecutor) {
+            this.switchableFeatureBuilder.shadowDisabled(shadowExecutor);
+            return this;
+        }
+
+        /**
+         * Dark launch: the callers are always served by the disabled implementation, and the enabled one is called in
+         * the shadow of the calls for which the feature is on, its outcomes compared by
+         * {@link ShadowComparator#EQUALS}. See {@link ShadowFeature}.
+         */
+        public Builder<T> darkLaunch(ShadowExecutor shadowExecutor) {
+            return this.darkLaunch(shadowExecutor, ShadowComparator.EQUALS);
+        }
+
+        public Builder<T> darkLaunch(ShadowExecutor shadowExecutor, ShadowComparator comparator) {
+            this.switchableFeatureBuilder.darkLaunch(shadowExecutor, comparator);
+            return this;
+        }
+
+        /**
+         * Toggles the items of collection and array arguments one by one: a call is split between the implementations,
+         * each called once with its items, and their results are merged. See
+         * {@link org.blocks4j.feature.toggle.parameters.PartitionedParameter}.
+         */
+        public Builder<T> partitioned() {
+            this.switchableFeatureBuilder.partitioned();
+            return this;
+        }
+
         public T build() {
             return this.switchableFeatureBuilder.build();
         }
@@ -151,12 +279,24 @@ public class FeatureToggleFactory {
         private T defaultFeatureImpl;
         private LinkedHashMap<String, T> cases;
         private boolean allowProbabilisticFeatures;
+        private String stickyParameter;
+        private ProxyEngine proxyEngine;
+        private FeatureRegistry registry;
+        private FeatureToggleMetrics metrics;
+        private DecisionTracer tracer;
+        private ShadowExecutor shadowExecutor;
+        private ShadowComparator shadowComparator;
+        private boolean partitioned;
 
         public SwitchableFeatureBuilder(FeatureToggleConfiguration config, Class<? super T> commonInterface) {
             this.config = config;
             this.commonInterface = commonInterface;
             this.cases = new LinkedHashMap<String, T>(4);
             this.allowProbabilisticFeatures = false;
+            this.proxyEngine = ProxyEngine.JDK;
+            this.registry = DEFAULT_REGISTRY;
+            this.metrics = FeatureToggleMetrics.NONE;
+            this.tracer = DecisionTracer.NONE;
         }
 
         public SwitchableFeatureBuilder<T> when(String featureName, T featureImpl) {
@@ -174,32 +314,100 @@ public class FeatureToggleFactory {
             return this;
         }
 
+        private SwitchableFeatureBuilder<T> allowProbabilisticFeatures(String stickyParameter) {
+            if (StringUtils.isEmpty(stickyParameter)) {
+                throw new IllegalArgumentException("The stickyParameter mustn't be empty.");
+            }
+            this.allowProbabilisticFeatures = true;
+            this.stickyParameter = stickyParameter;
+            return this;
+        }
+
+        public SwitchableFeatureBuilder<T> proxyEngine(ProxyEngine proxyEngine) {
+            if (proxyEngine == null) {
+                throw new IllegalArgumentException("The proxyEngine mustn't be null.");
+            }
+            this.proxyEngine = proxyEngine;
+            return this;
+        }
+
+        /**
+         * Registry the proxies are registered in, the {@link FeatureToggleFactory#getDefaultRegistry() default one} if
+         * not set.
+         */
+        public SwitchableFeatureBuilder<T> registry(FeatureRegistry registry) {
+            if (registry == null) {
+                throw new IllegalArgumentException("The registry mustn't be null.");
+            }
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Where the decisions and latency of the calls are recorded; nothing is recorded, nor measured, if not set.
+         */
+        public SwitchableFeatureBuilder<T> metrics(FeatureToggleMetrics metrics) {
+            if (metrics == null) {
+                throw new IllegalArgumentException("The metrics mustn't be null.");
+            }
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Where a sample of the decisions is traced, with the reason of each; nothing is traced if not set.
+         */
+        public SwitchableFeatureBuilder<T> tracer(DecisionTracer tracer) {
+            if (tracer == null) {
+                throw new IllegalArgumentException("The tracer mustn't be null.");
+            }
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Calls the implementation of the disabled path too, in the shadow of every call served by an enabled feature,
+         * to compare them in the metrics; the callers never wait for the shadow calls.
+         */
+        public SwitchableFeatureBuilder<T> shadowDisabled(ShadowExecutor shadowExecutor) {
+            if (shadowExecutor == null) {
+                throw new IllegalArgumentException("The shadowExecutor mustn't be null.");
+            }
+            this.shadowExecutor = shadowExecutor;
+            this.shadowComparator = null;
+            return this;
+        }
+
+        private SwitchableFeatureBuilder<T> darkLaunch(ShadowExecutor shadowExecutor, ShadowComparator comparator) {
+            if (comparator == null) {
+                throw new IllegalArgumentException("The comparator mustn't be null.");
+            }
+            this.shadowDisabled(shadowExecutor);
+            this.shadowComparator = comparator;
+            return this;
+        }
+
+        private SwitchableFeatureBuilder<T> partitioned() {
+            this.partitioned = true;
+            return this;
+        }
+
         public T build() {
             if (this.cases.isEmpty()) {
                 throw new IllegalStateException();
             }
 
-            FeatureToggleFactory featureToggleFactory = new FeatureToggleFactory(this.config, this.allowProbabilisticFeatures);
+            FeatureToggleFactory featureToggleFactory = new FeatureToggleFactory(this.config, this.allowProbabilisticFeatures, this.stickyParameter, this.proxyEngine, this.registry, this.metrics, this.tracer, this.shadowExecutor, this.shadowComparator, this.partitioned);
 
-            T main = null;
-            T next;
             List<Map.Entry<String, T>> featuresInformation = new ArrayList<Map.Entry<String, T>>(this.cases.entrySet());
-
-            for (int i = featuresInformation.size() - 1; i >= 0; i--) {
-                if (main == null) {
-                    next = this.defaultFeatureImpl;
-                } else {
-                    next = main;
-                }
-
-                Map.Entry<String, T> featureInformation = featuresInformation.get(i);
-                main = featureToggleFactory.createFeatureProxy(featureInformation.getKey(),
+            if (featuresInformation.size() == 1) {
+                Map.Entry<String, T> featureInformation = featuresInformation.get(0);
+                return featureToggleFactory.createFeatureProxy(featureInformation.getKey(),
                                                                this.commonInterface,
                                                                featureInformation.getValue(),
-                                                               next);
+                                                               this.defaultFeatureImpl);
             }
-
-            return main;
+            return featureToggleFactory.createSwitchProxy(featuresInformation, this.commonInterface, this.defaultFeatureImpl);
         }
 
     }
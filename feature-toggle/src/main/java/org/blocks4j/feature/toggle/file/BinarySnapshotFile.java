@@ -0,0 +1,386 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.file;
+
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+import org.blocks4j.feature.toggle.parameters.LongAllowList;
+import org.blocks4j.feature.toggle.parameters.NumericAllowList;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Binary format of a complete toggle configuration, laid out to be memory-mapped and read where it is. Every number
+ * is big-endian:
+ * <pre>
+ * header      int magic ("FTBS"), int format version, int feature count, int parameter count
+ * features    per feature: int length, UTF-8 name
+ * parameters  per parameter: int length, UTF-8 key, byte kind, int value count, int offset of its values
+ * values      per parameter, at an offset aligned on 8 bytes:
+ *             LONGS   long word count of the Bloom filter of the values (0 without one), its words, then the
+ *                     values, sorted, as longs
+ *             STRINGS int capacity (a power of 2), capacity int slots (offset of an entry from the block, 0 if free),
+ *                     then the entries: int {@link String#hashCode()}, int length, UTF-8 value, aligned on 4 bytes
+ * </pre>
+ * Parameters whose values are all the String representation of a long are written as LONGS, the others as an open
+ * addressing hash table of STRINGS; large lists of LONGS get a Bloom filter, shared through the mapping like them.
+ * Probabilities are parameters like the others. Files are limited to 2 GB.
+ */
+public final class BinarySnapshotFile {
+
+    static final int MAGIC = 0x46544253;
+    static final int FORMAT_VERSION = 1;
+
+    private static final byte LONGS = 1;
+    private static final byte STRINGS = 2;
+
+    private BinarySnapshotFile() {
+    }
+
+    /**
+     * Writes the configuration to a temporary file next to {@code target}, then renames it into place: readers mapping
+     * {@code target} see either the previous version or the new one, never a partial file.
+     * <p>
+     * On POSIX file systems the file keeps the permissions of the one it replaces, {@code rw-r--r--} for a new one,
+     * instead of the owner-only ones of a temporary file: JVMs running as other users map it too.
+     */
+    public static void write(Path target, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) throws IOException {
+        if (target == null) {
+            throw new IllegalArgumentException("The target mustn't be null.");
+        }
+        ByteBuffer encoded = encode(enabledFeatures, enabledParameters);
+
+        Path directory = target.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, target.getFileName().toString() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (encoded.hasRemaining()) {
+                    channel.write(encoded);
+                }
+                channel.force(true);
+            }
+            shareLike(temporary, target);
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void shareLike(Path temporary, Path target) throws IOException {
+        PosixFileAttributeView attributes = Files.getFileAttributeView(temporary, PosixFileAttributeView.class);
+        if (attributes == null) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = Files.exists(target)
+                ? Files.getPosixFilePermissions(target)
+                : PosixFilePermissions.fromString("rw-r--r--");
+        attributes.setPermissions(permissions);
+    }
+
+    static ByteBuffer encode(Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        List<byte[]> features = new ArrayList<byte[]>();
+        long size = 16L;
+        if (enabledFeatures != null) {
+            List<String> sortedFeatures = new ArrayList<String>(enabledFeatures);
+            Collections.sort(sortedFeatures);
+            for (String feature : sortedFeatures) {
+                byte[] name = utf8(feature, "The feature names mustn't be null.");
+                features.add(name);
+                size += 4L + name.length;
+            }
+        }
+
+        List<EncodedParameter> parameters = new ArrayList<EncodedParameter>();
+        if (enabledParameters != null) {
+            for (Map.Entry<String, Set<String>> parameter : new TreeMap<String, Set<String>>(enabledParameters).entrySet()) {
+                EncodedParameter encodedParameter = new EncodedParameter(parameter.getKey(), parameter.getValue());
+                parameters.add(encodedParameter);
+                size += 4L + encodedParameter.key.length + 9L;
+            }
+        }
+
+        for (EncodedParameter parameter : parameters) {
+            size = align(size, 8);
+            parameter.offset = size;
+            size += parameter.values.remaining();
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("The configuration takes %d bytes, more than a snapshot file holds.", size));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(features.size()).putInt(parameters.size());
+        for (byte[] feature : features) {
+            buffer.putInt(feature.length).put(feature);
+        }
+        for (EncodedParameter parameter : parameters) {
+            buffer.putInt(parameter.key.length).put(parameter.key).put(parameter.kind).putInt(parameter.count).putInt((int) parameter.offset);
+        }
+        for (EncodedParameter parameter : parameters) {
+            buffer.position((int) parameter.offset);
+            buffer.put(parameter.values);
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    private static long[] longsOf(Set<String> values) {
+        if (values instanceof NumericAllowList) {
+            LongAllowList longs = ((NumericAllowList) values).getLongs();
+            long[] sorted = new long[longs.size()];
+            int count = 0;
+            for (PrimitiveIterator.OfLong iterator = longs.iterator(); iterator.hasNext(); ) {
+                sorted[count++] = iterator.nextLong();
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        long[] longs = new long[values.size()];
+        int count = 0;
+        for (String value : values) {
+            if ((value == null) || !LongAllowList.isCanonical(value)) {
+                return null;
+            }
+            longs[count++] = Long.parseLong(value);
+        }
+        Arrays.sort(longs);
+        return longs;
+    }
+
+    private static ByteBuffer encodeLongs(long[] sortedValues) {
+        long[] bloomFilter = (sortedValues.length >= NumericAllowList.MIN_SIZE) ? LongAllowList.bloomFilterOf(sortedValues) : new long[0];
+        long size = (1L + bloomFilter.length + sortedValues.length) * Long.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The values of a parameter take more than a snapshot file holds.");
+        }
+        ByteBuffer block = ByteBuffer.allocate((int) size);
+        block.asLongBuffer().put(bloomFilter.length).put(bloomFilter).put(sortedValues);
+        return block;
+    }
+
+    private static ByteBuffer encodeStrings(Set<String> values) {
+        int capacity = MappedStringSet.capacityFor(values.size());
+        List<byte[]> encodedValues = new ArrayList<byte[]>(values.size());
+        long size = 4L + (4L * capacity);
+        for (String value : values) {
+            byte[] encodedValue = utf8(value, "The parameter values mustn't be null.");
+            encodedValues.add(encodedValue);
+            size += align(8L + encodedValue.length, 4);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The values of a parameter take more than a snapshot file holds.");
+        }
+
+        ByteBuffer block = ByteBuffer.allocate((int) size);
+        block.putInt(capacity);
+        int entry = 4 + (4 * capacity);
+        int index = 0;
+        for (String value : values) {
+            byte[] encodedValue = encodedValues.get(index++);
+            int slot = MappedStringSet.slotOf(value.hashCode(), capacity - 1);
+            while (block.getInt(4 + (4 * slot)) != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            block.putInt(4 + (4 * slot), entry);
+            block.position(entry);
+            block.putInt(value.hashCode()).putInt(encodedValue.length).put(encodedValue);
+            entry = (int) align(block.position(), 4);
+        }
+        block.rewind();
+        return block;
+    }
+
+    private static byte[] utf8(String value, String nullMessage) {
+        if (value == null) {
+            throw new IllegalArgumentException(nullMessage);
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) & -alignment;
+    }
+
+    /**
+     * Maps the file and reads its directory; the values stay in the mapping, which lasts as long as they're referenced.
+     */
+    static Contents map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new FeatureToggleDefinitionParsingException(String.format("The feature toggle snapshot file [%s] is larger than 2 GB", file));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+        try {
+            return read(buffer);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+            throw new FeatureToggleDefinitionParsingException(String.format("The feature toggle snapshot file [%s] is truncated or corrupted", file), e);
+        }
+    }
+
+    static Contents read(ByteBuffer buffer) {
+        if ((buffer.limit() < 16) || (buffer.getInt(0) != MAGIC)) {
+            throw new FeatureToggleDefinitionParsingException("Not a feature toggle snapshot file");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new FeatureToggleDefinitionParsingException(String.format("Unsupported feature toggle snapshot format %d", buffer.getInt(4)));
+        }
+        int featureCount = checkCount(buffer.getInt(8), buffer);
+        int parameterCount = checkCount(buffer.getInt(12), buffer);
+
+        int position = 16;
+        Set<String> features = new HashSet<String>();
+        for (int index = 0; index < featureCount; index++) {
+            int length = checkCount(buffer.getInt(position), buffer);
+            features.add(decode(buffer, position + 4, length));
+            position += 4 + length;
+        }
+
+        Map<String, Set<String>> parameters = new HashMap<String, Set<String>>();
+        for (int index = 0; index < parameterCount; index++) {
+            int length = checkCount(buffer.getInt(position), buffer);
+            String key = decode(buffer, position + 4, length);
+            position += 4 + length;
+            byte kind = buffer.get(position);
+            int count = checkCount(buffer.getInt(position + 1), buffer);
+            int offset = buffer.getInt(position + 5);
+            position += 9;
+            parameters.put(key, readValues(buffer, kind, count, offset));
+        }
+        return new Contents(Collections.unmodifiableSet(features), Collections.unmodifiableMap(parameters));
+    }
+
+    private static Set<String> readValues(ByteBuffer buffer, byte kind, int count, int offset) {
+        if ((offset < 0) || ((offset & 7) != 0)) {
+            throw new FeatureToggleDefinitionParsingException(String.format("Misaligned values at %d", offset));
+        }
+        if (kind == LONGS) {
+            long bloomFilterWords = buffer.getLong(offset);
+            long end = offset + ((1L + bloomFilterWords + count) * Long.BYTES);
+            if ((bloomFilterWords < 0L) || (end > buffer.limit())) {
+                throw new IndexOutOfBoundsException(String.format("%d longs at %d", count, offset));
+            }
+            int valuesOffset = offset + (int) ((1L + bloomFilterWords) * Long.BYTES);
+            LongBuffer longs = slice(buffer, valuesOffset, count);
+            for (int index = 1; index < count; index++) {
+                if (longs.get(index - 1) >= longs.get(index)) {
+                    throw new FeatureToggleDefinitionParsingException(String.format("Unsorted longs at %d", offset));
+                }
+            }
+            LongAllowList allowList = LongAllowList.sortedBuffer(longs);
+            if (bloomFilterWords > 0L) {
+                allowList = LongAllowList.bloomFiltered(allowList, slice(buffer, offset + Long.BYTES, (int) bloomFilterWords));
+            }
+            return NumericAllowList.of(allowList);
+        }
+        if (kind == STRINGS) {
+            return MappedStringSet.read(buffer, offset, count);
+        }
+        throw new FeatureToggleDefinitionParsingException(String.format("Unknown kind of values %d", kind));
+    }
+
+    private static LongBuffer slice(ByteBuffer buffer, int offset, int longs) {
+        ByteBuffer block = buffer.duplicate();
+        block.position(offset);
+        block.limit(offset + (longs * Long.BYTES));
+        return block.slice().asLongBuffer();
+    }
+
+    private static int checkCount(int count, ByteBuffer buffer) {
+        if ((count < 0) || (count > buffer.limit())) {
+            throw new IndexOutOfBoundsException(String.format("Invalid count %d", count));
+        }
+        return count;
+    }
+
+    static String decode(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class EncodedParameter {
+
+        private final byte[] key;
+        private final byte kind;
+        private final int count;
+        private final ByteBuffer values;
+        private long offset;
+
+        private EncodedParameter(String key, Set<String> values) {
+            this.key = utf8(key, "The parameter keys mustn't be null.");
+            Set<String> parameterValues = (values == null) ? Collections.<String>emptySet() : values;
+            long[] longs = longsOf(parameterValues);
+            if (longs != null) {
+                this.kind = LONGS;
+                this.count = longs.length;
+                this.values = encodeLongs(longs);
+            } else {
+                this.kind = STRINGS;
+                this.count = parameterValues.size();
+                this.values = encodeStrings(parameterValues);
+            }
+        }
+    }
+
+    static final class Contents {
+
+        private final Set<String> enabledFeatures;
+        private final Map<String, Set<String>> enabledParameters;
+
+        private Contents(Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+            this.enabledFeatures = enabledFeatures;
+            this.enabledParameters = enabledParameters;
+        }
+
+        Set<String> getEnabledFeatures() {
+            return this.enabledFeatures;
+        }
+
+        Map<String, Set<String>> getEnabledParameters() {
+            return this.enabledParameters;
+        }
+    }
+}
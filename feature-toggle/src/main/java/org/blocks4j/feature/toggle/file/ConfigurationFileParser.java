@@ -0,0 +1,245 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.file;
+
+import org.apache.commons.lang3.StringUtils;
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Reads the enabled features and parameters from a properties file:
+ * <pre>
+ * enabledFeatures=featureA,featureB
+ * enabledParameters.customerId=1,2
+ * enabledParameters.featureA&amp;region=EU
+ * </pre>
+ * or from a YAML file limited to the same two keys, with values given inline (comma separated or {@code [a, b]})
+ * or as block lists:
+ * <pre>
+ * enabledFeatures:
+ *   - featureA
+ *   - featureB
+ * enabledParameters:
+ *   customerId: [1, 2]
+ *   featureA&amp;region: EU
+ *   "featureA#probability": 3/10
+ * </pre>
+ * Other keys are ignored, so the files can be shared with other settings.
+ */
+final class ConfigurationFileParser {
+
+    static final String ENABLED_FEATURES = "enabledFeatures";
+    static final String ENABLED_PARAMETERS = "enabledParameters";
+
+    private static final String PARAMETER_PROPERTY_PREFIX = ENABLED_PARAMETERS + ".";
+
+    private ConfigurationFileParser() {
+    }
+
+    static boolean isConfigurationFile(Path file) {
+        return isProperties(file) || isYaml(file);
+    }
+
+    private static boolean isProperties(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".properties");
+    }
+
+    private static boolean isYaml(Path file) {
+        String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return fileName.endsWith(".yml") || fileName.endsWith(".yaml");
+    }
+
+    static ParsedFile parse(Path file) throws IOException {
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        if (isYaml(file)) {
+            return parseYaml(content, file.toString());
+        }
+        return parseProperties(new StringReader(content));
+    }
+
+    static ParsedFile parseProperties(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+
+        ParsedFile parsed = new ParsedFile();
+        for (String key : properties.stringPropertyNames()) {
+            if (ENABLED_FEATURES.equals(key)) {
+                parsed.features.addAll(values(properties.getProperty(key)));
+            } else if (key.startsWith(PARAMETER_PROPERTY_PREFIX) && (key.length() > PARAMETER_PROPERTY_PREFIX.length())) {
+                parsed.parameterValues(key.substring(PARAMETER_PROPERTY_PREFIX.length())).addAll(values(properties.getProperty(key)));
+            }
+        }
+        return parsed;
+    }
+
+    static ParsedFile parseYaml(String content, String source) {
+        ParsedFile parsed = new ParsedFile();
+
+        String section = null;
+        Set<String> parameterValues = null;
+        String[] lines = content.split("\r?\n");
+        for (int lineNumber = 1; lineNumber <= lines.length; lineNumber++) {
+            String line = stripComment(lines[lineNumber - 1]);
+            if (StringUtils.isBlank(line) || "---".equals(line.trim())) {
+                continue;
+            }
+            if (line.indexOf('\t') >= 0) {
+                throw invalid(source, lineNumber, "tabs are not allowed in YAML indentation");
+            }
+
+            String text = line.trim();
+            boolean listItem = "-".equals(text) || text.startsWith("- ");
+            if (!Character.isWhitespace(line.charAt(0)) && !listItem) {
+                String[] keyValue = splitKeyValue(text, source, lineNumber);
+                section = keyValue[0];
+                parameterValues = null;
+                if (ENABLED_FEATURES.equals(section)) {
+                    parsed.features.addAll(values(keyValue[1]));
+                } else if (ENABLED_PARAMETERS.equals(section) && !keyValue[1].isEmpty()) {
+                    throw invalid(source, lineNumber, "enabledParameters must map parameters to their values");
+                }
+            } else if (listItem) {
+                String value = text.substring(1);
+                if (ENABLED_FEATURES.equals(section) && (parameterValues == null)) {
+                    parsed.features.addAll(values(value));
+                } else if (parameterValues != null) {
+                    parameterValues.addAll(values(value));
+                } else if (ENABLED_PARAMETERS.equals(section)) {
+                    throw invalid(source, lineNumber, "list item outside of a parameter");
+                }
+            } else if (ENABLED_PARAMETERS.equals(section)) {
+                String[] keyValue = splitKeyValue(text, source, lineNumber);
+                parameterValues = parsed.parameterValues(keyValue[0]);
+                parameterValues.addAll(values(keyValue[1]));
+            } else if (ENABLED_FEATURES.equals(section)) {
+                throw invalid(source, lineNumber, "enabledFeatures must be a list of feature names");
+            }
+        }
+
+        return parsed;
+    }
+
+    /**
+     * {@code #} starts a comment at the beginning of a line or after a space, so keys like
+     * {@code feature#probability} are kept.
+     */
+    private static String stripComment(String line) {
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char current = line.charAt(i);
+            if (quote != 0) {
+                if (current == quote) {
+                    quote = 0;
+                }
+            } else if ((current == '"') || (current == '\'')) {
+                quote = current;
+            } else if ((current == '#') && ((i == 0) || Character.isWhitespace(line.charAt(i - 1)))) {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    private static String[] splitKeyValue(String text, String source, int lineNumber) {
+        int separator;
+        if ((text.charAt(0) == '"') || (text.charAt(0) == '\'')) {
+            int closingQuote = text.indexOf(text.charAt(0), 1);
+            if (closingQuote < 0) {
+                throw invalid(source, lineNumber, "unterminated quoted key");
+            }
+            separator = text.indexOf(':', closingQuote);
+        } else {
+            separator = text.indexOf(':');
+            while ((separator >= 0) && (separator < (text.length() - 1)) && !Character.isWhitespace(text.charAt(separator + 1))) {
+                separator = text.indexOf(':', separator + 1);
+            }
+        }
+        if (separator <= 0) {
+            throw invalid(source, lineNumber, "expected 'key: value'");
+        }
+        return new String[]{unquote(text.substring(0, separator).trim()), text.substring(separator + 1).trim()};
+    }
+
+    private static List<String> values(String value) {
+        String trimmed = StringUtils.trimToEmpty(value);
+        if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+            trimmed = trimmed.substring(1, trimmed.length() - 1);
+        }
+
+        List<String> values = new ArrayList<String>();
+        for (String item : StringUtils.split(trimmed, ',')) {
+            String unquoted = unquote(item.trim());
+            if (!unquoted.isEmpty()) {
+                values.add(unquoted);
+            }
+        }
+        return values;
+    }
+
+    private static String unquote(String value) {
+        if ((value.length() >= 2) && ((value.charAt(0) == '"') || (value.charAt(0) == '\'')) && (value.charAt(value.length() - 1) == value.charAt(0))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static FeatureToggleDefinitionParsingException invalid(String source, int lineNumber, String reason) {
+        return new FeatureToggleDefinitionParsingException(String.format("Invalid feature toggle file [%s] at line %d: %s", source, lineNumber, reason));
+    }
+
+    /**
+     * Enabled features and parameters read from one file.
+     */
+    static final class ParsedFile {
+
+        private final Set<String> features = new LinkedHashSet<String>();
+        private final Map<String, Set<String>> parameters = new HashMap<String, Set<String>>();
+
+        private Set<String> parameterValues(String parameter) {
+            Set<String> values = this.parameters.get(parameter);
+            if (values == null) {
+                values = new LinkedHashSet<String>();
+                this.parameters.put(parameter, values);
+            }
+            return values;
+        }
+
+        Collection<String> getFeatures() {
+            return this.features;
+        }
+
+        Map<String, Set<String>> getParameters() {
+            return this.parameters;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.file;
+
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Configuration read from a properties or YAML file, or from every such file of a directory (see
+ * {@link ConfigurationFileParser} for the format). Files of a directory are merged: features and parameter values
+ * enabled in any of them are enabled.
+ * <p>
+ * A background thread watches the files with a {@link WatchService} and also checks their modification time and size
+ * on every poll interval, for file systems where watching isn't supported or misses changes. Only the files that
+ * changed are parsed again, and the merged result is published as a new snapshot, so calls read it without locks.
+ * A file that fails to parse keeps its previous content.
+ */
+public class FileFeatureToggleConfiguration implements ObservableFeatureToggleConfiguration, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileFeatureToggleConfiguration.class);
+
+    private final Path path;
+    private final long pollIntervalMillis;
+    private final SnapshotFeatureToggleConfiguration snapshotConfig;
+    private final ReentrantLock reloadLock;
+
+    private Map<Path, LoadedFile> loadedFiles;
+    private PathWatcher watcher;
+
+    private FileFeatureToggleConfiguration(Path path, long pollIntervalMillis) {
+        this.path = path.toAbsolutePath();
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.snapshotConfig = new SnapshotFeatureToggleConfiguration();
+        this.reloadLock = new ReentrantLock();
+        this.loadedFiles = Collections.emptyMap();
+    }
+
+    public static Builder forPath(Path path) {
+        return new Builder(path);
+    }
+
+    @Override
+    public FeatureToggleSnapshot getSnapshot() {
+        return this.snapshotConfig.getSnapshot();
+    }
+
+    @Override
+    public Set<String> getEnabledFeatures() {
+        return this.snapshotConfig.getEnabledFeatures();
+    }
+
+    @Override
+    public Map<String, Set<String>> getEnabledParameters() {
+        return this.snapshotConfig.getEnabledParameters();
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.removeChangeListener(listener);
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Checks the files right away instead of waiting for the watcher.
+     *
+     * @return whether a new snapshot was published
+     */
+    public boolean reload() {
+        this.reloadLock.lock();
+        try {
+            return this.reload(false);
+        } finally {
+            this.reloadLock.unlock();
+        }
+    }
+
+    private boolean reload(boolean failOnError) {
+        Map<Path, LoadedFile> previousFiles = this.loadedFiles;
+        Map<Path, LoadedFile> currentFiles = new LinkedHashMap<Path, LoadedFile>();
+        boolean changed = false;
+
+        for (Path file : this.listFiles()) {
+            LoadedFile previous = previousFiles.get(file);
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if ((previous != null) && previous.isSameVersion(attributes)) {
+                    currentFiles.put(file, previous);
+                } else {
+                    currentFiles.put(file, new LoadedFile(attributes, ConfigurationFileParser.parse(file)));
+                    changed = true;
+                }
+            } catch (IOException | FeatureToggleDefinitionParsingException e) {
+                if (failOnError) {
+                    throw new FeatureToggleDefinitionParsingException(String.format("Couldn't read the feature toggle file [%s]", file), e);
+                }
+                LOGGER.error(String.format("Couldn't reload the feature toggle file [%s], keeping its previous content", file), e);
+                if (previous != null) {
+                    currentFiles.put(file, previous);
+                }
+            }
+        }
+
+        if (!changed && currentFiles.keySet().equals(previousFiles.keySet())) {
+            return false;
+        }
+        this.loadedFiles = currentFiles;
+        return this.publish(currentFiles.values());
+    }
+
+    private boolean publish(Iterable<LoadedFile> files) {
+        Set<String> enabledFeatures = new HashSet<String>();
+        Map<String, Set<String>> enabledParameters = new HashMap<String, Set<String>>();
+        for (LoadedFile file : files) {
+            enabledFeatures.addAll(file.parsed.getFeatures());
+            for (Map.Entry<String, Set<String>> parameter : file.parsed.getParameters().entrySet()) {
+                Set<String> values = enabledParameters.get(parameter.getKey());
+                if (values == null) {
+                    values = new HashSet<String>();
+                    enabledParameters.put(parameter.getKey(), values);
+                }
+                values.addAll(parameter.getValue());
+            }
+        }
+
+        FeatureToggleSnapshot current = this.snapshotConfig.getSnapshot();
+        if (current.getEnabledFeatures().equals(enabledFeatures) && current.getEnabledParameters().equals(enabledParameters)) {
+            return false;
+        }
+        FeatureToggleSnapshot published = this.snapshotConfig.update(enabledFeatures, enabledParameters);
+        LOGGER.info(String.format("Feature toggle files [%s] loaded as version %d, enabled features are %s", this.path, published.getVersion(), enabledFeatures));
+        return true;
+    }
+
+    private List<Path> listFiles() {
+        if (!Files.isDirectory(this.path)) {
+            return Files.exists(this.path) ? Collections.singletonList(this.path) : Collections.<Path>emptyList();
+        }
+
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(this.path)) {
+            for (Path file : directory) {
+                if (Files.isRegularFile(file) && ConfigurationFileParser.isConfigurationFile(file)) {
+                    files.add(file);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error(String.format("Couldn't list the feature toggle directory [%s]", this.path), e);
+            return new ArrayList<Path>(this.loadedFiles.keySet());
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private void start(boolean useWatchService) {
+        this.watcher = new PathWatcher(this.path, this.pollIntervalMillis, new Runnable() {
+            @Override
+            public void run() {
+                FileFeatureToggleConfiguration.this.reload();
+            }
+        });
+        this.watcher.start(useWatchService, "feature-toggle-file-watcher[" + this.path.getFileName() + "]");
+    }
+
+    /**
+     * Stops watching the files; the last loaded snapshot stays available.
+     */
+    @Override
+    public void close() {
+        if (this.watcher != null) {
+            this.watcher.close();
+        }
+    }
+
+    private static final class LoadedFile {
+
+        private final FileTime lastModifiedTime;
+        private final long size;
+        private final ConfigurationFileParser.ParsedFile parsed;
+
+        private LoadedFile(BasicFileAttributes attributes, ConfigurationFileParser.ParsedFile parsed) {
+            this.lastModifiedTime = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.parsed = parsed;
+        }
+
+        private boolean isSameVersion(BasicFileAttributes attributes) {
+            return this.lastModifiedTime.equals(attributes.lastModifiedTime()) && (this.size == attributes.size());
+        }
+    }
+
+    public static class Builder {
+
+        private final Path path;
+        private long pollIntervalMillis;
+        private boolean useWatchService;
+
+        private Builder(Path path) {
+            if (path == null) {
+                throw new IllegalArgumentException("The path mustn't be null.");
+            }
+            this.path = path;
+            this.pollIntervalMillis = TimeUnit.SECONDS.toMillis(5);
+            this.useWatchService = true;
+        }
+
+        /**
+         * How often the files are checked when no change is notified; 5 seconds by default.
+         */
+        public Builder pollInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("The poll interval must be positive.");
+            }
+            this.pollIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Only polls the files, for file systems where a {@link WatchService} isn't reliable (network mounts).
+         */
+        public Builder withoutWatchService() {
+            this.useWatchService = false;
+            return this;
+        }
+
+        /**
+         * Loads the files, failing if they can't be read or parsed, and starts watching them.
+         */
+        public FileFeatureToggleConfiguration build() {
+            if (!Files.exists(this.path)) {
+                throw new FeatureToggleDefinitionParsingException(String.format("The feature toggle path [%s] doesn't exist", this.path));
+            }
+
+            FileFeatureToggleConfiguration config = new FileFeatureToggleConfiguration(this.path, this.pollIntervalMillis);
+            config.reloadLock.lock();
+            try {
+                config.reload(true);
+            } finally {
+                config.reloadLock.unlock();
+            }
+            config.start(this.useWatchService);
+            return config;
+        }
+    }
+}
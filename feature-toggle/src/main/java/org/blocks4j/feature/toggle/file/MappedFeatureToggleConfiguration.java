@@ -0,0 +1,233 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.file;
+
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Configuration read from a {@link BinarySnapshotFile}, memory-mapped instead of parsed: the allow-lists are looked up
+ * where they are in the mapping, so they're never copied onto the heap, the JVMs of a host share the page cached copy
+ * of the file, and loading it parses no text.
+ * <p>
+ * New versions of the file must be renamed into place, as {@link BinarySnapshotFile#write} does, never rewritten: a
+ * background thread maps the new file and publishes it as a new snapshot, while the calls still reading the previous
+ * one keep its mapping, released once it's no longer referenced. A file that fails to load keeps the previous
+ * snapshot.
+ */
+public class MappedFeatureToggleConfiguration implements ObservableFeatureToggleConfiguration, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedFeatureToggleConfiguration.class);
+
+    private final Path path;
+    private final long pollIntervalMillis;
+    private final SnapshotFeatureToggleConfiguration snapshotConfig;
+    private final ReentrantLock reloadLock;
+
+    private MappedFile mappedFile;
+    private PathWatcher watcher;
+
+    private MappedFeatureToggleConfiguration(Path path, long pollIntervalMillis) {
+        this.path = path.toAbsolutePath();
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.snapshotConfig = new SnapshotFeatureToggleConfiguration();
+        this.reloadLock = new ReentrantLock();
+    }
+
+    public static Builder forPath(Path path) {
+        return new Builder(path);
+    }
+
+    @Override
+    public FeatureToggleSnapshot getSnapshot() {
+        return this.snapshotConfig.getSnapshot();
+    }
+
+    @Override
+    public Set<String> getEnabledFeatures() {
+        return this.snapshotConfig.getEnabledFeatures();
+    }
+
+    @Override
+    public Map<String, Set<String>> getEnabledParameters() {
+        return this.snapshotConfig.getEnabledParameters();
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.removeChangeListener(listener);
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Checks the file right away instead of waiting for the watcher.
+     *
+     * @return whether a new snapshot was published
+     */
+    public boolean reload() {
+        this.reloadLock.lock();
+        try {
+            return this.reload(false);
+        } finally {
+            this.reloadLock.unlock();
+        }
+    }
+
+    private boolean reload(boolean failOnError) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+            if ((this.mappedFile != null) && this.mappedFile.isSameVersion(attributes)) {
+                return false;
+            }
+
+            final BinarySnapshotFile.Contents contents = BinarySnapshotFile.map(this.path);
+            FeatureToggleSnapshot published = this.snapshotConfig.update(version -> FeatureToggleSnapshot.of(version, contents.getEnabledFeatures(), contents.getEnabledParameters()));
+            this.mappedFile = new MappedFile(attributes);
+            LOGGER.info(String.format("Feature toggle snapshot file [%s] mapped as version %d, enabled features are %s", this.path, published.getVersion(), contents.getEnabledFeatures()));
+            return true;
+        } catch (IOException | FeatureToggleDefinitionParsingException e) {
+            if (failOnError) {
+                throw new FeatureToggleDefinitionParsingException(String.format("Couldn't map the feature toggle snapshot file [%s]", this.path), e);
+            }
+            LOGGER.error(String.format("Couldn't reload the feature toggle snapshot file [%s], keeping its previous version", this.path), e);
+            return false;
+        }
+    }
+
+    private void start(boolean useWatchService) {
+        this.watcher = new PathWatcher(this.path, this.pollIntervalMillis, new Runnable() {
+            @Override
+            public void run() {
+                MappedFeatureToggleConfiguration.this.reload();
+            }
+        });
+        this.watcher.start(useWatchService, "feature-toggle-mapped-file-watcher[" + this.path.getFileName() + "]");
+    }
+
+    /**
+     * Stops watching the file; the last mapped snapshot stays available.
+     */
+    @Override
+    public void close() {
+        if (this.watcher != null) {
+            this.watcher.close();
+        }
+    }
+
+    /**
+     * A file renamed into place is another file: its key changes even when its time and size don't.
+     */
+    private static final class MappedFile {
+
+        private final Object fileKey;
+        private final FileTime lastModifiedTime;
+        private final long size;
+
+        private MappedFile(BasicFileAttributes attributes) {
+            this.fileKey = attributes.fileKey();
+            this.lastModifiedTime = attributes.lastModifiedTime();
+            this.size = attributes.size();
+        }
+
+        private boolean isSameVersion(BasicFileAttributes attributes) {
+            return Objects.equals(this.fileKey, attributes.fileKey())
+                    && this.lastModifiedTime.equals(attributes.lastModifiedTime())
+                    && (this.size == attributes.size());
+        }
+    }
+
+    public static class Builder {
+
+        private final Path path;
+        private long pollIntervalMillis;
+        private boolean useWatchService;
+
+        private Builder(Path path) {
+            if (path == null) {
+                throw new IllegalArgumentException("The path mustn't be null.");
+            }
+            this.path = path;
+            this.pollIntervalMillis = TimeUnit.SECONDS.toMillis(5);
+            this.useWatchService = true;
+        }
+
+        /**
+         * How often the file is checked when no change is notified; 5 seconds by default.
+         */
+        public Builder pollInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("The poll interval must be positive.");
+            }
+            this.pollIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Only polls the file, for file systems where a {@link WatchService} isn't reliable (network mounts).
+         */
+        public Builder withoutWatchService() {
+            this.useWatchService = false;
+            return this;
+        }
+
+        /**
+         * Maps the file, failing if it can't be read or isn't a valid snapshot file, and starts watching it.
+         */
+        public MappedFeatureToggleConfiguration build() {
+            if (!Files.isRegularFile(this.path)) {
+                throw new FeatureToggleDefinitionParsingException(String.format("The feature toggle snapshot file [%s] doesn't exist", this.path));
+            }
+
+            MappedFeatureToggleConfiguration config = new MappedFeatureToggleConfiguration(this.path, this.pollIntervalMillis);
+            config.reloadLock.lock();
+            try {
+                config.reload(true);
+            } finally {
+                config.reloadLock.unlock();
+            }
+            config.start(this.useWatchService);
+            return config;
+        }
+    }
+}
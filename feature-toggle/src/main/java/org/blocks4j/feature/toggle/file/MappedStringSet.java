@@ -0,0 +1,182 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.file;
+
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only set of the STRINGS values of a {@link BinarySnapshotFile}, looked up in its hash table where it is. A
+ * lookup hashes the String with its cached {@link String#hashCode()} and compares it with the UTF-8 entries of its
+ * slots without decoding them, so it doesn't allocate.
+ */
+final class MappedStringSet extends AbstractSet<String> {
+
+    private final ByteBuffer buffer;
+    private final int block;
+    private final int mask;
+    private final int size;
+
+    private MappedStringSet(ByteBuffer buffer, int block, int capacity, int size) {
+        this.buffer = buffer;
+        this.block = block;
+        this.mask = capacity - 1;
+        this.size = size;
+    }
+
+    static int capacityFor(int size) {
+        return Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+    }
+
+    static int slotOf(int hash, int mask) {
+        int spread = hash * 0x9E3779B9;
+        return (spread ^ (spread >>> 16)) & mask;
+    }
+
+    /**
+     * Checks the table and its entries once, so lookups never read out of the file.
+     */
+    static MappedStringSet read(ByteBuffer buffer, int block, int size) {
+        int capacity = buffer.getInt(block);
+        if ((capacity < 2) || (Integer.bitCount(capacity) != 1) || (capacity <= size) || ((block + 4L + (4L * capacity)) > buffer.limit())) {
+            throw new FeatureToggleDefinitionParsingException(String.format("Invalid table of %d values at %d", size, block));
+        }
+        int entries = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int entry = buffer.getInt(block + 4 + (4 * slot));
+            if (entry != 0) {
+                long start = (long) block + entry;
+                if ((entry < (4 + (4 * capacity))) || ((start + 8L) > buffer.limit()) || ((start + 8L + buffer.getInt((int) start + 4)) > buffer.limit()) || (buffer.getInt((int) start + 4) < 0)) {
+                    throw new FeatureToggleDefinitionParsingException(String.format("Invalid entry at %d", start));
+                }
+                entries++;
+            }
+        }
+        if (entries != size) {
+            throw new FeatureToggleDefinitionParsingException(String.format("%d values expected at %d, %d found", size, block, entries));
+        }
+        return new MappedStringSet(buffer, block, capacity, size);
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+        String string = (String) value;
+        int hash = string.hashCode();
+        int slot = slotOf(hash, this.mask);
+        int entry;
+        while ((entry = this.buffer.getInt(this.block + 4 + (4 * slot))) != 0) {
+            int start = this.block + entry;
+            if ((this.buffer.getInt(start) == hash) && this.equalsUtf8(start + 8, this.buffer.getInt(start + 4), string)) {
+                return true;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return false;
+    }
+
+    private boolean equalsUtf8(int offset, int length, String value) {
+        int end = offset + length;
+        int characters = value.length();
+        int index = 0;
+        int position = offset;
+        while (position < end) {
+            int first = this.buffer.get(position++);
+            if (first >= 0) {
+                if ((index >= characters) || (value.charAt(index++) != first)) {
+                    return false;
+                }
+                continue;
+            }
+
+            int continuations;
+            int codePoint;
+            if ((first & 0xE0) == 0xC0) {
+                continuations = 1;
+                codePoint = first & 0x1F;
+            } else if ((first & 0xF0) == 0xE0) {
+                continuations = 2;
+                codePoint = first & 0x0F;
+            } else if ((first & 0xF8) == 0xF0) {
+                continuations = 3;
+                codePoint = first & 0x07;
+            } else {
+                return false;
+            }
+            if ((position + continuations) > end) {
+                return false;
+            }
+            for (int continuation = 0; continuation < continuations; continuation++) {
+                codePoint = (codePoint << 6) | (this.buffer.get(position++) & 0x3F);
+            }
+
+            if (Character.isBmpCodePoint(codePoint)) {
+                if ((index >= characters) || (value.charAt(index++) != codePoint)) {
+                    return false;
+                }
+            } else {
+                if (((index + 1) >= characters)
+                        || (value.charAt(index++) != Character.highSurrogate(codePoint))
+                        || (value.charAt(index++) != Character.lowSurrogate(codePoint))) {
+                    return false;
+                }
+            }
+        }
+        return index == characters;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+
+            private int slot = -1;
+            private int remaining = MappedStringSet.this.size;
+
+            @Override
+            public boolean hasNext() {
+                return this.remaining > 0;
+            }
+
+            @Override
+            public String next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int entry;
+                do {
+                    this.slot++;
+                    entry = MappedStringSet.this.buffer.getInt(MappedStringSet.this.block + 4 + (4 * this.slot));
+                } while (entry == 0);
+                this.remaining--;
+                int start = MappedStringSet.this.block + entry;
+                return BinarySnapshotFile.decode(MappedStringSet.this.buffer, start + 8, MappedStringSet.this.buffer.getInt(start + 4));
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread reloading a file, or the files of a directory, when they may have changed: on the events of a
+ * {@link WatchService} on the directory, and on every poll interval, for file systems where watching isn't supported
+ * or misses changes.
+ */
+final class PathWatcher implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PathWatcher.class);
+
+    private final Path path;
+    private final long pollIntervalMillis;
+    private final Runnable reload;
+
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile boolean closed;
+
+    PathWatcher(Path path, long pollIntervalMillis, Runnable reload) {
+        this.path = path;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.reload = reload;
+    }
+
+    void start(boolean useWatchService, String threadName) {
+        if (useWatchService) {
+            Path directory = Files.isDirectory(this.path) ? this.path : this.path.getParent();
+            try {
+                this.watchService = directory.getFileSystem().newWatchService();
+                directory.register(this.watchService,
+                                   StandardWatchEventKinds.ENTRY_CREATE,
+                                   StandardWatchEventKinds.ENTRY_MODIFY,
+                                   StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.warn(String.format("Couldn't watch [%s], polling it every %d ms instead", directory, this.pollIntervalMillis), e);
+                this.closeWatchService();
+            }
+        }
+
+        this.watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                PathWatcher.this.watch();
+            }
+        }, threadName);
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    private void watch() {
+        while (!this.closed) {
+            try {
+                this.awaitChange();
+                this.reload.run();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Couldn't reload the feature toggle files [%s]", this.path), e);
+            }
+        }
+    }
+
+    /**
+     * Waits for a change event, or for the poll interval at most.
+     */
+    private void awaitChange() throws InterruptedException {
+        if (this.watchService == null) {
+            Thread.sleep(this.pollIntervalMillis);
+            return;
+        }
+
+        WatchKey key = this.watchService.poll(this.pollIntervalMillis, TimeUnit.MILLISECONDS);
+        while (key != null) {
+            key.pollEvents();
+            key.reset();
+            key = this.watchService.poll();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.watcher != null) {
+            this.watcher.interrupt();
+        }
+        this.closeWatchService();
+    }
+
+    private void closeWatchService() {
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Couldn't close the watch service of [%s]", this.path), e);
+            }
+        }
+    }
+}
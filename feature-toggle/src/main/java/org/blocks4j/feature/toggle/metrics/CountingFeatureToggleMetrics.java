@@ -0,0 +1,66 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps {@link FeatureCounters} per feature name, shared by every component toggled by the same feature.
+ */
+public class CountingFeatureToggleMetrics implements FeatureToggleMetrics {
+
+    private final ConcurrentMap<String, FeatureCounters> counters = new ConcurrentHashMap<String, FeatureCounters>();
+
+    @Override
+    public FeatureCounters forFeature(String featureName) {
+        FeatureCounters featureCounters = this.counters.get(featureName);
+        if (featureCounters == null) {
+            FeatureCounters created = this.createCounters(featureName);
+            featureCounters = this.counters.putIfAbsent(featureName, created);
+            if (featureCounters == null) {
+                featureCounters = created;
+                this.onCountersCreated(created);
+            }
+        }
+        return featureCounters;
+    }
+
+    protected FeatureCounters createCounters(String featureName) {
+        return new FeatureCounters(featureName);
+    }
+
+    /**
+     * Called once per feature name, with the counters that are kept for it.
+     */
+    protected void onCountersCreated(FeatureCounters featureCounters) {
+    }
+
+    /**
+     * @return the counters of the feature, {@code null} if no component was built for it
+     */
+    public FeatureCounters getCounters(String featureName) {
+        return this.counters.get(featureName);
+    }
+
+    public Collection<FeatureCounters> getCounters() {
+        return Collections.unmodifiableCollection(this.counters.values());
+    }
+}
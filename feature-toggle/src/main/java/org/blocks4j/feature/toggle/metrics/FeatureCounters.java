@@ -0,0 +1,185 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link FeatureMetrics} kept in striped counters, so threads recording at the same time don't contend.
+ */
+public class FeatureCounters implements FeatureMetrics {
+
+    private final String featureName;
+
+    private final LongAdder onDecisions = new LongAdder();
+    private final LongAdder offDecisions = new LongAdder();
+    private final LongAdder parameterRejections = new LongAdder();
+    private final LongAdder probabilisticRejections = new LongAdder();
+
+    private final LongAdder onCalls = new LongAdder();
+    private final LongAdder onLatencyNanos = new LongAdder();
+    private final LongAccumulator onMaxLatencyNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder offCalls = new LongAdder();
+    private final LongAdder offLatencyNanos = new LongAdder();
+    private final LongAccumulator offMaxLatencyNanos = new LongAccumulator(Math::max, 0L);
+    private final LongAdder shadowCalls = new LongAdder();
+    private final LongAdder shadowFailures = new LongAdder();
+    private final LongAdder shadowLatencyNanos = new LongAdder();
+    private final LongAdder shadowMatches = new LongAdder();
+    private final LongAdder shadowMismatches = new LongAdder();
+
+    public FeatureCounters(String featureName) {
+        this.featureName = featureName;
+    }
+
+    @Override
+    public void recordDecision(boolean on) {
+        if (on) {
+            this.onDecisions.increment();
+        } else {
+            this.offDecisions.increment();
+        }
+    }
+
+    @Override
+    public void recordParameterRejection() {
+        this.parameterRejections.increment();
+    }
+
+    @Override
+    public void recordProbabilisticRejection() {
+        this.probabilisticRejections.increment();
+    }
+
+    @Override
+    public void recordLatency(boolean on, long nanos) {
+        if (on) {
+            this.onCalls.increment();
+            this.onLatencyNanos.add(nanos);
+            this.onMaxLatencyNanos.accumulate(nanos);
+        } else {
+            this.offCalls.increment();
+            this.offLatencyNanos.add(nanos);
+            this.offMaxLatencyNanos.accumulate(nanos);
+        }
+    }
+
+    @Override
+    public void recordShadowCall(long nanos, boolean failed) {
+        this.shadowCalls.increment();
+        this.shadowLatencyNanos.add(nanos);
+        if (failed) {
+            this.shadowFailures.increment();
+        }
+    }
+
+    @Override
+    public void recordShadowComparison(boolean matched) {
+        if (matched) {
+            this.shadowMatches.increment();
+        } else {
+            this.shadowMismatches.increment();
+        }
+    }
+
+    public String getFeatureName() {
+        return this.featureName;
+    }
+
+    public long getOnDecisions() {
+        return this.onDecisions.sum();
+    }
+
+    public long getOffDecisions() {
+        return this.offDecisions.sum();
+    }
+
+    public long getParameterRejections() {
+        return this.parameterRejections.sum();
+    }
+
+    public long getProbabilisticRejections() {
+        return this.probabilisticRejections.sum();
+    }
+
+    public long getOnCalls() {
+        return this.onCalls.sum();
+    }
+
+    public long getOnLatencyNanos() {
+        return this.onLatencyNanos.sum();
+    }
+
+    public long getOnMaxLatencyNanos() {
+        return this.onMaxLatencyNanos.get();
+    }
+
+    public long getOffCalls() {
+        return this.offCalls.sum();
+    }
+
+    public long getOffLatencyNanos() {
+        return this.offLatencyNanos.sum();
+    }
+
+    public long getOffMaxLatencyNanos() {
+        return this.offMaxLatencyNanos.get();
+    }
+
+    public long getShadowCalls() {
+        return this.shadowCalls.sum();
+    }
+
+    public long getShadowFailures() {
+        return this.shadowFailures.sum();
+    }
+
+    public long getShadowLatencyNanos() {
+        return this.shadowLatencyNanos.sum();
+    }
+
+    public long getShadowMatches() {
+        return this.shadowMatches.sum();
+    }
+
+    public long getShadowMismatches() {
+        return this.shadowMismatches.sum();
+    }
+
+    /**
+     * Not atomic with concurrent recordings, which may be partially kept.
+     */
+    public void reset() {
+        this.onDecisions.reset();
+        this.offDecisions.reset();
+        this.parameterRejections.reset();
+        this.probabilisticRejections.reset();
+        this.onCalls.reset();
+        this.onLatencyNanos.reset();
+        this.onMaxLatencyNanos.reset();
+        this.offCalls.reset();
+        this.offLatencyNanos.reset();
+        this.offMaxLatencyNanos.reset();
+        this.shadowCalls.reset();
+        this.shadowFailures.reset();
+        this.shadowLatencyNanos.reset();
+        this.shadowMatches.reset();
+        this.shadowMismatches.reset();
+    }
+}
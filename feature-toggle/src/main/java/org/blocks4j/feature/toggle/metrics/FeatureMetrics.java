@@ -0,0 +1,81 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.metrics;
+
+/**
+ * Decisions and latency of the calls of one feature.
+ */
+public interface FeatureMetrics {
+
+    FeatureMetrics NONE = new FeatureMetrics() {
+        @Override
+        public void recordDecision(boolean on) {
+        }
+
+        @Override
+        public void recordParameterRejection() {
+        }
+
+        @Override
+        public void recordProbabilisticRejection() {
+        }
+
+        @Override
+        public void recordLatency(boolean on, long nanos) {
+        }
+
+        @Override
+        public void recordShadowCall(long nanos, boolean failed) {
+        }
+
+        @Override
+        public void recordShadowComparison(boolean matched) {
+        }
+    };
+
+    /**
+     * A call was routed to the implementation of the feature ({@code on}) or to the alternative one.
+     */
+    void recordDecision(boolean on);
+
+    /**
+     * The feature was enabled, but a call was routed to the alternative implementation by a parameter toggle.
+     */
+    void recordParameterRejection();
+
+    /**
+     * The feature was enabled, but a call was routed to the alternative implementation by its probability.
+     */
+    void recordProbabilisticRejection();
+
+    /**
+     * Duration of a call delegated to the implementation of the feature ({@code on}) or to the alternative one.
+     */
+    void recordLatency(boolean on, long nanos);
+
+    /**
+     * Duration of a call to the alternative implementation run in the shadow of a call served by the feature, until
+     * it returned, threw or, for an asynchronous result, completed.
+     */
+    void recordShadowCall(long nanos, boolean failed);
+
+    /**
+     * The outcome of a shadow call was compared with the one served to the caller.
+     */
+    void recordShadowComparison(boolean matched);
+}
@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Counts the decisions of each feature and exposes them as an MXBean named
+ * {@code org.blocks4j.feature.toggle:type=FeatureMetrics,feature=<featureName>}.
+ */
+public class JmxFeatureToggleMetrics extends CountingFeatureToggleMetrics implements Closeable {
+
+    public static final String DOMAIN = "org.blocks4j.feature.toggle";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JmxFeatureToggleMetrics.class);
+
+    private final MBeanServer mBeanServer;
+    private final ConcurrentLinkedQueue<ObjectName> registeredNames = new ConcurrentLinkedQueue<ObjectName>();
+
+    public JmxFeatureToggleMetrics() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxFeatureToggleMetrics(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    @Override
+    protected FeatureCounters createCounters(String featureName) {
+        return new JmxFeatureCounters(featureName);
+    }
+
+    @Override
+    protected void onCountersCreated(FeatureCounters featureCounters) {
+        try {
+            ObjectName name = objectName(featureCounters.getFeatureName());
+            this.mBeanServer.registerMBean(featureCounters, name);
+            this.registeredNames.add(name);
+        } catch (JMException e) {
+            LOGGER.warn(String.format("Couldn't register the metrics of the feature [%s] in JMX", featureCounters.getFeatureName()), e);
+        }
+    }
+
+    public static ObjectName objectName(String featureName) throws JMException {
+        return new ObjectName(String.format("%s:type=FeatureMetrics,feature=%s", DOMAIN, ObjectName.quote(featureName)));
+    }
+
+    /**
+     * Unregisters the MXBeans; counting goes on.
+     */
+    @Override
+    public void close() {
+        ObjectName name;
+        while ((name = this.registeredNames.poll()) != null) {
+            try {
+                this.mBeanServer.unregisterMBean(name);
+            } catch (JMException e) {
+                LOGGER.warn(String.format("Couldn't unregister [%s] from JMX", name), e);
+            }
+        }
+    }
+
+    private static final class JmxFeatureCounters extends FeatureCounters implements FeatureCountersMXBean {
+
+        private JmxFeatureCounters(String featureName) {
+            super(featureName);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the decisions of each feature and publishes them to a Micrometer {@link MeterRegistry}.
+ * <p>
+ * The meters read the striped counters when the registry is scraped, so the hot path is the same as the one of
+ * {@link CountingFeatureToggleMetrics}. Requires {@code io.micrometer:micrometer-core} on the classpath.
+ */
+public class MicrometerFeatureToggleMetrics extends CountingFeatureToggleMetrics {
+
+    public static final String DECISIONS = "feature.toggle.decisions";
+    public static final String REJECTIONS = "feature.toggle.rejections";
+    public static final String CALLS = "feature.toggle.calls";
+    public static final String SHADOW_FAILURES = "feature.toggle.shadow.failures";
+    public static final String SHADOW_COMPARISONS = "feature.toggle.shadow.comparisons";
+
+    private final MeterRegistry registry;
+
+    public MicrometerFeatureToggleMetrics(MeterRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry");
+        }
+        this.registry = registry;
+    }
+
+    @Override
+    protected void onCountersCreated(final FeatureCounters counters) {
+        Tags feature = Tags.of("feature", counters.getFeatureName());
+
+        FunctionCounter.builder(DECISIONS, counters, FeatureCounters::getOnDecisions)
+                .tags(feature).tag("state", "on")
+                .register(this.registry);
+        FunctionCounter.builder(DECISIONS, counters, FeatureCounters::getOffDecisions)
+                .tags(feature).tag("state", "off")
+                .register(this.registry);
+
+        FunctionCounter.builder(REJECTIONS, counters, FeatureCounters::getParameterRejections)
+                .tags(feature).tag("reason", "parameter")
+                .register(this.registry);
+        FunctionCounter.builder(REJECTIONS, counters, FeatureCounters::getProbabilisticRejections)
+                .tags(feature).tag("reason", "probability")
+                .register(this.registry);
+
+        FunctionTimer.builder(CALLS, counters, FeatureCounters::getOnCalls, FeatureCounters::getOnLatencyNanos, TimeUnit.NANOSECONDS)
+                .tags(feature).tag("state", "on")
+                .register(this.registry);
+        FunctionTimer.builder(CALLS, counters, FeatureCounters::getOffCalls, FeatureCounters::getOffLatencyNanos, TimeUnit.NANOSECONDS)
+                .tags(feature).tag("state", "off")
+                .register(this.registry);
+        FunctionTimer.builder(CALLS, counters, FeatureCounters::getShadowCalls, FeatureCounters::getShadowLatencyNanos, TimeUnit.NANOSECONDS)
+                .tags(feature).tag("state", "shadow")
+                .register(this.registry);
+        FunctionCounter.builder(SHADOW_FAILURES, counters, FeatureCounters::getShadowFailures)
+                .tags(feature)
+                .register(this.registry);
+        FunctionCounter.builder(SHADOW_COMPARISONS, counters, FeatureCounters::getShadowMatches)
+                .tags(feature).tag("result", "match")
+                .register(this.registry);
+        FunctionCounter.builder(SHADOW_COMPARISONS, counters, FeatureCounters::getShadowMismatches)
+                .tags(feature).tag("result", "mismatch")
+                .register(this.registry);
+    }
+}
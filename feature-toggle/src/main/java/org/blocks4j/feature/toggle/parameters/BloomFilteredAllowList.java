@@ -0,0 +1,101 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.nio.LongBuffer;
+import java.util.PrimitiveIterator;
+
+/**
+ * Checks a Bloom filter before the list: a value missing from the filter is rejected after a few bit tests, without
+ * searching the list. Only values the filter can't rule out reach it.
+ * <p>
+ * The bits are read from a buffer so a filter written in a {@link org.blocks4j.feature.toggle.file.BinarySnapshotFile}
+ * is used where it is mapped; their layout and hashing are part of that format.
+ */
+final class BloomFilteredAllowList extends LongAllowList {
+
+    private static final int HASHES = 3;
+    private static final int MAX_WORDS = 1 << 24;
+
+    private final LongAllowList list;
+    private final LongBuffer bits;
+    private final int mask;
+
+    BloomFilteredAllowList(LongAllowList list, LongBuffer bits) {
+        int words = bits.remaining();
+        if ((words == 0) || (words > MAX_WORDS) || (Integer.bitCount(words) != 1)) {
+            throw new IllegalArgumentException("The Bloom filter must have a power of 2 words.");
+        }
+        this.list = list;
+        this.bits = bits.slice();
+        this.mask = (words << 6) - 1;
+    }
+
+    static long[] bitsOf(long[] values, int bitsPerValue) {
+        long wantedBits = Math.max(64L, (long) values.length * bitsPerValue);
+        int bitCount = (int) Math.min((long) MAX_WORDS << 6, Long.highestOneBit(wantedBits - 1) << 1);
+        long[] bits = new long[bitCount >>> 6];
+        int mask = bitCount - 1;
+        for (long value : values) {
+            long hash = mix(value);
+            int first = (int) hash;
+            int second = (int) (hash >>> 32) | 1;
+            for (int index = 0; index < HASHES; index++) {
+                int bit = (first + (index * second)) & mask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return bits;
+    }
+
+    @Override
+    public boolean contains(long value) {
+        long hash = mix(value);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32) | 1;
+        for (int index = 0; index < HASHES; index++) {
+            int bit = (first + (index * second)) & this.mask;
+            if ((this.bits.get(bit >>> 6) & (1L << bit)) == 0L) {
+                return false;
+            }
+        }
+        return this.list.contains(value);
+    }
+
+    private static long mix(long value) {
+        long hash = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    @Override
+    public int size() {
+        return this.list.size();
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long bitsSize = this.bits.isDirect() ? 48L : 48L + arraySizeInBytes(this.bits.limit(), Long.BYTES);
+        return 24L + bitsSize + this.list.sizeInBytes();
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return this.list.iterator();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import org.blocks4j.feature.toggle.domain.TogglableParameter;
+
+import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parameter toggles of a feature resolved against one snapshot: only the methods with restricted parameters are kept,
+ * each with the matchers of those parameters.
+ */
+public final class CompiledParameters {
+
+    private final Map<Method, CompiledParameter[]> restrictedMethods;
+    private final Map<Method, CompiledParameter[]> restrictedItems;
+
+    CompiledParameters(Map<Method, CompiledParameter[]> restrictedMethods, Map<Method, CompiledParameter[]> restrictedItems) {
+        this.restrictedMethods = restrictedMethods;
+        this.restrictedItems = restrictedItems;
+    }
+
+    public boolean isOn(Method method, Object[] args) {
+        return this.getRejectingParameter(method, args) == null;
+    }
+
+    /**
+     * @return the first parameter of the call whose value isn't enabled, {@code null} if the call is on
+     */
+    public TogglableParameter<?> getRejectingParameter(Method method, Object[] args) {
+        if (this.restrictedMethods.isEmpty()) {
+            return null;
+        }
+
+        CompiledParameter[] restrictedParameters = this.restrictedMethods.get(method);
+        if (restrictedParameters == null) {
+            return null;
+        }
+
+        return getRejectingParameter(restrictedParameters, args);
+    }
+
+    /**
+     * Evaluates a batch of calls of the same method, looking its parameters up once.
+     *
+     * @param on where the indexes of the calls that are on get set
+     */
+    public void evaluate(Method method, List<Object[]> calls, BitSet on) {
+        int size = calls.size();
+        CompiledParameter[] restrictedParameters = this.restrictedMethods.isEmpty() ? null : this.restrictedMethods.get(method);
+        if (restrictedParameters == null) {
+            on.set(0, size);
+            return;
+        }
+
+        for (int index = 0; index < size; index++) {
+            Object[] args = calls.get(index);
+            if ((args == null) || (getRejectingParameter(restrictedParameters, args) == null)) {
+                on.set(index);
+            }
+        }
+    }
+
+    /**
+     * @param items the items of the {@link PartitionedParameter partitioned argument} of the call
+     * @return the positions of the items that are on
+     */
+    public BitSet partition(Method method, List<Object> items) {
+        int size = items.size();
+        BitSet on = new BitSet(size);
+        CompiledParameter[] restrictedItemParameters = this.restrictedItems.isEmpty() ? null : this.restrictedItems.get(method);
+        if (restrictedItemParameters == null) {
+            on.set(0, size);
+            return on;
+        }
+
+        for (int position = 0; position < size; position++) {
+            if (isItemOn(restrictedItemParameters, items.get(position))) {
+                on.set(position);
+            }
+        }
+        return on;
+    }
+
+    private static boolean isItemOn(CompiledParameter[] restrictedItemParameters, Object item) {
+        for (CompiledParameter restrictedItemParameter : restrictedItemParameters) {
+            if (!restrictedItemParameter.matcher.matches(ParametersToggleHandler.getTogglableParameterValue(restrictedItemParameter.parameter, item))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static TogglableParameter<?> getRejectingParameter(CompiledParameter[] restrictedParameters, Object[] args) {
+        for (CompiledParameter restrictedParameter : restrictedParameters) {
+            TogglableParameter<?> parameter = restrictedParameter.parameter;
+            if (!restrictedParameter.matcher.matches(ParametersToggleHandler.getTogglableParameterValue(parameter, args[parameter.getIndex()]))) {
+                return parameter;
+            }
+        }
+
+        return null;
+    }
+
+    static final class CompiledParameter {
+
+        private final TogglableParameter<?> parameter;
+        private final ParameterMatcher matcher;
+
+        CompiledParameter(TogglableParameter<?> parameter, ParameterMatcher matcher) {
+            this.parameter = parameter;
+            this.matcher = matcher;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import org.blocks4j.feature.toggle.domain.ParameterAccessor;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Toggle metadata of a common interface, generated at compile time by the annotation processor of
+ * feature-toggle-processor. When it is present, the handlers of the interface read it instead of scanning the
+ * interface and its argument types by reflection.
+ */
+public interface GeneratedToggleMetadata {
+
+    void describe(Table table) throws ReflectiveOperationException;
+
+    /**
+     * Collects the methods of the interface with togglable parameters, each followed by its parameters in the order
+     * they are checked.
+     */
+    interface Table {
+
+        Table method(Method method);
+
+        /**
+         * A parameter toggled by its value.
+         */
+        Table parameter(int index, String id, Class<?> type);
+
+        /**
+         * @param accessor reads the field from the argument, {@code null} if the generated code can't access it
+         */
+        Table field(int index, String id, Field field, ParameterAccessor accessor);
+
+        /**
+         * @param accessor calls the method on the argument, {@code null} if the generated code can't access it
+         */
+        Table getter(int index, String id, Method getter, ParameterAccessor accessor);
+
+        /**
+         * The method has a collection or array argument whose items carry togglable parameters.
+         */
+        Table partitioned();
+    }
+}
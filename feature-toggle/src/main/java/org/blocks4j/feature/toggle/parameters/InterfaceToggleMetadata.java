@@ -0,0 +1,224 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import org.blocks4j.feature.toggle.annotation.processing.GeneratedClasses;
+import org.blocks4j.feature.toggle.domain.ParameterAccessor;
+import org.blocks4j.feature.toggle.domain.TogglableParameter;
+import org.blocks4j.feature.toggle.exception.ParamtersToggleFactoryException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The togglable parameters of the methods of an interface, inherited ones included. They are found once per interface
+ * and shared by every handler and proxy of it; the cache lives as long as the interface is loaded.
+ * <p>
+ * They are read from the {@link GeneratedToggleMetadata} of the interface when the annotation processor generated it,
+ * and found by reflection otherwise. The items of collection and array arguments are only scanned once a partitioned
+ * feature asks for them.
+ */
+final class InterfaceToggleMetadata {
+
+    private static final ClassValue<InterfaceToggleMetadata> METADATA = new ClassValue<InterfaceToggleMetadata>() {
+        @Override
+        protected InterfaceToggleMetadata computeValue(Class<?> type) {
+            return new InterfaceToggleMetadata(type);
+        }
+    };
+
+    private final Map<Method, List<TogglableParameter<?>>> togglableParameters;
+    private final List<Method> partitionableMethods;
+    // scanned on the first request; a concurrent request scans again and gets the same result
+    private volatile Map<Method, PartitionedParameter> partitionableParameters;
+
+    private InterfaceToggleMetadata(Class<?> commonInterface) {
+        Map<Method, List<TogglableParameter<?>>> togglableParameters = new HashMap<Method, List<TogglableParameter<?>>>();
+        List<Method> partitionableMethods = new ArrayList<Method>();
+        GeneratedToggleMetadata generated = loadGenerated(commonInterface);
+        if (generated == null) {
+            scan(commonInterface, togglableParameters, partitionableMethods);
+        } else {
+            try {
+                generated.describe(new GeneratedTable(togglableParameters, partitionableMethods));
+            } catch (ReflectiveOperationException e) {
+                throw new ParamtersToggleFactoryException(String.format("The generated toggle metadata of [%s] is out of date", commonInterface), e);
+            }
+        }
+        this.togglableParameters = Collections.unmodifiableMap(togglableParameters);
+        this.partitionableMethods = Collections.unmodifiableList(partitionableMethods);
+    }
+
+    private static GeneratedToggleMetadata loadGenerated(Class<?> commonInterface) {
+        Class<?> generated;
+        try {
+            generated = Class.forName(GeneratedClasses.getMetadataClassName(commonInterface.getName()), true, commonInterface.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        try {
+            return (GeneratedToggleMetadata) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new ParamtersToggleFactoryException(String.format("Error on loading the generated toggle metadata [%s]", generated), e);
+        }
+    }
+
+    private static void scan(Class<?> commonInterface, Map<Method, List<TogglableParameter<?>>> togglableParameters, List<Method> partitionableMethods) {
+        for (Method method : commonInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+
+            Collection<TogglableParameter<?>> methodParameters = ParametersToggleHandler.extractTogglableParameters(method);
+            if (!methodParameters.isEmpty()) {
+                togglableParameters.put(method, Collections.unmodifiableList(new ArrayList<TogglableParameter<?>>(methodParameters)));
+            }
+
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                if (PartitionedParameter.isPartitionable(parameterType)) {
+                    partitionableMethods.add(method);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a parameter toggle of the interface is misplaced
+     */
+    static InterfaceToggleMetadata forInterface(Class<?> commonInterface) {
+        return METADATA.get(commonInterface);
+    }
+
+    boolean isTogglable(Method method) {
+        return this.togglableParameters.containsKey(method);
+    }
+
+    /**
+     * @return the togglable parameters of the method, {@code null} if it has none
+     */
+    List<TogglableParameter<?>> getTogglableParameters(Method method) {
+        return this.togglableParameters.get(method);
+    }
+
+    Map<Method, List<TogglableParameter<?>>> getTogglableParameters() {
+        return this.togglableParameters;
+    }
+
+    /**
+     * The methods with a collection or array argument, whose items may carry togglable parameters.
+     */
+    List<Method> getPartitionableMethods() {
+        return this.partitionableMethods;
+    }
+
+    /**
+     * @return the argument of the method whose items carry togglable parameters, {@code null} if it has none
+     */
+    PartitionedParameter getPartitionableParameter(Method method) {
+        return this.getPartitionableParameters().get(method);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a parameter toggle of the items is misplaced, or several arguments of a
+     *                                  method carry them
+     */
+    Map<Method, PartitionedParameter> getPartitionableParameters() {
+        Map<Method, PartitionedParameter> partitionableParameters = this.partitionableParameters;
+        if (partitionableParameters == null) {
+            partitionableParameters = new HashMap<Method, PartitionedParameter>();
+            for (Method method : this.partitionableMethods) {
+                PartitionedParameter partitionableParameter = ParametersToggleHandler.extractPartitionedParameter(method);
+                if (partitionableParameter != null) {
+                    partitionableParameters.put(method, partitionableParameter);
+                }
+            }
+            partitionableParameters = Collections.unmodifiableMap(partitionableParameters);
+            this.partitionableParameters = partitionableParameters;
+        }
+        return partitionableParameters;
+    }
+
+    private static final class GeneratedTable implements GeneratedToggleMetadata.Table {
+
+        private final Map<Method, List<TogglableParameter<?>>> togglableParameters;
+        private final List<Method> partitionableMethods;
+        private Method method;
+
+        private GeneratedTable(Map<Method, List<TogglableParameter<?>>> togglableParameters, List<Method> partitionableMethods) {
+            this.togglableParameters = togglableParameters;
+            this.partitionableMethods = partitionableMethods;
+        }
+
+        @Override
+        public GeneratedToggleMetadata.Table method(Method method) {
+            this.method = method;
+            return this;
+        }
+
+        @Override
+        public GeneratedToggleMetadata.Table parameter(int index, String id, Class<?> type) {
+            return this.add(TogglableParameter.createTogglableParameter(index, id, type));
+        }
+
+        @Override
+        public GeneratedToggleMetadata.Table field(int index, String id, Field field, ParameterAccessor accessor) {
+            if (accessor != null) {
+                return this.add(TogglableParameter.createTogglableParameter(index, id, field, accessor));
+            }
+            field.setAccessible(true);
+            return this.add(TogglableParameter.createTogglableParameter(index, id, field));
+        }
+
+        @Override
+        public GeneratedToggleMetadata.Table getter(int index, String id, Method getter, ParameterAccessor accessor) {
+            if (accessor != null) {
+                return this.add(TogglableParameter.createTogglableParameter(index, id, getter, accessor));
+            }
+            getter.setAccessible(true);
+            return this.add(TogglableParameter.createTogglableParameter(index, id, getter));
+        }
+
+        /**
+         * The items of the argument are still found by reflection, on this method only.
+         */
+        @Override
+        public GeneratedToggleMetadata.Table partitioned() {
+            this.partitionableMethods.add(this.method);
+            return this;
+        }
+
+        private GeneratedToggleMetadata.Table add(TogglableParameter<?> togglableParameter) {
+            List<TogglableParameter<?>> methodParameters = this.togglableParameters.get(this.method);
+            if (methodParameters == null) {
+                methodParameters = new ArrayList<TogglableParameter<?>>();
+                this.togglableParameters.put(this.method, methodParameters);
+            }
+            methodParameters.add(togglableParameter);
+            return this;
+        }
+    }
+}
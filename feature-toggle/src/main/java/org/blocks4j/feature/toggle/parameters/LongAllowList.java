@@ -0,0 +1,163 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * Read-only set of the enabled values of an integral parameter, laid out for its size and density:
+ * <ul>
+ * <li>small lists are hashed, for constant time lookups;</li>
+ * <li>large lists are kept as a compressed bitmap, down to a bit per value for dense id ranges and 2 bytes per value
+ * for ids sharing their high bits;</li>
+ * <li>lists too sparse for it are kept as a sorted {@code long[]} searched in binary, at 8 bytes per value.</li>
+ * </ul>
+ * Values that lookups search in binary are put behind a Bloom filter, about a byte more per value, that turns most of
+ * the disabled values away without searching.
+ */
+public abstract class LongAllowList {
+
+    /**
+     * Up to this size, lists are hashed: the table costs 16 to 32 bytes per value, but few values make it cheap.
+     */
+    static final int MAX_HASHED_SIZE = 4096;
+
+    private static final int BITS_PER_BLOOM_VALUE = 10;
+
+    LongAllowList() {
+    }
+
+    /**
+     * Lays the values out in the smallest structure for them.
+     */
+    public static LongAllowList compile(long[] values) {
+        if (values.length <= MAX_HASHED_SIZE) {
+            return new LongHashSet(values);
+        }
+
+        long[] sorted = sortDistinct(values);
+        if (LongBitmap.estimateSizeInBytes(sorted) < SortedLongArray.estimateSizeInBytes(sorted)) {
+            LongBitmap bitmap = new LongBitmap(sorted);
+            return bitmap.isMostlySearched() ? withBloomFilter(bitmap, sorted) : bitmap;
+        }
+        return withBloomFilter(new SortedLongArray(sorted), sorted);
+    }
+
+    public static LongAllowList hashed(long[] values) {
+        return new LongHashSet(values);
+    }
+
+    public static LongAllowList sortedArray(long[] values, boolean bloomFilter) {
+        long[] sorted = sortDistinct(values);
+        LongAllowList array = new SortedLongArray(sorted);
+        return bloomFilter ? withBloomFilter(array, sorted) : array;
+    }
+
+    private static LongAllowList withBloomFilter(LongAllowList list, long[] values) {
+        return new BloomFilteredAllowList(list, LongBuffer.wrap(bloomFilterOf(values)));
+    }
+
+    /**
+     * Bits of the Bloom filter of {@code values}, to be written along with them.
+     */
+    public static long[] bloomFilterOf(long[] values) {
+        return BloomFilteredAllowList.bitsOf(values, BITS_PER_BLOOM_VALUE);
+    }
+
+    /**
+     * Puts {@code list} behind the Bloom filter {@link #bloomFilterOf made of its values}, read where it is.
+     */
+    public static LongAllowList bloomFiltered(LongAllowList list, LongBuffer bloomFilter) {
+        return new BloomFilteredAllowList(list, bloomFilter);
+    }
+
+    public static LongAllowList bitmap(long[] values) {
+        return new LongBitmap(sortDistinct(values));
+    }
+
+    /**
+     * View of sorted distinct values, searched in binary where they are: a memory-mapped buffer isn't copied onto the
+     * heap. One value in {@value SortedLongBuffer#FENCE_STRIDE} is kept on the heap to narrow the search down to a
+     * page of the buffer.
+     */
+    public static LongAllowList sortedBuffer(LongBuffer sortedDistinctValues) {
+        return new SortedLongBuffer(sortedDistinctValues);
+    }
+
+    public abstract boolean contains(long value);
+
+    public abstract int size();
+
+    /**
+     * @return the estimated heap retained by the list
+     */
+    public abstract long sizeInBytes();
+
+    public abstract PrimitiveIterator.OfLong iterator();
+
+    /**
+     * Whether {@code value} is the String representation of a long ({@code Long.toString}), so it can be matched
+     * as one: no sign but a minus, no leading zeros, no {@code "-0"}, in range.
+     */
+    public static boolean isCanonical(String value) {
+        int length = value.length();
+        int start = ((length > 1) && (value.charAt(0) == '-')) ? 1 : 0;
+        int digits = length - start;
+        if ((digits == 0) || (digits > 19)) {
+            return false;
+        }
+        if ((value.charAt(start) == '0') && ((digits > 1) || (start == 1))) {
+            return false;
+        }
+        for (int index = start; index < length; index++) {
+            char character = value.charAt(index);
+            if ((character < '0') || (character > '9')) {
+                return false;
+            }
+        }
+        if (digits < 19) {
+            return true;
+        }
+        String limit = (start == 1) ? "9223372036854775808" : "9223372036854775807";
+        for (int index = 0; index < 19; index++) {
+            int difference = value.charAt(start + index) - limit.charAt(index);
+            if (difference != 0) {
+                return difference < 0;
+            }
+        }
+        return true;
+    }
+
+    static long[] sortDistinct(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int index = 0; index < sorted.length; index++) {
+            if ((count == 0) || (sorted[count - 1] != sorted[index])) {
+                sorted[count++] = sorted[index];
+            }
+        }
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+
+    static long arraySizeInBytes(int length, int elementBytes) {
+        return 16L + ((((long) length * elementBytes) + 7L) & ~7L);
+    }
+}
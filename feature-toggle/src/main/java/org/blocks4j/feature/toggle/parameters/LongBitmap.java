@@ -0,0 +1,232 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Compressed bitmap, in the manner of Roaring bitmaps: values are grouped in chunks sharing their high 48 bits, and
+ * each chunk keeps its low 16 bits either as a sorted {@code char[]} (up to {@value #MAX_ARRAY_SIZE} values, 2 bytes
+ * each) or as a 65536 bit bitmap (8 KB) when it's denser. Chunks are found through a hash index of their high bits,
+ * so sparse lists with many chunks aren't searched in binary.
+ */
+final class LongBitmap extends LongAllowList {
+
+    private static final int MAX_ARRAY_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final long[] keys;
+    private final char[][] arrays;
+    private final long[][] bitmaps;
+    private final int[] index;
+    private final int mask;
+    private final int size;
+    private final int searchedSize;
+
+    LongBitmap(long[] sortedDistinctValues) {
+        int chunks = countChunks(sortedDistinctValues);
+        this.keys = new long[chunks];
+        this.arrays = new char[chunks][];
+        this.bitmaps = new long[chunks][];
+        this.size = sortedDistinctValues.length;
+
+        int chunk = 0;
+        int start = 0;
+        int searched = 0;
+        while (start < sortedDistinctValues.length) {
+            long key = sortedDistinctValues[start] >> 16;
+            int end = start;
+            while ((end < sortedDistinctValues.length) && ((sortedDistinctValues[end] >> 16) == key)) {
+                end++;
+            }
+            this.keys[chunk] = key;
+            if ((end - start) <= MAX_ARRAY_SIZE) {
+                char[] array = new char[end - start];
+                for (int index = start; index < end; index++) {
+                    array[index - start] = (char) sortedDistinctValues[index];
+                }
+                this.arrays[chunk] = array;
+                searched += array.length;
+            } else {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (int index = start; index < end; index++) {
+                    char low = (char) sortedDistinctValues[index];
+                    bitmap[low >>> 6] |= 1L << low;
+                }
+                this.bitmaps[chunk] = bitmap;
+            }
+            chunk++;
+            start = end;
+        }
+        this.searchedSize = searched;
+
+        int capacity = indexCapacity(chunks);
+        this.index = new int[capacity];
+        this.mask = capacity - 1;
+        for (chunk = 0; chunk < chunks; chunk++) {
+            int slot = slotOf(this.keys[chunk]) & this.mask;
+            while (this.index[slot] != 0) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.index[slot] = chunk + 1;
+        }
+    }
+
+    private static int indexCapacity(int chunks) {
+        return Integer.highestOneBit(Math.max(2, chunks) * 2 - 1) << 1;
+    }
+
+    private static int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static int countChunks(long[] sortedDistinctValues) {
+        int chunks = 0;
+        for (int index = 0; index < sortedDistinctValues.length; index++) {
+            if ((index == 0) || ((sortedDistinctValues[index] >> 16) != (sortedDistinctValues[index - 1] >> 16))) {
+                chunks++;
+            }
+        }
+        return chunks;
+    }
+
+    static long estimateSizeInBytes(long[] sortedDistinctValues) {
+        long size = 0L;
+        int chunks = 0;
+        int start = 0;
+        while (start < sortedDistinctValues.length) {
+            long key = sortedDistinctValues[start] >> 16;
+            int end = start;
+            while ((end < sortedDistinctValues.length) && ((sortedDistinctValues[end] >> 16) == key)) {
+                end++;
+            }
+            size += ((end - start) <= MAX_ARRAY_SIZE) ? arraySizeInBytes(end - start, Character.BYTES) : arraySizeInBytes(BITMAP_WORDS, Long.BYTES);
+            chunks++;
+            start = end;
+        }
+        return size + containersSizeInBytes(chunks);
+    }
+
+    private static long containersSizeInBytes(int chunks) {
+        return 40L + arraySizeInBytes(chunks, Long.BYTES) + (2L * arraySizeInBytes(chunks, 4)) + arraySizeInBytes(indexCapacity(chunks), Integer.BYTES);
+    }
+
+    @Override
+    public boolean contains(long value) {
+        int chunk = this.chunkOf(value >> 16);
+        if (chunk < 0) {
+            return false;
+        }
+        char low = (char) value;
+        long[] bitmap = this.bitmaps[chunk];
+        if (bitmap != null) {
+            return (bitmap[low >>> 6] & (1L << low)) != 0L;
+        }
+        return Arrays.binarySearch(this.arrays[chunk], low) >= 0;
+    }
+
+    /**
+     * Whether most values are kept in sorted arrays, which lookups search in binary, rather than in bitmaps.
+     */
+    boolean isMostlySearched() {
+        return this.searchedSize > (this.size / 2);
+    }
+
+    private int chunkOf(long key) {
+        int slot = slotOf(key) & this.mask;
+        int entry;
+        while ((entry = this.index[slot]) != 0) {
+            if (this.keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        long size = containersSizeInBytes(this.keys.length);
+        for (int chunk = 0; chunk < this.keys.length; chunk++) {
+            size += (this.bitmaps[chunk] != null) ? arraySizeInBytes(BITMAP_WORDS, Long.BYTES) : arraySizeInBytes(this.arrays[chunk].length, Character.BYTES);
+        }
+        return size;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private int chunk;
+            private int position;
+            private long word;
+            private boolean loaded;
+
+            @Override
+            public boolean hasNext() {
+                while (this.chunk < LongBitmap.this.keys.length) {
+                    long[] bitmap = LongBitmap.this.bitmaps[this.chunk];
+                    if (bitmap == null) {
+                        if (this.position < LongBitmap.this.arrays[this.chunk].length) {
+                            return true;
+                        }
+                    } else {
+                        if (!this.loaded && (this.position < BITMAP_WORDS)) {
+                            this.word = bitmap[this.position];
+                            this.loaded = true;
+                        }
+                        if (this.word != 0L) {
+                            return true;
+                        }
+                        if (this.position < BITMAP_WORDS - 1) {
+                            this.position++;
+                            this.loaded = false;
+                            continue;
+                        }
+                    }
+                    this.chunk++;
+                    this.position = 0;
+                    this.loaded = false;
+                }
+                return false;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long high = LongBitmap.this.keys[this.chunk] << 16;
+                if (LongBitmap.this.bitmaps[this.chunk] == null) {
+                    return high | LongBitmap.this.arrays[this.chunk][this.position++];
+                }
+                int bit = Long.numberOfTrailingZeros(this.word);
+                this.word &= this.word - 1;
+                return high | ((this.position << 6) + bit);
+            }
+        };
+    }
+}
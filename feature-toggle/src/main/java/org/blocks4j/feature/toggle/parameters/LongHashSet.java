@@ -0,0 +1,125 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Read-only open addressing set of primitive longs. No boxing on lookups.
+ */
+final class LongHashSet extends LongAllowList {
+
+    private static final long FREE = 0L;
+
+    private final long[] table;
+    private final int mask;
+    private final boolean containsFree;
+    private final int size;
+
+    LongHashSet(long[] values) {
+        int capacity = Integer.highestOneBit(Math.max(2, values.length) * 2 - 1) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+
+        boolean free = false;
+        int count = 0;
+        for (long value : values) {
+            if (value == FREE) {
+                free = true;
+            } else if (this.insert(value)) {
+                count++;
+            }
+        }
+        this.containsFree = free;
+        this.size = free ? count + 1 : count;
+    }
+
+    private boolean insert(long value) {
+        int index = this.indexOf(value);
+        while (this.table[index] != FREE) {
+            if (this.table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & this.mask;
+        }
+        this.table[index] = value;
+        return true;
+    }
+
+    @Override
+    public boolean contains(long value) {
+        if (value == FREE) {
+            return this.containsFree;
+        }
+        int index = this.indexOf(value);
+        long current;
+        while ((current = this.table[index]) != FREE) {
+            if (current == value) {
+                return true;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return 24L + arraySizeInBytes(this.table.length, Long.BYTES);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private int index = LongHashSet.this.containsFree ? -1 : 0;
+
+            @Override
+            public boolean hasNext() {
+                if (this.index < 0) {
+                    return true;
+                }
+                while ((this.index < LongHashSet.this.table.length) && (LongHashSet.this.table[this.index] == FREE)) {
+                    this.index++;
+                }
+                return this.index < LongHashSet.this.table.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (this.index < 0) {
+                    this.index = 0;
+                    return FREE;
+                }
+                return LongHashSet.this.table[this.index++];
+            }
+        };
+    }
+
+    private int indexOf(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+}
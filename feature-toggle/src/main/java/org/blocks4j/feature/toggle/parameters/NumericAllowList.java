@@ -0,0 +1,141 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Read-only set of numeric String values, kept as a {@link LongAllowList} instead of Strings. A value is in the set
+ * when it is the String representation of one of the longs, so the set is equal to the Strings it was made of.
+ * Contains checks parse the value without allocating.
+ */
+public final class NumericAllowList extends AbstractSet<String> {
+
+    /**
+     * Below this size, a set of Strings costs little and matches a String value without parsing it.
+     */
+    public static final int MIN_SIZE = LongAllowList.MAX_HASHED_SIZE;
+
+    private final LongAllowList longs;
+
+    private NumericAllowList(LongAllowList longs) {
+        this.longs = longs;
+    }
+
+    /**
+     * @return the values as a numeric allow list, {@code null} when there are fewer than {@link #MIN_SIZE} or any of
+     * them isn't the String representation of a long
+     */
+    public static NumericAllowList of(Collection<String> values) {
+        if (values.size() < MIN_SIZE) {
+            return null;
+        }
+        long[] longs = new long[values.size()];
+        int count = 0;
+        for (String value : values) {
+            if ((value == null) || !LongAllowList.isCanonical(value)) {
+                return null;
+            }
+            longs[count++] = Long.parseLong(value);
+        }
+        return new NumericAllowList(LongAllowList.compile(longs));
+    }
+
+    public static NumericAllowList of(LongAllowList longs) {
+        return new NumericAllowList(longs);
+    }
+
+    /**
+     * Lays these values out again with {@code added} and without {@code removed}, without going through their Strings.
+     *
+     * @return the changed values, {@code null} when any added value isn't the String representation of a long
+     */
+    public NumericAllowList with(Collection<String> added, Collection<String> removed) {
+        long[] addedLongs = new long[added.size()];
+        int addedCount = 0;
+        for (String value : added) {
+            if ((value == null) || !LongAllowList.isCanonical(value)) {
+                return null;
+            }
+            addedLongs[addedCount++] = Long.parseLong(value);
+        }
+
+        long[] removedLongs = new long[removed.size()];
+        int removedCount = 0;
+        for (String value : removed) {
+            if ((value != null) && LongAllowList.isCanonical(value)) {
+                removedLongs[removedCount++] = Long.parseLong(value);
+            }
+        }
+        LongAllowList removedValues = LongAllowList.hashed(Arrays.copyOf(removedLongs, removedCount));
+
+        long[] longs = new long[this.longs.size() + addedCount];
+        int count = 0;
+        for (PrimitiveIterator.OfLong iterator = this.longs.iterator(); iterator.hasNext(); ) {
+            long value = iterator.nextLong();
+            if (!removedValues.contains(value)) {
+                longs[count++] = value;
+            }
+        }
+        System.arraycopy(addedLongs, 0, longs, count, addedCount);
+        return new NumericAllowList(LongAllowList.compile(Arrays.copyOf(longs, count + addedCount)));
+    }
+
+    public LongAllowList getLongs() {
+        return this.longs;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+        String string = (String) value;
+        return LongAllowList.isCanonical(string) && this.longs.contains(Long.parseLong(string));
+    }
+
+    @Override
+    public int size() {
+        return this.longs.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        final PrimitiveIterator.OfLong iterator = this.longs.iterator();
+        return new Iterator<String>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (!iterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return Long.toString(iterator.nextLong());
+            }
+        };
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.parameters;
+
+import com.google.common.primitives.Primitives;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compiles the configured values of a parameter into a matcher specialized for the parameter's type, so matching
+ * neither converts the value to a String nor allocates.
+ * <p>
+ * Matching is equivalent to checking {@code String.valueOf(value)} against the configured values: numbers only match
+ * their canonical representation ({@code "7"}, never {@code "07"}) and enums match through {@code toString()}.
+ * Integral values are kept in a {@link LongAllowList} laid out for their number and density.
+ */
+public final class ParameterMatchers {
+
+    private static final String NULL = String.valueOf((Object) null);
+
+    private ParameterMatchers() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static ParameterMatcher compile(Class<?> valueType, Collection<String> allowedValues) {
+        Set<String> values = (allowedValues instanceof Set) ? (Set<String>) allowedValues : new HashSet<String>(allowedValues);
+        Class<?> type = Primitives.wrap(valueType);
+
+        if ((type == Long.class) || (type == Integer.class) || (type == Short.class) || (type == Byte.class)) {
+            return new IntegralMatcher(values);
+        }
+        if (type == Character.class) {
+            return new CharacterMatcher(values);
+        }
+        if (type == Boolean.class) {
+            return new BooleanMatcher(values);
+        }
+        if (type.isEnum()) {
+            return new EnumMatcher(type, values);
+        }
+        return new StringMatcher(values);
+    }
+
+    /**
+     * Matches through the String representation, as values of unexpected types (or nulls) did before compilation.
+     */
+    private static class StringMatcher implements ParameterMatcher {
+
+        private final Set<String> values;
+
+        private StringMatcher(Set<String> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            if (value instanceof String) {
+                return this.values.contains(value);
+            }
+            return this.values.contains(String.valueOf(value));
+        }
+    }
+
+    /**
+     * Keeps the numbers as a {@link LongAllowList}, reused as is from a {@link NumericAllowList}; only the other values
+     * are kept as Strings.
+     */
+    private static final class IntegralMatcher extends StringMatcher {
+
+        private final LongAllowList longs;
+
+        private IntegralMatcher(Set<String> values) {
+            this(values, (values instanceof NumericAllowList) ? ((NumericAllowList) values).getLongs() : null);
+        }
+
+        private IntegralMatcher(Set<String> values, LongAllowList longs) {
+            super((longs != null) ? Collections.<String>emptySet() : nonCanonical(values));
+            this.longs = (longs != null) ? longs : LongAllowList.compile(canonicalLongs(values));
+        }
+
+        private static long[] canonicalLongs(Set<String> values) {
+            long[] longs = new long[values.size()];
+            int count = 0;
+            for (String value : values) {
+                if ((value != null) && LongAllowList.isCanonical(value)) {
+                    longs[count++] = Long.parseLong(value);
+                }
+            }
+            return Arrays.copyOf(longs, count);
+        }
+
+        private static Set<String> nonCanonical(Set<String> values) {
+            Set<String> nonCanonical = new HashSet<String>();
+            for (String value : values) {
+                if ((value == null) || !LongAllowList.isCanonical(value)) {
+                    nonCanonical.add(value);
+                }
+            }
+            return nonCanonical;
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+                return this.longs.contains(((Number) value).longValue());
+            }
+            String representation = String.valueOf(value);
+            if (LongAllowList.isCanonical(representation)) {
+                return this.longs.contains(Long.parseLong(representation));
+            }
+            return super.matches(representation);
+        }
+    }
+
+    private static final class CharacterMatcher extends StringMatcher {
+
+        private final LongHashSet characters;
+
+        private CharacterMatcher(Set<String> values) {
+            super(values);
+            long[] characters = new long[values.size()];
+            int count = 0;
+            for (String value : values) {
+                if (value.length() == 1) {
+                    characters[count++] = value.charAt(0);
+                }
+            }
+            long[] singleCharacters = new long[count];
+            System.arraycopy(characters, 0, singleCharacters, 0, count);
+            this.characters = new LongHashSet(singleCharacters);
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            if (value instanceof Character) {
+                return this.characters.contains((Character) value);
+            }
+            return super.matches(value);
+        }
+    }
+
+    private static final class BooleanMatcher extends StringMatcher {
+
+        private final boolean matchesTrue;
+        private final boolean matchesFalse;
+
+        private BooleanMatcher(Set<String> values) {
+            super(values);
+            this.matchesTrue = values.contains(Boolean.TRUE.toString());
+            this.matchesFalse = values.contains(Boolean.FALSE.toString());
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            if (value instanceof Boolean) {
+                return ((Boolean) value) ? this.matchesTrue : this.matchesFalse;
+            }
+            return super.matches(value);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final class EnumMatcher extends StringMatcher {
+
+        private final Class<?> enumType;
+        private final EnumSet constants;
+        private final boolean matchesNull;
+
+        private EnumMatcher(Class<?> enumType, Set<String> values) {
+            super(values);
+            this.enumType = enumType;
+            this.constants = EnumSet.noneOf((Class<Enum>) enumType);
+            for (Object constant : enumType.getEnumConstants()) {
+                if (values.contains(String.valueOf(constant))) {
+                    this.constants.add(constant);
+                }
+            }
+            this.matchesNull = values.contains(NULL);
+        }
+
+        @Override
+        public boolean matches(Object value) {
+            if (value == null) {
+                return this.matchesNull;
+            }
+            if ((value instanceof Enum) && (((Enum) value).getDeclaringClass() == this.enumType)) {
+                return this.constants.contains(value);
+            }
+            return super.matches(value);
+        }
+    }
+}
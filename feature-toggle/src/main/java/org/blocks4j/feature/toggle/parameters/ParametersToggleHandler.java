@@ -18,23 +18,30 @@ package org.blocks4j.feature.toggle.parameters;
 
 import com.google.common.collect.Sets;
 import com.google.common.primitives.Primitives;
-import org.apache.commons.collections4.CollectionUtils;
 import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
 import org.blocks4j.feature.toggle.annotation.parameters.ParameterToggle;
 import org.blocks4j.feature.toggle.converter.TypeConverter;
 import org.blocks4j.feature.toggle.domain.TogglableParameter;
 import org.blocks4j.feature.toggle.exception.ParamtersToggleFactoryException;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class ParametersToggleHandler {
 
@@ -48,60 +55,279 @@ public final class ParametersToggleHandler {
                                                                                                 Boolean.class,
                                                                                                 String.class);
 
-    private FeatureToggleConfiguration config;
-    private Map<Method, List<TogglableParameter>> paramsMethodsCache = new HashMap<Method, List<TogglableParameter>>();
+    private final FeatureToggleConfiguration config;
+    private final String featureName;
+    private final InterfaceToggleMetadata metadata;
+    private final boolean partitioned;
+    // bound to the feature on the first call of each method
+    private final ConcurrentMap<Method, ResolvedTogglableParameter[]> paramsMethodsCache = new ConcurrentHashMap<Method, ResolvedTogglableParameter[]>();
+    private final ConcurrentMap<Method, ResolvedTogglableParameter[]> partitionedItemParameters = new ConcurrentHashMap<Method, ResolvedTogglableParameter[]>();
 
 
-    public ParametersToggleHandler(FeatureToggleConfiguration config, Class<?> commonInterface) {
-        this.loadParamtersTogglable(commonInterface);
+    public ParametersToggleHandler(FeatureToggleConfiguration config, Class<?> commonInterface, String featureName) {
+        this(config, commonInterface, featureName, false);
+    }
+
+    /**
+     * The interface is only scanned by the first handler of it: the others share its {@link InterfaceToggleMetadata}
+     * and bind the parameters of a method to the feature on its first call.
+     *
+     * @param partitioned whether the items of collection and array arguments are toggled one by one, see
+     *                    {@link PartitionedParameter}
+     */
+    public ParametersToggleHandler(FeatureToggleConfiguration config, Class<?> commonInterface, String featureName, boolean partitioned) {
         this.config = config;
+        this.featureName = featureName;
+        this.metadata = InterfaceToggleMetadata.forInterface(commonInterface);
+        this.partitioned = partitioned;
+        this.checkPartitionableParameters();
     }
 
-    private void loadParamtersTogglable(Class<?> commonInterface) {
-        for (Method method : commonInterface.getDeclaredMethods()) {
-            Collection<TogglableParameter<?>> togglableParameters = new ArrayList<TogglableParameter<?>>();
+    /**
+     * Only partitioned handlers scan the items of collection and array arguments.
+     */
+    private void checkPartitionableParameters() {
+        if (this.partitioned) {
+            for (PartitionedParameter partitionableParameter : this.metadata.getPartitionableParameters().values()) {
+                partitionableParameter.checkMergeable();
+            }
+            return;
+        }
 
-            this.extractAnnotatedToggleParametersOnPrimitiveMethodParameters(method, togglableParameters);
-            this.extractAnnotatedToggleParametersOnComplexMethodParameters(method, togglableParameters);
+        for (Method method : this.metadata.getPartitionableMethods()) {
+            if (hasAnnotatedPartitionableParameter(method)) {
+                throw new IllegalArgumentException("Parameter Toggle is not allowed here: " + method);
+            }
+        }
+    }
 
-            this.put(method, togglableParameters);
+    /**
+     * @return the parameters of the method bound to the feature, {@code null} if it has none
+     */
+    private ResolvedTogglableParameter[] getResolvedParameters(Method method) {
+        ResolvedTogglableParameter[] resolved = this.paramsMethodsCache.get(method);
+        if (resolved == null) {
+            List<TogglableParameter<?>> togglableParameters = this.metadata.getTogglableParameters(method);
+            if (togglableParameters == null) {
+                return null;
+            }
+            resolved = putIfAbsent(this.paramsMethodsCache, method, this.resolve(togglableParameters));
         }
+        return resolved;
     }
 
-    public boolean isOn(Method method, Object[] args, String featureName) {
-        List<TogglableParameter> togglableParameters = this.paramsMethodsCache.get(method);
-        if (CollectionUtils.isEmpty(togglableParameters)) {
-            return true;
+    /**
+     * @return the parameters of the items of the partitioned argument bound to the feature, {@code null} if it has none
+     */
+    private ResolvedTogglableParameter[] getResolvedItemParameters(Method method) {
+        ResolvedTogglableParameter[] resolved = this.partitionedItemParameters.get(method);
+        if (resolved == null) {
+            PartitionedParameter partitionedParameter = this.getPartitionedParameter(method);
+            if (partitionedParameter == null) {
+                return null;
+            }
+            resolved = putIfAbsent(this.partitionedItemParameters, method, this.resolve(partitionedParameter.getItemParameters()));
         }
+        return resolved;
+    }
 
-        for (TogglableParameter togglableParameter : togglableParameters) {
-            if (!this.isParamOn(args, featureName, togglableParameter)) {
-                return false;
+    private static ResolvedTogglableParameter[] putIfAbsent(ConcurrentMap<Method, ResolvedTogglableParameter[]> cache, Method method, ResolvedTogglableParameter[] resolved) {
+        ResolvedTogglableParameter[] concurrentlyResolved = cache.putIfAbsent(method, resolved);
+        return (concurrentlyResolved == null) ? resolved : concurrentlyResolved;
+    }
+
+    /**
+     * Computes, once, the configuration keys each parameter is looked up by, so evaluating a call builds no string.
+     */
+    private ResolvedTogglableParameter[] resolve(Collection<TogglableParameter<?>> togglableParameters) {
+        ResolvedTogglableParameter[] resolved = new ResolvedTogglableParameter[togglableParameters.size()];
+        int index = 0;
+        for (TogglableParameter<?> togglableParameter : togglableParameters) {
+            String featureParameterKey = String.format(PARAM_BY_FEATURE, this.featureName, togglableParameter.getId());
+            resolved[index++] = new ResolvedTogglableParameter(togglableParameter, featureParameterKey);
+        }
+        return resolved;
+    }
+
+    public static boolean hasTogglableParameters(Method method) {
+        return InterfaceToggleMetadata.forInterface(method.getDeclaringClass()).isTogglable(method);
+    }
+
+    /**
+     * Whether the method has an argument that partitioned features split, see {@link PartitionedParameter}.
+     */
+    public static boolean hasPartitionedParameter(Method method) {
+        return InterfaceToggleMetadata.forInterface(method.getDeclaringClass()).getPartitionableParameter(method) != null;
+    }
+
+    static Collection<TogglableParameter<?>> extractTogglableParameters(Method method) {
+        Collection<TogglableParameter<?>> togglableParameters = new ArrayList<TogglableParameter<?>>();
+
+        extractAnnotatedToggleParametersOnPrimitiveMethodParameters(method, togglableParameters);
+        extractAnnotatedToggleParametersOnComplexMethodParameters(method, togglableParameters);
+
+        return togglableParameters;
+    }
+
+    public boolean isOn(Method method, Object[] args) {
+        return this.getRejectingParameter(method, args) == null;
+    }
+
+    /**
+     * @return the first parameter of the call whose value isn't enabled, {@code null} if the call is on
+     */
+    public TogglableParameter<?> getRejectingParameter(Method method, Object[] args) {
+        ResolvedTogglableParameter[] togglableParameters = this.getResolvedParameters(method);
+        if (togglableParameters == null) {
+            return null;
+        }
+        return this.getRejectingParameter(togglableParameters, args, this.config.getEnabledParameters());
+    }
+
+    /**
+     * @return the argument of the method split between the implementations, {@code null} if there's none or the
+     * handler isn't partitioned
+     */
+    public PartitionedParameter getPartitionedParameter(Method method) {
+        return this.partitioned ? this.metadata.getPartitionableParameter(method) : null;
+    }
+
+    /**
+     * @param items the items of the {@link #getPartitionedParameter partitioned argument} of the call
+     * @return the positions of the items that are on
+     */
+    public BitSet partition(Method method, List<Object> items) {
+        int size = items.size();
+        BitSet on = new BitSet(size);
+        ResolvedTogglableParameter[] itemParameters = this.getResolvedItemParameters(method);
+        Map<String, Set<String>> enabledParameters = this.config.getEnabledParameters();
+        for (int position = 0; position < size; position++) {
+            if (this.isItemOn(items.get(position), itemParameters, enabledParameters)) {
+                on.set(position);
             }
         }
+        return on;
+    }
 
+    private boolean isItemOn(Object item, ResolvedTogglableParameter[] itemParameters, Map<String, Set<String>> enabledParameters) {
+        for (ResolvedTogglableParameter itemParameter : itemParameters) {
+            if (!this.isParamOn(item, itemParameter, enabledParameters)) {
+                return false;
+            }
+        }
         return true;
     }
 
-    private boolean isParamOn(Object[] args, String featureName, TogglableParameter togglableParameter) {
-        Collection<String> allowedParameters = this.getParamtersConfigured(togglableParameter);
+    /**
+     * The configuration keys the parameters of the feature are looked up by: a snapshot holding only their values
+     * {@link #compile compiles} as the whole configuration does.
+     */
+    public Set<String> getParameterKeys() {
+        Set<String> parameterKeys = new HashSet<String>();
+        for (Method method : this.metadata.getTogglableParameters().keySet()) {
+            addParameterKeys(this.getResolvedParameters(method), parameterKeys);
+        }
+        if (this.partitioned) {
+            for (Method method : this.metadata.getPartitionableParameters().keySet()) {
+                addParameterKeys(this.getResolvedItemParameters(method), parameterKeys);
+            }
+        }
+        return parameterKeys;
+    }
+
+    private static void addParameterKeys(ResolvedTogglableParameter[] togglableParameters, Set<String> parameterKeys) {
+        for (ResolvedTogglableParameter togglableParameter : togglableParameters) {
+            parameterKeys.add(togglableParameter.getParameterKey());
+            parameterKeys.add(togglableParameter.getFeatureParameterKey());
+        }
+    }
+
+    /**
+     * Resolves, once, the matchers of every restricted parameter in the snapshot. Evaluating a call against the result
+     * reads no configuration.
+     */
+    public CompiledParameters compile(FeatureToggleSnapshot snapshot) {
+        Map<Method, CompiledParameters.CompiledParameter[]> restrictedMethods = new HashMap<Method, CompiledParameters.CompiledParameter[]>();
+        for (Method method : this.metadata.getTogglableParameters().keySet()) {
+            compile(method, this.getResolvedParameters(method), snapshot, restrictedMethods);
+        }
+
+        Map<Method, CompiledParameters.CompiledParameter[]> restrictedItems = new HashMap<Method, CompiledParameters.CompiledParameter[]>();
+        if (this.partitioned) {
+            for (Method method : this.metadata.getPartitionableParameters().keySet()) {
+                compile(method, this.getResolvedItemParameters(method), snapshot, restrictedItems);
+            }
+        }
+        return new CompiledParameters(restrictedMethods, restrictedItems);
+    }
+
+    private static void compile(Method method, ResolvedTogglableParameter[] togglableParameters, FeatureToggleSnapshot snapshot, Map<Method, CompiledParameters.CompiledParameter[]> restrictedMethods) {
+        List<CompiledParameters.CompiledParameter> restricted = new ArrayList<CompiledParameters.CompiledParameter>();
+        for (ResolvedTogglableParameter togglableParameter : togglableParameters) {
+            ParameterMatcher matcher = togglableParameter.getMatcher(snapshot);
+            if (matcher != null) {
+                restricted.add(new CompiledParameters.CompiledParameter(togglableParameter.getParameter(), matcher));
+            }
+        }
+        if (!restricted.isEmpty()) {
+            restrictedMethods.put(method, restricted.toArray(new CompiledParameters.CompiledParameter[restricted.size()]));
+        }
+    }
+
+    /**
+     * Value of the {@code @ParameterToggle(parameterId)} of the call, or {@code null} when the method doesn't declare it.
+     */
+    public Object getParameterValue(Method method, Object[] args, String parameterId) {
+        ResolvedTogglableParameter[] togglableParameters = this.getResolvedParameters(method);
+        if ((togglableParameters == null) || (args == null)) {
+            return null;
+        }
+
+        for (ResolvedTogglableParameter togglableParameter : togglableParameters) {
+            if (parameterId.equals(togglableParameter.getParameterKey())) {
+                TogglableParameter<?> parameter = togglableParameter.getParameter();
+                return getTogglableParameterValue(parameter, args[parameter.getIndex()]);
+            }
+        }
+
+        return null;
+    }
+
+    private TogglableParameter<?> getRejectingParameter(ResolvedTogglableParameter[] togglableParameters, Object[] args, Map<String, Set<String>> enabledParameters) {
+        for (ResolvedTogglableParameter togglableParameter : togglableParameters) {
+            if (!this.isParamOn(args[togglableParameter.getParameter().getIndex()], togglableParameter, enabledParameters)) {
+                return togglableParameter.getParameter();
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isParamOn(Object arg, ResolvedTogglableParameter resolvedParameter, Map<String, Set<String>> enabledParameters) {
+        Collection<String> allowedParameters = this.getConfigured(resolvedParameter.getParameterKey(), enabledParameters);
         if (allowedParameters.isEmpty()) {
-            allowedParameters = this.getParamtersByFeatureConfigured(featureName, togglableParameter);
+            allowedParameters = this.getConfigured(resolvedParameter.getFeatureParameterKey(), enabledParameters);
             if (allowedParameters.isEmpty()) {
                 return true;
             }
         }
-        return this.validateFeatureToggleParameters(args[togglableParameter.getIndex()], togglableParameter, allowedParameters);
+        return this.validateFeatureToggleParameters(arg, resolvedParameter.getParameter(), allowedParameters);
     }
 
-    private boolean validateFeatureToggleParameters(Object arg, TogglableParameter togglableParameter, Collection<String> allowedParameters) {
-        Object togglableParameterValue = this.getTogglableParameterValue(togglableParameter, arg);
+    private boolean validateFeatureToggleParameters(Object arg, TogglableParameter<?> togglableParameter, Collection<String> allowedParameters) {
+        Object togglableParameterValue = getTogglableParameterValue(togglableParameter, arg);
 
         return allowedParameters.contains(CONVERTER.convertToString(togglableParameterValue));
     }
 
-    @SuppressWarnings("unchecked")
-    private Object getTogglableParameterValue(TogglableParameter<?> togglableParameter, Object arg) {
+    /**
+     * Value of the parameter extracted from the arguments of a call, as the toggle checks it.
+     */
+    public static Object getParameterValue(TogglableParameter<?> togglableParameter, Object[] args) {
+        return getTogglableParameterValue(togglableParameter, args[togglableParameter.getIndex()]);
+    }
+
+    static Object getTogglableParameterValue(TogglableParameter<?> togglableParameter, Object arg) {
         Object togglableParameterValue;
 
         switch (togglableParameter.getAccessMethod()) {
@@ -110,17 +336,19 @@ public final class ParametersToggleHandler {
                 break;
             case METHOD:
                 try {
-                    TogglableParameter<Method> methodTogglableParameter = (TogglableParameter<Method>) togglableParameter;
-                    togglableParameterValue = methodTogglableParameter.getAccessibleObject().invoke(arg);
-                } catch (Exception e) {
+                    togglableParameterValue = togglableParameter.getAccessor().get(arg);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
                     throw new ParamtersToggleFactoryException(String.format("The method [%s] must be implemented! ", togglableParameter.getAccessibleObject()), e);
                 }
                 break;
             case FIELD:
                 try {
-                    TogglableParameter<Field> fieldTogglableParameter = (TogglableParameter<Field>) togglableParameter;
-                    togglableParameterValue = fieldTogglableParameter.getAccessibleObject().get(arg);
-                } catch (Exception e) {
+                    togglableParameterValue = togglableParameter.getAccessor().get(arg);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
                     throw new ParamtersToggleFactoryException(String.format("Error accessing [%s] field! ", togglableParameter.getAccessibleObject()), e);
                 }
                 break;
@@ -131,21 +359,21 @@ public final class ParametersToggleHandler {
         return togglableParameterValue;
     }
 
-    private void extractAnnotatedToggleParametersOnComplexMethodParameters(Method method, Collection<TogglableParameter<?>> togglableParameters) {
+    private static void extractAnnotatedToggleParametersOnComplexMethodParameters(Method method, Collection<TogglableParameter<?>> togglableParameters) {
         int index = 0;
         for (Class<?> param : method.getParameterTypes()) {
-            this.extractAnnotatedToggleParametersOnFields(index, param, togglableParameters);
-            this.extractAnnotatedToggleParametersOnMethods(index, param, togglableParameters);
+            extractAnnotatedToggleParametersOnFields(index, param, togglableParameters);
+            extractAnnotatedToggleParametersOnMethods(index, param, togglableParameters);
             index++;
         }
     }
 
-    private void extractAnnotatedToggleParametersOnMethods(int index, Class<?> param, Collection<TogglableParameter<?>> togglableParameters) {
+    private static void extractAnnotatedToggleParametersOnMethods(int index, Class<?> param, Collection<TogglableParameter<?>> togglableParameters) {
         for (Method method : param.getDeclaredMethods()) {
             ParameterToggle annotation = method.getAnnotation(ParameterToggle.class);
             if (annotation != null) {
                 try {
-                    if (!this.allowedParameterType(method.getReturnType())) {
+                    if (!allowedParameterType(method.getReturnType())) {
                         throw new IllegalArgumentException("Parameter Toggle is not allowed here: " + method);
                     }
                     method.setAccessible(true);
@@ -157,12 +385,12 @@ public final class ParametersToggleHandler {
         }
     }
 
-    private void extractAnnotatedToggleParametersOnFields(int index, Class<?> param, Collection<TogglableParameter<?>> togglableParameters) {
+    private static void extractAnnotatedToggleParametersOnFields(int index, Class<?> param, Collection<TogglableParameter<?>> togglableParameters) {
         for (Field field : param.getDeclaredFields()) {
             ParameterToggle annotation = field.getAnnotation(ParameterToggle.class);
             if (annotation != null) {
                 try {
-                    if (!this.allowedParameterType(field.getType())) {
+                    if (!allowedParameterType(field.getType())) {
                         throw new IllegalArgumentException("Parameter Toggle is not allowed here: " + field);
                     }
                     field.setAccessible(true);
@@ -174,25 +402,94 @@ public final class ParametersToggleHandler {
         }
     }
 
-    private void extractAnnotatedToggleParametersOnPrimitiveMethodParameters(Method method, Collection<TogglableParameter<?>> togglableParameters) {
+    private static void extractAnnotatedToggleParametersOnPrimitiveMethodParameters(Method method, Collection<TogglableParameter<?>> togglableParameters) {
         Class<?>[] parameterTypes = method.getParameterTypes();
         Map<Integer, String> parameterToggleIndexes = new HashMap<Integer, String>();
 
-        this.extractParameterToggleIndexes(method, parameterToggleIndexes);
+        extractParameterToggleIndexes(method, parameterToggleIndexes);
 
         for (Map.Entry<Integer, String> parametersToggle : parameterToggleIndexes.entrySet()) {
             Integer parameterIndex = parametersToggle.getKey();
             String parameterToggleName = parametersToggle.getValue();
 
-            if (this.allowedParameterType(parameterTypes[parameterIndex])) {
-                togglableParameters.add(TogglableParameter.createTogglableParameter(parameterIndex, parameterToggleName));
+            if (PartitionedParameter.isPartitionable(parameterTypes[parameterIndex])) {
+                continue;
+            }
+            if (allowedParameterType(parameterTypes[parameterIndex])) {
+                togglableParameters.add(TogglableParameter.createTogglableParameter(parameterIndex, parameterToggleName, parameterTypes[parameterIndex]));
             } else {
                 throw new IllegalArgumentException("Parameter Toggle is not allowed here: " + method);
             }
         }
     }
 
-    private void extractParameterToggleIndexes(Method method, Map<Integer, String> parameterToggleIndexes) {
+    private static boolean hasAnnotatedPartitionableParameter(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Map<Integer, String> parameterToggleIndexes = new HashMap<Integer, String>();
+
+        extractParameterToggleIndexes(method, parameterToggleIndexes);
+
+        for (Integer parameterIndex : parameterToggleIndexes.keySet()) {
+            if (PartitionedParameter.isPartitionable(parameterTypes[parameterIndex])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static PartitionedParameter extractPartitionedParameter(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Type[] genericParameterTypes = method.getGenericParameterTypes();
+        Map<Integer, String> parameterToggleIndexes = new HashMap<Integer, String>();
+
+        extractParameterToggleIndexes(method, parameterToggleIndexes);
+
+        PartitionedParameter partitionedParameter = null;
+        for (int index = 0; index < parameterTypes.length; index++) {
+            if (!PartitionedParameter.isPartitionable(parameterTypes[index])) {
+                continue;
+            }
+
+            Class<?> itemType = extractItemType(parameterTypes[index], genericParameterTypes[index]);
+            String parameterToggleName = parameterToggleIndexes.get(index);
+            List<TogglableParameter<?>> itemParameters = new ArrayList<TogglableParameter<?>>();
+            if (parameterToggleName != null) {
+                if (!allowedParameterType(itemType)) {
+                    throw new IllegalArgumentException("Parameter Toggle is not allowed here: " + method);
+                }
+                itemParameters.add(TogglableParameter.createTogglableParameter(0, parameterToggleName, itemType));
+            } else {
+                extractAnnotatedToggleParametersOnFields(0, itemType, itemParameters);
+                extractAnnotatedToggleParametersOnMethods(0, itemType, itemParameters);
+            }
+
+            if (!itemParameters.isEmpty()) {
+                if (partitionedParameter != null) {
+                    throw new IllegalArgumentException("Only one argument can be partitioned: " + method);
+                }
+                partitionedParameter = new PartitionedParameter(method, index, parameterTypes[index], itemType, itemParameters);
+            }
+        }
+        return partitionedParameter;
+    }
+
+    private static Class<?> extractItemType(Class<?> parameterType, Type genericParameterType) {
+        if (parameterType.isArray()) {
+            return parameterType.getComponentType();
+        }
+        if (genericParameterType instanceof ParameterizedType) {
+            Type itemType = ((ParameterizedType) genericParameterType).getActualTypeArguments()[0];
+            if (itemType instanceof WildcardType) {
+                itemType = ((WildcardType) itemType).getUpperBounds()[0];
+            }
+            if (itemType instanceof Class) {
+                return (Class<?>) itemType;
+            }
+        }
+        return Object.class;
+    }
+
+    private static void extractParameterToggleIndexes(Method method, Map<Integer, String> parameterToggleIndexes) {
         int index = 0;
         for (Annotation[] parameterAnnotations : method.getParameterAnnotations()) {
             for (Annotation annotation : parameterAnnotations) {
@@ -204,29 +501,12 @@ public final class ParametersToggleHandler {
         }
     }
 
-    private boolean allowedParameterType(Class<?> parameterType) {
+    private static boolean allowedParameterType(Class<?> parameterType) {
         return ALLOWED_PARAMETER_TOGGLE.contains(Primitives.wrap(parameterType)) || Enum.class.isAssignableFrom(parameterType);
     }
 
-    private void put(Method method, Collection<TogglableParameter<?>> togglableParameters) {
-        List<TogglableParameter> list = this.paramsMethodsCache.get(method);
-        if (list == null) {
-            list = new ArrayList<TogglableParameter>();
-            this.paramsMethodsCache.put(method, list);
-        }
-        list.addAll(togglableParameters);
-    }
-
-    private Collection<String> getParamtersConfigured(TogglableParameter togglableParameter) {
-        return this.getConfigured(togglableParameter.getId());
-    }
-
-    private Collection<String> getParamtersByFeatureConfigured(String featureName, TogglableParameter togglableParameter) {
-        return this.getConfigured(String.format(PARAM_BY_FEATURE, featureName, togglableParameter.getId()));
-    }
-
-    private Collection<String> getConfigured(String key) {
-        Collection<String> paramtersConfigured = this.config.getEnabledParameters().get(key);
+    private Collection<String> getConfigured(String key, Map<String, Set<String>> enabledParameters) {
+        Collection<String> paramtersConfigured = enabledParameters.get(key);
         if (paramtersConfigured == null) {
             return Collections.emptyList();
         }
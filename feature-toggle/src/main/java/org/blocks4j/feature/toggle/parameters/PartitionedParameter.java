@@ -0,0 +1,206 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.parameters;
+
+import com.google.common.primitives.Primitives;
+import org.blocks4j.feature.toggle.domain.TogglableParameter;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * A {@code Collection}, {@code List}, {@code Set} or array argument whose items carry the togglable parameters, either
+ * annotated with {@code @ParameterToggle} itself or holding annotated fields and methods. A partitioned feature splits
+ * it between the implementations: one call with the items that are on, one with the others, and merges the results.
+ * <p>
+ * Results are merged by the return type of the method: nothing for {@code void}, both entries for maps, the sum for
+ * {@code int} and {@code long}. Lists, collections and arrays holding one result per item are merged back at the
+ * positions of their items, so the result at a position still answers the item at that position; other sizes are merged
+ * as the ON results followed by the OFF ones, as are sets.
+ */
+public final class PartitionedParameter {
+
+    private final Method method;
+    private final int index;
+    private final Class<?> parameterType;
+    private final Class<?> itemType;
+    private final List<TogglableParameter<?>> itemParameters;
+
+    PartitionedParameter(Method method, int index, Class<?> parameterType, Class<?> itemType, List<TogglableParameter<?>> itemParameters) {
+        this.method = method;
+        this.index = index;
+        this.parameterType = parameterType;
+        this.itemType = itemType;
+        this.itemParameters = itemParameters;
+    }
+
+    static boolean isPartitionable(Class<?> parameterType) {
+        return parameterType.isArray() || (parameterType == Collection.class) || (parameterType == List.class) || (parameterType == Set.class);
+    }
+
+    List<TogglableParameter<?>> getItemParameters() {
+        return this.itemParameters;
+    }
+
+    void checkMergeable() {
+        Class<?> returnType = this.method.getReturnType();
+        if ((returnType != void.class)
+                && !returnType.isArray()
+                && !isPartitionable(returnType)
+                && (returnType != Map.class)
+                && (Primitives.wrap(returnType) != Integer.class)
+                && (Primitives.wrap(returnType) != Long.class)) {
+            throw new IllegalArgumentException(String.format("The results of [%s] can't be merged: a partitioned method must return void, a collection, a map, an array, an int or a long.", this.method));
+        }
+    }
+
+    /**
+     * @return the items of the partitioned argument of the call, {@code null} if it's null
+     */
+    public List<Object> getItems(Object[] args) {
+        Object argument = args[this.index];
+        if (argument == null) {
+            return null;
+        }
+        if (this.parameterType.isArray()) {
+            int length = Array.getLength(argument);
+            List<Object> items = new ArrayList<Object>(length);
+            for (int position = 0; position < length; position++) {
+                items.add(Array.get(argument, position));
+            }
+            return items;
+        }
+        if ((argument instanceof List) && (argument instanceof RandomAccess)) {
+            @SuppressWarnings("unchecked")
+            List<Object> items = (List<Object>) argument;
+            return items;
+        }
+        return new ArrayList<Object>((Collection<?>) argument);
+    }
+
+    /**
+     * @param on the positions of the items that are on
+     * @return the arguments of the ON call, then those of the OFF call
+     */
+    public Object[][] split(Object[] args, List<Object> items, BitSet on) {
+        int size = items.size();
+        List<Object> onItems = new ArrayList<Object>(on.cardinality());
+        List<Object> offItems = new ArrayList<Object>(size - on.cardinality());
+        for (int position = 0; position < size; position++) {
+            (on.get(position) ? onItems : offItems).add(items.get(position));
+        }
+
+        Object[] onArgs = args.clone();
+        onArgs[this.index] = this.toArgument(onItems);
+        Object[] offArgs = args.clone();
+        offArgs[this.index] = this.toArgument(offItems);
+        return new Object[][]{onArgs, offArgs};
+    }
+
+    private Object toArgument(List<Object> items) {
+        if (this.parameterType.isArray()) {
+            Object array = Array.newInstance(this.itemType, items.size());
+            for (int position = 0; position < items.size(); position++) {
+                Array.set(array, position, items.get(position));
+            }
+            return array;
+        }
+        if (this.parameterType == Set.class) {
+            return new LinkedHashSet<Object>(items);
+        }
+        return items;
+    }
+
+    /**
+     * @param on   the positions of the items that are on, as given to {@link #split(Object[], List, BitSet)}
+     * @param size the number of items of the call
+     */
+    @SuppressWarnings("unchecked")
+    public Object merge(Object onResult, Object offResult, BitSet on, int size) {
+        Class<?> returnType = this.method.getReturnType();
+        if (returnType == void.class) {
+            return null;
+        }
+        if (onResult == null) {
+            return offResult;
+        }
+        if (offResult == null) {
+            return onResult;
+        }
+        if (returnType.isArray()) {
+            int onLength = Array.getLength(onResult);
+            int offLength = Array.getLength(offResult);
+            Object merged = Array.newInstance(returnType.getComponentType(), onLength + offLength);
+            if (isPerItem(onLength, offLength, on, size)) {
+                int onPosition = 0;
+                int offPosition = 0;
+                for (int position = 0; position < size; position++) {
+                    Array.set(merged, position, on.get(position) ? Array.get(onResult, onPosition++) : Array.get(offResult, offPosition++));
+                }
+                return merged;
+            }
+            System.arraycopy(onResult, 0, merged, 0, onLength);
+            System.arraycopy(offResult, 0, merged, onLength, offLength);
+            return merged;
+        }
+        if (returnType == Set.class) {
+            Set<Object> merged = new LinkedHashSet<Object>((Collection<Object>) onResult);
+            merged.addAll((Collection<Object>) offResult);
+            return merged;
+        }
+        if (isPartitionable(returnType)) {
+            Collection<Object> onResults = (Collection<Object>) onResult;
+            Collection<Object> offResults = (Collection<Object>) offResult;
+            if (isPerItem(onResults.size(), offResults.size(), on, size)) {
+                List<Object> merged = new ArrayList<Object>(size);
+                Iterator<Object> onIterator = onResults.iterator();
+                Iterator<Object> offIterator = offResults.iterator();
+                for (int position = 0; position < size; position++) {
+                    merged.add(on.get(position) ? onIterator.next() : offIterator.next());
+                }
+                return merged;
+            }
+            List<Object> merged = new ArrayList<Object>(onResults);
+            merged.addAll(offResults);
+            return merged;
+        }
+        if (returnType == Map.class) {
+            Map<Object, Object> merged = new LinkedHashMap<Object, Object>((Map<Object, Object>) onResult);
+            merged.putAll((Map<Object, Object>) offResult);
+            return merged;
+        }
+        if (Primitives.wrap(returnType) == Integer.class) {
+            return ((Integer) onResult) + ((Integer) offResult);
+        }
+        return ((Long) onResult) + ((Long) offResult);
+    }
+
+    private static boolean isPerItem(int onResults, int offResults, BitSet on, int size) {
+        int onItems = on.cardinality();
+        return (onResults == onItems) && (offResults == (size - onItems));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.parameters;
+
+import org.blocks4j.feature.toggle.domain.TogglableParameter;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+
+/**
+ * A {@link TogglableParameter} bound to a feature, with the configuration keys it is looked up by.
+ */
+final class ResolvedTogglableParameter {
+
+    private final TogglableParameter<?> parameter;
+    private final String featureParameterKey;
+    private volatile SnapshotMatcher snapshotMatcher;
+
+    ResolvedTogglableParameter(TogglableParameter<?> parameter, String featureParameterKey) {
+        this.parameter = parameter;
+        this.featureParameterKey = featureParameterKey;
+    }
+
+    TogglableParameter<?> getParameter() {
+        return this.parameter;
+    }
+
+    String getParameterKey() {
+        return this.parameter.getId();
+    }
+
+    String getFeatureParameterKey() {
+        return this.featureParameterKey;
+    }
+
+    /**
+     * @return the matcher for this parameter in the snapshot, or {@code null} when the parameter isn't restricted
+     */
+    ParameterMatcher getMatcher(FeatureToggleSnapshot snapshot) {
+        SnapshotMatcher current = this.snapshotMatcher;
+        if ((current == null) || (current.snapshot != snapshot)) {
+            Class<?> valueType = this.parameter.getValueType();
+            ParameterMatcher matcher = snapshot.getParameterMatcher(this.getParameterKey(), valueType);
+            if (matcher == null) {
+                matcher = snapshot.getParameterMatcher(this.featureParameterKey, valueType);
+            }
+            current = new SnapshotMatcher(snapshot, matcher);
+            this.snapshotMatcher = current;
+        }
+        return current.matcher;
+    }
+
+    private static final class SnapshotMatcher {
+
+        private final FeatureToggleSnapshot snapshot;
+        private final ParameterMatcher matcher;
+
+        private SnapshotMatcher(FeatureToggleSnapshot snapshot, ParameterMatcher matcher) {
+            this.snapshot = snapshot;
+            this.matcher = matcher;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Distinct values, sorted and searched in binary.
+ */
+final class SortedLongArray extends LongAllowList {
+
+    private final long[] values;
+
+    SortedLongArray(long[] sortedDistinctValues) {
+        this.values = sortedDistinctValues;
+    }
+
+    static long estimateSizeInBytes(long[] sortedDistinctValues) {
+        return 16L + arraySizeInBytes(sortedDistinctValues.length, Long.BYTES);
+    }
+
+    @Override
+    public boolean contains(long value) {
+        return Arrays.binarySearch(this.values, value) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return this.values.length;
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return estimateSizeInBytes(this.values);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < SortedLongArray.this.values.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return SortedLongArray.this.values[this.index++];
+            }
+        };
+    }
+}
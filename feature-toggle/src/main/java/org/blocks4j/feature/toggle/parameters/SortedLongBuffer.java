@@ -0,0 +1,107 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.parameters;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Distinct values, sorted and searched in binary in a buffer, read with absolute gets so lookups share it safely.
+ * The search starts on fences, every {@value #FENCE_STRIDE}th value copied onto the heap, and ends in the stride of
+ * the buffer between two of them: a lookup touches a single page of a mapped buffer instead of one per step.
+ */
+final class SortedLongBuffer extends LongAllowList {
+
+    static final int FENCE_STRIDE = 256;
+
+    private final LongBuffer values;
+    private final int size;
+    private final long[] fences;
+
+    SortedLongBuffer(LongBuffer sortedDistinctValues) {
+        this.values = sortedDistinctValues.slice();
+        this.size = this.values.limit();
+        this.fences = new long[(this.size + FENCE_STRIDE - 1) / FENCE_STRIDE];
+        for (int fence = 0; fence < this.fences.length; fence++) {
+            this.fences[fence] = this.values.get(fence * FENCE_STRIDE);
+        }
+    }
+
+    @Override
+    public boolean contains(long value) {
+        int fence = Arrays.binarySearch(this.fences, value);
+        if (fence >= 0) {
+            return true;
+        }
+        fence = -fence - 2;
+        if (fence < 0) {
+            return false;
+        }
+        int low = (fence * FENCE_STRIDE) + 1;
+        int high = Math.min(this.size, low + FENCE_STRIDE - 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long current = this.values.get(middle);
+            if (current < value) {
+                low = middle + 1;
+            } else if (current > value) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * The values aren't counted when the buffer is direct or mapped: only the fences are on the heap.
+     */
+    @Override
+    public long sizeInBytes() {
+        long fencesSize = arraySizeInBytes(this.fences.length, Long.BYTES);
+        return this.values.isDirect() ? 72L + fencesSize : 72L + fencesSize + arraySizeInBytes(this.size, Long.BYTES);
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < SortedLongBuffer.this.size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return SortedLongBuffer.this.values.get(this.index++);
+            }
+        };
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.proxy;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Dispatcher;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
+import org.blocks4j.feature.toggle.parameters.ParametersToggleHandler;
+
+import java.lang.reflect.Method;
+
+final class BytecodeProxyFactory {
+
+    private static final int INTERCEPT = 0;
+    private static final int DISPATCH = 1;
+    private static final int SUPER = 2;
+
+    private static final CallbackFilter FILTER = new TogglableMethodFilter(false);
+    private static final CallbackFilter PARTITIONED_FILTER = new TogglableMethodFilter(true);
+
+    private BytecodeProxyFactory() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T createProxy(Class<? super T> commonInterface, FeatureDispatcher<T> dispatcher) {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setClassLoader(commonInterface.getClassLoader());
+        enhancer.setInterfaces(new Class<?>[]{commonInterface});
+        enhancer.setUseFactory(false);
+        enhancer.setCallbackFilter(dispatcher.isPartitioning() ? PARTITIONED_FILTER : FILTER);
+        Callback intercept;
+        Callback dispatch;
+        if (dispatcher.isTimed() || dispatcher.isShadowing()) {
+            // a Dispatcher returns the target without seeing the call, so observed proxies intercept every method
+            intercept = new ObservingInterceptor<T>(dispatcher, true);
+            dispatch = new ObservingInterceptor<T>(dispatcher, false);
+        } else {
+            intercept = new SelectingInterceptor<T>(dispatcher);
+            dispatch = new SelectingDispatcher<T>(dispatcher);
+        }
+        if (dispatcher.isPartitioning()) {
+            intercept = new InvokingInterceptor<T>(dispatcher);
+        }
+        enhancer.setCallbacks(new Callback[]{intercept, dispatch, NoOp.INSTANCE});
+        return (T) enhancer.create();
+    }
+
+    /**
+     * Methods with togglable parameters need their arguments to decide, as do the methods a partitioned feature splits;
+     * the others are dispatched without them. cglib caches generated classes by filter identity, so the filters are
+     * shared and the generated classes are reused by every proxy of an interface.
+     */
+    private static final class TogglableMethodFilter implements CallbackFilter {
+
+        private final boolean partitioned;
+
+        private TogglableMethodFilter(boolean partitioned) {
+            this.partitioned = partitioned;
+        }
+
+        @Override
+        public int accept(Method method) {
+            if (method.getDeclaringClass() == Object.class) {
+                return this.isDelegatedObjectMethod(method) ? DISPATCH : SUPER;
+            }
+            if (ParametersToggleHandler.hasTogglableParameters(method)) {
+                return INTERCEPT;
+            }
+            return (this.partitioned && ParametersToggleHandler.hasPartitionedParameter(method)) ? INTERCEPT : DISPATCH;
+        }
+
+        private boolean isDelegatedObjectMethod(Method method) {
+            String name = method.getName();
+            return "equals".equals(name) || "hashCode".equals(name) || "toString".equals(name);
+        }
+    }
+
+    private static final class SelectingInterceptor<T> implements MethodInterceptor {
+
+        private final FeatureDispatcher<T> dispatcher;
+
+        private SelectingInterceptor(FeatureDispatcher<T> dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public Object intercept(Object proxy, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+            return methodProxy.invoke(this.dispatcher.select(method, args), args);
+        }
+    }
+
+    private static final class ObservingInterceptor<T> implements MethodInterceptor {
+
+        private final FeatureDispatcher<T> dispatcher;
+        private final boolean withArguments;
+
+        private ObservingInterceptor(FeatureDispatcher<T> dispatcher, boolean withArguments) {
+            this.dispatcher = dispatcher;
+            this.withArguments = withArguments;
+        }
+
+        @Override
+        public Object intercept(Object proxy, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+            T target = this.withArguments ? this.dispatcher.select(method, args) : this.dispatcher.select(null, null);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = methodProxy.invoke(target, args);
+            } catch (Throwable e) {
+                this.dispatcher.failed(method, target, args, start, e);
+                throw e;
+            }
+            return this.dispatcher.returned(method, target, args, start, result);
+        }
+    }
+
+    /**
+     * Leaves the whole call to the dispatcher, which may split it between several implementations.
+     */
+    private static final class InvokingInterceptor<T> implements MethodInterceptor {
+
+        private final FeatureDispatcher<T> dispatcher;
+
+        private InvokingInterceptor(FeatureDispatcher<T> dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public Object intercept(Object proxy, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+            return this.dispatcher.invoke(proxy, method, args);
+        }
+    }
+
+    private static final class SelectingDispatcher<T> implements Dispatcher {
+
+        private final FeatureDispatcher<T> dispatcher;
+
+        private SelectingDispatcher(FeatureDispatcher<T> dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public Object loadObject() {
+            return this.dispatcher.select(null, null);
+        }
+    }
+}
@@ -17,25 +17,97 @@
 package org.blocks4j.feature.toggle.proxy;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.blocks4j.feature.toggle.ConfigurationChangeEvent;
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
 import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.WeakConfigurationChangeListener;
+import org.blocks4j.feature.toggle.domain.TogglableParameter;
+import org.blocks4j.feature.toggle.metrics.FeatureMetrics;
+import org.blocks4j.feature.toggle.parameters.CompiledParameters;
 import org.blocks4j.feature.toggle.parameters.ParametersToggleHandler;
+import org.blocks4j.feature.toggle.parameters.PartitionedParameter;
+import org.blocks4j.feature.toggle.shadow.ShadowExecutor;
+import org.blocks4j.feature.toggle.snapshot.FeatureIds;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+import org.blocks4j.feature.toggle.trace.DecisionReason;
+import org.blocks4j.feature.toggle.trace.DecisionTracer;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 
-public class Feature<T> implements InvocationHandler {
+public class Feature<T> extends FeatureDispatcher<T> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Feature, Decision> DECISION = AtomicReferenceFieldUpdater.newUpdater(Feature.class, Decision.class, "decision");
 
     private ParametersToggleHandler paramters;
     private FeatureToggleConfiguration config;
+    private ObservableFeatureToggleConfiguration observableConfig;
+    private ConfigurationChangeListener changeListener;
+    private volatile Decision decision;
+    private FeatureMetrics metrics = FeatureMetrics.NONE;
+    private DecisionTracer tracer = DecisionTracer.NONE;
+    private ShadowExecutor shadowExecutor;
+    private boolean partitioned;
     private Class<? super T> commonInterface;
     private String featureName;
+    private int featureId;
     private T featureOff;
     private T featureOn;
 
     public void init() {
-        this.paramters = new ParametersToggleHandler(this.config, this.commonInterface);
+        this.paramters = new ParametersToggleHandler(this.config, this.commonInterface, this.featureName, this.partitioned);
+        this.featureId = FeatureIds.idOf(this.featureName);
+        if (this.config instanceof ObservableFeatureToggleConfiguration) {
+            this.observableConfig = (ObservableFeatureToggleConfiguration) this.config;
+            this.changeListener = new ConfigurationChangeListener() {
+                @Override
+                public void onChange(ConfigurationChangeEvent event) {
+                    Feature.this.apply(event.getCurrent());
+                }
+            };
+            // weakly registered: the listener lives as long as this feature, and the configuration doesn't keep it alive
+            WeakConfigurationChangeListener.register(this.observableConfig, this.changeListener);
+            this.apply(this.observableConfig.getSnapshot());
+        }
+    }
+
+    /**
+     * Precomputes the decision for a snapshot of an observable configuration, unless a newer one is already applied.
+     */
+    private void apply(FeatureToggleSnapshot snapshot) {
+        Decision next = null;
+        Decision current;
+        do {
+            current = this.decision;
+            if ((current != null) && (current.snapshot.getVersion() >= snapshot.getVersion())) {
+                return;
+            }
+            if (next == null) {
+                this.prepare(snapshot);
+                next = new Decision(snapshot, snapshot.isEnabled(this.featureId), this.paramters.compile(snapshot));
+            }
+        } while (!DECISION.compareAndSet(this, current, next));
+    }
+
+    /**
+     * Called with each new snapshot of an observable configuration before it's used for any decision, for subclasses
+     * to precompute their own state off the calling threads.
+     */
+    protected void prepare(FeatureToggleSnapshot snapshot) {
+    }
+
+    /**
+     * @return the snapshot decisions are currently made with, {@code null} if the configuration isn't observable
+     */
+    protected FeatureToggleSnapshot getCurrentSnapshot() {
+        Decision current = this.decision;
+        return (current == null) ? null : current.snapshot;
     }
 
     public void setName(String featureName) {
@@ -58,25 +130,142 @@ public class Feature<T> implements InvocationHandler {
         this.config = config;
     }
 
+    public void setMetrics(FeatureMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setTracer(DecisionTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Once a call served by the feature returned, the OFF implementation is also called with the same arguments on this
+     * executor.
+     */
+    public void setShadowExecutor(ShadowExecutor shadowExecutor) {
+        this.shadowExecutor = shadowExecutor;
+    }
+
+    /**
+     * The items of collection and array arguments are then toggled one by one, see {@link PartitionedParameter}.
+     */
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+
+    @Override
+    public boolean isPartitioning() {
+        return this.partitioned;
+    }
+
+    /**
+     * A partitioned call that the feature and the other parameters are on for is split by the items of its partitioned
+     * argument: the ON implementation is called once with the items that are on, the OFF one once with the others.
+     */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        Object _this;
-        if (this.isOn(method, args)) {
-            _this = this.featureOn;
-        } else {
-            _this = this.featureOff;
+        PartitionedParameter partitionedParameter = this.partitioned ? this.paramters.getPartitionedParameter(method) : null;
+        List<Object> items = (partitionedParameter == null) ? null : partitionedParameter.getItems(args);
+        if (items == null) {
+            return super.invoke(proxy, method, args);
+        }
+
+        T target = this.select(method, args);
+        if ((target != this.featureOn) || (this.featureOn == this.featureOff)) {
+            return this.call(method, target, args);
+        }
+
+        BitSet on = this.partition(method, items);
+        int enabledItems = on.cardinality();
+        if (enabledItems == items.size()) {
+            return this.call(method, this.featureOn, args);
+        }
+        if (enabledItems == 0) {
+            return this.call(method, this.featureOff, args);
+        }
+        Object[][] split = partitionedParameter.split(args, items, on);
+        Object onResult = this.call(method, this.featureOn, split[0]);
+        return partitionedParameter.merge(onResult, this.call(method, this.featureOff, split[1]), on, items.size());
+    }
+
+    private BitSet partition(Method method, List<Object> items) {
+        Decision current = this.decision;
+        if (current != null) {
+            return current.parameters.partition(method, items);
+        }
+        return this.paramters.partition(method, items);
+    }
+
+    @Override
+    public T select(Method method, Object[] args) {
+        if (this.evaluate(method, args)) {
+            return this.featureOn;
+        }
+        return this.featureOff;
+    }
+
+    /**
+     * Decides whether the call goes to the implementation of this feature, and records the decision.
+     */
+    final boolean evaluate(Method method, Object[] args) {
+        if (this.tracer.isSampled()) {
+            return this.explain(method, args);
+        }
+        boolean on = this.isOn(method, args);
+        this.metrics.recordDecision(on);
+        return on;
+    }
+
+    /**
+     * Records the decision of a traced call, with the parameter behind it if any.
+     *
+     * @return whether the call is on
+     */
+    protected final boolean trace(Method method, DecisionReason reason, String parameterId, Object parameterValue) {
+        if (reason == DecisionReason.PARAMETER_REJECTED) {
+            this.metrics.recordParameterRejection();
+        } else if (reason == DecisionReason.PROBABILITY_REJECTED) {
+            this.metrics.recordProbabilisticRejection();
         }
-        try {
-            return method.invoke(_this, args);
-        } catch (InvocationTargetException e) {
-            throw e.getTargetException();
+        boolean on = reason == DecisionReason.ON;
+        this.metrics.recordDecision(on);
+        this.tracer.trace(this.featureName, method, reason, parameterId, parameterValue);
+        return on;
+    }
+
+    @Override
+    public boolean isTimed() {
+        return this.metrics != FeatureMetrics.NONE;
+    }
+
+    @Override
+    public void recordLatency(T target, long nanos) {
+        this.metrics.recordLatency(target == this.featureOn, nanos);
+    }
+
+    @Override
+    public boolean isShadowing() {
+        return this.shadowExecutor != null;
+    }
+
+    @Override
+    public void shadow(Method method, T target, Object[] args, Object result, Throwable failure) {
+        if ((target == this.featureOn) && (this.featureOn != this.featureOff)) {
+            this.shadowExecutor.submit(method, this.featureOff, args, this.metrics);
         }
     }
 
     protected boolean isOn(Method method, Object[] args) {
+        Decision current = this.decision;
+        if (current != null) {
+            if (!current.enabled) {
+                return false;
+            }
+            return (args == null) || this.parametersOn(current.parameters.isOn(method, args));
+        }
         if (this.isFeatureOnFeatureList()) {
             if (args != null) {
-                return this.paramters.isOn(method, args, this.featureName);
+                return this.parametersOn(this.paramters.isOn(method, args));
             } else {
                 return true;
             }
@@ -84,8 +273,51 @@ public class Feature<T> implements InvocationHandler {
         return false;
     }
 
+    /**
+     * Makes the same decision as {@link #isOn(Method, Object[])}, {@link #trace tracing} why; used instead of it for the
+     * traced calls. Subclasses overriding one must override the other.
+     */
+    protected boolean explain(Method method, Object[] args) {
+        TogglableParameter<?> rejectingParameter = null;
+        Decision current = this.decision;
+        if (current != null) {
+            if (!current.enabled) {
+                return this.trace(method, DecisionReason.FEATURE_DISABLED, null, null);
+            }
+            if (args != null) {
+                rejectingParameter = current.parameters.getRejectingParameter(method, args);
+            }
+        } else {
+            if (!this.isFeatureOnFeatureList()) {
+                return this.trace(method, DecisionReason.FEATURE_DISABLED, null, null);
+            }
+            if (args != null) {
+                rejectingParameter = this.paramters.getRejectingParameter(method, args);
+            }
+        }
+        if (rejectingParameter != null) {
+            return this.trace(method, DecisionReason.PARAMETER_REJECTED, rejectingParameter.getId(), ParametersToggleHandler.getParameterValue(rejectingParameter, args));
+        }
+        return this.explainOn(method, args);
+    }
+
+    /**
+     * Traces the decision of a call the feature and its parameters are on for.
+     */
+    protected boolean explainOn(Method method, Object[] args) {
+        return this.trace(method, DecisionReason.ON, null, null);
+    }
+
+    private boolean parametersOn(boolean on) {
+        if (!on) {
+            this.metrics.recordParameterRejection();
+        }
+        return on;
+    }
+
     private boolean isFeatureOnFeatureList() {
-        return CollectionUtils.isNotEmpty(this.config.getEnabledFeatures()) && this.config.getEnabledFeatures().contains(this.featureName);
+        Set<String> enabledFeatures = this.config.getEnabledFeatures();
+        return CollectionUtils.isNotEmpty(enabledFeatures) && enabledFeatures.contains(this.featureName);
     }
 
     public String getFeatureName() {
@@ -100,7 +332,32 @@ public class Feature<T> implements InvocationHandler {
         return this.featureOn;
     }
 
+    protected FeatureMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    protected ShadowExecutor getShadowExecutor() {
+        return this.shadowExecutor;
+    }
+
+    protected ParametersToggleHandler getParameters() {
+        return this.paramters;
+    }
+
     public FeatureToggleConfiguration getConfig() {
         return this.config;
     }
-}
\ No newline at end of file
+
+    private static final class Decision {
+
+        private final FeatureToggleSnapshot snapshot;
+        private final boolean enabled;
+        private final CompiledParameters parameters;
+
+        private Decision(FeatureToggleSnapshot snapshot, boolean enabled, CompiledParameters parameters) {
+            this.snapshot = snapshot;
+            this.enabled = enabled;
+            this.parameters = parameters;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Chooses, for each invocation on a toggle proxy, the implementation of the common interface that serves the call.
+ */
+public abstract class FeatureDispatcher<T> implements InvocationHandler {
+
+    /**
+     * @param method the invoked method, or {@code null} when the proxy knows the method has no togglable parameters
+     * @param args   the invocation arguments, or {@code null} for methods without arguments or togglable parameters
+     * @return the implementation that must serve the call
+     */
+    public abstract T select(Method method, Object[] args);
+
+    /**
+     * @return whether the proxy must measure the calls it delegates and report them to {@link #recordLatency}
+     */
+    public boolean isTimed() {
+        return false;
+    }
+
+    /**
+     * @param target the implementation {@link #select selected} for the call
+     * @param nanos  duration of the delegated call, whether it returned or threw
+     */
+    public void recordLatency(T target, long nanos) {
+    }
+
+    /**
+     * @return whether the proxy must report every call to {@link #shadow}
+     */
+    public boolean isShadowing() {
+        return false;
+    }
+
+    /**
+     * Called on the calling thread once the target has returned or thrown; a {@link CompletionStage} result is passed
+     * as returned, not completed. Anything run in the shadow of the call must be handed off, the caller never waits for
+     * it.
+     *
+     * @param result  what the target returned, {@code null} if it threw
+     * @param failure what the target threw, {@code null} if it returned
+     */
+    public void shadow(Method method, T target, Object[] args, Object result, Throwable failure) {
+    }
+
+    /**
+     * @return whether the proxy must hand every call with togglable parameters to {@link #invoke}, which may split it
+     * between several implementations, instead of calling the {@link #select selected} one
+     */
+    public boolean isPartitioning() {
+        return false;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        return this.call(method, this.select(method, args), args);
+    }
+
+    /**
+     * Calls the target, measured and shadowed when this dispatcher asks for it.
+     */
+    protected final Object call(Method method, T target, Object[] args) throws Throwable {
+        if (!this.isTimed() && !this.isShadowing()) {
+            return invoke(method, target, args);
+        }
+
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invoke(method, target, args);
+        } catch (Throwable e) {
+            this.failed(method, target, args, start, e);
+            throw e;
+        }
+        return this.returned(method, target, args, start, result);
+    }
+
+    /**
+     * Reports a call that returned. A {@link CompletionStage} is timed until it completes, by a callback run on
+     * whichever thread completes it, so the caller neither waits nor hops threads.
+     */
+    final Object returned(Method method, final T target, Object[] args, final long start, Object result) {
+        if (this.isTimed()) {
+            if (result instanceof CompletionStage) {
+                ((CompletionStage<?>) result).whenComplete((value, failure) -> this.recordLatency(target, System.nanoTime() - start));
+            } else {
+                this.recordLatency(target, System.nanoTime() - start);
+            }
+        }
+        if (this.isShadowing()) {
+            this.shadow(method, target, args, result, null);
+        }
+        return result;
+    }
+
+    final void failed(Method method, T target, Object[] args, long start, Throwable failure) {
+        if (this.isTimed()) {
+            this.recordLatency(target, System.nanoTime() - start);
+        }
+        if (this.isShadowing()) {
+            this.shadow(method, target, args, null, failure);
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.proxy;
+
+import org.blocks4j.feature.toggle.annotation.processing.GeneratedClasses;
+import org.blocks4j.feature.toggle.exception.FeatureToggleFactoryException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+final class GeneratedProxyFactory {
+
+    private static final ClassValue<Constructor<?>> DELEGATES = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> commonInterface) {
+            try {
+                Class<?> delegate = Class.forName(GeneratedClasses.getDelegateClassName(commonInterface.getName()), true, commonInterface.getClassLoader());
+                return delegate.getConstructor(FeatureDispatcher.class);
+            } catch (ClassNotFoundException e) {
+                return null;
+            } catch (NoSuchMethodException e) {
+                throw new FeatureToggleFactoryException(String.format("The generated delegate of [%s] is out of date", commonInterface), e);
+            }
+        }
+    };
+
+    private GeneratedProxyFactory() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T createProxy(Class<? super T> commonInterface, FeatureDispatcher<T> dispatcher) {
+        Constructor<?> delegate = DELEGATES.get(commonInterface);
+        if ((delegate == null) || dispatcher.isTimed() || dispatcher.isShadowing() || dispatcher.isPartitioning()) {
+            // the generated delegate only selects the implementation
+            return BytecodeProxyFactory.createProxy(commonInterface, dispatcher);
+        }
+
+        try {
+            return (T) delegate.newInstance(dispatcher);
+        } catch (InvocationTargetException e) {
+            throw new FeatureToggleFactoryException(e.getTargetException());
+        } catch (ReflectiveOperationException e) {
+            throw new FeatureToggleFactoryException(e);
+        }
+    }
+}
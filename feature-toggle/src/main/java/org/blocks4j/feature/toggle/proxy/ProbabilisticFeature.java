@@ -14,54 +14,154 @@
  *   limitations under the License.
  */
 
+
 package org.blocks4j.feature.toggle.proxy;
 
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+import org.blocks4j.feature.toggle.trace.DecisionReason;
+
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.Random;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Feature enabled for a fraction of the calls, configured as {@code accept/total} under {@code featureName#probability}.
+ * <p>
+ * Calls are drawn from {@link java.util.concurrent.ThreadLocalRandom}, unless a sticky parameter is set: the value of
+ * that {@code @ParameterToggle} is then hashed into a bucket, so the same value always gets the same implementation.
+ */
 public class ProbabilisticFeature<T> extends Feature<T> {
 
-    private static final Pattern PROBABILISTIC_VALUE_PATTERN = Pattern.compile("^(\\d+)/(\\d+)$");
-
     private static final String PROBABILISTIC_VALUE_PROPERTY_FORMAT = "%s#probability";
 
-    private Random random;
+    private String probabilityKey;
+    private String stickyParameter;
+    private long stickySeed;
+    private volatile ParsedProbability parsedProbability;
 
-    public ProbabilisticFeature() {
-        this.random = new Random();
+    @Override
+    public void init() {
+        this.probabilityKey = this.getProbabilityKey(this.getFeatureName());
+        this.stickySeed = mix(this.getFeatureName().hashCode());
+        super.init();
+    }
+
+    /**
+     * @return the enabled parameter the {@code accept/total} probability of the feature is read from
+     */
+    protected String getProbabilityKey(String featureName) {
+        return String.format(PROBABILISTIC_VALUE_PROPERTY_FORMAT, featureName);
+    }
+
+    @Override
+    protected void prepare(FeatureToggleSnapshot snapshot) {
+        try {
+            this.parse(snapshot);
+        } catch (IllegalArgumentException e) {
+            // left to the calls, which report the invalid probability as before
+        }
+    }
+
+    public void setStickyParameter(String stickyParameter) {
+        this.stickyParameter = stickyParameter;
     }
 
     @Override
     protected boolean isOn(Method method, Object[] args) {
-        return super.isOn(method, args) && this.probabilisticAssertion();
+        if (!super.isOn(method, args)) {
+            return false;
+        }
+        if (!this.probabilisticAssertion(method, args)) {
+            this.getMetrics().recordProbabilisticRejection();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean explainOn(Method method, Object[] args) {
+        Object stickyValue = this.getStickyValue(method, args);
+        if (!this.probabilisticAssertion(stickyValue)) {
+            return this.trace(method, DecisionReason.PROBABILITY_REJECTED, (stickyValue == null) ? null : this.stickyParameter, stickyValue);
+        }
+        return super.explainOn(method, args);
+    }
+
+    private boolean probabilisticAssertion(Method method, Object[] args) {
+        return this.probabilisticAssertion(this.getStickyValue(method, args));
     }
 
-    private boolean probabilisticAssertion() {
-        boolean isOn = true;
-
-        Map<String, Set<String>> enabledParameters = this.getConfig().getEnabledParameters();
-
-        if (!enabledParameters.isEmpty()) {
-            Set<String> probValue = enabledParameters.get(String.format(PROBABILISTIC_VALUE_PROPERTY_FORMAT, this.getFeatureName()));
-            if (probValue != null) {
-                if (probValue.size() == 1) {
-                    Matcher matcher = PROBABILISTIC_VALUE_PATTERN.matcher(probValue.iterator().next());
-                    if (matcher.find()) {
-                        int accept = Integer.valueOf(matcher.group(1));
-                        int total = Integer.valueOf(matcher.group(2));
-
-                        isOn = this.random.nextInt(total) < accept;
-                    }
-                } else if (probValue.size() > 1) {
-                    isOn = false;
-                }
+    private boolean probabilisticAssertion(Object stickyValue) {
+        Probability probability = this.getProbability();
+        if (stickyValue != null) {
+            return probability.isOn(this.stickyHash(stickyValue));
+        }
+        return probability.isOn();
+    }
+
+    private Object getStickyValue(Method method, Object[] args) {
+        if (this.stickyParameter == null) {
+            return null;
+        }
+        return this.getParameters().getParameterValue(method, args, this.stickyParameter);
+    }
+
+    private Probability getProbability() {
+        FeatureToggleSnapshot snapshot = this.getCurrentSnapshot();
+        if (snapshot != null) {
+            ParsedProbability parsed = this.parsedProbability;
+            if ((parsed == null) || (parsed.source != snapshot)) {
+                parsed = this.parse(snapshot);
             }
+            return parsed.probability;
         }
 
-        return isOn;
+        Set<String> probValue = this.getConfig().getEnabledParameters().get(this.probabilityKey);
+        if ((probValue == null) || (probValue.size() != 1)) {
+            return Probability.parse(probValue);
+        }
+
+        String value = probValue.iterator().next();
+        ParsedProbability parsed = this.parsedProbability;
+        if ((parsed == null) || !value.equals(parsed.source)) {
+            parsed = new ParsedProbability(value, Probability.parse(value));
+            this.parsedProbability = parsed;
+        }
+        return parsed.probability;
+    }
+
+    private ParsedProbability parse(FeatureToggleSnapshot snapshot) {
+        ParsedProbability parsed = new ParsedProbability(snapshot, Probability.parse(snapshot.getEnabledParameters().get(this.probabilityKey)));
+        this.parsedProbability = parsed;
+        return parsed;
+    }
+
+    private long stickyHash(Object stickyValue) {
+        long hash;
+        if ((stickyValue instanceof Long) || (stickyValue instanceof Integer) || (stickyValue instanceof Short) || (stickyValue instanceof Byte)) {
+            hash = ((Number) stickyValue).longValue();
+        } else {
+            hash = String.valueOf(stickyValue).hashCode();
+        }
+        return mix(hash ^ this.stickySeed);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class ParsedProbability {
+
+        private final Object source;
+        private final Probability probability;
+
+        private ParsedProbability(Object source, Probability probability) {
+            this.source = source;
+            this.probability = probability;
+        }
     }
-}
\ No newline at end of file
+}
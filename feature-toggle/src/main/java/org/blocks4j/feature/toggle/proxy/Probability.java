@@ -0,0 +1,102 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.proxy;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code accept/total} ratio of a probabilistic feature, parsed once from its configured value.
+ */
+final class Probability {
+
+    static final Probability ALWAYS = new Probability(1, 1);
+    static final Probability NEVER = new Probability(0, 1);
+
+    private final int accept;
+    private final int total;
+
+    private Probability(int accept, int total) {
+        this.accept = accept;
+        this.total = total;
+    }
+
+    /**
+     * A missing or malformed value keeps the feature on, more than one value turns it off.
+     */
+    static Probability parse(Set<String> values) {
+        if ((values == null) || values.isEmpty()) {
+            return ALWAYS;
+        }
+        if (values.size() > 1) {
+            return NEVER;
+        }
+        return parse(values.iterator().next());
+    }
+
+    static Probability parse(String value) {
+        int separator = value.indexOf('/');
+        if (!isDigits(value, 0, separator) || !isDigits(value, separator + 1, value.length())) {
+            return ALWAYS;
+        }
+
+        int accept = Integer.parseInt(value.substring(0, separator));
+        int total = Integer.parseInt(value.substring(separator + 1));
+        if (total <= 0) {
+            throw new IllegalArgumentException(String.format("The probability [%s] must have a positive total.", value));
+        }
+        if (accept >= total) {
+            return ALWAYS;
+        }
+        if (accept == 0) {
+            return NEVER;
+        }
+        return new Probability(accept, total);
+    }
+
+    private static boolean isDigits(String value, int begin, int end) {
+        if (begin >= end) {
+            return false;
+        }
+        for (int i = begin; i < end; i++) {
+            char digit = value.charAt(i);
+            if ((digit < '0') || (digit > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isOn() {
+        if (this.accept == this.total) {
+            return true;
+        }
+        if (this.accept == 0) {
+            return false;
+        }
+        return ThreadLocalRandom.current().nextInt(this.total) < this.accept;
+    }
+
+    /**
+     * Deterministic draw: the same hash always lands in the same bucket, and a bucket accepted at a given ratio stays
+     * accepted when the ratio grows.
+     */
+    boolean isOn(long hash) {
+        return ((hash >>> 1) % this.total) < this.accept;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.proxy;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * How the proxy that implements the common interface is created.
+ */
+public enum ProxyEngine {
+
+    /**
+     * {@link Proxy} based proxy. Every call goes through {@link FeatureDispatcher#invoke} and reflection.
+     */
+    JDK {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T createProxy(Class<? super T> commonInterface, FeatureDispatcher<T> dispatcher) {
+            return (T) Proxy.newProxyInstance(commonInterface.getClassLoader(), new Class<?>[]{commonInterface}, dispatcher);
+        }
+    },
+
+    /**
+     * Generated class, one per common interface, that calls the selected implementation directly.
+     * Methods without togglable parameters neither box their arguments nor use reflection.
+     */
+    BYTECODE {
+        @Override
+        public <T> T createProxy(Class<? super T> commonInterface, FeatureDispatcher<T> dispatcher) {
+            return BytecodeProxyFactory.createProxy(commonInterface, dispatcher);
+        }
+    },
+
+    /**
+     * Delegate generated at compile time by the annotation processor of feature-toggle-processor, that calls the
+     * selected implementation directly: no reflection and no class generated at runtime. Interfaces without a
+     * generated delegate, and dispatchers that time, shadow or partition the calls, fall back to {@link #BYTECODE}.
+     */
+    GENERATED {
+        @Override
+        public <T> T createProxy(Class<? super T> commonInterface, FeatureDispatcher<T> dispatcher) {
+            return GeneratedProxyFactory.createProxy(commonInterface, dispatcher);
+        }
+    };
+
+    public abstract <T> T createProxy(Class<? super T> commonInterface, FeatureDispatcher<T> dispatcher);
+}
@@ -0,0 +1,103 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.proxy;
+
+import org.blocks4j.feature.toggle.shadow.ShadowComparator;
+import org.blocks4j.feature.toggle.shadow.ShadowExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Dark launch of a feature: the callers are always served by the OFF implementation, while the implementation of the
+ * feature is tried in its shadow.
+ * <p>
+ * Once a call completed, and if the feature would have been on for it, the same call is made to the implementation
+ * of the feature on the {@link ShadowExecutor} and both outcomes are compared. The share of the calls mirrored is
+ * configured as {@code accept/total} under {@code featureName#mirror}, all of them if not set.
+ */
+public class ShadowFeature<T> extends ProbabilisticFeature<T> {
+
+    private static final String MIRROR_PROPERTY_FORMAT = "%s#mirror";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShadowFeature.class);
+
+    private ShadowComparator comparator = ShadowComparator.EQUALS;
+
+    @Override
+    public void init() {
+        if (this.getShadowExecutor() == null) {
+            throw new IllegalStateException(String.format("The dark launch of the feature [%s] needs a shadow executor", this.getFeatureName()));
+        }
+        super.init();
+    }
+
+    @Override
+    protected String getProbabilityKey(String featureName) {
+        return String.format(MIRROR_PROPERTY_FORMAT, featureName);
+    }
+
+    public void setComparator(ShadowComparator comparator) {
+        this.comparator = comparator;
+    }
+
+    @Override
+    public T select(Method method, Object[] args) {
+        return this.getFeatureOff();
+    }
+
+    @Override
+    public boolean isShadowing() {
+        return true;
+    }
+
+    /**
+     * The decision is made here, after the call: it only chooses whether the call is mirrored.
+     */
+    @Override
+    public void shadow(final Method method, T target, final Object[] args, Object result, Throwable failure) {
+        if (!this.evaluate(method, args)) {
+            return;
+        }
+        if ((failure == null) && (result instanceof CompletionStage)) {
+            ((CompletionStage<?>) result).whenComplete((value, stageFailure) -> this.mirror(method, args, value, ShadowExecutor.unwrap(stageFailure)));
+        } else {
+            this.mirror(method, args, result, failure);
+        }
+    }
+
+    private void mirror(final Method method, Object[] args, final Object value, final Throwable failure) {
+        this.getShadowExecutor().submit(method, this.getFeatureOn(), args, this.getMetrics(), (shadowValue, shadowFailure) -> this.compare(method, value, failure, shadowValue, shadowFailure));
+    }
+
+    private void compare(Method method, Object value, Throwable failure, Object shadowValue, Throwable shadowFailure) {
+        boolean matched;
+        try {
+            matched = this.comparator.matches(method, value, failure, shadowValue, shadowFailure);
+        } catch (RuntimeException e) {
+            LOGGER.warn(String.format("Couldn't compare the outcomes of [%s] for the feature [%s]", method, this.getFeatureName()), e);
+            matched = false;
+        }
+        this.getMetrics().recordShadowComparison(matched);
+        if (!matched && LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format("Shadow call of [%s] for the feature [%s] mismatched: [%s] / [%s] served, [%s] / [%s] in the shadow",
+                                       method, this.getFeatureName(), value, failure, shadowValue, shadowFailure));
+        }
+    }
+}
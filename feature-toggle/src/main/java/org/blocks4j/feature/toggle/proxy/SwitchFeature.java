@@ -0,0 +1,131 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package org.blocks4j.feature.toggle.proxy;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dispatcher of a switch between several features: the cases are checked in order, in a single pass, and the
+ * implementation of the first enabled one serves the call, or the default implementation if none is.
+ */
+public class SwitchFeature<T> extends FeatureDispatcher<T> {
+
+    private final Feature<T>[] cases;
+    private final T defaultFeature;
+    private final boolean timed;
+    private final boolean shadowing;
+
+    public SwitchFeature(List<? extends Feature<T>> cases, T defaultFeature) {
+        this.cases = this.toArray(cases);
+        this.defaultFeature = defaultFeature;
+        this.timed = this.isAnyCaseTimed();
+        this.shadowing = this.isAnyCaseShadowing();
+    }
+
+    private boolean isAnyCaseTimed() {
+        for (Feature<T> feature : this.cases) {
+            if (feature.isTimed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAnyCaseShadowing() {
+        for (Feature<T> feature : this.cases) {
+            if (feature.isShadowing()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the array is only filled with the given cases and never handed out, so it only ever holds Feature<T>
+    @SuppressWarnings("unchecked")
+    private Feature<T>[] toArray(List<? extends Feature<T>> cases) {
+        return (Feature<T>[]) cases.toArray(new Feature<?>[cases.size()]);
+    }
+
+    @Override
+    public T select(Method method, Object[] args) {
+        for (Feature<T> feature : this.cases) {
+            if (feature.evaluate(method, args)) {
+                return feature.getFeatureOn();
+            }
+        }
+        return this.defaultFeature;
+    }
+
+    @Override
+    public boolean isTimed() {
+        return this.timed;
+    }
+
+    /**
+     * The latency goes to the case that served the call; a call served by the default implementation was off for
+     * every case.
+     */
+    @Override
+    public void recordLatency(T target, long nanos) {
+        if (target != this.defaultFeature) {
+            for (Feature<T> feature : this.cases) {
+                if (feature.getFeatureOn() == target) {
+                    feature.recordLatency(target, nanos);
+                    return;
+                }
+            }
+        }
+        for (Feature<T> feature : this.cases) {
+            feature.recordLatency(this.defaultFeature, nanos);
+        }
+    }
+
+    @Override
+    public boolean isShadowing() {
+        return this.shadowing;
+    }
+
+    /**
+     * The case that serves the call shadows it with the default implementation.
+     */
+    @Override
+    public void shadow(Method method, T target, Object[] args, Object result, Throwable failure) {
+        if (target == this.defaultFeature) {
+            return;
+        }
+        for (Feature<T> feature : this.cases) {
+            if (feature.getFeatureOn() == target) {
+                if (feature.isShadowing()) {
+                    feature.shadow(method, target, args, result, failure);
+                }
+                return;
+            }
+        }
+    }
+
+    public List<Feature<T>> getCases() {
+        return Collections.unmodifiableList(Arrays.asList(this.cases));
+    }
+
+    public T getDefaultFeature() {
+        return this.defaultFeature;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.remote;
+
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Configuration pulled from an HTTP endpoint serving a {@link ToggleDocument}. A background thread long-polls it: each
+ * request sends the {@code ETag} of the current version in {@code If-None-Match} and asks the server to hold it until
+ * that version changes ({@code Prefer: wait=30}), so changes arrive as they're published instead of on a schedule.
+ * Servers that keep the previous versions answer with the changes only ({@code 226 IM Used}, see {@link ToggleDelta});
+ * the others answer with the whole document, or {@code 304 Not Modified}, and are polled every poll interval.
+ * <p>
+ * The last version received is kept in a cache file, if one is given, and read back when the configuration is
+ * built: services start on the configuration they last saw without waiting for the server, and catch up in the
+ * background. Without a cache file, building the configuration fetches it and fails if the server can't be reached.
+ * Failed requests keep the current version and are retried.
+ */
+public class RemoteFeatureToggleConfiguration implements ObservableFeatureToggleConfiguration, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteFeatureToggleConfiguration.class);
+
+    static final int IM_USED = 226;
+
+    private final URL url;
+    private final Path cacheFile;
+    private final long longPollSeconds;
+    private final long pollIntervalMillis;
+    private final long retryIntervalMillis;
+    private final int timeoutMillis;
+    private final SnapshotFeatureToggleConfiguration snapshotConfig;
+    private final ReentrantLock publishLock;
+
+    private volatile String etag;
+    private volatile boolean documentRequired;
+    private volatile HttpURLConnection pendingRequest;
+    private Thread poller;
+    private volatile boolean closed;
+
+    private RemoteFeatureToggleConfiguration(Builder builder) {
+        this.url = builder.url;
+        this.cacheFile = builder.cacheFile;
+        this.longPollSeconds = builder.longPollSeconds;
+        this.pollIntervalMillis = builder.pollIntervalMillis;
+        this.retryIntervalMillis = builder.retryIntervalMillis;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.snapshotConfig = new SnapshotFeatureToggleConfiguration();
+        this.publishLock = new ReentrantLock();
+    }
+
+    public static Builder forUrl(URL url) {
+        return new Builder(url);
+    }
+
+    @Override
+    public FeatureToggleSnapshot getSnapshot() {
+        return this.snapshotConfig.getSnapshot();
+    }
+
+    @Override
+    public Set<String> getEnabledFeatures() {
+        return this.snapshotConfig.getEnabledFeatures();
+    }
+
+    @Override
+    public Map<String, Set<String>> getEnabledParameters() {
+        return this.snapshotConfig.getEnabledParameters();
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.removeChangeListener(listener);
+    }
+
+    public URL getUrl() {
+        return this.url;
+    }
+
+    /**
+     * @return the {@code ETag} of the current version, {@code null} before the first one
+     */
+    public String getETag() {
+        return this.etag;
+    }
+
+    /**
+     * Asks the server right away, without waiting for a change, instead of waiting for the poller.
+     *
+     * @return whether a new snapshot was published
+     */
+    public boolean refresh() {
+        try {
+            return this.fetch(false);
+        } catch (IOException | FeatureToggleDefinitionParsingException e) {
+            LOGGER.error(String.format("Couldn't fetch the feature toggle configuration from [%s], keeping its current version", this.url), e);
+            return false;
+        }
+    }
+
+    private boolean fetch(boolean longPoll) throws IOException {
+        String knownETag = this.etag;
+        String requestETag = this.documentRequired ? null : knownETag;
+        long waitSeconds = (longPoll && (requestETag != null)) ? this.longPollSeconds : 0L;
+
+        HttpURLConnection connection = (HttpURLConnection) this.url.openConnection();
+        this.pendingRequest = connection;
+        try {
+            connection.setConnectTimeout(this.timeoutMillis);
+            connection.setReadTimeout((int) Math.min(Integer.MAX_VALUE, this.timeoutMillis + TimeUnit.SECONDS.toMillis(waitSeconds)));
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Accept", ToggleDocument.MEDIA_TYPE);
+            if (requestETag != null) {
+                connection.setRequestProperty("If-None-Match", requestETag);
+                connection.setRequestProperty("A-IM", ToggleDelta.INSTANCE_MANIPULATION);
+            }
+            if (waitSeconds > 0L) {
+                connection.setRequestProperty("Prefer", "wait=" + waitSeconds);
+            }
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return false;
+            }
+            if ((status != HttpURLConnection.HTTP_OK) && (status != IM_USED)) {
+                throw new IOException(String.format("Unexpected response %d %s from [%s]", status, connection.getResponseMessage(), this.url));
+            }
+            String responseETag = connection.getHeaderField("ETag");
+            if (responseETag == null) {
+                throw new IOException(String.format("The response of [%s] has no ETag", this.url));
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                if (status == HttpURLConnection.HTTP_OK) {
+                    return this.publish(knownETag, responseETag, ToggleDocument.read(reader, this.url.toString()));
+                }
+                if (!ToggleDelta.INSTANCE_MANIPULATION.equals(connection.getHeaderField("IM"))
+                        || !Objects.equals(requestETag, connection.getHeaderField("Delta-Base"))) {
+                    this.documentRequired = true;
+                    throw new IOException(String.format("The delta sent by [%s] doesn't apply to version %s", this.url, requestETag));
+                }
+                try {
+                    return this.publish(knownETag, responseETag, ToggleDelta.read(reader, this.url.toString()));
+                } catch (FeatureToggleDefinitionParsingException e) {
+                    this.documentRequired = true;
+                    throw e;
+                }
+            }
+        } finally {
+            this.pendingRequest = null;
+        }
+    }
+
+    private boolean publish(String knownETag, String responseETag, ToggleDocument document) {
+        this.publishLock.lock();
+        try {
+            if (!Objects.equals(this.etag, knownETag)) {
+                return false;
+            }
+            FeatureToggleSnapshot published = this.snapshotConfig.update(document.getEnabledFeatures(), document.getEnabledParameters());
+            this.published(responseETag, published);
+            this.documentRequired = false;
+            return true;
+        } finally {
+            this.publishLock.unlock();
+        }
+    }
+
+    private boolean publish(String knownETag, String responseETag, ToggleDelta delta) {
+        this.publishLock.lock();
+        try {
+            if (!Objects.equals(this.etag, knownETag)) {
+                return false;
+            }
+            FeatureToggleSnapshot current = this.snapshotConfig.getSnapshot();
+            final Set<String> features = delta.applyToFeatures(current.getEnabledFeatures());
+            final Map<String, Set<String>> parameters = delta.applyToParameters(current.getEnabledParameters());
+            FeatureToggleSnapshot published = this.snapshotConfig.update(version -> FeatureToggleSnapshot.of(version, features, parameters));
+            this.published(responseETag, published);
+            return true;
+        } finally {
+            this.publishLock.unlock();
+        }
+    }
+
+    private void published(String responseETag, FeatureToggleSnapshot published) {
+        this.etag = responseETag;
+        LOGGER.info(String.format("Feature toggle configuration %s fetched from [%s] as version %d, enabled features are %s", responseETag, this.url, published.getVersion(), published.getEnabledFeatures()));
+        if (this.cacheFile != null) {
+            try {
+                ToggleDocument.writeFile(this.cacheFile, responseETag, published.getEnabledFeatures(), published.getEnabledParameters());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn(String.format("Couldn't write the feature toggle cache file [%s]", this.cacheFile), e);
+            }
+        }
+    }
+
+    /**
+     * @return whether the cached version was published
+     */
+    private boolean loadCache() {
+        if ((this.cacheFile == null) || !Files.isRegularFile(this.cacheFile)) {
+            return false;
+        }
+        try {
+            ToggleDocument document = ToggleDocument.readFile(this.cacheFile);
+            FeatureToggleSnapshot published = this.snapshotConfig.update(document.getEnabledFeatures(), document.getEnabledParameters());
+            this.etag = document.getETag();
+            LOGGER.info(String.format("Feature toggle configuration %s read from the cache file [%s] as version %d, enabled features are %s", this.etag, this.cacheFile, published.getVersion(), published.getEnabledFeatures()));
+            return true;
+        } catch (IOException | FeatureToggleDefinitionParsingException e) {
+            LOGGER.warn(String.format("Couldn't read the feature toggle cache file [%s]", this.cacheFile), e);
+            return false;
+        }
+    }
+
+    private void start() {
+        this.poller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                RemoteFeatureToggleConfiguration.this.poll();
+            }
+        }, "feature-toggle-remote-poller[" + this.url.getHost() + "]");
+        this.poller.setDaemon(true);
+        this.poller.start();
+    }
+
+    private void poll() {
+        while (!this.closed) {
+            long start = System.nanoTime();
+            long pause;
+            try {
+                this.fetch(true);
+                pause = this.pollIntervalMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                if (this.closed) {
+                    return;
+                }
+                LOGGER.warn(String.format("Couldn't fetch the feature toggle configuration from [%s], retrying in %d ms", this.url, this.retryIntervalMillis), e);
+                pause = this.retryIntervalMillis;
+            }
+
+            try {
+                if (pause > 0L) {
+                    Thread.sleep(pause);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops polling the server; the last version received stays available.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.poller != null) {
+            this.poller.interrupt();
+        }
+        HttpURLConnection connection = this.pendingRequest;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    public static class Builder {
+
+        private final URL url;
+        private Path cacheFile;
+        private long longPollSeconds;
+        private long pollIntervalMillis;
+        private long retryIntervalMillis;
+        private int timeoutMillis;
+
+        private Builder(URL url) {
+            if (url == null) {
+                throw new IllegalArgumentException("The url mustn't be null.");
+            }
+            this.url = url;
+            this.longPollSeconds = 30L;
+            this.pollIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+            this.retryIntervalMillis = TimeUnit.SECONDS.toMillis(5);
+            this.timeoutMillis = (int) TimeUnit.SECONDS.toMillis(10);
+        }
+
+        /**
+         * File keeping the last version received, read when the configuration is built; none by default.
+         */
+        public Builder cacheFile(Path cacheFile) {
+            if (cacheFile == null) {
+                throw new IllegalArgumentException("The cache file mustn't be null.");
+            }
+            this.cacheFile = cacheFile.toAbsolutePath();
+            return this;
+        }
+
+        /**
+         * How long the server is asked to hold a request when nothing changes; 30 seconds by default.
+         */
+        public Builder longPoll(long wait, TimeUnit unit) {
+            if (unit.toSeconds(wait) <= 0) {
+                throw new IllegalArgumentException("The long poll wait must be a second at least.");
+            }
+            this.longPollSeconds = unit.toSeconds(wait);
+            return this;
+        }
+
+        /**
+         * The least time between two requests, so servers answering without holding them are polled, not flooded;
+         * 1 second by default.
+         */
+        public Builder pollInterval(long interval, TimeUnit unit) {
+            if (interval < 0) {
+                throw new IllegalArgumentException("The poll interval mustn't be negative.");
+            }
+            this.pollIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * How long to wait after a failed request; 5 seconds by default.
+         */
+        public Builder retryInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("The retry interval must be positive.");
+            }
+            this.retryIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Timeout of the connections, and of the responses beyond the long poll wait; 10 seconds by default.
+         */
+        public Builder timeout(long timeout, TimeUnit unit) {
+            if ((timeout <= 0) || (unit.toMillis(timeout) > Integer.MAX_VALUE)) {
+                throw new IllegalArgumentException("The timeout must be positive.");
+            }
+            this.timeoutMillis = (int) unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Reads the cache file, or fetches the configuration when there's none, failing if it can't, and starts
+         * polling the server.
+         */
+        public RemoteFeatureToggleConfiguration build() {
+            RemoteFeatureToggleConfiguration config = new RemoteFeatureToggleConfiguration(this);
+            if (!config.loadCache()) {
+                try {
+                    config.fetch(false);
+                } catch (IOException | FeatureToggleDefinitionParsingException e) {
+                    throw new FeatureToggleDefinitionParsingException(String.format("Couldn't fetch the feature toggle configuration from [%s]", this.url), e);
+                }
+            }
+            config.start();
+            return config;
+        }
+    }
+}
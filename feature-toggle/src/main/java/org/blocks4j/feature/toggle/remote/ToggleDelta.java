@@ -0,0 +1,220 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.remote;
+
+import org.blocks4j.feature.toggle.parameters.NumericAllowList;
+import org.blocks4j.feature.toggle.snapshot.FeatureToggleSnapshot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Changes from one version of a {@link ToggleDocument} to another, sent instead of the whole document to a client
+ * that has the previous version (RFC 3229 delta encoding, {@code A-IM: feature-toggle-delta}). Its lines are those of
+ * the document, marked as added or removed:
+ * <pre>
+ * +feature featureC
+ * -feature featureA
+ * +parameter customerId 3 4
+ * -parameter customerId 1
+ * -parameter region
+ * </pre>
+ * {@code +parameter} adds values, creating the parameter if needed; {@code -parameter} removes the values it lists, or
+ * the whole parameter when it lists none.
+ */
+final class ToggleDelta {
+
+    static final String INSTANCE_MANIPULATION = "feature-toggle-delta";
+
+    private final Set<String> addedFeatures;
+    private final Set<String> removedFeatures;
+    private final Map<String, ParameterChange> parameterChanges;
+
+    private ToggleDelta(Set<String> addedFeatures, Set<String> removedFeatures, Map<String, ParameterChange> parameterChanges) {
+        this.addedFeatures = addedFeatures;
+        this.removedFeatures = removedFeatures;
+        this.parameterChanges = parameterChanges;
+    }
+
+    static void write(Writer writer,
+                      Set<String> baseFeatures, Map<String, Set<String>> baseParameters,
+                      Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) throws IOException {
+        for (String feature : new TreeSet<String>(enabledFeatures)) {
+            if (!baseFeatures.contains(feature)) {
+                writer.write("+feature " + ToggleDocument.encode(feature) + "\n");
+            }
+        }
+        for (String feature : new TreeSet<String>(baseFeatures)) {
+            if (!enabledFeatures.contains(feature)) {
+                writer.write("-feature " + ToggleDocument.encode(feature) + "\n");
+            }
+        }
+
+        Set<String> keys = new TreeSet<String>(baseParameters.keySet());
+        keys.addAll(enabledParameters.keySet());
+        for (String key : keys) {
+            Set<String> baseValues = baseParameters.get(key);
+            Set<String> values = enabledParameters.get(key);
+            if (values == null) {
+                ToggleDocument.writeParameter(writer, "-parameter", key, null);
+            } else if (baseValues == null) {
+                ToggleDocument.writeParameter(writer, "+parameter", key, values);
+            } else {
+                Set<String> removed = difference(baseValues, values);
+                if (!removed.isEmpty()) {
+                    ToggleDocument.writeParameter(writer, "-parameter", key, removed);
+                }
+                Set<String> added = difference(values, baseValues);
+                if (!added.isEmpty()) {
+                    ToggleDocument.writeParameter(writer, "+parameter", key, added);
+                }
+            }
+        }
+    }
+
+    private static Set<String> difference(Set<String> values, Set<String> excluded) {
+        Set<String> difference = new HashSet<String>();
+        for (String value : values) {
+            if (!excluded.contains(value)) {
+                difference.add(value);
+            }
+        }
+        return difference;
+    }
+
+    static ToggleDelta read(BufferedReader reader, String source) throws IOException {
+        Set<String> addedFeatures = new HashSet<String>();
+        Set<String> removedFeatures = new HashSet<String>();
+        Map<String, ParameterChange> parameterChanges = new LinkedHashMap<String, ParameterChange>();
+
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String[] tokens = ToggleDocument.tokens(line);
+            if (tokens == null) {
+                continue;
+            }
+            if ("+feature".equals(tokens[0]) && (tokens.length == 2)) {
+                String feature = ToggleDocument.decode(tokens[1], source, lineNumber);
+                removedFeatures.remove(feature);
+                addedFeatures.add(feature);
+            } else if ("-feature".equals(tokens[0]) && (tokens.length == 2)) {
+                String feature = ToggleDocument.decode(tokens[1], source, lineNumber);
+                addedFeatures.remove(feature);
+                removedFeatures.add(feature);
+            } else if ("+parameter".equals(tokens[0]) && (tokens.length >= 2)) {
+                changeOf(parameterChanges, ToggleDocument.decode(tokens[1], source, lineNumber)).add(ToggleDocument.values(tokens, source, lineNumber));
+            } else if ("-parameter".equals(tokens[0]) && (tokens.length == 2)) {
+                changeOf(parameterChanges, ToggleDocument.decode(tokens[1], source, lineNumber)).drop();
+            } else if ("-parameter".equals(tokens[0]) && (tokens.length > 2)) {
+                changeOf(parameterChanges, ToggleDocument.decode(tokens[1], source, lineNumber)).remove(ToggleDocument.values(tokens, source, lineNumber));
+            } else {
+                throw ToggleDocument.invalid(source, lineNumber, "expected '+feature', '-feature', '+parameter' or '-parameter'");
+            }
+        }
+        return new ToggleDelta(addedFeatures, removedFeatures, parameterChanges);
+    }
+
+    private static ParameterChange changeOf(Map<String, ParameterChange> parameterChanges, String key) {
+        ParameterChange change = parameterChanges.get(key);
+        if (change == null) {
+            change = new ParameterChange();
+            parameterChanges.put(key, change);
+        }
+        return change;
+    }
+
+    Set<String> applyToFeatures(Set<String> enabledFeatures) {
+        Set<String> features = new HashSet<String>(enabledFeatures);
+        features.removeAll(this.removedFeatures);
+        features.addAll(this.addedFeatures);
+        return features;
+    }
+
+    /**
+     * Only the changed parameters are compiled again; the values of the others are shared with {@code
+     * enabledParameters}.
+     */
+    Map<String, Set<String>> applyToParameters(Map<String, Set<String>> enabledParameters) {
+        Map<String, Set<String>> parameters = new HashMap<String, Set<String>>(enabledParameters);
+        for (Map.Entry<String, ParameterChange> change : this.parameterChanges.entrySet()) {
+            Set<String> values = change.getValue().applyTo(enabledParameters.get(change.getKey()));
+            if (values == null) {
+                parameters.remove(change.getKey());
+            } else {
+                parameters.put(change.getKey(), values);
+            }
+        }
+        return parameters;
+    }
+
+    private static final class ParameterChange {
+
+        private boolean dropped;
+        private boolean added;
+        private final Set<String> addedValues = new HashSet<String>();
+        private final Set<String> removedValues = new HashSet<String>();
+
+        private void add(Set<String> values) {
+            this.added = true;
+            this.removedValues.removeAll(values);
+            this.addedValues.addAll(values);
+        }
+
+        private void remove(Set<String> values) {
+            this.addedValues.removeAll(values);
+            this.removedValues.addAll(values);
+        }
+
+        private void drop() {
+            this.dropped = true;
+            this.added = false;
+            this.addedValues.clear();
+            this.removedValues.clear();
+        }
+
+        /**
+         * @return the changed values, {@code null} if the parameter is no more
+         */
+        private Set<String> applyTo(Set<String> enabledValues) {
+            if (!this.added && (this.dropped || (enabledValues == null))) {
+                return null;
+            }
+            Set<String> values = (this.dropped || (enabledValues == null)) ? Collections.<String>emptySet() : enabledValues;
+            if (values instanceof NumericAllowList) {
+                NumericAllowList numericValues = ((NumericAllowList) values).with(this.addedValues, this.removedValues);
+                if (numericValues != null) {
+                    return numericValues;
+                }
+            }
+
+            Set<String> changedValues = new HashSet<String>(values);
+            changedValues.removeAll(this.removedValues);
+            changedValues.addAll(this.addedValues);
+            return FeatureToggleSnapshot.compileValues(changedValues);
+        }
+    }
+}
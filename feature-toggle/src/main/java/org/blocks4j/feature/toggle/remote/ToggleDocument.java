@@ -0,0 +1,200 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.remote;
+
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Complete toggle configuration, as served to a {@link RemoteFeatureToggleConfiguration} and kept in its cache file.
+ * It is UTF-8 text, one line per feature or parameter, made of tokens separated by a space and percent-encoded like
+ * URL parameters:
+ * <pre>
+ * feature featureA
+ * feature featureB
+ * parameter customerId 1 2
+ * parameter featureA%26region EU
+ * </pre>
+ * The cache file starts with the {@code ETag} of the document: {@code etag "42"}. Blank lines and lines starting with
+ * {@code #} are ignored.
+ */
+final class ToggleDocument {
+
+    static final String MEDIA_TYPE = "text/plain; charset=UTF-8";
+
+    private final String etag;
+    private final Set<String> enabledFeatures;
+    private final Map<String, Set<String>> enabledParameters;
+
+    ToggleDocument(String etag, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        this.etag = etag;
+        this.enabledFeatures = enabledFeatures;
+        this.enabledParameters = enabledParameters;
+    }
+
+    String getETag() {
+        return this.etag;
+    }
+
+    Set<String> getEnabledFeatures() {
+        return this.enabledFeatures;
+    }
+
+    Map<String, Set<String>> getEnabledParameters() {
+        return this.enabledParameters;
+    }
+
+    static void write(Writer writer, String etag, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) throws IOException {
+        if (etag != null) {
+            writer.write("etag " + encode(etag) + "\n");
+        }
+        if (enabledFeatures != null) {
+            for (String feature : new TreeSet<String>(enabledFeatures)) {
+                writer.write("feature " + encode(feature) + "\n");
+            }
+        }
+        if (enabledParameters != null) {
+            for (Map.Entry<String, Set<String>> parameter : new TreeMap<String, Set<String>>(enabledParameters).entrySet()) {
+                writeParameter(writer, "parameter", parameter.getKey(), parameter.getValue());
+            }
+        }
+    }
+
+    static void writeParameter(Writer writer, String operation, String key, Set<String> values) throws IOException {
+        writer.write(operation);
+        writer.write(' ');
+        writer.write(encode(key));
+        if (values != null) {
+            for (String value : values) {
+                writer.write(' ');
+                writer.write(encode(value));
+            }
+        }
+        writer.write('\n');
+    }
+
+    static ToggleDocument read(BufferedReader reader, String source) throws IOException {
+        String etag = null;
+        Set<String> features = new HashSet<String>();
+        Map<String, Set<String>> parameters = new HashMap<String, Set<String>>();
+
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String[] tokens = tokens(line);
+            if (tokens == null) {
+                continue;
+            }
+            if ("etag".equals(tokens[0]) && (tokens.length == 2) && (etag == null)) {
+                etag = decode(tokens[1], source, lineNumber);
+            } else if ("feature".equals(tokens[0]) && (tokens.length == 2)) {
+                features.add(decode(tokens[1], source, lineNumber));
+            } else if ("parameter".equals(tokens[0]) && (tokens.length >= 2)) {
+                parameters.put(decode(tokens[1], source, lineNumber), values(tokens, source, lineNumber));
+            } else {
+                throw invalid(source, lineNumber, "expected 'feature <name>' or 'parameter <key> <values>'");
+            }
+        }
+        return new ToggleDocument(etag, features, parameters);
+    }
+
+    /**
+     * Writes the document to a temporary file next to {@code target}, then renames it into place, so a crash never
+     * leaves a partial file behind.
+     */
+    static void writeFile(Path target, String etag, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, target.getFileName().toString() + ".", ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                write(writer, etag, enabledFeatures, enabledParameters);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static ToggleDocument readFile(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            ToggleDocument document = read(reader, file.toString());
+            if (document.getETag() == null) {
+                throw new FeatureToggleDefinitionParsingException(String.format("The feature toggle cache file [%s] has no ETag", file));
+            }
+            return document;
+        }
+    }
+
+    /**
+     * @return the tokens of the line, {@code null} if it's blank or a comment
+     */
+    static String[] tokens(String line) {
+        if (line.trim().isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        return line.split(" ", -1);
+    }
+
+    static Set<String> values(String[] tokens, String source, int lineNumber) {
+        Set<String> values = new HashSet<String>();
+        for (String token : Arrays.asList(tokens).subList(2, tokens.length)) {
+            values.add(decode(token, source, lineNumber));
+        }
+        return values;
+    }
+
+    static String encode(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("The features, parameters and values mustn't be null.");
+        }
+        try {
+            return URLEncoder.encode(token, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String decode(String token, String source, int lineNumber) {
+        try {
+            return URLDecoder.decode(token, StandardCharsets.UTF_8.name());
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            throw invalid(source, lineNumber, "invalid percent-encoding");
+        }
+    }
+
+    static FeatureToggleDefinitionParsingException invalid(String source, int lineNumber, String reason) {
+        return new FeatureToggleDefinitionParsingException(String.format("Invalid feature toggle document [%s] at line %d: %s", source, lineNumber, reason));
+    }
+}
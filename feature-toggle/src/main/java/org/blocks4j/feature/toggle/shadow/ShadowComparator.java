@@ -0,0 +1,48 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.shadow;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+
+/**
+ * Tells whether the outcome of a shadow call matches the one served to the caller. An outcome is either a value,
+ * the completed value for a {@link java.util.concurrent.CompletionStage}, or a failure.
+ */
+public interface ShadowComparator {
+
+    /**
+     * Values match when they are {@link Objects#deepEquals deeply equal}, failures when they are of the same class.
+     */
+    ShadowComparator EQUALS = new ShadowComparator() {
+        @Override
+        public boolean matches(Method method, Object value, Throwable failure, Object shadowValue, Throwable shadowFailure) {
+            if ((failure != null) || (shadowFailure != null)) {
+                return (failure != null) && (shadowFailure != null) && (failure.getClass() == shadowFailure.getClass());
+            }
+            return Objects.deepEquals(value, shadowValue);
+        }
+    };
+
+    /**
+     * @param value         what was served to the caller, {@code null} if it failed
+     * @param failure       what the caller got thrown, {@code null} if it didn't fail
+     * @param shadowValue   what the shadow call returned, {@code null} if it failed
+     * @param shadowFailure what the shadow call threw, {@code null} if it didn't fail
+     */
+    boolean matches(Method method, Object value, Throwable failure, Object shadowValue, Throwable shadowFailure);
+}
@@ -0,0 +1,238 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.shadow;
+
+import org.blocks4j.feature.toggle.metrics.FeatureMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs calls in the shadow of the ones served to the callers, on an executor of its own, at most {@code maxInFlight}
+ * at a time. A call is in flight until it returns or, when it returns a {@link CompletionStage}, until that stage
+ * completes.
+ * <p>
+ * A stage that never completes would hold its place forever: given a timer, the executor gives up on stages still
+ * pending after {@code stageTimeout}, releasing their place and counting them as failed shadow calls with a
+ * {@link TimeoutException}. Without a timer, stages are waited for as long as they take.
+ * <p>
+ * Submitting never blocks: a call that finds the limit reached, or that the executor rejects, is dropped. Shadow
+ * calls feed the metrics and, if given, a completion callback; their results and failures never reach the callers.
+ * Any executor fits, e.g. a pool with a bounded queue or, on recent JDKs, a virtual thread per task.
+ */
+public class ShadowExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShadowExecutor.class);
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final ScheduledExecutorService timer;
+    private final long stageTimeoutNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public ShadowExecutor(Executor executor, int maxInFlight) {
+        this(executor, maxInFlight, null, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timer        runs the timeouts of the stages returned by shadow calls
+     * @param stageTimeout how long a returned stage may stay pending before the call is failed and its place released
+     */
+    public ShadowExecutor(Executor executor, int maxInFlight, ScheduledExecutorService timer, long stageTimeout, TimeUnit unit) {
+        if (executor == null) {
+            throw new IllegalArgumentException("The executor mustn't be null.");
+        }
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid maxInFlight [%d]", maxInFlight));
+        }
+        if ((timer != null) && (stageTimeout <= 0)) {
+            throw new IllegalArgumentException(String.format("Invalid stageTimeout [%d]", stageTimeout));
+        }
+        if (unit == null) {
+            throw new IllegalArgumentException("The unit mustn't be null.");
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.timer = timer;
+        this.stageTimeoutNanos = unit.toNanos(stageTimeout);
+    }
+
+    /**
+     * @return whether the call was handed to the executor, {@code false} if it was dropped
+     */
+    public boolean submit(Method method, Object target, Object[] args, FeatureMetrics metrics) {
+        return this.submit(method, target, args, metrics, null);
+    }
+
+    /**
+     * @param onCompletion called with the value or the failure of the shadow call, once it returned, threw or, for a
+     *                     {@link CompletionStage}, completed
+     * @return whether the call was handed to the executor, {@code false} if it was dropped
+     */
+    public boolean submit(Method method, Object target, Object[] args, FeatureMetrics metrics, BiConsumer<Object, Throwable> onCompletion) {
+        if (!this.acquire()) {
+            this.dropped.increment();
+            return false;
+        }
+        try {
+            this.executor.execute(new ShadowCall(method, target, args, metrics, onCompletion));
+        } catch (RejectedExecutionException e) {
+            this.release();
+            this.dropped.increment();
+            return false;
+        }
+        this.submitted.increment();
+        return true;
+    }
+
+    private boolean acquire() {
+        int current;
+        do {
+            current = this.inFlight.get();
+            if (current >= this.maxInFlight) {
+                return false;
+            }
+        } while (!this.inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    public long getSubmitted() {
+        return this.submitted.sum();
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    private final class ShadowCall implements Runnable {
+
+        private final Method method;
+        private final Object target;
+        private final Object[] args;
+        private final FeatureMetrics metrics;
+        private final BiConsumer<Object, Throwable> onCompletion;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private ShadowCall(Method method, Object target, Object[] args, FeatureMetrics metrics, BiConsumer<Object, Throwable> onCompletion) {
+            this.method = method;
+            this.target = target;
+            this.args = args;
+            this.metrics = metrics;
+            this.onCompletion = onCompletion;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            Object result;
+            try {
+                result = this.method.invoke(this.target, this.args);
+            } catch (InvocationTargetException e) {
+                this.completed(start, null, e.getTargetException());
+                return;
+            } catch (Throwable e) {
+                this.completed(start, null, e);
+                return;
+            }
+
+            if (result instanceof CompletionStage) {
+                ScheduledFuture<?> timeout = this.scheduleTimeout(start);
+                ((CompletionStage<?>) result).whenComplete((value, failure) -> {
+                    if (timeout != null) {
+                        timeout.cancel(false);
+                    }
+                    this.completed(start, value, unwrap(failure));
+                });
+            } else {
+                this.completed(start, result, null);
+            }
+        }
+
+        private ScheduledFuture<?> scheduleTimeout(final long start) {
+            if (ShadowExecutor.this.timer == null) {
+                return null;
+            }
+            try {
+                return ShadowExecutor.this.timer.schedule(() -> this.completed(start, null, new TimeoutException(String.format("The shadow call to [%s] didn't complete in %d ns", this.method, ShadowExecutor.this.stageTimeoutNanos))),
+                                                          ShadowExecutor.this.stageTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn(String.format("Couldn't schedule the timeout of the shadow call to [%s]", this.method), e);
+                return null;
+            }
+        }
+
+        /**
+         * Records the outcome of the call once: a stage completing after its timeout is ignored.
+         */
+        private void completed(long start, Object value, Throwable failure) {
+            if (!this.done.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.metrics.recordShadowCall(System.nanoTime() - start, failure != null);
+                if ((failure != null) && LOGGER.isDebugEnabled()) {
+                    LOGGER.debug(String.format("Shadow call to [%s] failed", this.method), failure);
+                }
+                if (this.onCompletion != null) {
+                    this.onCompletion.accept(value, failure);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn(String.format("Couldn't complete the shadow call to [%s]", this.method), e);
+            } finally {
+                ShadowExecutor.this.release();
+            }
+        }
+    }
+
+    /**
+     * The failure a stage was completed with, without the {@link CompletionException} dependent stages wrap it in.
+     */
+    public static Throwable unwrap(Throwable failure) {
+        if ((failure instanceof CompletionException) && (failure.getCause() != null)) {
+            return failure.getCause();
+        }
+        return failure;
+    }
+}
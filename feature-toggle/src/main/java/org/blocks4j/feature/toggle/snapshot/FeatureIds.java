@@ -0,0 +1,46 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.snapshot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns feature names into small integer ids, used as bit indexes by {@link FeatureToggleSnapshot}.
+ * Ids are stable for the lifetime of the class loader.
+ */
+public final class FeatureIds {
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private FeatureIds() {
+    }
+
+    public static int idOf(String featureName) {
+        Integer id = IDS.get(featureName);
+        if (id == null) {
+            Integer newId = NEXT_ID.getAndIncrement();
+            id = IDS.putIfAbsent(featureName, newId);
+            if (id == null) {
+                id = newId;
+            }
+        }
+        return id;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.snapshot;
+
+import org.blocks4j.feature.toggle.parameters.NumericAllowList;
+import org.blocks4j.feature.toggle.parameters.ParameterMatcher;
+import org.blocks4j.feature.toggle.parameters.ParameterMatchers;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable, compiled copy of a toggle configuration. Enabled features are kept in a bit set indexed by
+ * {@link FeatureIds}, so checking a feature is a single bit test.
+ * <p>
+ * Large lists of numeric values, such as the customer ids of a staged rollout, are laid out in a
+ * {@link NumericAllowList} while the snapshot compiles, on the thread loading the configuration: they take a fraction
+ * of the heap of their Strings, and the first call checking them doesn't pay for building them.
+ */
+public final class FeatureToggleSnapshot {
+
+    public static final FeatureToggleSnapshot EMPTY = compile(0L, Collections.<String>emptySet(), Collections.<String, Set<String>>emptyMap());
+
+    private final long version;
+    private final BitSet enabledFeatureIds;
+    private final Set<String> enabledFeatures;
+    private final Map<String, Set<String>> enabledParameters;
+    private final ConcurrentMap<MatcherKey, ParameterMatcher> parameterMatchers = new ConcurrentHashMap<MatcherKey, ParameterMatcher>();
+
+    private FeatureToggleSnapshot(long version, BitSet enabledFeatureIds, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        this.version = version;
+        this.enabledFeatureIds = enabledFeatureIds;
+        this.enabledFeatures = enabledFeatures;
+        this.enabledParameters = enabledParameters;
+    }
+
+    public static FeatureToggleSnapshot compile(long version, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        BitSet enabledFeatureIds = new BitSet();
+        Set<String> features = new HashSet<String>();
+        if (enabledFeatures != null) {
+            for (String featureName : enabledFeatures) {
+                enabledFeatureIds.set(FeatureIds.idOf(featureName));
+                features.add(featureName);
+            }
+        }
+
+        Map<String, Set<String>> parameters = new HashMap<String, Set<String>>();
+        if (enabledParameters != null) {
+            for (Map.Entry<String, Set<String>> parameter : enabledParameters.entrySet()) {
+                Set<String> values = parameter.getValue() == null ? Collections.<String>emptySet() : parameter.getValue();
+                parameters.put(parameter.getKey(), compileValues(values));
+            }
+        }
+
+        return new FeatureToggleSnapshot(version,
+                                         enabledFeatureIds,
+                                         Collections.unmodifiableSet(features),
+                                         Collections.unmodifiableMap(parameters));
+    }
+
+    /**
+     * Compiles the values of a parameter as {@link #compile} does, for snapshots made {@link #of} the values of the
+     * previous one and a few changed parameters.
+     */
+    public static Set<String> compileValues(Set<String> values) {
+        Set<String> compactValues = NumericAllowList.of(values);
+        return (compactValues != null) ? compactValues : Collections.unmodifiableSet(new HashSet<String>(values));
+    }
+
+    /**
+     * Snapshot of values that are immutable already, kept as they are instead of copied: allow-lists read from a
+     * memory-mapped file stay off the heap.
+     */
+    public static FeatureToggleSnapshot of(long version, Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        BitSet enabledFeatureIds = new BitSet();
+        for (String featureName : enabledFeatures) {
+            enabledFeatureIds.set(FeatureIds.idOf(featureName));
+        }
+
+        return new FeatureToggleSnapshot(version,
+                                         enabledFeatureIds,
+                                         Collections.unmodifiableSet(enabledFeatures),
+                                         Collections.unmodifiableMap(enabledParameters));
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public boolean isEnabled(int featureId) {
+        return this.enabledFeatureIds.get(featureId);
+    }
+
+    public boolean isEnabled(String featureName) {
+        return this.isEnabled(FeatureIds.idOf(featureName));
+    }
+
+    public Set<String> getEnabledFeatures() {
+        return this.enabledFeatures;
+    }
+
+    public Map<String, Set<String>> getEnabledParameters() {
+        return this.enabledParameters;
+    }
+
+    /**
+     * Matcher for the values enabled under {@code key}, compiled for {@code valueType} once per snapshot.
+     *
+     * @return {@code null} when no value is enabled under the key
+     */
+    public ParameterMatcher getParameterMatcher(final String key, final Class<?> valueType) {
+        final Set<String> values = this.enabledParameters.get(key);
+        if ((values == null) || values.isEmpty()) {
+            return null;
+        }
+        return this.parameterMatchers.computeIfAbsent(new MatcherKey(key, valueType), matcherKey -> ParameterMatchers.compile(valueType, values));
+    }
+
+    private static final class MatcherKey {
+
+        private final String key;
+        private final Class<?> valueType;
+
+        private MatcherKey(String key, Class<?> valueType) {
+            this.key = key;
+            this.valueType = valueType;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof MatcherKey)) {
+                return false;
+            }
+            MatcherKey matcherKey = (MatcherKey) other;
+            return this.key.equals(matcherKey.key) && (this.valueType == matcherKey.valueType);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * this.key.hashCode()) + this.valueType.hashCode();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.snapshot;
+
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
+import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves a configuration that isn't observable from snapshots of it, copied by a background thread on every poll
+ * interval.
+ * <p>
+ * The calls then never reach the getters of the wrapped configuration: a configuration that synchronizes, or reads a
+ * database, in {@code getEnabledFeatures()} doesn't block, nor pin, the calling threads. Changes are seen one poll
+ * interval later at most. A poll that fails keeps the previous snapshot.
+ */
+public class PollingFeatureToggleConfiguration implements ObservableFeatureToggleConfiguration, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PollingFeatureToggleConfiguration.class);
+
+    private final FeatureToggleConfiguration delegate;
+    private final long pollIntervalMillis;
+    private final SnapshotFeatureToggleConfiguration snapshotConfig;
+    private final ReentrantLock pollLock;
+
+    private Thread poller;
+    private volatile boolean closed;
+
+    private PollingFeatureToggleConfiguration(FeatureToggleConfiguration delegate, long pollIntervalMillis) {
+        this.delegate = delegate;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.snapshotConfig = new SnapshotFeatureToggleConfiguration();
+        this.pollLock = new ReentrantLock();
+    }
+
+    public static Builder forConfiguration(FeatureToggleConfiguration delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public FeatureToggleSnapshot getSnapshot() {
+        return this.snapshotConfig.getSnapshot();
+    }
+
+    @Override
+    public Set<String> getEnabledFeatures() {
+        return this.snapshotConfig.getEnabledFeatures();
+    }
+
+    @Override
+    public Map<String, Set<String>> getEnabledParameters() {
+        return this.snapshotConfig.getEnabledParameters();
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        this.snapshotConfig.removeChangeListener(listener);
+    }
+
+    public FeatureToggleConfiguration getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Reads the wrapped configuration right away instead of waiting for the poller.
+     *
+     * @return whether a new snapshot was published
+     */
+    public boolean poll() {
+        this.pollLock.lock();
+        try {
+            Set<String> enabledFeatures = copy(this.delegate.getEnabledFeatures());
+            Map<String, Set<String>> enabledParameters = new HashMap<String, Set<String>>();
+            Map<String, Set<String>> delegateParameters = this.delegate.getEnabledParameters();
+            if (delegateParameters != null) {
+                for (Map.Entry<String, Set<String>> parameter : delegateParameters.entrySet()) {
+                    enabledParameters.put(parameter.getKey(), copy(parameter.getValue()));
+                }
+            }
+
+            FeatureToggleSnapshot current = this.snapshotConfig.getSnapshot();
+            if (current.getEnabledFeatures().equals(enabledFeatures) && current.getEnabledParameters().equals(enabledParameters)) {
+                return false;
+            }
+            this.snapshotConfig.update(enabledFeatures, enabledParameters);
+            return true;
+        } finally {
+            this.pollLock.unlock();
+        }
+    }
+
+    private static Set<String> copy(Set<String> values) {
+        return (values == null) ? new HashSet<String>() : new HashSet<String>(values);
+    }
+
+    private void start() {
+        this.poller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                PollingFeatureToggleConfiguration.this.pollUntilClosed();
+            }
+        }, "feature-toggle-poller[" + this.delegate.getClass().getSimpleName() + "]");
+        this.poller.setDaemon(true);
+        this.poller.start();
+    }
+
+    private void pollUntilClosed() {
+        while (!this.closed) {
+            try {
+                Thread.sleep(this.pollIntervalMillis);
+                this.poll();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Couldn't poll the feature toggle configuration [%s], keeping the previous snapshot", this.delegate), e);
+            }
+        }
+    }
+
+    /**
+     * Stops polling; the last snapshot stays available.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        if (this.poller != null) {
+            this.poller.interrupt();
+        }
+    }
+
+    public static class Builder {
+
+        private final FeatureToggleConfiguration delegate;
+        private long pollIntervalMillis;
+
+        private Builder(FeatureToggleConfiguration delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("The configuration mustn't be null.");
+            }
+            this.delegate = delegate;
+            this.pollIntervalMillis = TimeUnit.SECONDS.toMillis(1);
+        }
+
+        /**
+         * How often the wrapped configuration is read; 1 second by default.
+         */
+        public Builder pollInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("The poll interval must be positive.");
+            }
+            this.pollIntervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * Reads the wrapped configuration once, failing if it can't be read, and starts polling it.
+         */
+        public PollingFeatureToggleConfiguration build() {
+            PollingFeatureToggleConfiguration config = new PollingFeatureToggleConfiguration(this.delegate, this.pollIntervalMillis);
+            config.poll();
+            config.start();
+            return config;
+        }
+    }
+}
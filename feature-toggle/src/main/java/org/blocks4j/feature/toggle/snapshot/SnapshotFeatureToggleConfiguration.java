@@ -0,0 +1,104 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.snapshot;
+
+import org.blocks4j.feature.toggle.ConfigurationChangeEvent;
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+
+/**
+ * Configuration backed by an immutable {@link FeatureToggleSnapshot}. Changes are made with {@link #update},
+ * which compiles a new snapshot and swaps it atomically; readers never see a partially applied change. Listeners are
+ * notified on the updating thread, after the swap.
+ */
+public class SnapshotFeatureToggleConfiguration implements ObservableFeatureToggleConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotFeatureToggleConfiguration.class);
+
+    private final AtomicReference<FeatureToggleSnapshot> snapshot;
+    private final Set<ConfigurationChangeListener> listeners = ConcurrentHashMap.newKeySet();
+
+    public SnapshotFeatureToggleConfiguration() {
+        this.snapshot = new AtomicReference<FeatureToggleSnapshot>(FeatureToggleSnapshot.EMPTY);
+    }
+
+    public SnapshotFeatureToggleConfiguration(Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        this.snapshot = new AtomicReference<FeatureToggleSnapshot>(FeatureToggleSnapshot.compile(1L, enabledFeatures, enabledParameters));
+    }
+
+    @Override
+    public FeatureToggleSnapshot getSnapshot() {
+        return this.snapshot.get();
+    }
+
+    public FeatureToggleSnapshot update(Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        return this.update(version -> FeatureToggleSnapshot.compile(version, enabledFeatures, enabledParameters));
+    }
+
+    /**
+     * Publishes the snapshot made by {@code nextSnapshot} for the next version. It may be called again if another
+     * update wins the swap.
+     */
+    public FeatureToggleSnapshot update(LongFunction<FeatureToggleSnapshot> nextSnapshot) {
+        while (true) {
+            FeatureToggleSnapshot current = this.snapshot.get();
+            FeatureToggleSnapshot next = nextSnapshot.apply(current.getVersion() + 1);
+            if (this.snapshot.compareAndSet(current, next)) {
+                this.fireChange(new ConfigurationChangeEvent(this, current, next));
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public void addChangeListener(ConfigurationChangeListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ConfigurationChangeListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    private void fireChange(ConfigurationChangeEvent event) {
+        for (ConfigurationChangeListener listener : this.listeners) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Listener [%s] failed on %s", listener, event), e);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getEnabledFeatures() {
+        return this.getSnapshot().getEnabledFeatures();
+    }
+
+    @Override
+    public Map<String, Set<String>> getEnabledParameters() {
+        return this.getSnapshot().getEnabledParameters();
+    }
+}
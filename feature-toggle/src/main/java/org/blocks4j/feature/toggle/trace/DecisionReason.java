@@ -0,0 +1,43 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.trace;
+
+/**
+ * What made a call take the ON or the OFF path.
+ */
+public enum DecisionReason {
+
+    /**
+     * The feature is enabled and nothing restricted the call.
+     */
+    ON,
+
+    /**
+     * The feature isn't in the enabled features.
+     */
+    FEATURE_DISABLED,
+
+    /**
+     * The value of a {@code @ParameterToggle} isn't among the enabled values.
+     */
+    PARAMETER_REJECTED,
+
+    /**
+     * The call wasn't drawn by the {@code featureName#probability} of the feature.
+     */
+    PROBABILITY_REJECTED
+}
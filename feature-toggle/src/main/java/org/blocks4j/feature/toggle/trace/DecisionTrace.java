@@ -0,0 +1,98 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.trace;
+
+import java.lang.reflect.Method;
+
+/**
+ * One traced decision: the feature, the called method and why the call took the path it took. For a rejection by a
+ * parameter, or by the probability of a feature sticky by a parameter, the parameter id and its extracted value.
+ * <p>
+ * Copied out of the slots of a {@link DecisionTraceBuffer} when it is dumped.
+ */
+public final class DecisionTrace {
+
+    static final String UNKNOWN_METHOD = "<unknown method>";
+
+    private final long timestamp;
+    private final String featureName;
+    private final Method method;
+    private final DecisionReason reason;
+    private final String parameterId;
+    private final Object parameterValue;
+
+    DecisionTrace(long timestamp, String featureName, Method method, DecisionReason reason, String parameterId, Object parameterValue) {
+        this.timestamp = timestamp;
+        this.featureName = featureName;
+        this.method = method;
+        this.reason = reason;
+        this.parameterId = parameterId;
+        this.parameterValue = parameterValue;
+    }
+
+    /**
+     * @return when the decision was made, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public String getFeatureName() {
+        return this.featureName;
+    }
+
+    /**
+     * @return the called method, {@code null} when the proxy dispatched the call without seeing it: the bytecode and
+     * generated engines dispatch the methods without togglable parameters that way
+     */
+    public Method getMethod() {
+        return this.method;
+    }
+
+    public DecisionReason getReason() {
+        return this.reason;
+    }
+
+    public boolean isOn() {
+        return this.reason == DecisionReason.ON;
+    }
+
+    /**
+     * @return the id of the parameter behind the decision, {@code null} if no parameter was involved
+     */
+    public String getParameterId() {
+        return this.parameterId;
+    }
+
+    public Object getParameterValue() {
+        return this.parameterValue;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder trace = new StringBuilder()
+                .append(this.timestamp).append(' ')
+                .append(this.featureName).append(' ')
+                .append((this.method == null) ? UNKNOWN_METHOD : this.method.getDeclaringClass().getSimpleName() + '.' + this.method.getName()).append(' ')
+                .append(this.isOn() ? "ON" : "OFF").append(' ')
+                .append(this.reason);
+        if (this.parameterId != null) {
+            trace.append(' ').append(this.parameterId).append('=').append(this.parameterValue);
+        }
+        return trace.toString();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.trace;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the last traced decisions in a fixed-size ring, for a sample of the calls.
+ * <p>
+ * The slots of the ring are allocated with it and filled in place, so tracing a call allocates nothing. Tracing takes
+ * no lock: a sampled call claims a slot from an atomic cursor, marks it as being written, fills it, then publishes the
+ * sequence of its trace in it. A call finding its slot still being written by a call that lapped the ring drops its
+ * trace. The buffer can be dumped at any time, through {@link #dump(Consumer)} or as an MXBean, e.g. registered under
+ * {@link #objectName(String)}; a dump taken while decisions are being traced skips the slots overwritten meanwhile.
+ */
+public class DecisionTraceBuffer implements DecisionTracer, DecisionTraceBufferMXBean {
+
+    private static final long EMPTY = -1L;
+    private static final long WRITING = -2L;
+
+    private final Slot[] slots;
+    // sequence of the trace held by each slot, EMPTY or WRITING
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private volatile double sampleRate;
+
+    /**
+     * @param capacity   number of traces kept, rounded up to a power of two
+     * @param sampleRate fraction of the decisions traced, from 0 (none) to 1 (all)
+     */
+    public DecisionTraceBuffer(int capacity, double sampleRate) {
+        if ((capacity <= 0) || (capacity > (1 << 30))) {
+            throw new IllegalArgumentException(String.format("Invalid capacity [%d]", capacity));
+        }
+        this.setSampleRate(sampleRate);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int index = 0; index < size; index++) {
+            this.slots[index] = new Slot();
+            this.sequences.set(index, EMPTY);
+        }
+        this.mask = size - 1;
+    }
+
+    public static ObjectName objectName(String name) throws MalformedObjectNameException {
+        return new ObjectName(String.format("org.blocks4j.feature.toggle:type=DecisionTrace,name=%s", ObjectName.quote(name)));
+    }
+
+    @Override
+    public boolean isSampled() {
+        double rate = this.sampleRate;
+        return (rate >= 1.0) || ((rate > 0.0) && (ThreadLocalRandom.current().nextDouble() < rate));
+    }
+
+    @Override
+    public void trace(String featureName, Method method, DecisionReason reason, String parameterId, Object parameterValue) {
+        long sequence = this.cursor.getAndIncrement();
+        int index = (int) (sequence & this.mask);
+        long previous = this.sequences.get(index);
+        if ((previous == WRITING) || (previous > sequence) || !this.sequences.compareAndSet(index, previous, WRITING)) {
+            return;
+        }
+        this.slots[index].fill(System.currentTimeMillis(), featureName, method, reason, parameterId, parameterValue);
+        this.sequences.set(index, sequence);
+    }
+
+    /**
+     * Passes the traces held by the buffer, oldest first, to the consumer.
+     */
+    public void dump(Consumer<? super DecisionTrace> consumer) {
+        long end = this.cursor.get();
+        long start = Math.max(0, end - this.slots.length);
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & this.mask);
+            if (this.sequences.get(index) != sequence) {
+                continue;
+            }
+            DecisionTrace trace = this.slots[index].copy();
+            // the slot wasn't claimed again while it was copied
+            if (this.sequences.get(index) == sequence) {
+                consumer.accept(trace);
+            }
+        }
+    }
+
+    public List<DecisionTrace> dump() {
+        final List<DecisionTrace> dump = new ArrayList<DecisionTrace>();
+        this.dump(dump::add);
+        return dump;
+    }
+
+    @Override
+    public String[] dumpTraces() {
+        List<DecisionTrace> dump = this.dump();
+        String[] lines = new String[dump.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = dump.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public void clear() {
+        for (int index = 0; index < this.slots.length; index++) {
+            long sequence = this.sequences.get(index);
+            if ((sequence != WRITING) && this.sequences.compareAndSet(index, sequence, WRITING)) {
+                this.slots[index].fill(0L, null, null, null, null, null);
+                this.sequences.set(index, EMPTY);
+            }
+        }
+    }
+
+    @Override
+    public double getSampleRate() {
+        return this.sampleRate;
+    }
+
+    @Override
+    public void setSampleRate(double sampleRate) {
+        if (!((sampleRate >= 0.0) && (sampleRate <= 1.0))) {
+            throw new IllegalArgumentException(String.format("Invalid sample rate [%s], it must be between 0 and 1", sampleRate));
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.slots.length;
+    }
+
+    @Override
+    public long getTracedDecisions() {
+        return this.cursor.get();
+    }
+
+    /**
+     * A trace filled in place. The fields are volatile so that a dump reading them between two reads of the sequence of
+     * the slot sees the trace published under that sequence.
+     */
+    private static final class Slot {
+
+        private volatile long timestamp;
+        private volatile String featureName;
+        private volatile Method method;
+        private volatile DecisionReason reason;
+        private volatile String parameterId;
+        private volatile Object parameterValue;
+
+        private void fill(long timestamp, String featureName, Method method, DecisionReason reason, String parameterId, Object parameterValue) {
+            this.timestamp = timestamp;
+            this.featureName = featureName;
+            this.method = method;
+            this.reason = reason;
+            this.parameterId = parameterId;
+            this.parameterValue = parameterValue;
+        }
+
+        private DecisionTrace copy() {
+            return new DecisionTrace(this.timestamp, this.featureName, this.method, this.reason, this.parameterId, this.parameterValue);
+        }
+    }
+}
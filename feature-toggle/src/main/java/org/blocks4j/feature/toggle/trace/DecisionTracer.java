@@ -0,0 +1,54 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.trace;
+
+import java.lang.reflect.Method;
+
+/**
+ * Receives a sample of the decisions made by the feature toggles.
+ * <p>
+ * {@link #isSampled()} is asked on every call, so it must be cheap; only the sampled calls are explained and passed
+ * to {@link #trace}, field by field, so tracing a call allocates nothing by itself.
+ */
+public interface DecisionTracer {
+
+    /**
+     * Traces nothing.
+     */
+    DecisionTracer NONE = new DecisionTracer() {
+        @Override
+        public boolean isSampled() {
+            return false;
+        }
+
+        @Override
+        public void trace(String featureName, Method method, DecisionReason reason, String parameterId, Object parameterValue) {
+        }
+    };
+
+    /**
+     * @return whether the decision about to be made is traced
+     */
+    boolean isSampled();
+
+    /**
+     * @param method         the called method, {@code null} when the proxy dispatched the call without seeing it
+     * @param parameterId    the id of the parameter behind the decision, {@code null} if no parameter was involved
+     * @param parameterValue the value of that parameter in the call
+     */
+    void trace(String featureName, Method method, DecisionReason reason, String parameterId, Object parameterValue);
+}
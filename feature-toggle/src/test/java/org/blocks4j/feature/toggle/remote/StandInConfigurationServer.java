@@ -0,0 +1,263 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.remote;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tiny HTTP server standing in for the central configuration store in tests of services using a
+ * {@link RemoteFeatureToggleConfiguration}. It serves the versions given to {@link #publish} on the loopback interface,
+ * holds long polls until the next one, and answers with deltas against the last {@value #HISTORY_SIZE} versions.
+ * <p>
+ * It ships in the test-jar of feature-toggle, so the runtime jar doesn't depend on the JDK's HTTP server.
+ */
+public class StandInConfigurationServer implements Closeable {
+
+    static final int HISTORY_SIZE = 16;
+
+    private static final long MAX_WAIT_SECONDS = 60L;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ReentrantLock lock;
+    private final Condition published;
+    private final Map<String, ToggleDocument> history;
+    private final AtomicInteger documents;
+    private final AtomicInteger deltas;
+    private final AtomicInteger unmodified;
+
+    private ToggleDocument current;
+    private int version;
+    private boolean closed;
+
+    private StandInConfigurationServer() throws IOException {
+        this.lock = new ReentrantLock();
+        this.published = this.lock.newCondition();
+        this.history = new LinkedHashMap<String, ToggleDocument>();
+        this.documents = new AtomicInteger();
+        this.deltas = new AtomicInteger();
+        this.unmodified = new AtomicInteger();
+        this.current = this.version(Collections.<String>emptySet(), Collections.<String, Set<String>>emptyMap());
+
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "feature-toggle-stand-in-server-" + this.count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StandInConfigurationServer.this.handle(exchange);
+            }
+        });
+        this.server.start();
+    }
+
+    /**
+     * Starts a server on a free port, serving an empty configuration until the first version is published.
+     */
+    public static StandInConfigurationServer start() throws IOException {
+        return new StandInConfigurationServer();
+    }
+
+    public URL getUrl() {
+        InetSocketAddress address = this.server.getAddress();
+        try {
+            return new URL("http", address.getHostString(), address.getPort(), "/toggles");
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Publishes a new version and answers the requests waiting for it.
+     *
+     * @return the {@code ETag} of the new version
+     */
+    public String publish(Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        this.lock.lock();
+        try {
+            this.current = this.version(enabledFeatures, enabledParameters);
+            this.published.signalAll();
+            return this.current.getETag();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private ToggleDocument version(Set<String> enabledFeatures, Map<String, Set<String>> enabledParameters) {
+        Set<String> features = new HashSet<String>(enabledFeatures);
+        Map<String, Set<String>> parameters = new HashMap<String, Set<String>>();
+        for (Map.Entry<String, Set<String>> parameter : enabledParameters.entrySet()) {
+            parameters.put(parameter.getKey(), new HashSet<String>(parameter.getValue()));
+        }
+        ToggleDocument document = new ToggleDocument("\"" + (++this.version) + "\"", features, parameters);
+
+        this.history.put(document.getETag(), document);
+        if (this.history.size() > HISTORY_SIZE) {
+            this.history.remove(this.history.keySet().iterator().next());
+        }
+        return document;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1L);
+                return;
+            }
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            ToggleDocument base = null;
+            ToggleDocument document;
+            this.lock.lock();
+            try {
+                long waitNanos = TimeUnit.SECONDS.toNanos(waitSeconds(exchange.getRequestHeaders().getFirst("Prefer")));
+                while (!this.closed && this.current.getETag().equals(etag) && (waitNanos > 0L)) {
+                    waitNanos = this.published.awaitNanos(waitNanos);
+                }
+                document = this.current;
+                if (ToggleDelta.INSTANCE_MANIPULATION.equals(exchange.getRequestHeaders().getFirst("A-IM"))) {
+                    base = this.history.get(etag);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.sendResponseHeaders(503, -1L);
+                return;
+            } finally {
+                this.lock.unlock();
+            }
+
+            exchange.getResponseHeaders().set("ETag", document.getETag());
+            if (document.getETag().equals(etag)) {
+                this.unmodified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1L);
+                return;
+            }
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+                if (base != null) {
+                    ToggleDelta.write(writer, base.getEnabledFeatures(), base.getEnabledParameters(), document.getEnabledFeatures(), document.getEnabledParameters());
+                } else {
+                    ToggleDocument.write(writer, null, document.getEnabledFeatures(), document.getEnabledParameters());
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", ToggleDocument.MEDIA_TYPE);
+            if (base != null) {
+                this.deltas.incrementAndGet();
+                exchange.getResponseHeaders().set("IM", ToggleDelta.INSTANCE_MANIPULATION);
+                exchange.getResponseHeaders().set("Delta-Base", base.getETag());
+                exchange.sendResponseHeaders(RemoteFeatureToggleConfiguration.IM_USED, body.size());
+            } else {
+                this.documents.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.size());
+            }
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                body.writeTo(responseBody);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static long waitSeconds(String prefer) {
+        if (prefer != null) {
+            for (String preference : prefer.split(",")) {
+                String[] nameValue = preference.trim().split("=", 2);
+                if ((nameValue.length == 2) && "wait".equalsIgnoreCase(nameValue[0].trim())) {
+                    try {
+                        return Math.min(MAX_WAIT_SECONDS, Long.parseLong(nameValue[1].trim()));
+                    } catch (NumberFormatException e) {
+                        return 0L;
+                    }
+                }
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @return how many whole documents were sent
+     */
+    public int getDocumentCount() {
+        return this.documents.get();
+    }
+
+    /**
+     * @return how many deltas were sent
+     */
+    public int getDeltaCount() {
+        return this.deltas.get();
+    }
+
+    /**
+     * @return how many requests were answered with {@code 304 Not Modified}
+     */
+    public int getNotModifiedCount() {
+        return this.unmodified.get();
+    }
+
+    /**
+     * Answers the waiting requests and stops the server.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.published.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
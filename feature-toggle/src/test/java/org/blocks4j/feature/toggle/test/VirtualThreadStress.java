@@ -0,0 +1,35 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.test;
+
+import cucumber.api.CucumberOptions;
+import cucumber.api.junit.Cucumber;
+import org.junit.runner.RunWith;
+
+/**
+ * Needs virtual threads: only run by the {@code jdk21} profile.
+ */
+@RunWith(Cucumber.class)
+@CucumberOptions(
+        features = {"classpath:feature_files/virtual_threads.feature"},
+        glue = "org.blocks4j.feature.toggle.test.steps",
+        tags = {"~@Ignore"},
+        strict = true,
+        plugin = "pretty"
+)
+public class VirtualThreadStress {
+}
@@ -0,0 +1,59 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.test.config;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A user configuration guarding its state with a monitor, as many in-house ones do. It may also block while holding
+ * it, as one reading its state from a remote store would.
+ */
+public class SynchronizedFeatureToggleConfiguration extends TestingFeatureToggleConfiguration {
+
+    private final long readNanos;
+
+    public SynchronizedFeatureToggleConfiguration() {
+        this(0);
+    }
+
+    /**
+     * @param readNanos how long every read parks while holding the monitor
+     */
+    public SynchronizedFeatureToggleConfiguration(long readNanos) {
+        this.readNanos = readNanos;
+    }
+
+    @Override
+    public synchronized Set<String> getEnabledFeatures() {
+        this.read();
+        return super.getEnabledFeatures();
+    }
+
+    @Override
+    public synchronized Map<String, Set<String>> getEnabledParameters() {
+        this.read();
+        return super.getEnabledParameters();
+    }
+
+    private void read() {
+        if (this.readNanos > 0) {
+            LockSupport.parkNanos(this.readNanos);
+        }
+    }
+}
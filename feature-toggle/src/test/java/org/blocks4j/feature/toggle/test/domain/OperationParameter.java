@@ -35,4 +35,9 @@ public class OperationParameter {
         return this.parameterMethod;
     }
 
+    @Override
+    public String toString() {
+        return this.parameterField + ":" + this.parameterMethod;
+    }
+
 }
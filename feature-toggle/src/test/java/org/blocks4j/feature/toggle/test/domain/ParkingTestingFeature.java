@@ -0,0 +1,60 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.test.domain;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks in every call, so a virtual thread unmounts from its carrier inside the toggled call, and counts the calls.
+ */
+public class ParkingTestingFeature implements TestingFeature {
+
+    private final LongAdder calls = new LongAdder();
+
+    @Override
+    public void operation(OperationParameter operationParameter) {
+        this.park();
+    }
+
+    @Override
+    public void operation(String operationParameter) {
+        this.park();
+    }
+
+    @Override
+    public void untoggledOperation(String operationParameter) {
+        this.park();
+    }
+
+    @Override
+    public CompletableFuture<String> asyncOperation(String operationParameter) {
+        this.park();
+        return CompletableFuture.completedFuture(operationParameter);
+    }
+
+    private void park() {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        this.calls.increment();
+    }
+
+    public long getCalls() {
+        return this.calls.sum();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.blocks4j.feature.toggle.test.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the items of every call, and answers each processed item prefixed by its name.
+ */
+public class RecordingBulkTestingFeature implements BulkTestingFeature {
+
+    private final String name;
+    private final List<List<String>> processed = new ArrayList<List<String>>();
+    private final List<List<OperationParameter>> stored = new ArrayList<List<OperationParameter>>();
+
+    public RecordingBulkTestingFeature(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public List<String> process(List<String> operationParameters) {
+        this.processed.add(new ArrayList<String>(operationParameters));
+        List<String> results = new ArrayList<String>(operationParameters.size());
+        for (String operationParameter : operationParameters) {
+            results.add(this.name + ":" + operationParameter);
+        }
+        return results;
+    }
+
+    @Override
+    public int store(OperationParameter[] operationParameters) {
+        List<OperationParameter> items = new ArrayList<OperationParameter>();
+        for (OperationParameter operationParameter : operationParameters) {
+            items.add(operationParameter);
+        }
+        this.stored.add(items);
+        return operationParameters.length;
+    }
+
+    public List<List<String>> getProcessed() {
+        return this.processed;
+    }
+
+    public List<List<OperationParameter>> getStored() {
+        return this.stored;
+    }
+}
@@ -18,10 +18,16 @@ package org.blocks4j.feature.toggle.test.domain;
 
 import org.blocks4j.feature.toggle.annotation.parameters.ParameterToggle;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface TestingFeature {
 
     void operation(OperationParameter operationParameter);
 
     void operation(@ParameterToggle("paramTestPrimitive") String operationParameter);
 
+    void untoggledOperation(String operationParameter);
+
+    CompletableFuture<String> asyncOperation(@ParameterToggle("paramTestPrimitive") String operationParameter);
+
 }
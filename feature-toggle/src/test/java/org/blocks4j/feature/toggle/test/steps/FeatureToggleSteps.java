@@ -16,25 +16,79 @@
 
 package org.blocks4j.feature.toggle.test.steps;
 
+import cucumber.api.java.After;
 import cucumber.api.java.Before;
 import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
 import org.apache.commons.lang3.StringUtils;
+import org.blocks4j.feature.toggle.ConfigurationChangeEvent;
+import org.blocks4j.feature.toggle.ConfigurationChangeListener;
 import org.blocks4j.feature.toggle.FeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.ObservableFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.batch.FeatureToggleEvaluator;
+import org.blocks4j.feature.toggle.exception.FeatureToggleDefinitionParsingException;
+import org.blocks4j.feature.toggle.factory.FeatureRegistry;
 import org.blocks4j.feature.toggle.factory.FeatureToggleFactory;
+import org.blocks4j.feature.toggle.file.BinarySnapshotFile;
+import org.blocks4j.feature.toggle.file.FileFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.file.MappedFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.metrics.CountingFeatureToggleMetrics;
+import org.blocks4j.feature.toggle.metrics.FeatureCounters;
+import org.blocks4j.feature.toggle.metrics.FeatureToggleMetrics;
+import org.blocks4j.feature.toggle.metrics.JmxFeatureToggleMetrics;
+import org.blocks4j.feature.toggle.parameters.LongAllowList;
+import org.blocks4j.feature.toggle.parameters.NumericAllowList;
+import org.blocks4j.feature.toggle.proxy.ProxyEngine;
+import org.blocks4j.feature.toggle.remote.RemoteFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.remote.StandInConfigurationServer;
+import org.blocks4j.feature.toggle.shadow.ShadowExecutor;
+import org.blocks4j.feature.toggle.snapshot.PollingFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.snapshot.SnapshotFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.test.config.SynchronizedFeatureToggleConfiguration;
 import org.blocks4j.feature.toggle.test.config.TestingFeatureToggleConfiguration;
+import org.blocks4j.feature.toggle.test.domain.BulkTestingFeature;
+import org.blocks4j.feature.toggle.test.domain.ExtendedTestingFeature;
+import org.blocks4j.feature.toggle.test.domain.GeneratedTestingFeature;
 import org.blocks4j.feature.toggle.test.domain.OperationParameter;
 import org.blocks4j.feature.toggle.test.domain.ParameterEnum;
+import org.blocks4j.feature.toggle.test.domain.ParkingTestingFeature;
+import org.blocks4j.feature.toggle.test.domain.MergingTestingFeature;
+import org.blocks4j.feature.toggle.test.domain.RecordingBulkTestingFeature;
 import org.blocks4j.feature.toggle.test.domain.TestingFeature;
+import org.blocks4j.feature.toggle.trace.DecisionReason;
+import org.blocks4j.feature.toggle.trace.DecisionTrace;
+import org.blocks4j.feature.toggle.trace.DecisionTraceBuffer;
+import org.junit.Assert;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class FeatureToggleSteps {
 
@@ -45,19 +99,391 @@ public class FeatureToggleSteps {
     private FeatureToggleConfiguration featureConfig;
     private int repetitions;
 
+    private FeatureRegistry registry;
+    private List<Long> notifiedVersions;
+    private Path toggleDirectory;
+    private List<TestingFeature> registeredProxies;
+    private FeatureToggleMetrics metrics;
+    private DecisionTraceBuffer traceBuffer;
+    private int tornTraces;
+    private ShadowExecutor shadowExecutor;
+    private List<Runnable> pendingShadowCalls;
+    private ScheduledExecutorService shadowTimer;
+    private Map<String, CompletableFuture<String>> asyncResults;
+    private CompletableFuture<String> asyncResult;
+    private String pinnedThreadTraces;
+    private BitSet batchDecisions;
+    private Map<String, RecordingBulkTestingFeature> bulkFeatures = new HashMap<String, RecordingBulkTestingFeature>();
+    private BulkTestingFeature bulkImplementation;
+    private Map<String, MergingTestingFeature> mergingFeatures = new HashMap<String, MergingTestingFeature>();
+    private MergingTestingFeature mergingImplementation;
+    private Object bulkResult;
+    private Set<String> configuredValues;
+    private StandInConfigurationServer standInServer;
+    private URL standInUrl;
+    private Set<String> standInFeatures;
+    private Map<String, Set<String>> standInParameters;
+    private Path remoteCacheFile;
+
 
     @Before
     public void beforeTest() {
         this.features = new HashMap<String, TestingFeature>();
         this.featureConfig = new TestingFeatureToggleConfiguration();
+        this.registry = null;
+        this.registeredProxies = null;
+        this.toggleDirectory = null;
+        this.standInServer = null;
+        this.metrics = FeatureToggleMetrics.NONE;
+        this.traceBuffer = new DecisionTraceBuffer(1, 0);
+        this.pendingShadowCalls = new ArrayList<Runnable>();
+        this.shadowTimer = null;
+        this.asyncResults = new HashMap<String, CompletableFuture<String>>();
+    }
+
+    @After
+    public void afterTest() throws Throwable {
+        if (this.metrics instanceof JmxFeatureToggleMetrics) {
+            ((JmxFeatureToggleMetrics) this.metrics).close();
+        }
+        if (this.featureConfig instanceof FileFeatureToggleConfiguration) {
+            ((FileFeatureToggleConfiguration) this.featureConfig).close();
+        }
+        if (this.featureConfig instanceof MappedFeatureToggleConfiguration) {
+            ((MappedFeatureToggleConfiguration) this.featureConfig).close();
+        }
+        if (this.featureConfig instanceof PollingFeatureToggleConfiguration) {
+            ((PollingFeatureToggleConfiguration) this.featureConfig).close();
+        }
+        if (this.featureConfig instanceof RemoteFeatureToggleConfiguration) {
+            ((RemoteFeatureToggleConfiguration) this.featureConfig).close();
+        }
+        if (this.standInServer != null) {
+            this.standInServer.close();
+        }
+        if (this.shadowTimer != null) {
+            this.shadowTimer.shutdownNow();
+        }
+        if (this.toggleDirectory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.toggleDirectory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(this.toggleDirectory);
+        }
+    }
+
+    @Given("^a mutable feature toggle configuration$")
+    public void aMutableFeatureToggleConfiguration() throws Throwable {
+        this.featureConfig = new TestingFeatureToggleConfiguration();
+    }
+
+    @Given("^a compiled snapshot feature toggle configuration$")
+    public void aCompiledSnapshotFeatureToggleConfiguration() throws Throwable {
+        this.featureConfig = new SnapshotFeatureToggleConfiguration();
+    }
+
+    @Given("^a synchronized user configuration polled in the background$")
+    public void aSynchronizedUserConfigurationPolledInTheBackground() throws Throwable {
+        this.featureConfig = PollingFeatureToggleConfiguration.forConfiguration(new SynchronizedFeatureToggleConfiguration())
+                .pollInterval(50, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Given("^a synchronized user configuration blocking for (\\d+) microseconds on every read$")
+    public void aSynchronizedUserConfigurationBlockingOnEveryRead(long readMicros) throws Throwable {
+        this.featureConfig = new SynchronizedFeatureToggleConfiguration(TimeUnit.MICROSECONDS.toNanos(readMicros));
+    }
+
+    @Given("^a feature toggle file \"([^\"]*)\" with:$")
+    public void aFeatureToggleFileWith(String fileName, String content) throws Throwable {
+        if (this.toggleDirectory == null) {
+            this.toggleDirectory = Files.createTempDirectory("feature-toggle");
+        }
+        Files.write(this.toggleDirectory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Given("^a file feature toggle configuration (watching|polling) the directory$")
+    public void aFileFeatureToggleConfigurationReadingTheDirectory(String mode) throws Throwable {
+        FileFeatureToggleConfiguration.Builder builder = FileFeatureToggleConfiguration.forPath(this.toggleDirectory)
+                .pollInterval(50, TimeUnit.MILLISECONDS);
+        if ("polling".equals(mode)) {
+            builder.withoutWatchService();
+        }
+        this.featureConfig = builder.build();
+    }
+
+    @When("^the feature toggle file \"([^\"]*)\" is written with:$")
+    public void theFeatureToggleFileIsWrittenWith(String fileName, String content) throws Throwable {
+        FileFeatureToggleConfiguration fileConfig = (FileFeatureToggleConfiguration) this.featureConfig;
+        long version = fileConfig.getSnapshot().getVersion();
+
+        this.aFeatureToggleFileWith(fileName, content);
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while ((fileConfig.getSnapshot().getVersion() == version) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        Assert.assertNotEquals(version, fileConfig.getSnapshot().getVersion());
+        // the watcher may have published a half-written file, and delivers the change after publishing it
+        fileConfig.reload();
+    }
+
+    @Given("^a feature toggle snapshot file \"([^\"]*)\" enabling \"([^\"]*)\" with those parameters \"([^\"]*)\"$")
+    public void aFeatureToggleSnapshotFileEnablingWithThoseParameters(String fileName, String features, String rawParameters) throws Throwable {
+        this.writeSnapshotFile(fileName, features, this.parseParameters(rawParameters));
+    }
+
+    @Given("^a feature toggle snapshot file \"([^\"]*)\" enabling \"([^\"]*)\" with (\\d+) values of \"([^\"]*)\" from (-?\\d+) every (\\d+)$")
+    public void aFeatureToggleSnapshotFileEnablingWithValues(String fileName, String features, int count, String parameterName, long first, long step) throws Throwable {
+        Set<String> parameterValues = new HashSet<String>();
+        for (int index = 0; index < count; index++) {
+            parameterValues.add(String.valueOf(first + (index * step)));
+        }
+        this.configuredValues = parameterValues;
+        this.writeSnapshotFile(fileName, features, Collections.singletonMap(parameterName, parameterValues));
+    }
+
+    private void writeSnapshotFile(String fileName, String features, Map<String, Set<String>> parameters) throws IOException {
+        if (this.toggleDirectory == null) {
+            this.toggleDirectory = Files.createTempDirectory("feature-toggle");
+        }
+        Set<String> enabledFeatures = new HashSet<String>(this.splitItems(features));
+        BinarySnapshotFile.write(this.toggleDirectory.resolve(fileName), enabledFeatures, parameters);
     }
 
+    @Given("^the feature toggle snapshot file \"([^\"]*)\" has the permissions \"([^\"]*)\"$")
+    public void theFeatureToggleSnapshotFileHasThePermissions(String fileName, String permissions) throws Throwable {
+        Files.setPosixFilePermissions(this.toggleDirectory.resolve(fileName), PosixFilePermissions.fromString(permissions));
+    }
+
+    @Then("^the feature toggle snapshot file \"([^\"]*)\" is written with the permissions \"([^\"]*)\"$")
+    public void theFeatureToggleSnapshotFileIsWrittenWithThePermissions(String fileName, String permissions) throws Throwable {
+        Assert.assertEquals(permissions, PosixFilePermissions.toString(Files.getPosixFilePermissions(this.toggleDirectory.resolve(fileName))));
+    }
+
+    @Given("^the feature toggle snapshot file \"([^\"]*)\" truncated to (\\d+) bytes$")
+    public void theFeatureToggleSnapshotFileTruncatedTo(String fileName, int size) throws Throwable {
+        Path file = this.toggleDirectory.resolve(fileName);
+        Files.write(file, Arrays.copyOf(Files.readAllBytes(file), size));
+    }
+
+    @Given("^a mapped feature toggle configuration (watching|polling) the file \"([^\"]*)\"$")
+    public void aMappedFeatureToggleConfigurationReadingTheFile(String mode, String fileName) throws Throwable {
+        MappedFeatureToggleConfiguration.Builder builder = MappedFeatureToggleConfiguration.forPath(this.toggleDirectory.resolve(fileName))
+                .pollInterval(50, TimeUnit.MILLISECONDS);
+        if ("polling".equals(mode)) {
+            builder.withoutWatchService();
+        }
+        this.featureConfig = builder.build();
+    }
+
+    @Then("^a mapped feature toggle configuration of the file \"([^\"]*)\" can't be built$")
+    public void aMappedFeatureToggleConfigurationOfTheFileCantBeBuilt(String fileName) throws Throwable {
+        try {
+            MappedFeatureToggleConfiguration.forPath(this.toggleDirectory.resolve(fileName)).build().close();
+            Assert.fail("The snapshot file was mapped");
+        } catch (FeatureToggleDefinitionParsingException e) {
+            Assert.assertTrue(e.getMessage().contains(fileName));
+        }
+    }
+
+    @When("^the feature toggle snapshot file \"([^\"]*)\" is replaced enabling \"([^\"]*)\" with those parameters \"([^\"]*)\"$")
+    public void theFeatureToggleSnapshotFileIsReplaced(String fileName, String features, String rawParameters) throws Throwable {
+        MappedFeatureToggleConfiguration mappedConfig = (MappedFeatureToggleConfiguration) this.featureConfig;
+        long version = mappedConfig.getSnapshot().getVersion();
+
+        this.aFeatureToggleSnapshotFileEnablingWithThoseParameters(fileName, features, rawParameters);
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while ((mappedConfig.getSnapshot().getVersion() == version) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        Assert.assertNotEquals(version, mappedConfig.getSnapshot().getVersion());
+    }
+
+    @When("^the feature toggle snapshot file \"([^\"]*)\" is replaced by a corrupted one$")
+    public void theFeatureToggleSnapshotFileIsReplacedByACorruptedOne(String fileName) throws Throwable {
+        MappedFeatureToggleConfiguration mappedConfig = (MappedFeatureToggleConfiguration) this.featureConfig;
+        long version = mappedConfig.getSnapshot().getVersion();
+
+        Path file = this.toggleDirectory.resolve(fileName);
+        Path corrupted = this.toggleDirectory.resolve(fileName + ".corrupted");
+        byte[] content = Files.readAllBytes(file);
+        Files.write(corrupted, Arrays.copyOf(content, content.length / 2));
+        Files.move(corrupted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        Assert.assertFalse(mappedConfig.reload());
+        Assert.assertEquals(version, mappedConfig.getSnapshot().getVersion());
+    }
+
+    @Given("^a stand-in configuration server publishing \"([^\"]*)\" with those parameters \"([^\"]*)\"$")
+    public void aStandInConfigurationServerPublishingWithThoseParameters(String features, String rawParameters) throws Throwable {
+        this.startStandInServer();
+        this.theStandInServerPublishes(features, rawParameters);
+    }
+
+    @Given("^a stand-in configuration server publishing \"([^\"]*)\" with (\\d+) values of \"([^\"]*)\" from (-?\\d+) every (\\d+)$")
+    public void aStandInConfigurationServerPublishingValues(String features, int count, String parameterName, long first, long step) throws Throwable {
+        Set<String> parameterValues = new HashSet<String>();
+        for (int index = 0; index < count; index++) {
+            parameterValues.add(String.valueOf(first + (index * step)));
+        }
+        this.configuredValues = parameterValues;
+        this.startStandInServer();
+        this.publishOnStandInServer(features, Collections.singletonMap(parameterName, parameterValues));
+    }
+
+    private void startStandInServer() throws IOException {
+        this.standInServer = StandInConfigurationServer.start();
+        // kept to build configurations once the server is stopped
+        this.standInUrl = this.standInServer.getUrl();
+    }
+
+    @Given("^a remote feature toggle configuration of the stand-in server$")
+    public void aRemoteFeatureToggleConfigurationOfTheStandInServer() throws Throwable {
+        this.featureConfig = this.remoteConfiguration().build();
+    }
+
+    @Given("^a remote feature toggle configuration of the stand-in server cached in \"([^\"]*)\"$")
+    public void aRemoteFeatureToggleConfigurationCachedIn(String fileName) throws Throwable {
+        if (this.toggleDirectory == null) {
+            this.toggleDirectory = Files.createTempDirectory("feature-toggle");
+        }
+        this.remoteCacheFile = this.toggleDirectory.resolve(fileName);
+        this.featureConfig = this.remoteConfiguration().cacheFile(this.remoteCacheFile).build();
+    }
+
+    private RemoteFeatureToggleConfiguration.Builder remoteConfiguration() {
+        return RemoteFeatureToggleConfiguration.forUrl(this.standInUrl)
+                .longPoll(5, TimeUnit.SECONDS)
+                .pollInterval(0, TimeUnit.MILLISECONDS)
+                .retryInterval(50, TimeUnit.MILLISECONDS);
+    }
+
+    @When("^the stand-in server publishes \"([^\"]*)\" with those parameters \"([^\"]*)\"$")
+    public void theStandInServerPublishes(String features, String rawParameters) throws Throwable {
+        this.publishOnStandInServer(features, this.parseParameters(rawParameters));
+    }
+
+    @When("^the stand-in server adds \"([^\"]*)\" to the values of \"([^\"]*)\"$")
+    public void theStandInServerAddsToTheValuesOf(String values, String parameterName) throws Throwable {
+        Map<String, Set<String>> parameters = new HashMap<String, Set<String>>(this.standInParameters);
+        Set<String> parameterValues = new HashSet<String>(parameters.get(parameterName));
+        parameterValues.addAll(this.splitItems(values));
+        parameters.put(parameterName, parameterValues);
+        this.configuredValues = parameterValues;
+        this.publishOnStandInServer(StringUtils.join(this.standInFeatures, ","), parameters);
+    }
+
+    /**
+     * Waits for the remote configuration, if there's one, to receive the new version.
+     */
+    private void publishOnStandInServer(String features, Map<String, Set<String>> parameters) throws InterruptedException {
+        this.standInFeatures = new HashSet<String>(this.splitItems(features));
+        this.standInParameters = parameters;
+        String etag = this.standInServer.publish(this.standInFeatures, parameters);
+        if (this.featureConfig instanceof RemoteFeatureToggleConfiguration) {
+            RemoteFeatureToggleConfiguration remoteConfig = (RemoteFeatureToggleConfiguration) this.featureConfig;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (!etag.equals(remoteConfig.getETag()) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(etag, remoteConfig.getETag());
+        }
+    }
+
+    @Then("^the stand-in server sent (\\d+) documents? and (\\d+) deltas?$")
+    public void theStandInServerSent(int documents, int deltas) throws Throwable {
+        Assert.assertEquals(documents, this.standInServer.getDocumentCount());
+        Assert.assertEquals(deltas, this.standInServer.getDeltaCount());
+    }
+
+    @When("^the stand-in server is stopped$")
+    public void theStandInServerIsStopped() throws Throwable {
+        this.standInServer.close();
+    }
+
+    @When("^the remote feature toggle configuration is restarted$")
+    public void theRemoteFeatureToggleConfigurationIsRestarted() throws Throwable {
+        ((RemoteFeatureToggleConfiguration) this.featureConfig).close();
+        long start = System.nanoTime();
+        this.featureConfig = this.remoteConfiguration().cacheFile(this.remoteCacheFile).build();
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Then("^a remote feature toggle configuration of the stand-in server can't be built$")
+    public void aRemoteFeatureToggleConfigurationOfTheStandInServerCantBeBuilt() throws Throwable {
+        try {
+            this.remoteConfiguration().timeout(1, TimeUnit.SECONDS).build().close();
+            Assert.fail("The remote configuration was built");
+        } catch (FeatureToggleDefinitionParsingException e) {
+            Assert.assertTrue(e.getMessage().contains(this.standInUrl.toString()));
+        }
+    }
+
+    @When("^the implementations are reset$")
+    public void theImplementationsAreReset() throws Throwable {
+        for (TestingFeature implementation : this.features.values()) {
+            Mockito.reset(implementation);
+        }
+    }
+
+    @Given("^a change listener on the configuration$")
+    public void aChangeListenerOnTheConfiguration() throws Throwable {
+        this.notifiedVersions = Collections.synchronizedList(new ArrayList<Long>());
+        ((ObservableFeatureToggleConfiguration) this.featureConfig).addChangeListener(new ConfigurationChangeListener() {
+            @Override
+            public void onChange(ConfigurationChangeEvent event) {
+                Assert.assertEquals(event.getPrevious().getVersion() + 1, event.getVersion());
+                FeatureToggleSteps.this.notifiedVersions.add(event.getVersion());
+            }
+        });
+    }
+
+    @Then("^the change listener was notified of versions \"([^\"]*)\"$")
+    public void theChangeListenerWasNotifiedOfVersions(String versions) throws Throwable {
+        List<Long> expectedVersions = new ArrayList<Long>();
+        for (String version : StringUtils.split(versions, ',')) {
+            expectedVersions.add(Long.valueOf(version));
+        }
+        Assert.assertEquals(expectedVersions, this.notifiedVersions);
+    }
 
     @Given("^a implementation of this interface called \"([^\"]*)\" with parameter toggle called 'paramTest'$")
     public void aImplementationOfThisInterfaceCalledWithParameterToggleCalledParamTest(String implementationName) throws Throwable {
         this.features.put(implementationName, Mockito.mock(TestingFeature.class));
     }
 
+    @Given("^a implementation of the (extended|generated) interface called \"([^\"]*)\"$")
+    public void aImplementationOfTheExtendedInterfaceCalled(String interfaceKind, String implementationName) throws Throwable {
+        this.features.put(implementationName, Mockito.mock(this.getExtendedInterface(interfaceKind)));
+    }
+
+    @Given("^the feature toggle of the (extended|generated) interface called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine switching between:$")
+    public void theFeatureToggleOfTheExtendedInterfaceCalledUsingTheProxyEngineSwitchingBetween(String interfaceKind, String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) throws Throwable {
+        this.featureImplementation = this.buildExtendedFeatureToggle(this.getExtendedInterface(interfaceKind), featureName, proxyEngine, featureOption);
+    }
+
+    private Class<? extends TestingFeature> getExtendedInterface(String interfaceKind) {
+        return "generated".equals(interfaceKind) ? GeneratedTestingFeature.class : ExtendedTestingFeature.class;
+    }
+
+    private <T extends TestingFeature> T buildExtendedFeatureToggle(Class<T> commonInterface, String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) {
+        return FeatureToggleFactory.<T>forFeature(this.featureConfig, featureName, commonInterface)
+                .whenEnabled(commonInterface.cast(this.features.get(featureOption.get("newFeature"))))
+                .whenDisabled(commonInterface.cast(this.features.get(featureOption.get("originalFeature"))))
+                .proxyEngine(proxyEngine)
+                .build();
+    }
+
+    @Then("^the service is served by (a proxy generated at runtime|the delegate generated at compile time)$")
+    public void theServiceIsServedBy(String proxyKind) throws Throwable {
+        boolean generated = this.featureImplementation.getClass().getName().endsWith("_Toggled");
+        Assert.assertEquals(proxyKind.startsWith("the delegate"), generated);
+    }
+
     @Given("^the feature toggle called \"([^\"]*)\" switching between:$")
     public void theFeatureToggleCalledSwitchingBetween(String featureName, Map<String, String> featureOption) throws Throwable {
         this.featureImplementation = FeatureToggleFactory.<TestingFeature>forFeature(this.featureConfig,
@@ -68,6 +494,19 @@ public class FeatureToggleSteps {
                 .build();
     }
 
+    @Given("^the feature toggle called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine switching between:$")
+    public void theFeatureToggleCalledUsingTheProxyEngineSwitchingBetween(String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) throws Throwable {
+        this.featureImplementation = FeatureToggleFactory.<TestingFeature>forFeature(this.featureConfig,
+                                                                                     featureName,
+                                                                                     TestingFeature.class)
+                .whenEnabled(this.features.get(featureOption.get("newFeature")))
+                .whenDisabled(this.features.get(featureOption.get("originalFeature")))
+                .proxyEngine(proxyEngine)
+                .metrics(this.metrics)
+                .tracer(this.traceBuffer)
+                .build();
+    }
+
     @Given("^the probability feature toggle called \"([^\"]*)\" switching between:$")
     public void theProbabilityFeatureToggleCalledSwitchingBetween(String featureName, Map<String, String> featureOption) throws Throwable {
         this.featureImplementation = FeatureToggleFactory.<TestingFeature>forFeature(this.featureConfig,
@@ -76,6 +515,8 @@ public class FeatureToggleSteps {
                 .whenEnabled(this.features.get(featureOption.get("newFeature")))
                 .whenDisabled(this.features.get(featureOption.get("originalFeature")))
                 .allowProbabilisticFeatures()
+                .metrics(this.metrics)
+                .tracer(this.traceBuffer)
                 .build();
     }
 
@@ -94,15 +535,66 @@ public class FeatureToggleSteps {
 
     }
 
+    @Given("^the Switchable feature toggle for alternative of the implementation called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine and this cases:$")
+    public void theSwitchableFeatureToggleUsingTheProxyEngine(String defaultImplementationName, ProxyEngine proxyEngine, List<Map<String, String>> implementations) throws Throwable {
+        this.registry = new FeatureRegistry();
+        final FeatureToggleFactory.SwitchableFeatureBuilder<TestingFeature> testingFeatureSwitchableFeatureBuilder =
+                FeatureToggleFactory.<TestingFeature>forSwitchableFeaturesConfiguration(this.featureConfig,
+                                                                                        TestingFeature.class)
+                        .defaultFeature(this.features.get(defaultImplementationName))
+                        .proxyEngine(proxyEngine)
+                        .registry(this.registry);
+
+        for (Map<String, String> feature : implementations) {
+            testingFeatureSwitchableFeatureBuilder.when(feature.get("featureName"), this.features.get(feature.get("implementationName")));
+        }
+
+        this.featureImplementation = testingFeatureSwitchableFeatureBuilder.build();
+    }
+
+    @Then("^the features \"([^\"]*)\" are served by a single proxy$")
+    public void theFeaturesAreServedByASingleProxy(String featureNames) throws Throwable {
+        for (String featureName : StringUtils.split(featureNames, ',')) {
+            List<Object> proxies = this.registry.getProxies(featureName);
+            Assert.assertEquals(1, proxies.size());
+            Assert.assertSame(this.featureImplementation, proxies.get(0));
+        }
+    }
+
     @When("^those features are in the featureNames at configuration \"([^\"]*)\"$")
     public void thoseFeaturesAreInTheFeatureNamesAtConfiguration(String features) throws Throwable {
         String[] featuresSplit = features.split(",", -1);
 
-        this.featureConfig.getEnabledFeatures().addAll(Arrays.asList(featuresSplit));
+        if (this.featureConfig instanceof SnapshotFeatureToggleConfiguration) {
+            Set<String> enabledFeatures = new HashSet<String>(this.featureConfig.getEnabledFeatures());
+            enabledFeatures.addAll(Arrays.asList(featuresSplit));
+            ((SnapshotFeatureToggleConfiguration) this.featureConfig).update(enabledFeatures, this.featureConfig.getEnabledParameters());
+        } else if (this.featureConfig instanceof PollingFeatureToggleConfiguration) {
+            PollingFeatureToggleConfiguration pollingConfig = (PollingFeatureToggleConfiguration) this.featureConfig;
+            pollingConfig.getDelegate().getEnabledFeatures().addAll(Arrays.asList(featuresSplit));
+            pollingConfig.poll();
+        } else {
+            this.featureConfig.getEnabledFeatures().addAll(Arrays.asList(featuresSplit));
+        }
+    }
+
+    @When("^those features are removed from the featureNames at configuration$")
+    public void thoseFeaturesAreRemovedFromTheFeatureNamesAtConfiguration() throws Throwable {
+        if (this.featureConfig instanceof PollingFeatureToggleConfiguration) {
+            PollingFeatureToggleConfiguration pollingConfig = (PollingFeatureToggleConfiguration) this.featureConfig;
+            pollingConfig.getDelegate().getEnabledFeatures().clear();
+            pollingConfig.poll();
+        } else {
+            ((SnapshotFeatureToggleConfiguration) this.featureConfig).update(new HashSet<String>(), this.featureConfig.getEnabledParameters());
+        }
     }
 
     @When("^those features activates with those parameters \"([^\"]*)\"$")
     public void thoseFeaturesActivatesWithThoseParameters(String rawParameters) throws Throwable {
+        this.enableParameters(this.parseParameters(rawParameters));
+    }
+
+    private Map<String, Set<String>> parseParameters(String rawParameters) {
         String[] split = rawParameters.split(";", -1);
 
         Map<String, Set<String>> parameterMap = new HashMap<String, Set<String>>();
@@ -129,8 +621,65 @@ public class FeatureToggleSteps {
             }
         }
 
-        this.featureConfig.getEnabledParameters().putAll(parameterMap);
+        return parameterMap;
+    }
+
+    @When("^those features activates the parameter \"([^\"]*)\" with (\\d+) values from (-?\\d+) every (\\d+)$")
+    public void thoseFeaturesActivatesTheParameterWithValues(String parameterName, int count, long first, long step) throws Throwable {
+        Set<String> parameterValues = new HashSet<String>();
+        for (int index = 0; index < count; index++) {
+            parameterValues.add(String.valueOf(first + (index * step)));
+        }
+        this.configuredValues = parameterValues;
+        this.enableParameters(Collections.singletonMap(parameterName, parameterValues));
+    }
 
+    private void enableParameters(Map<String, Set<String>> parameterMap) {
+        if (this.featureConfig instanceof SnapshotFeatureToggleConfiguration) {
+            Map<String, Set<String>> enabledParameters = new HashMap<String, Set<String>>(this.featureConfig.getEnabledParameters());
+            enabledParameters.putAll(parameterMap);
+            ((SnapshotFeatureToggleConfiguration) this.featureConfig).update(this.featureConfig.getEnabledFeatures(), enabledParameters);
+        } else if (this.featureConfig instanceof PollingFeatureToggleConfiguration) {
+            PollingFeatureToggleConfiguration pollingConfig = (PollingFeatureToggleConfiguration) this.featureConfig;
+            pollingConfig.getDelegate().getEnabledParameters().putAll(parameterMap);
+            pollingConfig.poll();
+        } else {
+            this.featureConfig.getEnabledParameters().putAll(parameterMap);
+        }
+    }
+
+    @Then("^the values enabled for \"([^\"]*)\" are kept in a (LongHashSet|BloomFilteredAllowList|LongBitmap)$")
+    public void theValuesEnabledForAreKeptIn(String parameterName, String layout) throws Throwable {
+        Set<String> enabledValues = this.featureConfig.getEnabledParameters().get(parameterName);
+        Assert.assertTrue(enabledValues instanceof NumericAllowList);
+        Assert.assertEquals(layout, ((NumericAllowList) enabledValues).getLongs().getClass().getSimpleName());
+    }
+
+    @Then("^the values enabled for \"([^\"]*)\" are kept as Strings$")
+    public void theValuesEnabledForAreKeptAsStrings(String parameterName) throws Throwable {
+        Assert.assertFalse(this.featureConfig.getEnabledParameters().get(parameterName) instanceof NumericAllowList);
+    }
+
+    @Then("^the values enabled for \"([^\"]*)\" are read from the mapped file$")
+    public void theValuesEnabledForAreReadFromTheMappedFile(String parameterName) throws Throwable {
+        Set<String> enabledValues = this.featureConfig.getEnabledParameters().get(parameterName);
+        if (enabledValues instanceof NumericAllowList) {
+            LongAllowList longs = ((NumericAllowList) enabledValues).getLongs();
+            // large lists are read through the Bloom filter stored along with them
+            String expected = (longs.size() >= NumericAllowList.MIN_SIZE) ? "BloomFilteredAllowList" : "SortedLongBuffer";
+            Assert.assertEquals(expected, longs.getClass().getSimpleName());
+        } else {
+            Assert.assertEquals("MappedStringSet", enabledValues.getClass().getSimpleName());
+        }
+    }
+
+    @Then("^the values enabled for \"([^\"]*)\" are the configured ones$")
+    public void theValuesEnabledForAreTheConfiguredOnes(String parameterName) throws Throwable {
+        Set<String> enabledValues = this.featureConfig.getEnabledParameters().get(parameterName);
+        Assert.assertEquals(this.configuredValues, enabledValues);
+        Assert.assertEquals(enabledValues, this.configuredValues);
+        Assert.assertEquals(this.configuredValues.hashCode(), enabledValues.hashCode());
+        Assert.assertEquals(this.configuredValues, new HashSet<String>(enabledValues));
     }
 
     @When("^the service is called with complex parameter \"([^\"]*)\" and \"([^\"]*)\"$")
@@ -143,6 +692,341 @@ public class FeatureToggleSteps {
         this.featureImplementation.operation(parameter);
     }
 
+    @Given("^the probability feature toggle called \"([^\"]*)\" sticky by parameter \"([^\"]*)\" switching between:$")
+    public void theProbabilityFeatureToggleCalledStickyByParameterSwitchingBetween(String featureName, String stickyParameter, Map<String, String> featureOption) throws Throwable {
+        this.featureImplementation = FeatureToggleFactory.<TestingFeature>forFeature(this.featureConfig,
+                                                                                     featureName,
+                                                                                     TestingFeature.class)
+                .whenEnabled(this.features.get(featureOption.get("newFeature")))
+                .whenDisabled(this.features.get(featureOption.get("originalFeature")))
+                .allowProbabilisticFeatures(stickyParameter)
+                .build();
+    }
+
+    @Given("^a (counting|JMX) feature metrics recorder$")
+    public void aFeatureMetricsRecorder(String kind) throws Throwable {
+        this.metrics = "JMX".equals(kind) ? new JmxFeatureToggleMetrics() : new CountingFeatureToggleMetrics();
+    }
+
+    @Then("^the feature \"([^\"]*)\" counted (\\d+) on, (\\d+) off, (\\d+) parameter and (\\d+) probabilistic rejections$")
+    public void theFeatureCounted(String featureName, long on, long off, long parameterRejections, long probabilisticRejections) throws Throwable {
+        FeatureCounters counters = ((CountingFeatureToggleMetrics) this.metrics).getCounters(featureName);
+        Assert.assertEquals(on, counters.getOnDecisions());
+        Assert.assertEquals(off, counters.getOffDecisions());
+        Assert.assertEquals(parameterRejections, counters.getParameterRejections());
+        Assert.assertEquals(probabilisticRejections, counters.getProbabilisticRejections());
+    }
+
+    @Then("^the feature \"([^\"]*)\" timed (\\d+) on and (\\d+) off calls$")
+    public void theFeatureTimedCalls(String featureName, long on, long off) throws Throwable {
+        FeatureCounters counters = ((CountingFeatureToggleMetrics) this.metrics).getCounters(featureName);
+        Assert.assertEquals(on, counters.getOnCalls());
+        Assert.assertEquals(off, counters.getOffCalls());
+        Assert.assertEquals(on + off > 0, counters.getOnLatencyNanos() + counters.getOffLatencyNanos() > 0);
+    }
+
+    @Then("^the counters of \"([^\"]*)\" are registered in JMX with (\\d+) off decisions$")
+    public void theCountersAreRegisteredInJmx(String featureName, long off) throws Throwable {
+        Object offDecisions = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(JmxFeatureToggleMetrics.objectName(featureName), "OffDecisions");
+        Assert.assertEquals(off, offDecisions);
+    }
+
+    @Given("^a decision trace buffer of (\\d+) traces sampling (\\d+)% of the decisions$")
+    public void aDecisionTraceBuffer(int capacity, int percentage) throws Throwable {
+        this.traceBuffer = new DecisionTraceBuffer(capacity, percentage / 100.0);
+    }
+
+    @Then("^(\\d+) decisions were traced$")
+    public void decisionsWereTraced(int traced) throws Throwable {
+        Assert.assertEquals(traced, this.traceBuffer.getTracedDecisions());
+        Assert.assertEquals(Math.min(traced, this.traceBuffer.getCapacity()), this.traceBuffer.dump().size());
+    }
+
+    @When("^(\\d+) threads trace (\\d+) decisions each while the buffer is dumped$")
+    public void threadsTraceDecisionsEachWhileTheBufferIsDumped(int threads, final int decisions) throws Throwable {
+        this.tornTraces = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tracers = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < threads; thread++) {
+                final String featureName = "feature" + thread;
+                tracers.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int decision = 0; decision < decisions; decision++) {
+                            FeatureToggleSteps.this.traceBuffer.trace(featureName, null, DecisionReason.PARAMETER_REJECTED, featureName, decision);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> tracer : tracers) {
+                while (!tracer.isDone()) {
+                    for (DecisionTrace trace : this.traceBuffer.dump()) {
+                        if (!trace.getFeatureName().equals(trace.getParameterId()) || (trace.getReason() != DecisionReason.PARAMETER_REJECTED)) {
+                            this.tornTraces++;
+                        }
+                    }
+                }
+                tracer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Then("^no decision trace was torn$")
+    public void noDecisionTraceWasTorn() throws Throwable {
+        Assert.assertEquals(0, this.tornTraces);
+    }
+
+    @Then("^the last decision trace of \"([^\"]*)\" is (ON|FEATURE_DISABLED|PARAMETER_REJECTED|PROBABILITY_REJECTED) with the parameter \"([^\"]*)\"$")
+    public void theLastDecisionTraceIs(String featureName, DecisionReason reason, String parameter) throws Throwable {
+        List<DecisionTrace> traces = this.traceBuffer.dump();
+        DecisionTrace trace = traces.get(traces.size() - 1);
+        Assert.assertEquals(featureName, trace.getFeatureName());
+        Assert.assertEquals(reason, trace.getReason());
+        Assert.assertEquals(reason == DecisionReason.ON, trace.isOn());
+        Assert.assertEquals(parameter, (trace.getParameterId() == null) ? "" : trace.getParameterId() + "=" + trace.getParameterValue());
+    }
+
+    @Then("^the decision traces are dumped with the methods \"([^\"]*)\"$")
+    public void theDecisionTracesAreDumpedWithTheMethods(String methods) throws Throwable {
+        List<String> methodNames = new ArrayList<String>();
+        for (String trace : this.traceBuffer.dumpTraces()) {
+            // timestamp, feature, method, decision, reason
+            methodNames.add(trace.split(" ", 3)[2].replaceFirst(" (ON|OFF) .*$", ""));
+        }
+        Assert.assertEquals(Arrays.asList(methods.split(",")), methodNames);
+    }
+
+    @Given("^a shadow executor running at most (\\d+) calls at a time$")
+    public void aShadowExecutorRunningAtMostCallsAtATime(int maxInFlight) throws Throwable {
+        this.shadowExecutor = new ShadowExecutor(this.pendingShadowCalls::add, maxInFlight);
+    }
+
+    @Given("^a shadow executor running at most (\\d+) calls at a time whose stages time out after (\\d+) milliseconds$")
+    public void aShadowExecutorWhoseStagesTimeOut(int maxInFlight, long stageTimeout) throws Throwable {
+        this.shadowTimer = Executors.newSingleThreadScheduledExecutor();
+        this.shadowExecutor = new ShadowExecutor(this.pendingShadowCalls::add, maxInFlight, this.shadowTimer, stageTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    @When("^the shadow stages time out$")
+    public void theShadowStagesTimeOut() throws Throwable {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((this.shadowExecutor.getInFlight() > 0) && (System.nanoTime() < deadline)) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Given("^the shadowed feature toggle called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine switching between:$")
+    public void theShadowedFeatureToggleCalledUsingTheProxyEngineSwitchingBetween(String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) throws Throwable {
+        this.featureImplementation = FeatureToggleFactory.<TestingFeature>forFeature(this.featureConfig,
+                                                                                     featureName,
+                                                                                     TestingFeature.class)
+                .whenEnabled(this.features.get(featureOption.get("newFeature")))
+                .whenDisabled(this.features.get(featureOption.get("originalFeature")))
+                .proxyEngine(proxyEngine)
+                .metrics(this.metrics)
+                .shadowDisabled(this.shadowExecutor)
+                .build();
+    }
+
+    @Given("^the dark launched feature toggle called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine switching between:$")
+    public void theDarkLaunchedFeatureToggleCalledUsingTheProxyEngineSwitchingBetween(String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) throws Throwable {
+        this.featureImplementation = FeatureToggleFactory.<TestingFeature>forFeature(this.featureConfig,
+                                                                                     featureName,
+                                                                                     TestingFeature.class)
+                .whenEnabled(this.features.get(featureOption.get("newFeature")))
+                .whenDisabled(this.features.get(featureOption.get("originalFeature")))
+                .proxyEngine(proxyEngine)
+                .metrics(this.metrics)
+                .darkLaunch(this.shadowExecutor)
+                .build();
+    }
+
+    @Then("^the feature \"([^\"]*)\" counted (\\d+) matching and (\\d+) mismatching shadow calls$")
+    public void theFeatureCountedMatchingShadowCalls(String featureName, long matches, long mismatches) throws Throwable {
+        FeatureCounters counters = ((CountingFeatureToggleMetrics) this.metrics).getCounters(featureName);
+        Assert.assertEquals(matches, counters.getShadowMatches());
+        Assert.assertEquals(mismatches, counters.getShadowMismatches());
+    }
+
+    @When("^the shadow calls run$")
+    public void theShadowCallsRun() throws Throwable {
+        for (Runnable shadowCall : this.pendingShadowCalls) {
+            shadowCall.run();
+        }
+        this.pendingShadowCalls.clear();
+    }
+
+    @Then("^(\\d+) shadow calls were submitted, (\\d+) dropped and (\\d+) are in flight$")
+    public void shadowCallsWereSubmitted(long submitted, long dropped, int inFlight) throws Throwable {
+        Assert.assertEquals(submitted, this.shadowExecutor.getSubmitted());
+        Assert.assertEquals(dropped, this.shadowExecutor.getDropped());
+        Assert.assertEquals(inFlight, this.shadowExecutor.getInFlight());
+    }
+
+    @Then("^the feature \"([^\"]*)\" counted (\\d+) shadow calls$")
+    public void theFeatureCountedShadowCalls(String featureName, long shadowCalls) throws Throwable {
+        FeatureCounters counters = ((CountingFeatureToggleMetrics) this.metrics).getCounters(featureName);
+        Assert.assertEquals(shadowCalls, counters.getShadowCalls());
+        Assert.assertEquals(0, counters.getShadowFailures());
+    }
+
+    @Then("^the feature \"([^\"]*)\" counted (\\d+) shadow calls, (\\d+) of them failed$")
+    public void theFeatureCountedFailedShadowCalls(String featureName, long shadowCalls, long shadowFailures) throws Throwable {
+        FeatureCounters counters = ((CountingFeatureToggleMetrics) this.metrics).getCounters(featureName);
+        Assert.assertEquals(shadowCalls, counters.getShadowCalls());
+        Assert.assertEquals(shadowFailures, counters.getShadowFailures());
+    }
+
+    @Then("^the implementation \"([^\"]*)\" served (\\d+) calls of operation\\(String\\)$")
+    public void theImplementationServedCallsOfOperation(String implementationName, int calls) throws Throwable {
+        Mockito.verify(this.features.get(implementationName), Mockito.times(calls)).operation(Mockito.anyString());
+    }
+
+    @Given("^the implementation \"([^\"]*)\" completes its async operations later$")
+    public void theImplementationCompletesItsAsyncOperationsLater(String implementationName) throws Throwable {
+        CompletableFuture<String> result = new CompletableFuture<String>();
+        this.asyncResults.put(implementationName, result);
+        Mockito.when(this.features.get(implementationName).asyncOperation(Mockito.anyString())).thenReturn(result);
+    }
+
+    @Given("^the implementation \"([^\"]*)\" answers \"([^\"]*)\" to async operations$")
+    public void theImplementationAnswersToAsyncOperations(String implementationName, String answer) throws Throwable {
+        CompletableFuture<String> result = CompletableFuture.completedFuture(answer);
+        this.asyncResults.put(implementationName, result);
+        Mockito.when(this.features.get(implementationName).asyncOperation(Mockito.anyString())).thenReturn(result);
+    }
+
+    @When("^the service is called asynchronously with \"([^\"]*)\"$")
+    public void theServiceIsCalledAsynchronouslyWith(String parameter) throws Throwable {
+        this.asyncResult = this.featureImplementation.asyncOperation(parameter);
+    }
+
+    @When("^the async operation of \"([^\"]*)\" completes$")
+    public void theAsyncOperationCompletes(String implementationName) throws Throwable {
+        this.asyncResults.get(implementationName).complete(implementationName);
+    }
+
+    @Then("^the caller got the async result of \"([^\"]*)\"$")
+    public void theCallerGotTheAsyncResultOf(String implementationName) throws Throwable {
+        Assert.assertSame(this.asyncResults.get(implementationName), this.asyncResult);
+    }
+
+    @Given("^a parking implementation of this interface called \"([^\"]*)\"$")
+    public void aParkingImplementationOfThisInterfaceCalled(String implementationName) throws Throwable {
+        this.features.put(implementationName, new ParkingTestingFeature());
+    }
+
+    @When("^(\\d+) virtual threads call the service with primitive parameters at the same time$")
+    public void virtualThreadsCallTheServiceAtTheSameTime(int threads) throws Throwable {
+        // through reflection, the tests being compiled for Java 8
+        ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        final CountDownLatch start = new CountDownLatch(1);
+        final TestingFeature service = this.featureImplementation;
+
+        // -Djdk.tracePinnedThreads prints the stack of the threads that park while pinned to System.out
+        PrintStream out = System.out;
+        ByteArrayOutputStream pinnedThreadTraces = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(pinnedThreadTraces, true));
+        try {
+            List<Future<?>> calls = new ArrayList<Future<?>>(threads);
+            for (int i = 0; i < threads; i++) {
+                final String parameter = String.valueOf(i % 10);
+                calls.add(executor.submit(() -> {
+                    start.await();
+                    service.operation(parameter);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> call : calls) {
+                call.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+            System.setOut(out);
+        }
+        this.pinnedThreadTraces = pinnedThreadTraces.toString(StandardCharsets.UTF_8.name());
+    }
+
+    @Then("^the implementation \"([^\"]*)\" served (\\d+) of the calls$")
+    public void theImplementationServedOfTheCalls(String implementationName, long calls) throws Throwable {
+        Assert.assertEquals(calls, ((ParkingTestingFeature) this.features.get(implementationName)).getCalls());
+    }
+
+    @Then("^no thread was pinned to its carrier while holding a monitor$")
+    public void noThreadWasPinnedToItsCarrierWhileHoldingAMonitor() throws Throwable {
+        Assert.assertFalse(this.pinnedThreadTraces, this.pinnedThreadTraces.contains("<== monitors"));
+    }
+
+    @Then("^a thread was pinned to its carrier while holding a monitor$")
+    public void aThreadWasPinnedToItsCarrierWhileHoldingAMonitor() throws Throwable {
+        Assert.assertTrue(this.pinnedThreadTraces, this.pinnedThreadTraces.contains("<== monitors"));
+    }
+
+    @When("^the OFF object of the feature \"([^\"]*)\" is called with primitive parameter \"([^\"]*)\"$")
+    public void theOffObjectOfTheFeatureIsCalled(String featureName, String parameter) throws Throwable {
+        ((TestingFeature) this.registry.getFeatures(featureName).get(0).getFeatureOff()).operation(parameter);
+    }
+
+    @Given("^a feature registry$")
+    public void aFeatureRegistry() throws Throwable {
+        this.registry = new FeatureRegistry();
+    }
+
+    @When("^(\\d+) feature toggles called \"([^\"]*)\" are built in the registry from (\\d+) threads switching between:$")
+    public void featureTogglesAreBuiltInTheRegistry(final int proxies, final String featureName, int threads, final Map<String, String> featureOption) throws Throwable {
+        this.registeredProxies = Collections.synchronizedList(new ArrayList<TestingFeature>());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> builds = new ArrayList<Future<?>>();
+            for (int i = 0; i < proxies; i++) {
+                builds.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        FeatureToggleSteps.this.registeredProxies.add(FeatureToggleFactory.<TestingFeature>forFeature(FeatureToggleSteps.this.featureConfig,
+                                                                                                                        featureName,
+                                                                                                                        TestingFeature.class)
+                                                                              .whenEnabled(FeatureToggleSteps.this.features.get(featureOption.get("newFeature")))
+                                                                              .whenDisabled(FeatureToggleSteps.this.features.get(featureOption.get("originalFeature")))
+                                                                              .registry(FeatureToggleSteps.this.registry)
+                                                                              .build());
+                    }
+                }));
+            }
+            for (Future<?> build : builds) {
+                build.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @When("^those proxies are no longer used$")
+    public void thoseProxiesAreNoLongerUsed() throws Throwable {
+        this.registeredProxies = null;
+        this.featureImplementation = null;
+    }
+
+    @Then("^the registry has (\\d+) proxies for \"([^\"]*)\"$")
+    public void theRegistryHasProxiesFor(int proxies, String featureName) throws Throwable {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while ((this.registry.getProxies(featureName).size() > proxies) && (System.currentTimeMillis() < deadline)) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(proxies, this.registry.getProxies(featureName).size());
+        Assert.assertEquals(proxies, this.registry.getFeatures(featureName).size());
+    }
+
+    @When("^the service is called without parameter toggle with \"([^\"]*)\"$")
+    public void theServiceIsCalledWithoutParameterToggle(String parameter) throws Throwable {
+        this.featureImplementation.untoggledOperation(parameter);
+    }
+
     @When("^the service is called with primitive parameter \"([^\"]*)\" (\\d+) times$")
     public void theServiceIsCalledWithPrimitiveParameterTimes(String parameter, int repetitions) throws Throwable {
         this.repetitions = repetitions;
@@ -151,6 +1035,177 @@ public class FeatureToggleSteps {
         }
     }
 
+    @When("^the service is called with primitive parameters from 1 to (\\d+)$")
+    public void theServiceIsCalledWithPrimitiveParametersFromOneTo(int repetitions) throws Throwable {
+        this.repetitions = repetitions;
+        for (int i = 1; i <= repetitions; i++) {
+            this.featureImplementation.operation(String.valueOf(i));
+        }
+    }
+
+    @When("^the primitive parameters from 1 to (\\d+) are evaluated in a batch for the feature \"([^\"]*)\"$")
+    public void thePrimitiveParametersAreEvaluatedInABatchForTheFeature(int size, String featureName) throws Throwable {
+        List<Object[]> calls = new ArrayList<Object[]>(size);
+        for (int i = 1; i <= size; i++) {
+            calls.add(new Object[]{String.valueOf(i)});
+        }
+        FeatureToggleEvaluator evaluator = new FeatureToggleEvaluator(this.featureConfig, TestingFeature.class);
+        this.batchDecisions = evaluator.evaluate(featureName, TestingFeature.class.getMethod("operation", String.class), calls);
+    }
+
+    @Then("^the batch is on for the parameters \"([^\"]*)\"$")
+    public void theBatchIsOnForTheParameters(String parameters) throws Throwable {
+        BitSet expected = new BitSet();
+        for (String parameter : parameters.split(",")) {
+            if (StringUtils.isNotBlank(parameter)) {
+                expected.set(Integer.parseInt(parameter.trim()) - 1);
+            }
+        }
+        Assert.assertEquals(expected, this.batchDecisions);
+    }
+
+    @Given("^a bulk implementation called \"([^\"]*)\"$")
+    public void aBulkImplementationCalled(String implementationName) throws Throwable {
+        this.bulkFeatures.put(implementationName, new RecordingBulkTestingFeature(implementationName));
+    }
+
+    @Given("^the partitioned feature toggle called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine switching between:$")
+    public void thePartitionedFeatureToggleCalledSwitchingBetween(String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) throws Throwable {
+        this.bulkImplementation = FeatureToggleFactory.<BulkTestingFeature>forFeature(this.featureConfig, featureName, BulkTestingFeature.class)
+                .whenEnabled(this.bulkFeatures.get(featureOption.get("newFeature")))
+                .whenDisabled(this.bulkFeatures.get(featureOption.get("originalFeature")))
+                .proxyEngine(proxyEngine)
+                .metrics(this.metrics)
+                .partitioned()
+                .build();
+    }
+
+    @Then("^a feature toggle called \"([^\"]*)\" switching between those bulk implementations isn't allowed unless partitioned$")
+    public void aFeatureToggleSwitchingBetweenThoseBulkImplementationsIsNotAllowedUnlessPartitioned(String featureName) throws Throwable {
+        try {
+            FeatureToggleFactory.<BulkTestingFeature>forFeature(this.featureConfig, featureName, BulkTestingFeature.class)
+                    .whenEnabled(this.bulkFeatures.get("newImplementation"))
+                    .whenDisabled(this.bulkFeatures.get("main"))
+                    .build();
+            Assert.fail("A parameter toggle on a list is only allowed for partitioned features");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Parameter Toggle is not allowed here"));
+        }
+    }
+
+    @Given("^a merging implementation called \"([^\"]*)\"$")
+    public void aMergingImplementationCalled(String implementationName) throws Throwable {
+        this.mergingFeatures.put(implementationName, Mockito.mock(MergingTestingFeature.class));
+    }
+
+    @Given("^the feature toggle of the merging interface called \"([^\"]*)\" using the (JDK|BYTECODE|GENERATED) proxy engine switching between:$")
+    public void theFeatureToggleOfTheMergingInterfaceCalledUsingTheProxyEngineSwitchingBetween(String featureName, ProxyEngine proxyEngine, Map<String, String> featureOption) throws Throwable {
+        this.mergingImplementation = FeatureToggleFactory.<MergingTestingFeature>forFeature(this.featureConfig, featureName, MergingTestingFeature.class)
+                .whenEnabled(this.mergingFeatures.get(featureOption.get("newFeature")))
+                .whenDisabled(this.mergingFeatures.get(featureOption.get("originalFeature")))
+                .proxyEngine(proxyEngine)
+                .build();
+    }
+
+    @Then("^a partitioned feature toggle called \"([^\"]*)\" switching between those merging implementations isn't allowed$")
+    public void aPartitionedFeatureToggleSwitchingBetweenThoseMergingImplementationsIsNotAllowed(String featureName) throws Throwable {
+        try {
+            FeatureToggleFactory.<MergingTestingFeature>forFeature(this.featureConfig, featureName, MergingTestingFeature.class)
+                    .whenEnabled(this.mergingFeatures.get("newImplementation"))
+                    .whenDisabled(this.mergingFeatures.get("main"))
+                    .partitioned()
+                    .build();
+            Assert.fail("Only one argument of a partitioned feature can carry parameter toggles on its items");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Only one argument can be partitioned"));
+        }
+    }
+
+    @When("^the merging service merges the complex parameters \"([^\"]*)\" with \"([^\"]*)\"$")
+    public void theMergingServiceMergesTheComplexParametersWith(String items, String otherItems) throws Throwable {
+        this.mergingImplementation.merge(this.toOperationParameters(items), this.toOperationParameters(otherItems));
+    }
+
+    @Then("^the merging implementation \"([^\"]*)\" was called (\\d+) times?$")
+    public void theMergingImplementationWasCalledTimes(String implementationName, int calls) throws Throwable {
+        Mockito.verify(this.mergingFeatures.get(implementationName), Mockito.times(calls)).merge(Mockito.<List<OperationParameter>>any(), Mockito.<List<OperationParameter>>any());
+    }
+
+    @When("^the bulk service processes \"([^\"]*)\"$")
+    public void theBulkServiceProcesses(String items) throws Throwable {
+        this.bulkResult = this.bulkImplementation.process(this.splitItems(items));
+    }
+
+    @When("^the bulk service stores the complex parameters \"([^\"]*)\"$")
+    public void theBulkServiceStoresTheComplexParameters(String items) throws Throwable {
+        List<OperationParameter> operationParameters = this.toOperationParameters(items);
+        this.bulkResult = this.bulkImplementation.store(operationParameters.toArray(new OperationParameter[operationParameters.size()]));
+    }
+
+    private List<OperationParameter> toOperationParameters(String items) {
+        List<OperationParameter> operationParameters = new ArrayList<OperationParameter>();
+        for (String item : this.splitItems(items)) {
+            String[] fieldAndMethod = item.split(":");
+            operationParameters.add(new OperationParameter(Integer.parseInt(fieldAndMethod[0]), ParameterEnum.valueOf(fieldAndMethod[1])));
+        }
+        return operationParameters;
+    }
+
+    @Then("^the implementation \"([^\"]*)\" processed \"([^\"]*)\" in (\\d+) calls?$")
+    public void theImplementationProcessedInCalls(String implementationName, String items, int calls) throws Throwable {
+        List<List<String>> processed = this.bulkFeatures.get(implementationName).getProcessed();
+        Assert.assertEquals(calls, processed.size());
+        List<String> processedItems = new ArrayList<String>();
+        for (List<String> call : processed) {
+            processedItems.addAll(call);
+        }
+        Assert.assertEquals(this.splitItems(items), processedItems);
+    }
+
+    @Then("^the implementation \"([^\"]*)\" stored \"([^\"]*)\" in (\\d+) calls?$")
+    public void theImplementationStoredInCalls(String implementationName, String items, int calls) throws Throwable {
+        List<List<OperationParameter>> stored = this.bulkFeatures.get(implementationName).getStored();
+        Assert.assertEquals(calls, stored.size());
+        List<String> storedItems = new ArrayList<String>();
+        for (List<OperationParameter> call : stored) {
+            for (OperationParameter operationParameter : call) {
+                storedItems.add(operationParameter.toString());
+            }
+        }
+        Assert.assertEquals(this.splitItems(items), storedItems);
+    }
+
+    @Then("^the bulk service answered \"([^\"]*)\"$")
+    public void theBulkServiceAnswered(String answer) throws Throwable {
+        if (this.bulkResult instanceof List) {
+            Assert.assertEquals(this.splitItems(answer), this.bulkResult);
+        } else {
+            Assert.assertEquals(answer, String.valueOf(this.bulkResult));
+        }
+    }
+
+    private List<String> splitItems(String items) {
+        List<String> split = new ArrayList<String>();
+        for (String item : items.split(",")) {
+            if (StringUtils.isNotBlank(item)) {
+                split.add(item.trim());
+            }
+        }
+        return split;
+    }
+
+    @Then("^all the requests will be for the same implementation$")
+    public void allTheRequestsWillBeForTheSameImplementation() throws Throwable {
+        int implementationsUsed = 0;
+        for (TestingFeature implementation : this.features.values()) {
+            if (!Mockito.mockingDetails(implementation).getInvocations().isEmpty()) {
+                Mockito.verify(implementation, Mockito.times(this.repetitions)).operation(Mockito.anyString());
+                implementationsUsed++;
+            }
+        }
+        Assert.assertEquals(1, implementationsUsed);
+    }
+
     @Then("^the implementation of operation\\(OperationParameter\\) \"([^\"]*)\" will be used$")
     public void theImplementationWillBeUsed(final String usedImplementationName) throws Throwable {
         for (Map.Entry<String, TestingFeature> testingFeatureEntry : this.features.entrySet()) {
@@ -182,6 +1237,19 @@ public class FeatureToggleSteps {
         }
     }
 
+    @Then("^the implementation of untoggledOperation\\(String\\) \"([^\"]*)\" will be used$")
+    public void theImplementationOfUntoggledOperationWillBeUsed(final String usedImplementationName) throws Throwable {
+        for (Map.Entry<String, TestingFeature> testingFeatureEntry : this.features.entrySet()) {
+            String implementationName = testingFeatureEntry.getKey();
+            TestingFeature implementation = testingFeatureEntry.getValue();
+
+            if (usedImplementationName.equalsIgnoreCase(implementationName)) {
+                Mockito.verify(implementation, Mockito.only()).untoggledOperation(Mockito.anyString());
+            } else {
+                Mockito.verify(implementation, Mockito.never()).untoggledOperation(Mockito.anyString());
+            }
+        }
+    }
 
     @Then("^approximately (\\d+)% of requests will be for \"([^\"]*)\"$")
     public void approximatelyOfRequestsWillBeFor(int percent, String featureName) throws Throwable {
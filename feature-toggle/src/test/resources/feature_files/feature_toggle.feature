@@ -80,6 +80,54 @@ Feature: Feature Toggle Tests
       | feature2,feature3 | feature2&paramTestPrimitive=2                               | 1         | newImplementation_feature3 |
       | feature2,feature3 | feature2&paramTestPrimitive=2;feature3&paramTestPrimitive=3 | 1         | main                       |
 
+  Scenario Template: Switchable Feature dispatched by a single proxy
+    Given <configuration>
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation_feature1" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation_feature2" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation_feature3" with parameter toggle called 'paramTest'
+    And the Switchable feature toggle for alternative of the implementation called "main" using the <engine> proxy engine and this cases:
+      | featureName | implementationName         |
+      | feature1    | newImplementation_feature1 |
+      | feature2    | newImplementation_feature2 |
+      | feature3    | newImplementation_feature3 |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called with primitive parameter "<parameter>"
+    Then the implementation of operation(String) "<invokedImplementation>" will be used
+    And the features "feature1,feature2,feature3" are served by a single proxy
+
+    Examples:
+      | configuration                                    | engine   | features          | featureParameters                                           | parameter | invokedImplementation      |
+      | a mutable feature toggle configuration           | JDK      |                   |                                                             | 1         | main                       |
+      | a mutable feature toggle configuration           | JDK      | feature3,feature1 |                                                             | 1         | newImplementation_feature1 |
+      | a mutable feature toggle configuration           | BYTECODE | feature2,feature3 | feature2&paramTestPrimitive=2                               | 1         | newImplementation_feature3 |
+      | a compiled snapshot feature toggle configuration | BYTECODE | feature2,feature3 | feature2&paramTestPrimitive=1                               | 1         | newImplementation_feature2 |
+      | a compiled snapshot feature toggle configuration | JDK      | feature2,feature3 | feature2&paramTestPrimitive=2;feature3&paramTestPrimitive=3 | 1         | main                       |
+      | a compiled snapshot feature toggle configuration | BYTECODE | feature1,feature2 | paramTestPrimitive=2                                        | 1         | main                       |
+
+  Scenario Template: The OFF object of a switch case is the default implementation
+    Given a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation_feature1" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation_feature2" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation_feature3" with parameter toggle called 'paramTest'
+    And the Switchable feature toggle for alternative of the implementation called "main" using the <engine> proxy engine and this cases:
+      | featureName | implementationName         |
+      | feature1    | newImplementation_feature1 |
+      | feature2    | newImplementation_feature2 |
+      | feature3    | newImplementation_feature3 |
+    And those features are in the featureNames at configuration "<features>"
+    When the OFF object of the feature "<feature>" is called with primitive parameter "1"
+    Then the implementation of operation(String) "<invokedImplementation>" will be used
+
+    Examples:
+      | engine   | features          | feature  | invokedImplementation |
+      | JDK      | feature2,feature3 | feature1 | main                  |
+      | JDK      | feature3          | feature1 | main                  |
+      | BYTECODE | feature1,feature3 | feature2 | main                  |
+      | BYTECODE | feature1,feature2 | feature2 | main                  |
+      | JDK      | feature1,feature2 | feature3 | main                  |
+
   Scenario Template: Probabilistic Feature
     Given a implementation of this interface called "main" with parameter toggle called 'paramTest'
     And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
@@ -98,3 +146,845 @@ Feature: Feature Toggle Tests
       | paramTestPrimitive=2                                | 1         | 100         | 0                          |
       | featureName#probability=3/10,3;paramTestPrimitive=1 | 1         | 100         | 0                          |
       | featureName#probability=;paramTestPrimitive=1       | 1         | 100         | 100                        |
+
+  Scenario: Observable configuration notifies its changes
+    Given a compiled snapshot feature toggle configuration
+    And a change listener on the configuration
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "paramTestField=1"
+    When the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+    And the change listener was notified of versions "1,2"
+
+  Scenario Template: File configuration reloaded when its files change
+    Given a feature toggle file "toggles.properties" with:
+      """
+      # flipped by operations
+      enabledFeatures=featureName
+      enabledParameters.paramTestField=1
+      """
+    And a file feature toggle configuration <mode> the directory
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+    When the feature toggle file "toggles.yml" is written with:
+      """
+      enabledParameters:
+        paramTestField: [1, 2]
+        "featureName#probability": 1/1  # always
+        paramTestMethod:
+          - F1
+          - F3
+      """
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "newImplementation" will be used
+    When the feature toggle file "toggles.properties" is written with:
+      """
+      enabledFeatures=otherFeature
+      """
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+
+    Examples:
+      | mode     |
+      | watching |
+      | polling  |
+
+  Scenario Template: Memory-mapped snapshot file
+    Given a feature toggle snapshot file "toggles.snapshot" enabling "<features>" with those parameters "<featureParameters>"
+    And a mapped feature toggle configuration polling the file "toggles.snapshot"
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with complex parameter "<parameterField>" and "<parameterMethod>"
+    Then the implementation of operation(OperationParameter) "<invokedImplementation>" will be used
+
+    Examples:
+      | engine    | features           | featureParameters                        | parameterField | parameterMethod | invokedImplementation |
+      | JDK       |                    |                                          | 2              | F1              | main                  |
+      | JDK       | xicote             |                                          | 2              | F1              | main                  |
+      | JDK       | featureName,xicote |                                          | 2              | F1              | newImplementation     |
+      | JDK       | featureName        | paramTestField=1                         | 2              | F2              | main                  |
+      | JDK       | featureName        | paramTestField=1;paramTestMethod=F1      | 1              | F1              | newImplementation     |
+      | JDK       | featureName        | featureName&paramTestField=1             | 2              | F1              | main                  |
+      | BYTECODE  | featureName        | featureName&paramTestField=1             | 1              | F3              | newImplementation     |
+      | JDK       | featureName        | paramTestField=01                        | 1              | F1              | main                  |
+      | BYTECODE  | featureName        | paramTestField=2,1;paramTestMethod=F3,F1 | 1              | F1              | newImplementation     |
+      | BYTECODE  | featureName        | paramTestField=2,1;paramTestMethod=F3,F1 | 1              | F2              | main                  |
+      | GENERATED | featureName        | paramTestField=2,1;paramTestMethod=F3,F1 | 1              | F1              | newImplementation     |
+
+  Scenario Template: Memory-mapped snapshot file with String values
+    Given a feature toggle snapshot file "toggles.snapshot" enabling "featureName" with those parameters "paramTestPrimitive=<values>"
+    And a mapped feature toggle configuration polling the file "toggles.snapshot"
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with primitive parameter "<parameter>"
+    Then the implementation of operation(String) "<invokedImplementation>" will be used
+    And the values enabled for "paramTestPrimitive" are read from the mapped file
+
+    Examples:
+      | values       | parameter | invokedImplementation |
+      | EU,US        | EU        | newImplementation     |
+      | EU,US        | E         | main                  |
+      | EU,US        | EUR       | main                  |
+      | café,Zürich  | café      | newImplementation     |
+      | café,Zürich  | cafe      | main                  |
+      | €,ß,𝄞        | 𝄞         | newImplementation     |
+      | €,ß,𝄞        | ß         | newImplementation     |
+      | €,ß,𝄞        | s         | main                  |
+      | 7,42,1000000 | 42        | newImplementation     |
+      | 7,42,1000000 | 042       | main                  |
+      | 7,42,007     | 007       | newImplementation     |
+      | 7,42,007     | 42        | newImplementation     |
+
+  Scenario Template: Memory-mapped snapshot file replaced in place
+    Given a feature toggle snapshot file "toggles.snapshot" enabling "featureName" with those parameters "paramTestField=1"
+    And a mapped feature toggle configuration <mode> the file "toggles.snapshot"
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+    When the feature toggle snapshot file "toggles.snapshot" is replaced enabling "featureName" with those parameters "paramTestField=1,2;featureName#probability=1/1;paramTestMethod=F1,F3"
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "newImplementation" will be used
+    When the feature toggle snapshot file "toggles.snapshot" is replaced by a corrupted one
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "newImplementation" will be used
+    When the feature toggle snapshot file "toggles.snapshot" is replaced enabling "otherFeature" with those parameters ""
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+
+    Examples:
+      | mode     |
+      | watching |
+      | polling  |
+
+  Scenario: Memory-mapped snapshot file readable by the other users of the host
+    Given a feature toggle snapshot file "toggles.snapshot" enabling "featureName" with those parameters "paramTestField=1"
+    Then the feature toggle snapshot file "toggles.snapshot" is written with the permissions "rw-r--r--"
+    Given the feature toggle snapshot file "toggles.snapshot" has the permissions "rw-rw-r--"
+    When a feature toggle snapshot file "toggles.snapshot" enabling "otherFeature" with those parameters ""
+    Then the feature toggle snapshot file "toggles.snapshot" is written with the permissions "rw-rw-r--"
+
+  Scenario Template: Large allow-lists read from a memory-mapped snapshot file
+    Given a feature toggle snapshot file "toggles.snapshot" enabling "featureName" with 100000 values of "paramTestField" from -50000 every 3
+    And a mapped feature toggle configuration polling the file "toggles.snapshot"
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with complex parameter "<parameterField>" and "F1"
+    Then the implementation of operation(OperationParameter) "<invokedImplementation>" will be used
+    And the values enabled for "paramTestField" are read from the mapped file
+    And the values enabled for "paramTestField" are the configured ones
+
+    Examples:
+      | parameterField | invokedImplementation |
+      | -50000         | newImplementation     |
+      | -49999         | main                  |
+      | 1              | newImplementation     |
+      | 249997         | newImplementation     |
+      | 250000         | main                  |
+
+  Scenario Template: Invalid snapshot files aren't mapped
+    Given a feature toggle snapshot file "toggles.snapshot" enabling "featureName" with 100 values of "paramTestField" from 0 every 1
+    And the feature toggle snapshot file "toggles.snapshot" truncated to <size> bytes
+    Then a mapped feature toggle configuration of the file "toggles.snapshot" can't be built
+
+    Examples:
+      | size |
+      | 0    |
+      | 12   |
+      | 40   |
+      | 100  |
+      | 800  |
+
+  Scenario: Text files aren't mapped
+    Given a feature toggle file "toggles.properties" with:
+      """
+      enabledFeatures=featureName
+      """
+    Then a mapped feature toggle configuration of the file "toggles.properties" can't be built
+
+  Scenario: Remote configuration long-polled with deltas
+    Given a stand-in configuration server publishing "featureName" with those parameters "paramTestField=1"
+    And a remote feature toggle configuration of the stand-in server
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+    When the stand-in server publishes "featureName" with those parameters "paramTestField=1,2;featureName#probability=1/1;paramTestMethod=F1,F3"
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "newImplementation" will be used
+    When the stand-in server publishes "featureName" with those parameters "paramTestField=1,3;paramTestMethod=F1,F3"
+    And the implementations are reset
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+    When the stand-in server publishes "otherFeature" with those parameters ""
+    And the implementations are reset
+    And the service is called with complex parameter "3" and "F1"
+    Then the implementation of operation(OperationParameter) "main" will be used
+    And the stand-in server sent 1 document and 3 deltas
+
+  Scenario: Remote configuration started from its cache while the server is down
+    Given a stand-in configuration server publishing "otherFeature" with those parameters ""
+    And a remote feature toggle configuration of the stand-in server cached in "toggles.cache"
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the stand-in server publishes "featureName" with those parameters "paramTestField=2;paramTestMethod=F1"
+    And the stand-in server is stopped
+    And the remote feature toggle configuration is restarted
+    And the service is called with complex parameter "2" and "F1"
+    Then the implementation of operation(OperationParameter) "newImplementation" will be used
+    And the stand-in server sent 1 document and 1 delta
+
+  Scenario: Remote configuration without a cache needs the server
+    Given a stand-in configuration server publishing "featureName" with those parameters ""
+    When the stand-in server is stopped
+    Then a remote feature toggle configuration of the stand-in server can't be built
+
+  Scenario Template: Large allow-lists changed by deltas
+    Given a stand-in configuration server publishing "featureName" with 100000 values of "paramTestField" from -50000 every 3
+    And a remote feature toggle configuration of the stand-in server
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the stand-in server adds "-49999,1000000" to the values of "paramTestField"
+    And the service is called with complex parameter "<parameterField>" and "F1"
+    Then the implementation of operation(OperationParameter) "<invokedImplementation>" will be used
+    And the values enabled for "paramTestField" are kept in a LongBitmap
+    And the values enabled for "paramTestField" are the configured ones
+    And the stand-in server sent 1 document and 1 delta
+
+    Examples:
+      | parameterField | invokedImplementation |
+      | -50000         | newImplementation     |
+      | -49999         | newImplementation     |
+      | -49998         | main                  |
+      | 1000000        | newImplementation     |
+      | 1000001        | main                  |
+
+  Scenario Template: Sticky probabilistic Feature spread
+    Given a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the probability feature toggle called "featureName" sticky by parameter "paramTestPrimitive" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called with primitive parameters from 1 to <repetitions>
+    Then approximately <frequencyNewImplementation>% of requests will be for "newImplementation"
+
+    Examples:
+      | featureParameters             | repetitions | frequencyNewImplementation |
+      | featureName#probability=3/10  | 10000       | 30                         |
+      | featureName#probability=1/2   | 10000       | 50                         |
+      | featureName#probability=10/10 | 100         | 100                        |
+      | featureName#probability=0/10  | 100         | 0                          |
+
+  Scenario Template: Sticky probabilistic Feature keeps the implementation of a parameter
+    Given <configuration>
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the probability feature toggle called "featureName" sticky by parameter "paramTestPrimitive" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "featureName#probability=1/2"
+    When the service is called with primitive parameter "<parameter>" 100 times
+    Then all the requests will be for the same implementation
+
+    Examples:
+      | configuration                                    | parameter |
+      | a mutable feature toggle configuration           | 1         |
+      | a mutable feature toggle configuration           | 2         |
+      | a mutable feature toggle configuration           | 3         |
+      | a compiled snapshot feature toggle configuration | 1         |
+      | a compiled snapshot feature toggle configuration | 2         |
+      | a compiled snapshot feature toggle configuration | 3         |
+
+  Scenario Template: Proxy engines with parameter toggles
+    Given a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called with complex parameter "<parameterField>" and "<parameterMethod>"
+    Then the implementation of operation(OperationParameter) "<invokedImplementation>" will be used
+
+    Examples:
+      | engine    | features    | featureParameters                   | parameterField | parameterMethod | invokedImplementation |
+      | JDK       |             |                                     | 2              | F1              | main                  |
+      | JDK       | featureName |                                     | 2              | F1              | newImplementation     |
+      | JDK       | featureName | paramTestField=1;paramTestMethod=F1 | 1              | F1              | newImplementation     |
+      | JDK       | featureName | paramTestField=1;paramTestMethod=F1 | 2              | F1              | main                  |
+      | BYTECODE  |             |                                     | 2              | F1              | main                  |
+      | BYTECODE  | featureName |                                     | 2              | F1              | newImplementation     |
+      | BYTECODE  | featureName | paramTestField=1;paramTestMethod=F1 | 1              | F1              | newImplementation     |
+      | BYTECODE  | featureName | paramTestField=1;paramTestMethod=F1 | 2              | F1              | main                  |
+      | BYTECODE  | featureName | featureName&paramTestField=1        | 1              | F3              | newImplementation     |
+      | BYTECODE  | featureName | featureName&paramTestField=1        | 2              | F3              | main                  |
+      | GENERATED | featureName | paramTestField=1;paramTestMethod=F1 | 1              | F1              | newImplementation     |
+      | GENERATED | featureName | paramTestField=1;paramTestMethod=F1 | 2              | F1              | main                  |
+      | GENERATED | featureName | featureName&paramTestField=1        | 1              | F3              | newImplementation     |
+
+  Scenario Template: Proxy engines without parameter toggles
+    Given a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called without parameter toggle with "<parameter>"
+    Then the implementation of untoggledOperation(String) "<invokedImplementation>" will be used
+
+    Examples:
+      | engine    | features           | featureParameters    | parameter | invokedImplementation |
+      | JDK       |                    |                      | 1         | main                  |
+      | JDK       | featureName        |                      | 1         | newImplementation     |
+      | BYTECODE  |                    |                      | 1         | main                  |
+      | BYTECODE  | xicote             |                      | 1         | main                  |
+      | BYTECODE  | featureName        |                      | 1         | newImplementation     |
+      | BYTECODE  | featureName,xicote | paramTestPrimitive=2 | 1         | newImplementation     |
+      | GENERATED |                    |                      | 1         | main                  |
+      | GENERATED | featureName        |                      | 1         | newImplementation     |
+
+  Scenario Template: Compiled snapshot configuration
+    Given a compiled snapshot feature toggle configuration
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called with complex parameter "<parameterField>" and "<parameterMethod>"
+    Then the implementation of operation(OperationParameter) "<invokedImplementation>" will be used
+
+    Examples:
+      | engine    | features           | featureParameters                        | parameterField | parameterMethod | invokedImplementation |
+      | JDK       |                    |                                          | 2              | F1              | main                  |
+      | JDK       | xicote             |                                          | 2              | F1              | main                  |
+      | JDK       | featureName,xicote |                                          | 2              | F1              | newImplementation     |
+      | JDK       | featureName        | paramTestField=1                         | 2              | F2              | main                  |
+      | JDK       | featureName        | paramTestField=1;paramTestMethod=F1      | 1              | F1              | newImplementation     |
+      | JDK       | featureName        | featureName&paramTestField=1             | 2              | F1              | main                  |
+      | BYTECODE  | featureName        |                                          | 2              | F1              | newImplementation     |
+      | BYTECODE  | featureName        | featureName&paramTestField=1             | 1              | F3              | newImplementation     |
+      | JDK       | featureName        | paramTestField=01                        | 1              | F1              | main                  |
+      | BYTECODE  | featureName        | paramTestField=2,1;paramTestMethod=F3,F1 | 1              | F1              | newImplementation     |
+      | BYTECODE  | featureName        | paramTestField=2,1;paramTestMethod=F3,F1 | 1              | F2              | main                  |
+      | GENERATED | featureName        | paramTestField=2,1;paramTestMethod=F3,F1 | 1              | F1              | newImplementation     |
+      | GENERATED | featureName        | featureName&paramTestField=1             | 2              | F1              | main                  |
+
+  Scenario: Compiled snapshot swapped after the proxy is built
+    Given a compiled snapshot feature toggle configuration
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features are removed from the featureNames at configuration
+    When the service is called without parameter toggle with "1"
+    Then the implementation of untoggledOperation(String) "main" will be used
+
+  Scenario Template: Large allow-lists of numeric parameter values
+    Given a <configuration> feature toggle configuration
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates the parameter "paramTestField" with <count> values from <first> every <step>
+    When the service is called with complex parameter "<parameterField>" and "F1"
+    Then the implementation of operation(OperationParameter) "<invokedImplementation>" will be used
+
+    Examples:
+      | configuration     | engine    | count  | first  | step   | parameterField | invokedImplementation |
+      | compiled snapshot | BYTECODE  | 100    | 0      | 1      | 99             | newImplementation     |
+      | compiled snapshot | BYTECODE  | 100    | 0      | 1      | 100            | main                  |
+      | compiled snapshot | BYTECODE  | 100000 | 0      | 1      | 99999          | newImplementation     |
+      | compiled snapshot | BYTECODE  | 100000 | 0      | 1      | 100000         | main                  |
+      | compiled snapshot | JDK       | 100000 | -50000 | 1      | -1             | newImplementation     |
+      | compiled snapshot | JDK       | 100000 | -50000 | 1      | -50001         | main                  |
+      | compiled snapshot | BYTECODE  | 6000   | 0      | 20     | 119980         | newImplementation     |
+      | compiled snapshot | BYTECODE  | 6000   | 0      | 20     | 119981         | main                  |
+      | compiled snapshot | BYTECODE  | 5000   | 7      | 400000 | 400007         | newImplementation     |
+      | compiled snapshot | BYTECODE  | 5000   | 7      | 400000 | 1999600007     | newImplementation     |
+      | compiled snapshot | BYTECODE  | 5000   | 7      | 400000 | 400008         | main                  |
+      | compiled snapshot | GENERATED | 5000   | -7     | 400000 | -7             | newImplementation     |
+      | compiled snapshot | GENERATED | 5000   | -7     | 400000 | 7              | main                  |
+      | mutable           | BYTECODE  | 100000 | 0      | 1      | 99999          | newImplementation     |
+      | mutable           | BYTECODE  | 5000   | 7      | 400000 | 400008         | main                  |
+
+  Scenario Template: Large allow-lists matched against String parameters
+    Given a <configuration> feature toggle configuration
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates the parameter "paramTestPrimitive" with <count> values from <first> every <step>
+    When the service is called with primitive parameter "<parameter>"
+    Then the implementation of operation(String) "<invokedImplementation>" will be used
+
+    Examples:
+      | configuration     | count  | first  | step   | parameter | invokedImplementation |
+      | compiled snapshot | 100000 | 0      | 1      | 0         | newImplementation     |
+      | compiled snapshot | 100000 | 0      | 1      | 00        | main                  |
+      | compiled snapshot | 100000 | 0      | 1      | -0        | main                  |
+      | compiled snapshot | 100000 | -50000 | 1      | -50000    | newImplementation     |
+      | compiled snapshot | 100000 | -50000 | 1      | +1        | main                  |
+      | compiled snapshot | 5000   | 7      | 400000 | 800007    | newImplementation     |
+      | compiled snapshot | 5000   | 7      | 400000 | 0800007   | main                  |
+      | compiled snapshot | 5000   | 7      | 400000 | x800007   | main                  |
+      | mutable           | 5000   | 7      | 400000 | 800007    | newImplementation     |
+
+  Scenario Template: Large allow-lists of numeric values laid out for their density
+    Given a compiled snapshot feature toggle configuration
+    And those features activates the parameter "paramTestField" with <count> values from <first> every <step>
+    Then the values enabled for "paramTestField" are kept in a <layout>
+    And the values enabled for "paramTestField" are the configured ones
+
+    Examples:
+      | count  | first                | step       | layout                 |
+      | 4096   | 0                    | 1000003    | LongHashSet            |
+      | 100000 | 0                    | 1          | LongBitmap             |
+      | 100000 | -50000               | 1          | LongBitmap             |
+      | 6000   | 0                    | 20         | BloomFilteredAllowList |
+      | 6000   | 0                    | 3          | LongBitmap             |
+      | 5000   | 7                    | 400000     | BloomFilteredAllowList |
+      | 5000   | -9223372036854775808 | 1000000007 | BloomFilteredAllowList |
+
+  Scenario: Small allow-lists are kept as Strings
+    Given a compiled snapshot feature toggle configuration
+    And those features activates the parameter "paramTestField" with 100 values from 0 every 1
+    Then the values enabled for "paramTestField" are kept as Strings
+    And the values enabled for "paramTestField" are the configured ones
+
+  Scenario Template: Synchronized user configuration polled in the background
+    Given a synchronized user configuration polled in the background
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "paramTestField=1"
+    When the service is called with complex parameter "1" and "F1"
+    Then the implementation of operation(OperationParameter) "newImplementation" will be used
+    When those features are removed from the featureNames at configuration
+    And the service is called without parameter toggle with "1"
+    Then the implementation of untoggledOperation(String) "main" will be used
+
+    Examples:
+      | engine   |
+      | JDK      |
+      | BYTECODE |
+
+  Scenario Template: Batch evaluation of a feature
+    Given <configuration>
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the primitive parameters from 1 to 12 are evaluated in a batch for the feature "featureName"
+    Then the batch is on for the parameters "<on>"
+
+    Examples:
+      | configuration                                    | features           | featureParameters                                  | on                         |
+      | a mutable feature toggle configuration           |                    |                                                    |                            |
+      | a mutable feature toggle configuration           | xicote             |                                                    |                            |
+      | a mutable feature toggle configuration           | featureName        |                                                    | 1,2,3,4,5,6,7,8,9,10,11,12 |
+      | a mutable feature toggle configuration           | featureName        | paramTestPrimitive=2,11                            | 2,11                       |
+      | a mutable feature toggle configuration           | featureName        | featureName&paramTestPrimitive=3                   | 3                          |
+      | a mutable feature toggle configuration           | featureName        | xicote&paramTestPrimitive=3                        | 1,2,3,4,5,6,7,8,9,10,11,12 |
+      | a compiled snapshot feature toggle configuration |                    | paramTestPrimitive=2,11                            |                            |
+      | a compiled snapshot feature toggle configuration | featureName,xicote |                                                    | 1,2,3,4,5,6,7,8,9,10,11,12 |
+      | a compiled snapshot feature toggle configuration | featureName        | paramTestPrimitive=2,11                            | 2,11                       |
+      | a compiled snapshot feature toggle configuration | featureName        | featureName&paramTestPrimitive=12;paramTestField=1 | 12                         |
+
+  Scenario Template: Partitioned dispatch of a list argument, answered in the order of its items
+    Given <configuration>
+    And a bulk implementation called "main"
+    And a bulk implementation called "newImplementation"
+    And the partitioned feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the bulk service processes "<items>"
+    Then the implementation "newImplementation" processed "<onItems>" in <onCalls> calls
+    And the implementation "main" processed "<offItems>" in <offCalls> calls
+    And the bulk service answered "<answer>"
+
+    Examples:
+      | configuration                                    | engine    | features    | featureParameters                  | items   | onItems | onCalls | offItems | offCalls | answer                                                      |
+      | a mutable feature toggle configuration           | JDK       |             |                                    | 1,2,3   |         | 0       | 1,2,3    | 1        | main:1,main:2,main:3                                        |
+      | a mutable feature toggle configuration           | BYTECODE  | featureName |                                    | 1,2,3   | 1,2,3   | 1       |          | 0        | newImplementation:1,newImplementation:2,newImplementation:3 |
+      | a mutable feature toggle configuration           | JDK       | featureName | paramTestPrimitive=2               | 1,2,3   | 2       | 1       | 1,3      | 1        | main:1,newImplementation:2,main:3                           |
+      | a mutable feature toggle configuration           | BYTECODE  | featureName | featureName&paramTestPrimitive=1,3 | 1,2,3,4 | 1,3     | 1       | 2,4      | 1        | newImplementation:1,main:2,newImplementation:3,main:4       |
+      | a mutable feature toggle configuration           | JDK       | featureName | paramTestPrimitive=9               | 1,2     |         | 0       | 1,2      | 1        | main:1,main:2                                               |
+      | a compiled snapshot feature toggle configuration | JDK       | featureName | paramTestPrimitive=2               | 1,2,3   | 2       | 1       | 1,3      | 1        | main:1,newImplementation:2,main:3                           |
+      | a compiled snapshot feature toggle configuration | BYTECODE  | featureName | featureName&paramTestPrimitive=1,3 | 1,2,3,4 | 1,3     | 1       | 2,4      | 1        | newImplementation:1,main:2,newImplementation:3,main:4       |
+      | a compiled snapshot feature toggle configuration | BYTECODE  | xicote      | paramTestPrimitive=2               | 1,2,3   |         | 0       | 1,2,3    | 1        | main:1,main:2,main:3                                        |
+      | a compiled snapshot feature toggle configuration | GENERATED | featureName | paramTestPrimitive=2               | 1,2,3   | 2       | 1       | 1,3      | 1        | main:1,newImplementation:2,main:3                           |
+
+  Scenario Template: Partitioned dispatch of an array of complex parameters
+    Given <configuration>
+    And a bulk implementation called "main"
+    And a bulk implementation called "newImplementation"
+    And the partitioned feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "<featureParameters>"
+    When the bulk service stores the complex parameters "1:F1,2:F1,1:F2,2:F3"
+    Then the implementation "newImplementation" stored "<onItems>" in <onCalls> calls
+    And the implementation "main" stored "<offItems>" in <offCalls> calls
+    And the bulk service answered "4"
+
+    Examples:
+      | configuration                                    | engine   | featureParameters                     | onItems             | onCalls | offItems       | offCalls |
+      | a mutable feature toggle configuration           | JDK      | paramTestField=1                      | 1:F1,1:F2           | 1       | 2:F1,2:F3      | 1        |
+      | a mutable feature toggle configuration           | BYTECODE | paramTestField=1,2;paramTestMethod=F1 | 1:F1,2:F1           | 1       | 1:F2,2:F3      | 1        |
+      | a compiled snapshot feature toggle configuration | JDK      | paramTestMethod=F3                    | 2:F3                | 1       | 1:F1,2:F1,1:F2 | 1        |
+      | a compiled snapshot feature toggle configuration | BYTECODE |                                       | 1:F1,2:F1,1:F2,2:F3 | 1       |                | 0        |
+
+  Scenario Template: Parameter toggles of the methods inherited from a super interface
+    Given <configuration>
+    And a implementation of the <interface> interface called "main"
+    And a implementation of the <interface> interface called "newImplementation"
+    And the feature toggle of the <interface> interface called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "paramTestPrimitive=1"
+    When the service is called with primitive parameter "<parameter>"
+    Then the implementation of operation(String) "<invokedImplementation>" will be used
+
+    Examples:
+      | configuration                                    | interface | engine    | parameter | invokedImplementation |
+      | a mutable feature toggle configuration           | extended  | JDK       | 1         | newImplementation     |
+      | a mutable feature toggle configuration           | extended  | JDK       | 2         | main                  |
+      | a mutable feature toggle configuration           | extended  | BYTECODE  | 1         | newImplementation     |
+      | a mutable feature toggle configuration           | extended  | BYTECODE  | 2         | main                  |
+      | a compiled snapshot feature toggle configuration | extended  | JDK       | 2         | main                  |
+      | a compiled snapshot feature toggle configuration | extended  | BYTECODE  | 1         | newImplementation     |
+      | a mutable feature toggle configuration           | generated | JDK       | 2         | main                  |
+      | a mutable feature toggle configuration           | generated | GENERATED | 1         | newImplementation     |
+      | a mutable feature toggle configuration           | generated | GENERATED | 2         | main                  |
+      | a compiled snapshot feature toggle configuration | generated | GENERATED | 1         | newImplementation     |
+      | a compiled snapshot feature toggle configuration | generated | GENERATED | 2         | main                  |
+
+  Scenario Template: Delegates generated at compile time
+    Given a implementation of the <interface> interface called "main"
+    And a implementation of the <interface> interface called "newImplementation"
+    When the feature toggle of the <interface> interface called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    Then the service is served by <proxy>
+
+    Examples:
+      | interface | engine    | proxy                                  |
+      | generated | GENERATED | the delegate generated at compile time |
+      | generated | BYTECODE  | a proxy generated at runtime           |
+      | extended  | GENERATED | a proxy generated at runtime           |
+
+  Scenario: Parameter toggles on a list are only allowed for partitioned features
+    Given a bulk implementation called "main"
+    And a bulk implementation called "newImplementation"
+    Then a feature toggle called "featureName" switching between those bulk implementations isn't allowed unless partitioned
+
+  Scenario Template: Lists of complex parameters are only scanned by partitioned features
+    Given a mutable feature toggle configuration
+    And a merging implementation called "main"
+    And a merging implementation called "newImplementation"
+    And the feature toggle of the merging interface called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "paramTestField=9"
+    When the merging service merges the complex parameters "1:F1,2:F2" with "1:F3"
+    Then the merging implementation "newImplementation" was called 1 time
+    And the merging implementation "main" was called 0 times
+    And a partitioned feature toggle called "featureName" switching between those merging implementations isn't allowed
+
+    Examples:
+      | engine    |
+      | JDK       |
+      | BYTECODE  |
+      | GENERATED |
+
+  Scenario: Feature registry scoped by the caller
+    Given a feature registry
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    When 200 feature toggles called "featureName" are built in the registry from 8 threads switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    Then the registry has 200 proxies for "featureName"
+    And the registry has 0 proxies for "otherFeatureName"
+    When those proxies are no longer used
+    Then the registry has 0 proxies for "featureName"
+
+  Scenario Template: Decisions counted per feature
+    Given a <recorder> feature metrics recorder
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called with primitive parameter "1" 5 times
+    Then the feature "featureName" counted <on> on, <off> off, <parameterRejections> parameter and 0 probabilistic rejections
+    And the feature "featureName" timed <on> on and <off> off calls
+
+    Examples:
+      | recorder | engine   | features    | featureParameters    | on | off | parameterRejections |
+      | counting | JDK      |             |                      | 0  | 5   | 0                   |
+      | counting | JDK      | featureName |                      | 5  | 0   | 0                   |
+      | counting | JDK      | featureName | paramTestPrimitive=2 | 0  | 5   | 5                   |
+      | counting | BYTECODE | featureName |                      | 5  | 0   | 0                   |
+      | counting | BYTECODE | featureName | paramTestPrimitive=2 | 0  | 5   | 5                   |
+      | JMX      | BYTECODE | featureName | paramTestPrimitive=1 | 5  | 0   | 0                   |
+
+  Scenario: Probabilistic rejections counted
+    Given a counting feature metrics recorder
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the probability feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "featureName#probability=0/10"
+    When the service is called with primitive parameter "1" 4 times
+    Then the feature "featureName" counted 0 on, 4 off, 0 parameter and 4 probabilistic rejections
+
+  Scenario: Counters published as an MXBean
+    Given a JMX feature metrics recorder
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "jmxFeature" using the JDK proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    When the service is called with primitive parameter "1" 3 times
+    Then the counters of "jmxFeature" are registered in JMX with 3 off decisions
+
+  Scenario Template: Sampled decisions traced with their reason
+    Given a <configuration>
+    And a decision trace buffer of 8 traces sampling 100% of the decisions
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the BYTECODE proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called with primitive parameter "1" 10 times
+    Then 10 decisions were traced
+    And the last decision trace of "featureName" is <reason> with the parameter "<parameter>"
+
+    Examples:
+      | configuration                                  | features    | featureParameters                | reason             | parameter            |
+      | mutable feature toggle configuration           |             |                                  | FEATURE_DISABLED   |                      |
+      | mutable feature toggle configuration           | featureName | paramTestPrimitive=1             | ON                 |                      |
+      | mutable feature toggle configuration           | featureName | paramTestPrimitive=2             | PARAMETER_REJECTED | paramTestPrimitive=1 |
+      | compiled snapshot feature toggle configuration | featureName | featureName&paramTestPrimitive=2 | PARAMETER_REJECTED | paramTestPrimitive=1 |
+      | compiled snapshot feature toggle configuration | featureName |                                  | ON                 |                      |
+
+  Scenario Template: Decision traces dumped through every proxy engine
+    Given a decision trace buffer of 8 traces sampling 100% of the decisions
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    When the service is called with primitive parameter "1"
+    And the service is called without parameter toggle with "1"
+    Then 2 decisions were traced
+    And the decision traces are dumped with the methods "TestingFeature.operation,<untoggledMethod>"
+
+    Examples:
+      | engine    | untoggledMethod                   |
+      | JDK       | TestingFeature.untoggledOperation |
+      | BYTECODE  | <unknown method>                  |
+      | GENERATED | <unknown method>                  |
+
+  Scenario: Probabilistic rejections traced
+    Given a decision trace buffer of 4 traces sampling 100% of the decisions
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the probability feature toggle called "featureName" switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "featureName#probability=0/10"
+    When the service is called with primitive parameter "1" 3 times
+    Then 3 decisions were traced
+    And the last decision trace of "featureName" is PROBABILITY_REJECTED with the parameter ""
+
+  Scenario: Decisions traced concurrently into the slots of the ring
+    Given a decision trace buffer of 4 traces sampling 100% of the decisions
+    When 4 threads trace 20000 decisions each while the buffer is dumped
+    Then no decision trace was torn
+
+  Scenario: Decisions not sampled aren't traced
+    Given a decision trace buffer of 4 traces sampling 0% of the decisions
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the feature toggle called "featureName" using the JDK proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    When the service is called with primitive parameter "1" 5 times
+    Then 0 decisions were traced
+
+  Scenario Template: Asynchronous results timed until they complete
+    Given a counting feature metrics recorder
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the implementation "newImplementation" completes its async operations later
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    When the service is called asynchronously with "1"
+    Then the caller got the async result of "newImplementation"
+    And the feature "featureName" timed 0 on and 0 off calls
+    When the async operation of "newImplementation" completes
+    Then the feature "featureName" timed 1 on and 0 off calls
+
+    Examples:
+      | engine    |
+      | JDK       |
+      | BYTECODE  |
+      | GENERATED |
+
+  Scenario Template: Disabled implementation called in the shadow of the enabled one
+    Given a counting feature metrics recorder
+    And a shadow executor running at most 3 calls at a time
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the shadowed feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "<features>"
+    When the service is called with primitive parameter "1" 5 times
+    Then the implementation "newImplementation" served <served> calls of operation(String)
+    And the implementation "main" served 0 calls of operation(String)
+    And <submitted> shadow calls were submitted, <dropped> dropped and <submitted> are in flight
+    When the shadow calls run
+    Then the implementation "main" served <shadowed> calls of operation(String)
+    And <submitted> shadow calls were submitted, <dropped> dropped and 0 are in flight
+    And the feature "featureName" counted <submitted> shadow calls
+
+    Examples:
+      | engine    | features    | served | submitted | dropped | shadowed |
+      | JDK       | featureName | 5      | 3         | 2       | 3        |
+      | BYTECODE  | featureName | 5      | 3         | 2       | 3        |
+      | GENERATED | featureName | 5      | 3         | 2       | 3        |
+
+  Scenario: Asynchronous shadow calls in flight until they complete
+    Given a counting feature metrics recorder
+    And a shadow executor running at most 1 calls at a time
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the implementation "main" completes its async operations later
+    And the shadowed feature toggle called "featureName" using the BYTECODE proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    When the service is called asynchronously with "1"
+    And the shadow calls run
+    And the service is called asynchronously with "2"
+    Then 1 shadow calls were submitted, 1 dropped and 1 are in flight
+    When the async operation of "main" completes
+    Then 1 shadow calls were submitted, 1 dropped and 0 are in flight
+    And the feature "featureName" counted 1 shadow calls
+
+  Scenario: Asynchronous shadow calls failed once their stage times out
+    Given a counting feature metrics recorder
+    And a shadow executor running at most 1 calls at a time whose stages time out after 50 milliseconds
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the implementation "main" completes its async operations later
+    And the shadowed feature toggle called "featureName" using the BYTECODE proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    When the service is called asynchronously with "1"
+    And the shadow calls run
+    And the shadow stages time out
+    Then 1 shadow calls were submitted, 0 dropped and 0 are in flight
+    And the feature "featureName" counted 1 shadow calls, 1 of them failed
+    When the async operation of "main" completes
+    Then the feature "featureName" counted 1 shadow calls, 1 of them failed
+    When the service is called asynchronously with "2"
+    Then 2 shadow calls were submitted, 0 dropped and 1 are in flight
+
+  Scenario Template: Dark launch compares the enabled implementation in the shadow of the disabled one
+    Given a counting feature metrics recorder
+    And a shadow executor running at most 10 calls at a time
+    And a implementation of this interface called "main" with parameter toggle called 'paramTest'
+    And a implementation of this interface called "newImplementation" with parameter toggle called 'paramTest'
+    And the implementation "main" answers "<mainAnswer>" to async operations
+    And the implementation "newImplementation" answers "<newAnswer>" to async operations
+    And the dark launched feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "<featureParameters>"
+    When the service is called asynchronously with "1"
+    Then the caller got the async result of "main"
+    When the service is called asynchronously with "1"
+    And the shadow calls run
+    Then <mirrored> shadow calls were submitted, 0 dropped and 0 are in flight
+    And the feature "featureName" counted <mirrored> shadow calls
+    And the feature "featureName" counted <matches> matching and <mismatches> mismatching shadow calls
+    And the feature "featureName" timed 0 on and 2 off calls
+
+    Examples:
+      | engine   | mainAnswer | newAnswer | featureParameters      | mirrored | matches | mismatches |
+      | JDK      | a          | a         |                        | 2        | 2       | 0          |
+      | BYTECODE | a          | b         |                        | 2        | 0       | 2          |
+      | JDK      | a          | a         | featureName#mirror=0/1 | 0        | 0       | 0          |
+      | BYTECODE | a          | b         | paramTestPrimitive=2   | 0        | 0       | 0          |
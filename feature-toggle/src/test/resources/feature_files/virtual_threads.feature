@@ -0,0 +1,62 @@
+#   Copyright 2013-2016 Blocks4J Team (www.blocks4j.org)
+#
+#   Licensed under the Apache License, Version 2.0 (the "License");
+#   you may not use this file except in compliance with the License.
+#   You may obtain a copy of the License at
+#
+#       http://www.apache.org/licenses/LICENSE-2.0
+#
+#   Unless required by applicable law or agreed to in writing, software
+#   distributed under the License is distributed on an "AS IS" BASIS,
+#   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+#   See the License for the specific language governing permissions and
+#   limitations under the License.
+
+#language:en
+
+Feature: Feature Toggle on virtual threads
+
+  # Pinned threads are traced by -Djdk.tracePinnedThreads, which only exists from JDK 21 to 23. Since JDK 24 a virtual
+  # thread holding a monitor unmounts like any other: the jdk24 profile skips the @Pinning scenarios, and nothing being
+  # traced, "no thread was pinned" holds there without checking anything.
+
+  Scenario Template: Concurrent calls on virtual threads never pin their carrier
+    Given <configuration>
+    And a counting feature metrics recorder
+    And a decision trace buffer of 1024 traces sampling 10% of the decisions
+    And a parking implementation of this interface called "main"
+    And a parking implementation of this interface called "newImplementation"
+    And the feature toggle called "featureName" using the <engine> proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "paramTestPrimitive=1,2,3"
+    When 100000 virtual threads call the service with primitive parameters at the same time
+    Then the implementation "newImplementation" served 30000 of the calls
+    And the implementation "main" served 70000 of the calls
+    And the feature "featureName" counted 30000 on, 70000 off, 70000 parameter and 0 probabilistic rejections
+    And no thread was pinned to its carrier while holding a monitor
+
+    Examples:
+      | configuration                                              | engine    |
+      | a compiled snapshot feature toggle configuration           | JDK       |
+      | a compiled snapshot feature toggle configuration           | BYTECODE  |
+      | a compiled snapshot feature toggle configuration           | GENERATED |
+      | a synchronized user configuration polled in the background | JDK       |
+      | a synchronized user configuration polled in the background | BYTECODE  |
+
+  @Pinning
+  Scenario: A user configuration blocking while holding its monitor pins the calling threads
+    Given a synchronized user configuration blocking for 100 microseconds on every read
+    And a counting feature metrics recorder
+    And a parking implementation of this interface called "main"
+    And a parking implementation of this interface called "newImplementation"
+    And the feature toggle called "featureName" using the BYTECODE proxy engine switching between:
+      | originalFeature | main              |
+      | newFeature      | newImplementation |
+    And those features are in the featureNames at configuration "featureName"
+    And those features activates with those parameters "paramTestPrimitive=1,2,3"
+    When 1000 virtual threads call the service with primitive parameters at the same time
+    Then the implementation "newImplementation" served 300 of the calls
+    And the implementation "main" served 700 of the calls
+    And a thread was pinned to its carrier while holding a monitor